@@ -4,7 +4,6 @@ import java.util.Properties;
 
 import javax.sql.DataSource;
 
-import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
@@ -54,13 +53,14 @@ public class HibernateH2Configuration {
 	/**
 	 * 
 	 * Returns a H2 data source configured with default in-memory setup properties.
+	 * The connection pool settings are read from the KHR_H2_POOL_* variables.
 	 * 
 	 * @return the data source bean.
 	 */
 	@Bean(name = "h2DBDataSource")
 	public DataSource getH2DBDataSource() {
 
-		BasicDataSource h2DataSource = new BasicDataSource();
+		InstrumentedDataSource h2DataSource = new InstrumentedDataSource();
 
 		h2DataSource.setDriverClassName(DatabaseUtility.getH2DBDriverClassName());
 		h2DataSource.setUrl(DatabaseUtility.getH2DBUrl());
@@ -68,6 +68,8 @@ public class HibernateH2Configuration {
 		h2DataSource.setPassword(DatabaseUtility.getH2DBPassword());
 		// Rollback on return.
 		h2DataSource.setRollbackOnReturn(true);
+		// Pool sizing, statement caching and validation.
+		DatabaseUtility.configureConnectionPool(h2DataSource, "KHR_H2");
 
 		return h2DataSource;
 
@@ -85,11 +87,15 @@ public class HibernateH2Configuration {
 		Properties h2HibernateProperties = new Properties();
 
 		h2HibernateProperties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
-		h2HibernateProperties.setProperty("hibernate.show_sql", "true");
+		h2HibernateProperties.setProperty("hibernate.show_sql", Boolean.toString(DatabaseUtility.isShowSqlEnabled()));
 		h2HibernateProperties.setProperty("hibernate.connection.pool_size", "1");
 		h2HibernateProperties.setProperty("hibernate.current_session_context_class", "thread");
 		h2HibernateProperties.setProperty("hibernate.connection.autocommit", "false");
 		h2HibernateProperties.setProperty("hibernate.hbm2ddl.auto", "create");
+		// JDBC batching of inserts and updates.
+		h2HibernateProperties.putAll(DatabaseUtility.getJdbcBatchProperties());
+		// Opt-in second-level cache.
+		h2HibernateProperties.putAll(DatabaseUtility.getSecondLevelCacheProperties("h2"));
 
 		return h2HibernateProperties;
 
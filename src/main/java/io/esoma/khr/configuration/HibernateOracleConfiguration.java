@@ -4,7 +4,6 @@ import java.util.Properties;
 
 import javax.sql.DataSource;
 
-import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
@@ -54,14 +53,15 @@ public class HibernateOracleConfiguration {
 	/**
 	 * 
 	 * Returns an Oracle Database data source configured with application specific
-	 * properties.
+	 * properties. The connection pool settings are read from the KHR_POOL_*
+	 * variables.
 	 * 
 	 * @return the data source bean.
 	 */
 	@Bean(name = "oracleDBDataSource")
 	public DataSource getOracleDBDataSource() {
 
-		BasicDataSource oracleDataSource = new BasicDataSource();
+		InstrumentedDataSource oracleDataSource = new InstrumentedDataSource();
 
 		oracleDataSource.setDriverClassName(DatabaseUtility.getOracleDBDriverClassName());
 		oracleDataSource.setUrl(DatabaseUtility.getOracleDBUrl());
@@ -69,6 +69,8 @@ public class HibernateOracleConfiguration {
 		oracleDataSource.setPassword(DatabaseUtility.getOracleDBPassword());
 		// Rollback on return.
 		oracleDataSource.setRollbackOnReturn(true);
+		// Pool sizing, statement caching and validation.
+		DatabaseUtility.configureConnectionPool(oracleDataSource, "KHR");
 
 		return oracleDataSource;
 
@@ -86,11 +88,15 @@ public class HibernateOracleConfiguration {
 		Properties oracleHibernateProperties = new Properties();
 
 		oracleHibernateProperties.setProperty("hibernate.dialect", "org.hibernate.dialect.Oracle12cDialect");
-		oracleHibernateProperties.setProperty("hibernate.show_sql", "true");
+		oracleHibernateProperties.setProperty("hibernate.show_sql", Boolean.toString(DatabaseUtility.isShowSqlEnabled()));
 		oracleHibernateProperties.setProperty("hibernate.connection.pool_size", "1");
 		oracleHibernateProperties.setProperty("hibernate.current_session_context_class", "thread");
 		oracleHibernateProperties.setProperty("hibernate.connection.autocommit", "false");
 		oracleHibernateProperties.setProperty("hibernate.hbm2ddl.auto", "validate");
+		// JDBC batching of inserts and updates.
+		oracleHibernateProperties.putAll(DatabaseUtility.getJdbcBatchProperties());
+		// Opt-in second-level cache.
+		oracleHibernateProperties.putAll(DatabaseUtility.getSecondLevelCacheProperties("oracle"));
 
 		return oracleHibernateProperties;
 
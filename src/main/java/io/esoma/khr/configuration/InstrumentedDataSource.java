@@ -0,0 +1,51 @@
+package io.esoma.khr.configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
+import org.apache.tomcat.dbcp.dbcp2.PoolableConnection;
+import org.apache.tomcat.dbcp.pool2.impl.GenericObjectPool;
+
+/**
+ *
+ * The pooled data source used by the session factories. It exposes the
+ * saturation statistics of the underlying connection pool, so the pool can be
+ * sized against the number of request threads.
+ *
+ * @author Eddy Soma
+ *
+ */
+public class InstrumentedDataSource extends BasicDataSource {
+
+	/**
+	 *
+	 * Gets the current usage and the accumulated wait statistics of the
+	 * connection pool. The counters are zero until the first connection is
+	 * requested.
+	 *
+	 * @return a map from statistic names to their values.
+	 */
+	public Map<String, Long> getPoolStatistics() {
+
+		Map<String, Long> statistics = new LinkedHashMap<>();
+
+		GenericObjectPool<PoolableConnection> pool = this.getConnectionPool();
+
+		statistics.put("maxTotal", (long) this.getMaxTotal());
+		statistics.put("minIdle", (long) this.getMinIdle());
+		statistics.put("maxIdle", (long) this.getMaxIdle());
+		statistics.put("maxWaitMillis", this.getMaxWaitMillis());
+		statistics.put("active", pool == null ? 0L : pool.getNumActive());
+		statistics.put("idle", pool == null ? 0L : pool.getNumIdle());
+		statistics.put("waiters", pool == null ? 0L : pool.getNumWaiters());
+		statistics.put("borrowedCount", pool == null ? 0L : pool.getBorrowedCount());
+		statistics.put("createdCount", pool == null ? 0L : pool.getCreatedCount());
+		statistics.put("meanBorrowWaitMillis", pool == null ? 0L : pool.getMeanBorrowWaitTimeMillis());
+		statistics.put("maxBorrowWaitMillis", pool == null ? 0L : pool.getMaxBorrowWaitTimeMillis());
+
+		return statistics;
+
+	}
+
+}
@@ -1,12 +1,20 @@
 package io.esoma.khr.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,12 +25,24 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumData;
+import io.esoma.khr.model.CachedPage;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.model.Thumbnail;
 import io.esoma.khr.service.AlbumService;
 import io.esoma.khr.service.AuthService;
+import io.esoma.khr.service.QueryService;
+import io.esoma.khr.service.ThumbnailService;
+import io.esoma.khr.utility.DataUtility;
+import io.esoma.khr.utility.DatabaseUtility;
+import io.esoma.khr.utility.ImageUtility;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -36,8 +56,12 @@ import io.esoma.khr.service.AuthService;
 @RequestMapping(path = "/album")
 public class AlbumController {
 
+	private static final byte[] EMPTY_LIST = "[]".getBytes(StandardCharsets.UTF_8);
+
 	private AuthService authService;
 	private AlbumService albumService;
+	private QueryService queryService;
+	private ThumbnailService thumbnailService;
 
 	@Autowired
 	@Qualifier(value = "authService")
@@ -51,6 +75,18 @@ public class AlbumController {
 		this.albumService = albumService;
 	}
 
+	@Autowired
+	@Qualifier(value = "queryService")
+	public void setQueryService(QueryService queryService) {
+		this.queryService = queryService;
+	}
+
+	@Autowired
+	@Qualifier(value = "thumbnailService")
+	public void setThumbnailService(ThumbnailService thumbnailService) {
+		this.thumbnailService = thumbnailService;
+	}
+
 	/**
 	 * 
 	 * Handles a HTTP request of retrieving a specific album data. The sender must
@@ -110,6 +146,74 @@ public class AlbumController {
 
 	}
 
+	/**
+	 * 
+	 * Handles a HTTP request of retrieving the artwork image of a published album.
+	 * Published artwork never changes, so no authentication is required and the
+	 * response can be cached by any client. A matching If-None-Match header
+	 * results in an empty 304 response. A size asks for the smallest thumbnail at
+	 * least that large. Until the thumbnail is made, the original is served and
+	 * must be revalidated before reuse.
+	 * 
+	 * @param albumId     the ID of the album.
+	 * @param ifNoneMatch the entity tag cached by the client.
+	 * @param size        the size of the image in pixels.
+	 * @return the raw image bytes, or an empty body if the album is not published
+	 *         or has no artwork.
+	 */
+	@GetMapping(path = "/artwork/{albumId}")
+	public ResponseEntity<byte[]> getArtwork(@Validated @PathVariable int albumId,
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestParam(name = "size", required = false) Integer size) {
+
+		if (size != null && size < 1) {
+			return ResponseEntity.badRequest().build();
+		}
+
+		final String version = this.albumService.getArtworkVersion(albumId);
+		if (version == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		// The tags come from the version, so a cached copy is confirmed without
+		// reading the image.
+		final int thumbnailSize = size != null ? ImageUtility.getThumbnailSize(size) : 0;
+		CacheControl cacheControl = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic();
+		String eTag = DataUtility.getEntityTag(version, thumbnailSize);
+
+		if (thumbnailSize > 0 && DataUtility.matchesEntityTag(ifNoneMatch, eTag)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+		}
+
+		final byte[] image;
+		final String imageType;
+
+		Thumbnail thumbnail = thumbnailSize > 0 ? this.thumbnailService.getArtwork(albumId, size) : null;
+		if (thumbnail != null) {
+			image = thumbnail.getImage();
+			imageType = thumbnail.getImageType();
+		} else {
+			eTag = DataUtility.getEntityTag(version, 0);
+			// The thumbnail replaces the original once it is made.
+			if (thumbnailSize > 0) {
+				cacheControl = CacheControl.noCache().cachePublic();
+			}
+			if (DataUtility.matchesEntityTag(ifNoneMatch, eTag)) {
+				return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+			}
+			Album album = this.albumService.getArtwork(albumId);
+			if (album == null) {
+				return ResponseEntity.notFound().build();
+			}
+			image = album.getArtwork();
+			imageType = album.getArtworkType();
+		}
+
+		return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl)
+				.contentType(MediaType.parseMediaType("image/" + imageType.toLowerCase())).body(image);
+
+	}
+
 	/**
 	 * 
 	 * Handles a HTTP request that attempts to create a new album under a koalibee's
@@ -117,13 +221,13 @@ public class AlbumController {
 	 * processed.
 	 * 
 	 * @param koalibeeId the ID of the creator.
-	 * @param albumData  the JSON string containing the album information.
+	 * @param albumData  the request body containing the album information.
 	 * @param jws        the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PostMapping(path = "/create/{koalibeeId}")
 	public ResponseEntity<String> createAlbum(@Validated @PathVariable int koalibeeId,
-			@Validated @RequestBody String albumData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody AlbumData albumData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status;
 
@@ -158,13 +262,13 @@ public class AlbumController {
 	 * unpublished album. It can only be accessed by the creator.
 	 * 
 	 * @param albumId   the ID of the album to be updated.
-	 * @param albumData the JSON string containing the updated information.
+	 * @param albumData the request body containing the updated information.
 	 * @param jws       the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PutMapping(path = "/update/{albumId}")
 	public ResponseEntity<String> updateAlbumInformation(@Validated @PathVariable int albumId,
-			@Validated @RequestBody String albumData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody AlbumData albumData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status;
 
@@ -193,6 +297,64 @@ public class AlbumController {
 
 	}
 
+	/**
+	 * 
+	 * Responds to a HTTP request that uploads the artwork of an unpublished album.
+	 * The body is the raw image file sent with its media type, such as image/png,
+	 * and is streamed into the database without being held in memory. An
+	 * authentication token is required to verify the ownership of the album.
+	 * 
+	 * @param albumId     the ID of the album.
+	 * @param contentType the media type of the artwork.
+	 * @param length      the length of the artwork in bytes.
+	 * @param artwork     the body of the request.
+	 * @param jws         the signed authentication token.
+	 * @return a general message indicating success or failure.
+	 */
+	@PutMapping(path = "/artwork/{albumId}")
+	public ResponseEntity<String> uploadAlbumArtwork(@Validated @PathVariable int albumId,
+			@RequestHeader(name = "Content-Type", required = false) String contentType,
+			@RequestHeader(name = "Content-Length", required = false) Long length, InputStream artwork,
+			@Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		String result = "";
+
+		final String artworkType = DataUtility.getUploadType(contentType, "image");
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = ExceptionController.AUTH_TOKEN_EXPIRED;
+		} else if (authId == 0) {
+			status = HttpStatus.UNAUTHORIZED;
+			result = ExceptionController.UNAUTHORIZED;
+		} else if (length == null) {
+			status = HttpStatus.LENGTH_REQUIRED;
+			result = ExceptionController.LENGTH_REQUIRED;
+		} else if (length > DatabaseUtility.getMaxUploadSize()) {
+			status = HttpStatus.PAYLOAD_TOO_LARGE;
+			result = ExceptionController.PAYLOAD_TOO_LARGE;
+		} else if (artworkType == null) {
+			status = HttpStatus.UNSUPPORTED_MEDIA_TYPE;
+			result = ExceptionController.UNSUPPORTED_MEDIA_TYPE;
+		} else {
+			if (this.albumService.uploadArtwork(authId, albumId, artworkType, artwork, length)) {
+				status = HttpStatus.OK;
+				result = "artwork has been successfully uploaded";
+			} else {
+				status = HttpStatus.UNPROCESSABLE_ENTITY;
+				result = "unable to upload the artwork";
+			}
+		}
+
+		return ResponseEntity.status(status).body(result);
+
+	}
+
 	/**
 	 * 
 	 * Responds to a HTTP request that attempts to delete an album from the
@@ -241,14 +403,14 @@ public class AlbumController {
 	 * publisher.
 	 * 
 	 * @param albumId   the ID of the album.
-	 * @param albumData the JSON string containing the additional information for a
+	 * @param albumData the request body containing the additional information for a
 	 *                  published album.
 	 * @param jws       the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PostMapping(path = "/publish/{albumId}")
 	public ResponseEntity<String> publishAlbum(@Validated @PathVariable int albumId,
-			@Validated @RequestBody String albumData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody AlbumData albumData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status;
 
@@ -319,62 +481,132 @@ public class AlbumController {
 
 	/**
 	 * 
-	 * Handles a HTTP request of retrieving all albums in the database. An
-	 * authentication token from a system administrator is required.
+	 * Handles a HTTP request of retrieving a page of all albums in the database.
+	 * An authentication token from a system administrator is required. The cursor
+	 * of the next page is sent in the Next-Cursor header.
 	 * 
-	 * @param jws the signed authentication token.
+	 * @param jws    the signed authentication token.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
 	 * @return the list containing albums' data. An empty list is returned if the
-	 *         sender is not authorized or if the database does not have any album.
+	 *         sender is not authorized, if the cursor is invalid or if the database
+	 *         does not have any album.
 	 */
 	@GetMapping(path = "/get/all")
-	public ResponseEntity<List<Album>> listAllAlbums(@Validated @RequestHeader(name = "Auth-Token") String jws) {
+	public DeferredResult<ResponseEntity<List<Album>>> listAllAlbums(
+			@Validated @RequestHeader(name = "Auth-Token") String jws,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "limit", required = false) Integer limit) {
 
 		// Validate the JWS.
 		int authId = this.authService.reauthenticate(jws);
 
-		if (authId == -777) {
-			return ResponseEntity.ok(this.albumService.getAll());
-		} else {
-			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<Album>());
+		if (authId != -777) {
+			return this.queryService
+					.complete(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<Album>()));
+		}
+
+		return this.queryService.submit(() -> {
+			Page<Album> page = this.albumService.getAll(cursor, limit);
+			if (page == null) {
+				return ResponseEntity.badRequest().body(new ArrayList<Album>());
+			}
+			return ResponseEntity.ok().headers(PageUtility.getPageHeaders(page)).body(page.getItems());
+		});
+
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request of exporting all albums in the database as one
+	 * JSON array. An authentication token from a system administrator is required.
+	 * The albums are written to the response as they are read from the database,
+	 * so the list is never held in memory. If the export fails after the response
+	 * is committed, the array is left unterminated.
+	 * 
+	 * @param jws      the signed authentication token.
+	 * @param response the response to write the albums to.
+	 * @throws IOException if the response cannot be written.
+	 */
+	@GetMapping(path = "/export")
+	public void exportAlbums(@Validated @RequestHeader(name = "Auth-Token") String jws,
+			HttpServletResponse response) throws IOException {
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId != -777) {
+			response.setStatus(HttpStatus.UNAUTHORIZED.value());
+			return;
+		}
+
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+		if (!this.albumService.writeAll(response.getOutputStream()) && !response.isCommitted()) {
+			response.reset();
+			response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
 		}
 
 	}
 
 	/**
 	 * 
-	 * Responds to a HTTP request of retrieving all published albums. An
+	 * Responds to a HTTP request of retrieving a page of published albums. An
 	 * authentication token from a registered koalibee is required in order to view
-	 * the list.
+	 * the list. The cursor of the next page is sent in the Next-Cursor header. A
+	 * page may hold fewer albums than the limit for non-premium users, so only the
+	 * absence of the cursor marks the last page. The page is served from a cache
+	 * of serialized pages, and a matching If-None-Match header results in an empty
+	 * 304 response.
 	 * 
-	 * @param jws the signed authentication token.
-	 * @return the album list. An empty list is returned if no album is found or if
-	 *         the sender has not logged in.
+	 * @param jws         the signed authentication token.
+	 * @param cursor      the cursor of the page, or null for the first page.
+	 * @param limit       the requested page size, or null for the default size.
+	 * @param ifNoneMatch the entity tag cached by the client.
+	 * @return the JSON album list. An empty list is returned if no album is found,
+	 *         if the cursor is invalid or if the sender has not logged in.
 	 */
 	@GetMapping(path = "/get/published")
-	public ResponseEntity<List<Album>> getAllPublications(@Validated @RequestHeader(name = "Auth-Token") String jws) {
+	public DeferredResult<ResponseEntity<byte[]>> getAllPublications(
+			@Validated @RequestHeader(name = "Auth-Token") String jws,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "limit", required = false) Integer limit,
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
 		// Validate the JWS.
 		int authId = this.authService.reauthenticate(jws);
 
-		if (authId == -777 || authId > 0) {
-			List<Album> albumList = this.albumService.getPublished();
+		if (authId != -777 && authId <= 0) {
+			return this.queryService.complete(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+					.contentType(MediaType.APPLICATION_JSON).body(EMPTY_LIST));
+		}
 
-			// Filter list for non-premium users.
-			for (int i = 0; i < Koalibee.PREMIUM_USERS.length; ++i) {
-				if (authId == Koalibee.PREMIUM_USERS[i]) {
-					return ResponseEntity.ok(albumList);
-				}
+		boolean premium = false;
+		for (int i = 0; i < Koalibee.PREMIUM_USERS.length; ++i) {
+			if (authId == Koalibee.PREMIUM_USERS[i]) {
+				premium = true;
 			}
+		}
+		final boolean premiumUser = premium;
 
-			List<Integer> basicList = Arrays.asList(Album.BASIC_COLLECTION);
-			albumList.removeIf((Album album) -> {
-				return !basicList.contains(album.getAlbumId());
-			});
+		return this.queryService.submit(() -> {
+			CachedPage page = this.albumService.getPublishedJson(cursor, limit, premiumUser);
+			if (page == null) {
+				return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(EMPTY_LIST);
+			}
 
-			return ResponseEntity.ok(albumList);
-		} else {
-			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<Album>());
-		}
+			final CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+
+			if (DataUtility.matchesEntityTag(ifNoneMatch, page.getETag())) {
+				return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(page.getETag()).cacheControl(cacheControl)
+						.headers(PageUtility.getPageHeaders(page.getNextCursor())).build();
+			}
+
+			return ResponseEntity.ok().eTag(page.getETag()).cacheControl(cacheControl)
+					.headers(PageUtility.getPageHeaders(page.getNextCursor())).contentType(MediaType.APPLICATION_JSON)
+					.body(page.getBody());
+		});
 
 	}
 
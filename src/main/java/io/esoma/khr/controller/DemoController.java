@@ -1,6 +1,5 @@
 package io.esoma.khr.controller;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,9 +27,6 @@ import io.esoma.khr.service.AlbumService;
 @RequestMapping(path = "/demo")
 public class DemoController {
 
-	// Albums IDs that are supposed to be demos.
-	static int[] demoAlbums = new int[] { 1, 2, 3 };
-
 	private AlbumService albumService;
 
 	@Autowired
@@ -42,23 +38,14 @@ public class DemoController {
 	/**
 	 * 
 	 * Responds to a HTTP request of retrieving all demo albums. No authentication
-	 * token is needed.
+	 * token is needed. The albums come from a snapshot kept by the album service.
 	 * 
 	 * @return the list containing the demo albums.
 	 */
 	@GetMapping(path = "/albums")
 	public ResponseEntity<List<Album>> getDemoAlbums() {
 
-		List<Album> albumList = new ArrayList<>();
-
-		for (int i : demoAlbums) {
-			Album album = this.albumService.getOne(i);
-			if (album != null) {
-				albumList.add(album);
-			}
-		}
-
-		return ResponseEntity.ok(albumList);
+		return ResponseEntity.ok(this.albumService.getDemos());
 
 	}
 
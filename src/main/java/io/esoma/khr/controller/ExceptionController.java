@@ -25,6 +25,9 @@ public class ExceptionController {
 	// General error message.
 	public static final String AUTH_TOKEN_EXPIRED = "authentication token has expired, please login again.";
 	public static final String UNAUTHORIZED = "invalid authentication token, or access is restricted";
+	public static final String LENGTH_REQUIRED = "the Content-Length header is required for uploads";
+	public static final String PAYLOAD_TOO_LARGE = "the uploaded file is too large";
+	public static final String UNSUPPORTED_MEDIA_TYPE = "the media type of the uploaded file is not supported";
 
 	/**
 	 * 
@@ -70,9 +73,10 @@ public class ExceptionController {
 	 * @param e the exception thrown.
 	 * @return an error message reporting on the unreadable request body.
 	 */
+	@ExceptionHandler(value = HttpMessageNotReadableException.class)
 	public ResponseEntity<String> handleBadRequestBody(HttpMessageNotReadableException e) {
 
-		final String badBodyMessage = "This request is missing a request body, or the request body is incompatible with the type <java.lang.String>";
+		final String badBodyMessage = "This request is missing a request body, or the request body is not valid JSON of the expected form.";
 
 		return ResponseEntity.badRequest().body(badBodyMessage);
 
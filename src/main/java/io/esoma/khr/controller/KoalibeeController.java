@@ -1,10 +1,14 @@
 package io.esoma.khr.controller;
 
+import java.io.InputStream;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -15,12 +19,24 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumData;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.KoalibeeData;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.model.Thumbnail;
 import io.esoma.khr.service.AuthService;
 import io.esoma.khr.service.KoalibeeService;
+import io.esoma.khr.service.QueryService;
+import io.esoma.khr.service.ThumbnailService;
+import io.esoma.khr.utility.DataUtility;
+import io.esoma.khr.utility.DatabaseUtility;
+import io.esoma.khr.utility.ImageUtility;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -36,6 +52,8 @@ public class KoalibeeController {
 
 	private AuthService authService;
 	private KoalibeeService koalibeeService;
+	private QueryService queryService;
+	private ThumbnailService thumbnailService;
 
 	@Autowired
 	@Qualifier(value = "authService")
@@ -49,17 +67,29 @@ public class KoalibeeController {
 		this.koalibeeService = koalibeeService;
 	}
 
+	@Autowired
+	@Qualifier(value = "queryService")
+	public void setQueryService(QueryService queryService) {
+		this.queryService = queryService;
+	}
+
+	@Autowired
+	@Qualifier(value = "thumbnailService")
+	public void setThumbnailService(ThumbnailService thumbnailService) {
+		this.thumbnailService = thumbnailService;
+	}
+
 	/**
 	 * 
 	 * Handles a HTTP request which attempts to register a new koalibee. The request
 	 * body should contain the required information in JSON format.
 	 * 
-	 * @param koalibeeData the JSON string containing the koalibee information.
+	 * @param koalibeeData the request body containing the koalibee information.
 	 * @return the JWS that authenticates the new koalibee if the registration is
 	 *         successful, or an error message if it fails.
 	 */
 	@PostMapping(path = "/register")
-	public ResponseEntity<String> registerKoalibee(@Validated @RequestBody String koalibeeData) {
+	public ResponseEntity<String> registerKoalibee(@Validated @RequestBody KoalibeeData koalibeeData) {
 
 		HttpStatus status;
 
@@ -70,6 +100,9 @@ public class KoalibeeController {
 			if (result.contains(".")) {
 				// A new koalibee is created and a JWS returned.
 				status = HttpStatus.CREATED;
+			} else if (result.equals(AuthService.SERVER_BUSY)) {
+				// The password cannot be hashed right now.
+				status = HttpStatus.SERVICE_UNAVAILABLE;
 			} else {
 				// The request fails to provide the data necessary for the registration.
 				status = HttpStatus.UNPROCESSABLE_ENTITY;
@@ -94,7 +127,7 @@ public class KoalibeeController {
 	 *         an error message.
 	 */
 	@PostMapping(path = "/login")
-	public ResponseEntity<String> loginKoalibee(@Validated @RequestBody String credentialsData) {
+	public ResponseEntity<String> loginKoalibee(@Validated @RequestBody KoalibeeData credentialsData) {
 
 		HttpStatus status;
 
@@ -105,6 +138,9 @@ public class KoalibeeController {
 			if (result.contains(".")) {
 				// Koalibee is authenticated and a JWS returned.
 				status = HttpStatus.OK;
+			} else if (result.equals(AuthService.SERVER_BUSY)) {
+				// The password cannot be verified right now.
+				status = HttpStatus.SERVICE_UNAVAILABLE;
 			} else {
 				// Authentication fails.
 				status = HttpStatus.UNAUTHORIZED;
@@ -178,18 +214,96 @@ public class KoalibeeController {
 
 	}
 
+	/**
+	 * 
+	 * Responds to a HTTP request of retrieving a koalibee's avatar image. Only the
+	 * koalibee or a system administrator may fetch it. The token may be passed as
+	 * a query parameter so that the URL can be used directly as an image source.
+	 * The response must be revalidated before reuse, and a matching If-None-Match
+	 * header results in an empty 304 response. A size asks for the smallest
+	 * thumbnail at least that large, and the original is served until it is made.
+	 * 
+	 * @param koalibeeId  the ID of the koalibee.
+	 * @param jws         the signed authentication token.
+	 * @param token       the signed authentication token as a query parameter.
+	 * @param ifNoneMatch the entity tag cached by the client.
+	 * @param size        the size of the image in pixels.
+	 * @return the raw image bytes, or an empty body if the request is not
+	 *         authorized or the koalibee has no avatar.
+	 */
+	@GetMapping(path = "/avatar/{koalibeeId}")
+	public ResponseEntity<byte[]> getAvatar(@Validated @PathVariable int koalibeeId,
+			@RequestHeader(name = "Auth-Token", required = false) String jws,
+			@RequestParam(name = "token", required = false) String token,
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestParam(name = "size", required = false) Integer size) {
+
+		if (size != null && size < 1) {
+			return ResponseEntity.badRequest().build();
+		}
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws != null ? jws : token);
+
+		// Verify auth ID.
+		if (authId == -1) {
+			return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).build();
+		} else if (authId == 0 || (authId != -777 && authId != koalibeeId)) {
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+		}
+
+		final String version = this.koalibeeService.getAvatarVersion(koalibeeId);
+		if (version == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		// The tags come from the version, so a cached copy is confirmed without
+		// reading the image.
+		final int thumbnailSize = size != null ? ImageUtility.getThumbnailSize(size) : 0;
+		final CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+		String eTag = DataUtility.getEntityTag(version, thumbnailSize);
+
+		if (thumbnailSize > 0 && DataUtility.matchesEntityTag(ifNoneMatch, eTag)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+		}
+
+		final byte[] image;
+		final String imageType;
+
+		Thumbnail thumbnail = thumbnailSize > 0 ? this.thumbnailService.getAvatar(koalibeeId, size) : null;
+		if (thumbnail != null) {
+			image = thumbnail.getImage();
+			imageType = thumbnail.getImageType();
+		} else {
+			eTag = DataUtility.getEntityTag(version, 0);
+			if (DataUtility.matchesEntityTag(ifNoneMatch, eTag)) {
+				return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+			}
+			Koalibee koalibee = this.koalibeeService.getAvatar(koalibeeId);
+			if (koalibee == null) {
+				return ResponseEntity.notFound().build();
+			}
+			image = koalibee.getAvatar();
+			imageType = koalibee.getAvatarType();
+		}
+
+		return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl)
+				.contentType(MediaType.parseMediaType("image/" + imageType.toLowerCase())).body(image);
+
+	}
+
 	/**
 	 * 
 	 * Responds to a HTTP request that attempts to update a koalibee's information.
 	 * 
 	 * @param koalibeeId   the ID of the koalibee.
-	 * @param koalibeeData the JSON string containing the update information.
+	 * @param koalibeeData the request body containing the update information.
 	 * @param jws          the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PutMapping(path = "/profile/{koalibeeId}")
 	public ResponseEntity<String> updateKoalibee(@Validated @PathVariable int koalibeeId,
-			@Validated @RequestBody String koalibeeData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody KoalibeeData koalibeeData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status = HttpStatus.BAD_REQUEST;
 
@@ -224,19 +338,76 @@ public class KoalibeeController {
 
 	}
 
+	/**
+	 * 
+	 * Responds to a HTTP request that uploads the avatar of a koalibee. The body
+	 * is the raw image file sent with its media type, such as image/png, and is
+	 * streamed into the database without being held in memory.
+	 * 
+	 * @param koalibeeId  the ID of the koalibee.
+	 * @param contentType the media type of the avatar.
+	 * @param length      the length of the avatar in bytes.
+	 * @param avatar      the body of the request.
+	 * @param jws         the signed authentication token.
+	 * @return a general message indicating success or failure.
+	 */
+	@PutMapping(path = "/avatar/{koalibeeId}")
+	public ResponseEntity<String> uploadAvatar(@Validated @PathVariable int koalibeeId,
+			@RequestHeader(name = "Content-Type", required = false) String contentType,
+			@RequestHeader(name = "Content-Length", required = false) Long length, InputStream avatar,
+			@Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		String result = "";
+
+		final String avatarType = DataUtility.getUploadType(contentType, "image");
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = ExceptionController.AUTH_TOKEN_EXPIRED;
+		} else if (authId != koalibeeId) {
+			status = HttpStatus.UNAUTHORIZED;
+			result = ExceptionController.UNAUTHORIZED;
+		} else if (length == null) {
+			status = HttpStatus.LENGTH_REQUIRED;
+			result = ExceptionController.LENGTH_REQUIRED;
+		} else if (length > DatabaseUtility.getMaxUploadSize()) {
+			status = HttpStatus.PAYLOAD_TOO_LARGE;
+			result = ExceptionController.PAYLOAD_TOO_LARGE;
+		} else if (avatarType == null) {
+			status = HttpStatus.UNSUPPORTED_MEDIA_TYPE;
+			result = ExceptionController.UNSUPPORTED_MEDIA_TYPE;
+		} else {
+			if (this.koalibeeService.uploadAvatar(koalibeeId, avatarType, avatar, length)) {
+				status = HttpStatus.OK;
+				result = "avatar uploaded successfully";
+			} else {
+				status = HttpStatus.UNPROCESSABLE_ENTITY;
+				result = "failed to upload the avatar";
+			}
+		}
+
+		return ResponseEntity.status(status).body(result);
+
+	}
+
 	/**
 	 * 
 	 * Responds to a HTTP request that attempts to change the credentials (email or
 	 * password or both) of a koalibee.
 	 * 
 	 * @param koalibeeId      the ID of the koalibee.
-	 * @param credentialsData the JSON string containing the new credentials.
+	 * @param credentialsData the request body containing the new credentials.
 	 * @param jws             the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PutMapping(path = "/credentials/{koalibeeId}")
 	public ResponseEntity<String> changeKoalibeeCredentials(@Validated @PathVariable int koalibeeId,
-			@Validated @RequestBody String credentialsData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody KoalibeeData credentialsData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status = HttpStatus.BAD_REQUEST;
 
@@ -276,13 +447,13 @@ public class KoalibeeController {
 	 * Responds to a HTTP request of a koalibee making an album purchase.
 	 * 
 	 * @param koalibeeId the ID of the koalibee.
-	 * @param albumData  the JSON string containing the ID of the album.
+	 * @param albumData  the request body containing the ID of the album.
 	 * @param jws        the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PostMapping(path = "/purchase/{koalibeeId}")
 	public ResponseEntity<String> purchaseAlbumForKoalibee(@Validated @PathVariable int koalibeeId,
-			@Validated @RequestBody String albumData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody AlbumData albumData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status = HttpStatus.BAD_REQUEST;
 
@@ -360,36 +531,39 @@ public class KoalibeeController {
 
 	/**
 	 * 
-	 * Responds to a HTTP request from a system administrator to fetch a list of all
-	 * registered koalibees.
+	 * Responds to a HTTP request from a system administrator to fetch a page of
+	 * all registered koalibees. The cursor of the next page is sent in the
+	 * Next-Cursor header.
 	 * 
-	 * @param jws the signed authentication token.
+	 * @param jws    the signed authentication token.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
 	 * @return a list of koalibee objects found in the database. An empty list is
 	 *         returned if there are no registered koalibee. Null is returned if the
-	 *         request does not have the authorization.
+	 *         request does not have the authorization or if the cursor is invalid.
 	 */
 	@GetMapping(path = "/get/all")
-	public ResponseEntity<List<Koalibee>> listAllKoalibees(@Validated @RequestHeader(name = "Auth-Token") String jws) {
-
-		HttpStatus status;
-
-		List<Koalibee> result;
+	public DeferredResult<ResponseEntity<List<Koalibee>>> listAllKoalibees(
+			@Validated @RequestHeader(name = "Auth-Token") String jws,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "limit", required = false) Integer limit) {
 
 		// Validate the JWS.
 		int authId = this.authService.reauthenticate(jws);
 
 		if (authId == -1) {
-			status = HttpStatus.EXPECTATION_FAILED;
-			result = null;
-		} else if (authId == -777) {
-			status = HttpStatus.OK;
-			result = this.koalibeeService.getAll();
-		} else {
-			status = HttpStatus.UNAUTHORIZED;
-			result = null;
+			return this.queryService.complete(ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).build());
+		} else if (authId != -777) {
+			return this.queryService.complete(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
 		}
 
-		return ResponseEntity.status(status).body(result);
+		return this.queryService.submit(() -> {
+			Page<Koalibee> page = this.koalibeeService.getAll(cursor, limit);
+			if (page == null) {
+				return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+			}
+			return ResponseEntity.ok().headers(PageUtility.getPageHeaders(page)).body(page.getItems());
+		});
 
 	}
 
@@ -404,28 +578,19 @@ public class KoalibeeController {
 	 *         authenticated.
 	 */
 	@GetMapping(path = "/album/owned/{koalibeeId}")
-	public ResponseEntity<List<Album>> getKoalibeeInventory(@Validated @PathVariable int koalibeeId,
+	public DeferredResult<ResponseEntity<List<Album>>> getKoalibeeInventory(@Validated @PathVariable int koalibeeId,
 			@Validated @RequestHeader(name = "Auth-Token") String jws) {
 
-		HttpStatus status;
-
-		List<Album> result;
-
 		// Validate the JWS.
 		int authId = this.authService.reauthenticate(jws);
 
 		if (authId == -1) {
-			status = HttpStatus.EXPECTATION_FAILED;
-			result = null;
-		} else if (authId == koalibeeId) {
-			status = HttpStatus.OK;
-			result = this.koalibeeService.getInventory(koalibeeId);
-		} else {
-			status = HttpStatus.UNAUTHORIZED;
-			result = null;
+			return this.queryService.complete(ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).build());
+		} else if (authId != koalibeeId) {
+			return this.queryService.complete(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
 		}
 
-		return ResponseEntity.status(status).body(result);
+		return this.queryService.submit(() -> ResponseEntity.ok(this.koalibeeService.getInventory(koalibeeId)));
 
 	}
 
@@ -440,28 +605,19 @@ public class KoalibeeController {
 	 *         cannot be authenticated.
 	 */
 	@GetMapping(path = "/album/unpublished/{koalibeeId}")
-	public ResponseEntity<List<Album>> getKoalibeeCreations(@Validated @PathVariable int koalibeeId,
+	public DeferredResult<ResponseEntity<List<Album>>> getKoalibeeCreations(@Validated @PathVariable int koalibeeId,
 			@Validated @RequestHeader(name = "Auth-Token") String jws) {
 
-		HttpStatus status;
-
-		List<Album> result;
-
 		// Validate the JWS.
 		int authId = this.authService.reauthenticate(jws);
 
 		if (authId == -1) {
-			status = HttpStatus.EXPECTATION_FAILED;
-			result = null;
-		} else if (authId == koalibeeId) {
-			status = HttpStatus.OK;
-			result = this.koalibeeService.getUnpublished(koalibeeId);
-		} else {
-			status = HttpStatus.UNAUTHORIZED;
-			result = null;
+			return this.queryService.complete(ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).build());
+		} else if (authId != koalibeeId) {
+			return this.queryService.complete(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
 		}
 
-		return ResponseEntity.status(status).body(result);
+		return this.queryService.submit(() -> ResponseEntity.ok(this.koalibeeService.getUnpublished(koalibeeId)));
 
 	}
 
@@ -0,0 +1,185 @@
+package io.esoma.khr.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.esoma.khr.service.AuthService;
+import io.esoma.khr.service.MetricsService;
+
+/**
+ * 
+ * The controller class that exposes runtime statistics to system
+ * administrators.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@RestController(value = "metricsController")
+@RequestMapping(path = "/metrics")
+public class MetricsController {
+
+	private AuthService authService;
+	private MetricsService metricsService;
+
+	@Autowired
+	@Qualifier(value = "authService")
+	public void setAuthService(AuthService authService) {
+		this.authService = authService;
+	}
+
+	@Autowired
+	@Qualifier(value = "metricsService")
+	public void setMetricsService(MetricsService metricsService) {
+		this.metricsService = metricsService;
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request from a system administrator to fetch the hit and
+	 * miss counters of the second-level cache regions.
+	 * 
+	 * @param jws the signed authentication token.
+	 * @return a map from region names to their counters. Null is returned if the
+	 *         request does not have the authorization.
+	 */
+	@GetMapping(path = "/cache")
+	public ResponseEntity<Map<String, Map<String, Long>>> getCacheStatistics(
+			@Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		Map<String, Map<String, Long>> result;
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = null;
+		} else if (authId == -777) {
+			status = HttpStatus.OK;
+			result = this.metricsService.getCacheStatistics();
+		} else {
+			status = HttpStatus.UNAUTHORIZED;
+			result = null;
+		}
+
+		return ResponseEntity.status(status).body(result);
+
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request from a system administrator to fetch the hash
+	 * rate and queue depth of the password hashing pool.
+	 * 
+	 * @param jws the signed authentication token.
+	 * @return a map from statistic names to their values. Null is returned if the
+	 *         request does not have the authorization.
+	 */
+	@GetMapping(path = "/hashing")
+	public ResponseEntity<Map<String, Long>> getHashingStatistics(
+			@Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		Map<String, Long> result;
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = null;
+		} else if (authId == -777) {
+			status = HttpStatus.OK;
+			result = this.metricsService.getHashingStatistics();
+		} else {
+			status = HttpStatus.UNAUTHORIZED;
+			result = null;
+		}
+
+		return ResponseEntity.status(status).body(result);
+
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request from a system administrator to fetch the active,
+	 * idle and waiting counts of the database connection pool.
+	 * 
+	 * @param jws the signed authentication token.
+	 * @return a map from statistic names to their values. Null is returned if the
+	 *         request does not have the authorization.
+	 */
+	@GetMapping(path = "/pool")
+	public ResponseEntity<Map<String, Long>> getPoolStatistics(
+			@Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		Map<String, Long> result;
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = null;
+		} else if (authId == -777) {
+			status = HttpStatus.OK;
+			result = this.metricsService.getPoolStatistics();
+		} else {
+			status = HttpStatus.UNAUTHORIZED;
+			result = null;
+		}
+
+		return ResponseEntity.status(status).body(result);
+
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request from a system administrator to fetch the queue
+	 * depth and the completed, rejected and timed out counts of the query pool.
+	 * 
+	 * @param jws the signed authentication token.
+	 * @return a map from statistic names to their values. Null is returned if the
+	 *         request does not have the authorization.
+	 */
+	@GetMapping(path = "/query")
+	public ResponseEntity<Map<String, Long>> getQueryStatistics(
+			@Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		Map<String, Long> result;
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = null;
+		} else if (authId == -777) {
+			status = HttpStatus.OK;
+			result = this.metricsService.getQueryStatistics();
+		} else {
+			status = HttpStatus.UNAUTHORIZED;
+			result = null;
+		}
+
+		return ResponseEntity.status(status).body(result);
+
+	}
+
+}
@@ -1,5 +1,6 @@
 package io.esoma.khr.controller;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,11 +15,17 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import io.esoma.khr.model.Moment;
+import io.esoma.khr.model.MomentData;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.service.AuthService;
 import io.esoma.khr.service.MomentService;
+import io.esoma.khr.service.QueryService;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -34,6 +41,7 @@ public class MomentController {
 
 	private AuthService authService;
 	private MomentService momentService;
+	private QueryService queryService;
 
 	@Autowired
 	@Qualifier(value = "authService")
@@ -47,6 +55,12 @@ public class MomentController {
 		this.momentService = momentService;
 	}
 
+	@Autowired
+	@Qualifier(value = "queryService")
+	public void setQueryService(QueryService queryService) {
+		this.queryService = queryService;
+	}
+
 	/**
 	 * 
 	 * Responds to a HTTP request of retrieving a moment by its ID. It can be
@@ -80,13 +94,13 @@ public class MomentController {
 	 * name for the current day. An authentication token is required.
 	 * 
 	 * @param koalibeeId the ID of the poster.
-	 * @param momentData the JSON string containing the post message.
+	 * @param momentData the request body containing the post message.
 	 * @param jws        the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PostMapping(path = "/post/{koalibeeId}")
 	public ResponseEntity<String> postMoment(@Validated @PathVariable int koalibeeId,
-			@Validated @RequestBody String momentData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody MomentData momentData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status;
 
@@ -117,16 +131,28 @@ public class MomentController {
 
 	/**
 	 * 
-	 * Responds to a HTTP request of retrieving all posted moments in a
-	 * chronological order (latest first). It can be accessed publicly.
+	 * Responds to a HTTP request of retrieving a page of posted moments in a
+	 * chronological order (latest first). It can be accessed publicly. The cursor
+	 * of the next page is sent in the Next-Cursor header.
 	 * 
-	 * @return the list containing all moments in the database. An empty list is
-	 *         returned if there are no posted moments.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the list containing the moments of the page. An empty list is
+	 *         returned if there are no posted moments or if the cursor is invalid.
 	 */
 	@GetMapping(path = "/get/all")
-	public ResponseEntity<List<Moment>> getAllPostedMomentsChrono() {
+	public DeferredResult<ResponseEntity<List<Moment>>> getAllPostedMomentsChrono(
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "limit", required = false) Integer limit) {
+
+		return this.queryService.submit(() -> {
+			Page<Moment> page = this.momentService.getAll(cursor, limit);
+			if (page == null) {
+				return ResponseEntity.badRequest().body(new ArrayList<Moment>());
+			}
 
-		return ResponseEntity.ok(this.momentService.getAll());
+			return ResponseEntity.ok().headers(PageUtility.getPageHeaders(page)).body(page.getItems());
+		});
 
 	}
 
@@ -135,14 +161,14 @@ public class MomentController {
 	 * Responds to a HTTP request of retrieving only moments posted on a specific
 	 * day. It can be accessed publicly.
 	 * 
-	 * @param dateData the JSON string containing an ISO formatted date string.
+	 * @param dateData the request body containing an ISO formatted date string.
 	 * @return the list of all fetched moments. An empty list is returned if no
 	 *         moments are found or if the date cannot be parsed.
 	 */
 	@PostMapping(path = "/find/bydate")
-	public ResponseEntity<List<Moment>> findMomentsByDate(@Validated @RequestBody String dateData) {
+	public DeferredResult<ResponseEntity<List<Moment>>> findMomentsByDate(@Validated @RequestBody MomentData dateData) {
 
-		return ResponseEntity.ok(this.momentService.getByDate(dateData));
+		return this.queryService.submit(() -> ResponseEntity.ok(this.momentService.getByDate(dateData)));
 
 	}
 
@@ -15,11 +15,17 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Review;
+import io.esoma.khr.model.ReviewData;
 import io.esoma.khr.service.AuthService;
+import io.esoma.khr.service.QueryService;
 import io.esoma.khr.service.ReviewService;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -35,6 +41,7 @@ public class ReviewController {
 
 	private AuthService authService;
 	private ReviewService reviewService;
+	private QueryService queryService;
 
 	@Autowired
 	@Qualifier(value = "authService")
@@ -48,6 +55,12 @@ public class ReviewController {
 		this.reviewService = reviewService;
 	}
 
+	@Autowired
+	@Qualifier(value = "queryService")
+	public void setQueryService(QueryService queryService) {
+		this.queryService = queryService;
+	}
+
 	/**
 	 * 
 	 * Responds to a HTTP request of retrieving a review by its ID. It has public
@@ -75,12 +88,12 @@ public class ReviewController {
 	 * Responds to a HTTP request of searching for a specific review by its poster
 	 * and date. It has public access.
 	 * 
-	 * @param reviewData the JSON string containing the poster's ID and date.
+	 * @param reviewData the request body containing the poster's ID and date.
 	 * @return the found review object. A blank object is returned if the search
 	 *         yields no result.
 	 */
 	@PostMapping(path = "/find")
-	public ResponseEntity<Review> findReview(@Validated @RequestBody String reviewData) {
+	public ResponseEntity<Review> findReview(@Validated @RequestBody ReviewData reviewData) {
 
 		Review result = this.reviewService.searchOne(reviewData);
 
@@ -98,13 +111,13 @@ public class ReviewController {
 	 * koalibee must own the album in order to post a review.
 	 * 
 	 * @param albumId    the ID of the album.
-	 * @param reviewData the JSON string containing the review information.
+	 * @param reviewData the request body containing the review information.
 	 * @param jws        the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PostMapping(path = "/post/{albumId}")
 	public ResponseEntity<String> postReview(@Validated @PathVariable int albumId,
-			@Validated @RequestBody String reviewData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody ReviewData reviewData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status;
 
@@ -175,27 +188,80 @@ public class ReviewController {
 
 	/**
 	 * 
-	 * Responds to a HTTP request of retrieving all reviews in the database. An
-	 * authentication token from a system administrator is required.
+	 * Responds to a HTTP request that attempts to recount the rating statistics of
+	 * all albums from their reviews. An authentication token from a system
+	 * administrator is required.
 	 * 
 	 * @param jws the signed authentication token.
-	 * @return the review list. An empty list is returned if the sender does not
-	 *         have authorization.
+	 * @return a general message indicating success or failure.
 	 */
-	@GetMapping(path = "/get/all")
-	public ResponseEntity<List<Review>> listAllReviews(@Validated @RequestHeader(name = "Auth-Token") String jws) {
+	@PostMapping(path = "/rebuild")
+	public ResponseEntity<String> rebuildRatings(@Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		String result = "";
 
 		// Validate the JWS.
 		int authId = this.authService.reauthenticate(jws);
 
 		if (authId == -1) {
-			return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body(new ArrayList<Review>());
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = ExceptionController.AUTH_TOKEN_EXPIRED;
 		} else if (authId == -777) {
-			return ResponseEntity.ok(this.reviewService.getAll());
+			if (this.reviewService.rebuildRatings()) {
+				status = HttpStatus.OK;
+				result = "rating statistics have been successfully rebuilt";
+			} else {
+				status = HttpStatus.INTERNAL_SERVER_ERROR;
+				result = "unable to rebuild the rating statistics";
+			}
 		} else {
-			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<Review>());
+			status = HttpStatus.UNAUTHORIZED;
+			result = ExceptionController.UNAUTHORIZED;
 		}
 
+		return ResponseEntity.status(status).body(result);
+
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request of retrieving a page of all reviews in the
+	 * database. An authentication token from a system administrator is required.
+	 * The cursor of the next page is sent in the Next-Cursor header.
+	 * 
+	 * @param jws    the signed authentication token.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the review list. An empty list is returned if the sender does not
+	 *         have authorization or if the cursor is invalid.
+	 */
+	@GetMapping(path = "/get/all")
+	public DeferredResult<ResponseEntity<List<Review>>> listAllReviews(
+			@Validated @RequestHeader(name = "Auth-Token") String jws,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "limit", required = false) Integer limit) {
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			return this.queryService
+					.complete(ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body(new ArrayList<Review>()));
+		} else if (authId != -777) {
+			return this.queryService
+					.complete(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<Review>()));
+		}
+
+		return this.queryService.submit(() -> {
+			Page<Review> page = this.reviewService.getAll(cursor, limit);
+			if (page == null) {
+				return ResponseEntity.badRequest().body(new ArrayList<Review>());
+			}
+			return ResponseEntity.ok().headers(PageUtility.getPageHeaders(page)).body(page.getItems());
+		});
+
 	}
 
 	/**
@@ -206,9 +272,9 @@ public class ReviewController {
 	 * @return the list containing all album reviews.
 	 */
 	@GetMapping(path = "/get/album/{albumId}")
-	public ResponseEntity<List<Review>> getReviewsOfAlbum(@Validated @PathVariable int albumId) {
+	public DeferredResult<ResponseEntity<List<Review>>> getReviewsOfAlbum(@Validated @PathVariable int albumId) {
 
-		return ResponseEntity.ok(this.reviewService.getByAlbum(albumId));
+		return this.queryService.submit(() -> ResponseEntity.ok(this.reviewService.getByAlbum(albumId)));
 
 	}
 
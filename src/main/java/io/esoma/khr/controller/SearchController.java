@@ -0,0 +1,139 @@
+package io.esoma.khr.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.model.SearchHit;
+import io.esoma.khr.service.AuthService;
+import io.esoma.khr.service.SearchService;
+import io.esoma.khr.utility.PageUtility;
+
+/**
+ * 
+ * The controller class that handles HTTP requests searching the published
+ * catalog.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@RestController(value = "searchController")
+@RequestMapping(path = "/search")
+public class SearchController {
+
+	private AuthService authService;
+	private SearchService searchService;
+
+	@Autowired
+	@Qualifier(value = "authService")
+	public void setAuthService(AuthService authService) {
+		this.authService = authService;
+	}
+
+	@Autowired
+	@Qualifier(value = "searchService")
+	public void setSearchService(SearchService searchService) {
+		this.searchService = searchService;
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request of searching the published albums and their
+	 * tracks by name, artist, composer and genre. An authentication token must be
+	 * present. The results are read from memory, ranked by relevance and
+	 * paginated with a cursor sent in the Next-Cursor header.
+	 * 
+	 * @param jws    the signed authentication token.
+	 * @param query  the text to search for.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return a list of results, which is empty if nothing matches or the
+	 *         request is not valid.
+	 */
+	@GetMapping
+	public ResponseEntity<List<SearchHit>> search(@Validated @RequestHeader(name = "Auth-Token") String jws,
+			@RequestParam(name = "q", required = false) String query,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "limit", required = false) Integer limit) {
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body(new ArrayList<SearchHit>());
+		} else if (authId != -777 && authId <= 0) {
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<SearchHit>());
+		}
+
+		boolean premium = false;
+		for (int i = 0; i < Koalibee.PREMIUM_USERS.length; ++i) {
+			if (authId == Koalibee.PREMIUM_USERS[i]) {
+				premium = true;
+			}
+		}
+
+		Page<SearchHit> page = query == null ? null : this.searchService.search(query, cursor, limit, premium);
+		if (page == null) {
+			return ResponseEntity.badRequest().body(new ArrayList<SearchHit>());
+		}
+
+		return ResponseEntity.ok().headers(PageUtility.getPageHeaders(page)).body(page.getItems());
+
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request of completing the text typed into the search
+	 * box. An authentication token must be present. The album names, artists and
+	 * composers containing a word that starts with the text are read from memory
+	 * and ranked by the purchases of their albums.
+	 * 
+	 * @param jws    the signed authentication token.
+	 * @param prefix the text typed so far.
+	 * @param limit  the requested number of suggestions, or null for the default
+	 *               number.
+	 * @return a list of suggestions, which is empty if nothing matches or the
+	 *         request is not valid.
+	 */
+	@GetMapping(path = "/suggest")
+	public ResponseEntity<List<String>> suggest(@Validated @RequestHeader(name = "Auth-Token") String jws,
+			@RequestParam(name = "q", required = false) String prefix,
+			@RequestParam(name = "limit", required = false) Integer limit) {
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body(new ArrayList<String>());
+		} else if (authId != -777 && authId <= 0) {
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<String>());
+		}
+
+		boolean premium = false;
+		for (int i = 0; i < Koalibee.PREMIUM_USERS.length; ++i) {
+			if (authId == Koalibee.PREMIUM_USERS[i]) {
+				premium = true;
+			}
+		}
+
+		if (prefix == null) {
+			return ResponseEntity.badRequest().body(new ArrayList<String>());
+		}
+
+		return ResponseEntity.ok(this.searchService.suggest(prefix, limit, premium));
+
+	}
+
+}
@@ -1,25 +1,41 @@
 package io.esoma.khr.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.model.TrackData;
 import io.esoma.khr.service.AuthService;
+import io.esoma.khr.service.QueryService;
 import io.esoma.khr.service.TrackService;
+import io.esoma.khr.utility.DataUtility;
+import io.esoma.khr.utility.DatabaseUtility;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -35,6 +51,7 @@ public class TrackController {
 
 	private AuthService authService;
 	private TrackService trackService;
+	private QueryService queryService;
 
 	@Autowired
 	@Qualifier(value = "authService")
@@ -48,6 +65,12 @@ public class TrackController {
 		this.trackService = trackService;
 	}
 
+	@Autowired
+	@Qualifier(value = "queryService")
+	public void setQueryService(QueryService queryService) {
+		this.queryService = queryService;
+	}
+
 	/**
 	 * 
 	 * Responds to a HTTP request of retrieving a track with full audio data. An
@@ -87,6 +110,121 @@ public class TrackController {
 
 	}
 
+	/**
+	 * 
+	 * Responds to a HTTP request of streaming a track's audio. The audio is copied
+	 * from the database to the response as it is read, and a single byte range can
+	 * be requested so the client can seek without downloading the whole track.
+	 * Since HTML media elements cannot send custom headers, the authentication
+	 * token may also be passed as a query parameter.
+	 * 
+	 * @param trackId     the ID of the track.
+	 * @param jws         the signed authentication token.
+	 * @param token       the signed authentication token as a query parameter.
+	 * @param range       the requested byte range.
+	 * @param ifRange     the entity tag the requested range is conditional on.
+	 * @param ifNoneMatch the entity tag cached by the client.
+	 * @param response    the response to write the audio data to.
+	 * @throws IOException if the response cannot be written.
+	 */
+	@GetMapping(path = "/stream/{trackId}")
+	public void streamTrack(@Validated @PathVariable int trackId,
+			@RequestHeader(name = "Auth-Token", required = false) String jws,
+			@RequestParam(name = "token", required = false) String token,
+			@RequestHeader(name = HttpHeaders.RANGE, required = false) String range,
+			@RequestHeader(name = HttpHeaders.IF_RANGE, required = false) String ifRange,
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			HttpServletResponse response) throws IOException {
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws != null ? jws : token);
+
+		if (authId == -1) {
+			response.setStatus(HttpStatus.EXPECTATION_FAILED.value());
+			return;
+		} else if (authId == 0) {
+			response.setStatus(HttpStatus.UNAUTHORIZED.value());
+			return;
+		}
+
+		Track track = this.trackService.getStreamable(authId, trackId);
+		if (track == null) {
+			response.setStatus(HttpStatus.NOT_FOUND.value());
+			return;
+		}
+
+		// Audio of a published album never changes.
+		final long size = track.getAudioSize();
+		final String eTag = "\"track-" + trackId + "-" + size + "\"";
+
+		response.setHeader(HttpHeaders.ETAG, eTag);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "private");
+
+		if (DataUtility.matchesEntityTag(ifNoneMatch, eTag)) {
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			return;
+		}
+
+		// An empty track has no bytes to serve, so no range of it can be satisfied.
+		if (size == 0) {
+			if (range != null) {
+				response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */0");
+			} else {
+				response.setStatus(HttpStatus.OK.value());
+				response.setContentType("audio/" + track.getAudioType().toLowerCase());
+				response.setContentLengthLong(0);
+			}
+			return;
+		}
+
+		long start = 0;
+		long end = size - 1;
+		boolean partial = false;
+
+		// Serve the whole track if the range is malformed, has multiple parts, or
+		// is conditional on a different version.
+		List<HttpRange> ranges = new ArrayList<>();
+		if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+			try {
+				ranges = HttpRange.parseRanges(range);
+			} catch (IllegalArgumentException e) {
+				ranges.clear();
+			}
+		}
+
+		if (ranges.size() == 1) {
+			try {
+				start = ranges.get(0).getRangeStart(size);
+				end = ranges.get(0).getRangeEnd(size);
+				partial = true;
+			} catch (IllegalArgumentException e) {
+				response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+				return;
+			}
+		}
+
+		final long length = end - start + 1;
+
+		if (partial) {
+			response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+		} else {
+			response.setStatus(HttpStatus.OK.value());
+		}
+		response.setContentType("audio/" + track.getAudioType().toLowerCase());
+		response.setContentLengthLong(length);
+
+		if (!this.trackService.streamAudio(trackId, start, length, response.getOutputStream())
+				&& !response.isCommitted()) {
+			response.reset();
+			response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+		}
+
+	}
+
 	/**
 	 * 
 	 * Responds to a HTTP request that attempts to add a new track to an unpublished
@@ -94,14 +232,14 @@ public class TrackController {
 	 * album.
 	 * 
 	 * @param albumId   the ID of the album to add track to.
-	 * @param trackData the JSON string containing track information and audio data
+	 * @param trackData the request body containing track information and audio data
 	 *                  url.
 	 * @param jws       the signed authentication token.
 	 * @return a general message indicating success or failure.
 	 */
 	@PostMapping(path = "/addto/{albumId}")
 	public ResponseEntity<String> addTrackToAlbum(@Validated @PathVariable int albumId,
-			@Validated @RequestBody String trackData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+			@Validated @RequestBody TrackData trackData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
 
 		HttpStatus status;
 
@@ -130,6 +268,109 @@ public class TrackController {
 
 	}
 
+	/**
+	 * 
+	 * Responds to a HTTP request that attempts to add many new tracks to an
+	 * unpublished album at once. Either all tracks are added or none of them are.
+	 * An authentication token is required to verify the ownership of the album.
+	 * 
+	 * @param albumId    the ID of the album to add tracks to.
+	 * @param tracksData the JSON array containing the information and audio data
+	 *                   url of each track.
+	 * @param jws        the signed authentication token.
+	 * @return a general message indicating success or failure.
+	 */
+	@PostMapping(path = "/addall/{albumId}")
+	public ResponseEntity<String> addTracksToAlbum(@Validated @PathVariable int albumId,
+			@Validated @RequestBody List<TrackData> tracksData, @Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		String result = "";
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = ExceptionController.AUTH_TOKEN_EXPIRED;
+		} else if (authId > 0) {
+			int count = this.trackService.addMany(authId, albumId, tracksData);
+			if (count > 0) {
+				status = HttpStatus.CREATED;
+				result = count + " new tracks have been successfully added";
+			} else {
+				status = HttpStatus.UNPROCESSABLE_ENTITY;
+				result = "unable to add the tracks";
+			}
+		} else {
+			status = HttpStatus.UNAUTHORIZED;
+			result = ExceptionController.UNAUTHORIZED;
+		}
+
+		return ResponseEntity.status(status).body(result);
+
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request that uploads the audio of a track on an
+	 * unpublished album. The body is the raw audio file sent with its media type,
+	 * such as audio/ogg, and is streamed into the database without being held in
+	 * memory. An authentication token is required to verify the ownership of the
+	 * album.
+	 * 
+	 * @param trackId     the ID of the track.
+	 * @param contentType the media type of the audio.
+	 * @param length      the length of the audio in bytes.
+	 * @param audio       the body of the request.
+	 * @param jws         the signed authentication token.
+	 * @return a general message indicating success or failure.
+	 */
+	@PutMapping(path = "/audio/{trackId}")
+	public ResponseEntity<String> uploadTrackAudio(@Validated @PathVariable int trackId,
+			@RequestHeader(name = "Content-Type", required = false) String contentType,
+			@RequestHeader(name = "Content-Length", required = false) Long length, InputStream audio,
+			@Validated @RequestHeader(name = "Auth-Token") String jws) {
+
+		HttpStatus status;
+
+		String result = "";
+
+		final String audioType = DataUtility.getUploadType(contentType, "audio");
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId == -1) {
+			status = HttpStatus.EXPECTATION_FAILED;
+			result = ExceptionController.AUTH_TOKEN_EXPIRED;
+		} else if (authId == 0) {
+			status = HttpStatus.UNAUTHORIZED;
+			result = ExceptionController.UNAUTHORIZED;
+		} else if (length == null) {
+			status = HttpStatus.LENGTH_REQUIRED;
+			result = ExceptionController.LENGTH_REQUIRED;
+		} else if (length > DatabaseUtility.getMaxUploadSize()) {
+			status = HttpStatus.PAYLOAD_TOO_LARGE;
+			result = ExceptionController.PAYLOAD_TOO_LARGE;
+		} else if (audioType == null) {
+			status = HttpStatus.UNSUPPORTED_MEDIA_TYPE;
+			result = ExceptionController.UNSUPPORTED_MEDIA_TYPE;
+		} else {
+			if (this.trackService.uploadAudio(authId, trackId, audioType, audio, length)) {
+				status = HttpStatus.OK;
+				result = "audio has been successfully uploaded";
+			} else {
+				status = HttpStatus.UNPROCESSABLE_ENTITY;
+				result = "unable to upload the audio";
+			}
+		}
+
+		return ResponseEntity.status(status).body(result);
+
+	}
+
 	/**
 	 * 
 	 * Responds to a HTTP request that attempts to delete a track. An album creator
@@ -173,23 +414,71 @@ public class TrackController {
 
 	/**
 	 * 
-	 * Responds to a HTTP request of retrieving all tracks from the database. An
-	 * authentication token from a system administrator is required.
+	 * Responds to a HTTP request of retrieving a page of all tracks from the
+	 * database. An authentication token from a system administrator is required.
+	 * The cursor of the next page is sent in the Next-Cursor header.
 	 * 
-	 * @param jws the signed authentication token.
-	 * @return the list containing all tracks' information. Audio data will be
-	 *         omitted. An empty list is returned if the sender is not authorized.
+	 * @param jws    the signed authentication token.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the list containing the tracks' information. Audio data will be
+	 *         omitted. An empty list is returned if the sender is not authorized
+	 *         or if the cursor is invalid.
 	 */
 	@GetMapping(path = "/get/all")
-	public ResponseEntity<List<Track>> listAllTracks(@Validated @RequestHeader(name = "Auth-Token") String jws) {
+	public DeferredResult<ResponseEntity<List<Track>>> listAllTracks(
+			@Validated @RequestHeader(name = "Auth-Token") String jws,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "limit", required = false) Integer limit) {
 
 		// Validate the JWS.
 		int authId = this.authService.reauthenticate(jws);
 
-		if (authId == -777) {
-			return ResponseEntity.ok(this.trackService.getAll());
-		} else {
-			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<Track>());
+		if (authId != -777) {
+			return this.queryService
+					.complete(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<Track>()));
+		}
+
+		return this.queryService.submit(() -> {
+			Page<Track> page = this.trackService.getAll(cursor, limit);
+			if (page == null) {
+				return ResponseEntity.badRequest().body(new ArrayList<Track>());
+			}
+			return ResponseEntity.ok().headers(PageUtility.getPageHeaders(page)).body(page.getItems());
+		});
+
+	}
+
+	/**
+	 * 
+	 * Responds to a HTTP request of exporting all tracks in the database as one
+	 * JSON array. An authentication token from a system administrator is required.
+	 * The tracks are written to the response as they are read from the database,
+	 * so the list is never held in memory. If the export fails after the response
+	 * is committed, the array is left unterminated.
+	 * 
+	 * @param jws      the signed authentication token.
+	 * @param response the response to write the tracks to.
+	 * @throws IOException if the response cannot be written.
+	 */
+	@GetMapping(path = "/export")
+	public void exportTracks(@Validated @RequestHeader(name = "Auth-Token") String jws,
+			HttpServletResponse response) throws IOException {
+
+		// Validate the JWS.
+		int authId = this.authService.reauthenticate(jws);
+
+		if (authId != -777) {
+			response.setStatus(HttpStatus.UNAUTHORIZED.value());
+			return;
+		}
+
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+		if (!this.trackService.writeAll(response.getOutputStream()) && !response.isCommitted()) {
+			response.reset();
+			response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
 		}
 
 	}
@@ -206,30 +495,25 @@ public class TrackController {
 	 *         the sender cannot be authenticated or if the album does not exist.
 	 */
 	@GetMapping(path = "/inalbum/{albumId}")
-	public ResponseEntity<List<Track>> getTracksFromAlbum(@Validated @PathVariable int albumId,
+	public DeferredResult<ResponseEntity<List<Track>>> getTracksFromAlbum(@Validated @PathVariable int albumId,
 			@Validated @RequestHeader(name = "Auth-Token") String jws) {
 
-		HttpStatus status;
-
-		List<Track> result = new ArrayList<>();
-
 		// Validate the JWS.
 		int authId = this.authService.reauthenticate(jws);
 
 		if (authId == -1) {
-			status = HttpStatus.EXPECTATION_FAILED;
+			return this.queryService
+					.complete(ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body(new ArrayList<Track>()));
 		} else if (authId == 0) {
-			status = HttpStatus.UNAUTHORIZED;
-		} else {
-			result = this.trackService.getFromAlbum(authId, albumId);
-			if (!result.isEmpty()) {
-				status = HttpStatus.OK;
-			} else {
-				status = HttpStatus.NO_CONTENT;
-			}
+			return this.queryService
+					.complete(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ArrayList<Track>()));
 		}
 
-		return ResponseEntity.status(status).body(result);
+		return this.queryService.submit(() -> {
+			List<Track> result = this.trackService.getFromAlbum(authId, albumId);
+
+			return ResponseEntity.status(!result.isEmpty() ? HttpStatus.OK : HttpStatus.NO_CONTENT).body(result);
+		});
 
 	}
 
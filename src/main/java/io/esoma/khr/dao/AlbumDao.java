@@ -1,6 +1,10 @@
 package io.esoma.khr.dao;
 
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import io.esoma.khr.model.Album;
 
@@ -22,6 +26,43 @@ public interface AlbumDao {
 	 */
 	Album getAlbumById(int albumId);
 
+	/**
+	 * 
+	 * Gets the artwork of a published album. Only the ARTWORK and ARTWORK_TYPE
+	 * columns are read.
+	 * 
+	 * @param albumId the ID of the album.
+	 * @return an album object holding the artwork data and type, or null if the
+	 *         album is not published or has no artwork.
+	 */
+	Album getAlbumArtwork(int albumId);
+
+	/**
+	 * 
+	 * Gets the version of the artwork of a published album without reading the
+	 * artwork. It is the hash of the artwork if it is kept in the media store, or
+	 * else a tag made of the album ID, since published artwork never changes.
+	 * 
+	 * @param albumId the ID of the album.
+	 * @return the version of the artwork, or null if the album is not published
+	 *         or has no artwork.
+	 */
+	String getAlbumArtworkVersion(int albumId);
+
+	/**
+	 * 
+	 * Replaces the artwork of an unpublished album with the content of a stream.
+	 * The stream is copied into the BLOB as it is read.
+	 * 
+	 * @param albumId     the ID of the album.
+	 * @param artworkType the file type of the artwork.
+	 * @param artwork     the stream holding the image data.
+	 * @param length      the number of bytes in the stream.
+	 * @return true if the artwork is stored, or false if the album does not exist,
+	 *         is published, or the process fails.
+	 */
+	boolean updateAlbumArtwork(int albumId, String artworkType, InputStream artwork, long length);
+
 	/**
 	 * 
 	 * Adds a new album record to the database. New albums are always unpublished
@@ -57,7 +98,8 @@ public interface AlbumDao {
 	 * 
 	 * Makes an album public and available for purchase. The data for ETA_PRICE,
 	 * ARTWORK, and ARTWORK_TYPE columns will be entered in the system for the first
-	 * time. The album is considered finalized once published.
+	 * time, unless the album carries no artwork and keeps the uploaded one. The
+	 * album is considered finalized once published.
 	 * 
 	 * @param album the album object containing publishing details.
 	 * @return true if album is published, or false otherwise.
@@ -83,6 +125,32 @@ public interface AlbumDao {
 	 */
 	List<Album> getAllAlbums();
 
+	/**
+	 * 
+	 * Gets a page of all albums (published and unpublished) sorted by name and ID.
+	 * It should only be used by a system administrator to manage albums. The
+	 * albums are detached summaries without artwork, publisher, tracks or reviews.
+	 * 
+	 * @param albumName the name of the last album on the previous page, or null
+	 *                  for the first page.
+	 * @param albumId   the ID of the last album on the previous page.
+	 * @param limit     the largest number of albums to get.
+	 * @return the album list.
+	 */
+	List<Album> getAlbumPage(String albumName, int albumId, int limit);
+
+	/**
+	 * 
+	 * Passes all albums (published and unpublished) sorted by name and ID to an
+	 * action one at a time, without loading the whole list. It should only be
+	 * used by a system administrator to export albums. The albums are detached
+	 * summaries without artwork, publisher, tracks or reviews.
+	 * 
+	 * @param action the action that takes each album.
+	 * @return the number of albums, or -1 if the operation fails.
+	 */
+	int streamAlbums(Consumer<? super Album> action);
+
 	/**
 	 * 
 	 * Gets a list of all unpublished albums that belong to a specific koalibee.
@@ -94,10 +162,56 @@ public interface AlbumDao {
 
 	/**
 	 * 
-	 * Gets a list of all published albums.
+	 * Gets the IDs of all published albums that belong to a specific koalibee.
+	 * 
+	 * @param koalibeeId the ID of the koalibee who owns the albums.
+	 * @return the album ID list.
+	 */
+	List<Integer> getPublishedAlbumIdsByKoalibee(int koalibeeId);
+
+	/**
+	 * 
+	 * Gets a list of all published albums. Each album carries the URL of its
+	 * artwork instead of the image data.
 	 * 
 	 * @return the album list.
 	 */
 	List<Album> getAllPublishedAlbums();
 
+	/**
+	 * 
+	 * Gets a page of published albums sorted by name and ID. The albums are
+	 * detached summaries without artwork, publisher, tracks or reviews. Each album
+	 * carries the URL of its artwork instead of the image data.
+	 * 
+	 * @param albumName the name of the last album on the previous page, or null
+	 *                  for the first page.
+	 * @param albumId   the ID of the last album on the previous page.
+	 * @param limit     the largest number of albums to get.
+	 * @return the album list.
+	 */
+	List<Album> getPublishedAlbumPage(String albumName, int albumId, int limit);
+
+	/**
+	 * 
+	 * Gets the albums with the given IDs in a single query, sorted by ID. The
+	 * albums are detached summaries with their publisher details and the URL of
+	 * their artwork, but without the artwork itself, tracks or reviews.
+	 * Unpublished albums have no artwork URL, so they embed their artwork as a
+	 * data URL instead.
+	 * 
+	 * @param albumIds the IDs of the albums.
+	 * @return the album list. IDs that do not exist are skipped.
+	 */
+	List<Album> getAlbumsByIds(Collection<Integer> albumIds);
+
+	/**
+	 * 
+	 * Counts the purchases of every album in a single query.
+	 * 
+	 * @return the number of purchases by album ID. Albums that were never
+	 *         purchased are left out.
+	 */
+	Map<Integer, Integer> getPurchaseCounts();
+
 }
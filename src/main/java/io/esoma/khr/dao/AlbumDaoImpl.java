@@ -1,18 +1,29 @@
 package io.esoma.khr.dao;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.query.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumRating;
 import io.esoma.khr.model.Genre;
+import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.storage.MediaStore;
 import io.esoma.khr.utility.DataUtility;
+import io.esoma.khr.utility.DatabaseUtility;
 import io.esoma.khr.utility.LogUtility;
 
 /**
@@ -25,7 +36,17 @@ import io.esoma.khr.utility.LogUtility;
 @Repository(value = "albumDaoImplBasic")
 public class AlbumDaoImpl implements AlbumDao {
 
+	// Album lists select summaries, so the artwork column is never read.
+	private static final String ALBUM_SUMMARY = "SELECT new Album(a.albumId, a.albumName, a.artist, a.artworkType, "
+			+ "a.etaPrice, a.isPromoted, a.isPublished, g.genreId, g.genreName, r.ratingCount, r.ratingSum) "
+			+ "FROM Album AS a LEFT JOIN a.genre AS g LEFT JOIN AlbumRating AS r ON r.albumId = a.albumId ";
+
+	// Condition that starts a page after the name and ID of the previous one.
+	private static final String ALBUM_KEYSET = "a.albumName >= :albumName "
+			+ "AND (a.albumName > :albumName OR a.albumId > :albumId) ";
+
 	private SessionFactory sessionFactory;
+	private MediaStore mediaStore;
 
 	public SessionFactory getSessionFactory() {
 		return sessionFactory;
@@ -39,6 +60,12 @@ public class AlbumDaoImpl implements AlbumDao {
 		this.sessionFactory = sessionFactory;
 	}
 
+	@Autowired
+	@Qualifier(value = "mediaStore")
+	public void setMediaStore(MediaStore mediaStore) {
+		this.mediaStore = mediaStore;
+	}
+
 	@Override
 	public Album getAlbumById(int albumId) {
 
@@ -48,13 +75,25 @@ public class AlbumDaoImpl implements AlbumDao {
 		try (Session session = sessionFactory.openSession()) {
 			tx = session.beginTransaction();
 			album = session.get(Album.class, albumId);
-			// Obtain artwork data url.
-			if (album.getArtwork() != null && album.getArtworkType() != null) {
-				album.setArtworkDataUrl(
-						DataUtility.encodeBytesToDataUrlImage(album.getArtwork(), album.getArtworkType()));
+			// Obtain artwork url, unpublished albums still embed their artwork.
+			album.setArtworkUrl(DataUtility.getArtworkUrl(album));
+			if (album.getArtworkUrl() == null && album.getArtworkType() != null) {
+				final byte[] artwork = album.getArtworkHash() != null ? mediaStore.read(album.getArtworkHash())
+						: album.getArtwork();
+				if (artwork != null) {
+					album.setArtworkDataUrl(DataUtility.encodeBytesToDataUrlImage(artwork, album.getArtworkType()));
+				}
 			}
 			// Initialize publisher details.
 			album.setKoalibee(album.getKoalibee());
+			// Attach the rating statistics, albums without reviews have no row.
+			AlbumRating rating = session.get(AlbumRating.class, albumId);
+			if (rating == null) {
+				rating = new AlbumRating(albumId);
+			}
+			album.setRatingCount(rating.getRatingCount());
+			album.setRatingSum(rating.getRatingSum());
+			album.setRatingHistogram(rating.getHistogram());
 			tx.commit();
 		} catch (Exception e) {
 			// Debug message
@@ -66,6 +105,102 @@ public class AlbumDaoImpl implements AlbumDao {
 
 	}
 
+	@Override
+	public Album getAlbumArtwork(int albumId) {
+
+		Transaction tx = null;
+		Album album = null;
+
+		final String hql = "SELECT a.artwork, a.artworkType, a.artworkHash FROM Album AS a "
+				+ "WHERE a.albumId = :albumId AND a.isPublished = :isPublished";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			Object[] row = session.createQuery(hql, Object[].class).setParameter("albumId", albumId)
+					.setParameter("isPublished", "T").getSingleResult();
+			if ((row[0] != null || row[2] != null) && row[1] != null) {
+				album = new Album(albumId);
+				album.setArtwork(row[2] != null ? mediaStore.read((String) row[2]) : (byte[]) row[0]);
+				album.setArtworkType((String) row[1]);
+				album.setArtworkHash((String) row[2]);
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getAlbumArtwork, stack trace:", e);
+			album = null;
+		}
+
+		return album;
+
+	}
+
+	@Override
+	public String getAlbumArtworkVersion(int albumId) {
+
+		Transaction tx = null;
+		String version = null;
+
+		final String hql = "SELECT a.artworkHash FROM Album AS a WHERE a.albumId = :albumId "
+				+ "AND a.isPublished = :isPublished AND a.artworkType IS NOT NULL "
+				+ "AND (a.artwork IS NOT NULL OR a.artworkHash IS NOT NULL)";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			List<String> hashList = session.createQuery(hql, String.class).setParameter("albumId", albumId)
+					.setParameter("isPublished", "T").getResultList();
+			if (!hashList.isEmpty()) {
+				version = hashList.get(0) != null ? hashList.get(0) : "A" + albumId;
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getAlbumArtworkVersion, stack trace:", e);
+			version = null;
+		}
+
+		return version;
+
+	}
+
+	@Override
+	public boolean updateAlbumArtwork(int albumId, String artworkType, InputStream artwork, long length) {
+
+		Transaction tx = null;
+		boolean success = false;
+
+		// Published artwork never changes.
+		final String blobSql = "UPDATE ALBUM SET ARTWORK = ?, ARTWORK_TYPE = ?, ARTWORK_HASH = NULL "
+				+ "WHERE ALBUM_ID = ? AND IS_PUBLISHED = 'F'";
+		final String hashSql = "UPDATE ALBUM SET ARTWORK_HASH = ?, ARTWORK_TYPE = ?, ARTWORK = NULL "
+				+ "WHERE ALBUM_ID = ? AND IS_PUBLISHED = 'F'";
+
+		try (Session session = sessionFactory.openSession()) {
+			// The upload is stored before the transaction begins, so no connection is
+			// held while it is read.
+			final String artworkHash = mediaStore.isEnabled() ? mediaStore.put(artwork, length) : null;
+			tx = session.beginTransaction();
+			final int count = artworkHash != null
+					? DatabaseUtility.updateMediaHash(session, hashSql, artworkHash, artworkType, albumId)
+					: DatabaseUtility.updateBlob(session, blobSql, artwork, length, artworkType, albumId);
+			if (count != 1) {
+				tx.rollback();
+				return false;
+			}
+			tx.commit();
+			// Drop the cached entry so that no stale state is served.
+			sessionFactory.getCache().evictEntityData(Album.class, albumId);
+			success = true;
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in updateAlbumArtwork, stack trace:", e);
+			success = false;
+		}
+
+		return success;
+
+	}
+
 	@Override
 	public int addAlbum(Album album) {
 
@@ -73,6 +208,7 @@ public class AlbumDaoImpl implements AlbumDao {
 		int id = 0;
 
 		try (Session session = sessionFactory.openSession()) {
+			this.storeArtwork(album);
 			tx = session.beginTransaction();
 			id = (int) session.save(album);
 			tx.commit();
@@ -107,6 +243,8 @@ public class AlbumDaoImpl implements AlbumDao {
 				persistAlbum.setGenre(session.get(Genre.class, album.getGenre().getGenreId()));
 			}
 			tx.commit();
+			// Drop the cached entry so that no stale state is served.
+			sessionFactory.getCache().evictEntityData(Album.class, album.getAlbumId());
 			success = true;
 		} catch (Exception e) {
 			// Debug message
@@ -147,15 +285,21 @@ public class AlbumDaoImpl implements AlbumDao {
 		boolean success = false;
 
 		try (Session session = sessionFactory.openSession()) {
+			this.storeArtwork(album);
 			tx = session.beginTransaction();
 			Album persistAlbum = session.get(Album.class, album.getAlbumId());
 
-			// Update publish details.
-			persistAlbum.setArtwork(album.getArtwork());
-			persistAlbum.setArtworkType(album.getArtworkType());
+			// Update publish details, keeping the uploaded artwork if none is given.
+			if (album.getArtwork() != null || album.getArtworkHash() != null) {
+				persistAlbum.setArtwork(album.getArtwork());
+				persistAlbum.setArtworkHash(album.getArtworkHash());
+				persistAlbum.setArtworkType(album.getArtworkType());
+			}
 			persistAlbum.setEtaPrice(album.getEtaPrice());
 			persistAlbum.setIsPublished("T");
 			tx.commit();
+			// Drop the cached entry so that no stale state is served.
+			sessionFactory.getCache().evictEntityData(Album.class, album.getAlbumId());
 			success = true;
 		} catch (Exception e) {
 			// Debug message
@@ -178,6 +322,8 @@ public class AlbumDaoImpl implements AlbumDao {
 			Album album = session.get(Album.class, albumId);
 			album.setIsPromoted("T");
 			tx.commit();
+			// Drop the cached entry so that no stale state is served.
+			sessionFactory.getCache().evictEntityData(Album.class, albumId);
 			success = true;
 		} catch (Exception e) {
 			// Debug message
@@ -211,6 +357,55 @@ public class AlbumDaoImpl implements AlbumDao {
 
 	}
 
+	@Override
+	public List<Album> getAlbumPage(String albumName, int albumId, int limit) {
+
+		Transaction tx = null;
+		List<Album> albumList = new ArrayList<>();
+
+		final String hql = ALBUM_SUMMARY + (albumName == null ? "" : "WHERE " + ALBUM_KEYSET)
+				+ "ORDER BY a.albumName ASC, a.albumId ASC";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			Query<Album> query = session.createQuery(hql, Album.class).setMaxResults(limit);
+			if (albumName != null) {
+				query.setParameter("albumName", albumName).setParameter("albumId", albumId);
+			}
+			query.getResultList().forEach(a -> albumList.add(a));
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getAlbumPage, stack trace:", e);
+			albumList.clear();
+		}
+
+		return albumList;
+
+	}
+
+	@Override
+	public int streamAlbums(Consumer<? super Album> action) {
+
+		Transaction tx = null;
+		int count = 0;
+
+		final String hql = ALBUM_SUMMARY + "ORDER BY a.albumName ASC, a.albumId ASC";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			count = DatabaseUtility.scroll(session, session.createQuery(hql, Album.class), action);
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in streamAlbums, stack trace:", e);
+			count = -1;
+		}
+
+		return count;
+
+	}
+
 	@Override
 	public List<Album> getUnpublishedAlbumsByKoalibee(int koalibeeId) {
 
@@ -234,6 +429,30 @@ public class AlbumDaoImpl implements AlbumDao {
 
 	}
 
+	@Override
+	public List<Integer> getPublishedAlbumIdsByKoalibee(int koalibeeId) {
+
+		Transaction tx = null;
+		List<Integer> albumIdList = new ArrayList<>();
+
+		final String hql = "SELECT a.albumId FROM Album AS a "
+				+ "WHERE a.isPublished = :isPublished AND a.koalibee.koalibeeId = :koalibeeId ORDER BY a.albumId";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			albumIdList.addAll(session.createQuery(hql, Integer.class).setParameter("isPublished", "T")
+					.setParameter("koalibeeId", koalibeeId).getResultList());
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getPublishedAlbumIdsByKoalibee, stack trace:", e);
+			albumIdList.clear();
+		}
+
+		return albumIdList;
+
+	}
+
 	@Override
 	public List<Album> getAllPublishedAlbums() {
 
@@ -245,9 +464,7 @@ public class AlbumDaoImpl implements AlbumDao {
 		try (Session session = sessionFactory.openSession()) {
 			tx = session.beginTransaction();
 			for (Album a : session.createQuery(hql, Album.class).setParameter("isPublished", "T").getResultList()) {
-				if (a.getArtwork() != null && a.getArtworkType() != null) {
-					a.setArtworkDataUrl(DataUtility.encodeBytesToDataUrlImage(a.getArtwork(), a.getArtworkType()));
-				}
+				a.setArtworkUrl(DataUtility.getArtworkUrl(a));
 				albumList.add(a);
 			}
 			tx.commit();
@@ -261,4 +478,127 @@ public class AlbumDaoImpl implements AlbumDao {
 
 	}
 
+	@Override
+	public List<Album> getPublishedAlbumPage(String albumName, int albumId, int limit) {
+
+		Transaction tx = null;
+		List<Album> albumList = new ArrayList<>();
+
+		final String hql = ALBUM_SUMMARY + "WHERE a.isPublished = :isPublished "
+				+ (albumName == null ? "" : "AND " + ALBUM_KEYSET) + "ORDER BY a.albumName ASC, a.albumId ASC";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			Query<Album> query = session.createQuery(hql, Album.class).setParameter("isPublished", "T")
+					.setMaxResults(limit);
+			if (albumName != null) {
+				query.setParameter("albumName", albumName).setParameter("albumId", albumId);
+			}
+			for (Album a : query.getResultList()) {
+				a.setArtworkUrl(DataUtility.getArtworkUrl(a));
+				albumList.add(a);
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getPublishedAlbumPage, stack trace:", e);
+			albumList.clear();
+		}
+
+		return albumList;
+
+	}
+
+	@Override
+	public List<Album> getAlbumsByIds(Collection<Integer> albumIds) {
+
+		Transaction tx = null;
+		List<Album> albumList = new ArrayList<>();
+
+		final String hql = "SELECT a.albumId, a.albumName, a.artist, a.artworkType, a.etaPrice, a.isPromoted, "
+				+ "a.isPublished, g.genreId, g.genreName, k.koalibeeId, k.firstName, k.lastName, k.email "
+				+ "FROM Album AS a LEFT JOIN a.genre AS g LEFT JOIN a.koalibee AS k "
+				+ "WHERE a.albumId IN (:albumIds) ORDER BY a.albumId ASC";
+		final String artworkHql = "SELECT a.albumId, a.artwork, a.artworkHash FROM Album AS a "
+				+ "WHERE a.albumId IN (:albumIds)";
+		final Map<Integer, Album> unpublishedAlbums = new HashMap<>();
+
+		if (albumIds.isEmpty()) {
+			return albumList;
+		}
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			for (Object[] row : session.createQuery(hql, Object[].class).setParameterList("albumIds", albumIds)
+					.getResultList()) {
+				Album album = new Album((int) row[0], (String) row[1], (String) row[2], (String) row[3], (int) row[4],
+						(String) row[5], (String) row[6], (Integer) row[7], (String) row[8], null, null);
+				album.setArtworkUrl(DataUtility.getArtworkUrl(album));
+				if (album.getArtworkUrl() == null && album.getArtworkType() != null) {
+					unpublishedAlbums.put(album.getAlbumId(), album);
+				}
+				if (row[9] != null) {
+					album.setKoalibee(new Koalibee((int) row[9], (String) row[10], (String) row[11], (String) row[12], 0));
+				}
+				albumList.add(album);
+			}
+			// Unpublished albums still embed their artwork, which has no URL.
+			if (!unpublishedAlbums.isEmpty()) {
+				for (Object[] row : session.createQuery(artworkHql, Object[].class)
+						.setParameterList("albumIds", unpublishedAlbums.keySet()).getResultList()) {
+					final Album album = unpublishedAlbums.get((int) row[0]);
+					final byte[] artwork = row[2] != null ? mediaStore.read((String) row[2]) : (byte[]) row[1];
+					if (artwork != null) {
+						album.setArtworkDataUrl(DataUtility.encodeBytesToDataUrlImage(artwork, album.getArtworkType()));
+					}
+				}
+			}
+			albumList.forEach(a -> a.setArtworkType(null));
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getAlbumsByIds, stack trace:", e);
+			albumList.clear();
+		}
+
+		return albumList;
+
+	}
+
+	@Override
+	public Map<Integer, Integer> getPurchaseCounts() {
+
+		Transaction tx = null;
+		Map<Integer, Integer> countMap = new HashMap<>();
+
+		final String hql = "SELECT a.albumId, CAST(COUNT(k) AS integer) FROM Koalibee AS k JOIN k.albumList AS a "
+				+ "GROUP BY a.albumId";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			for (Object[] row : session.createQuery(hql, Object[].class).getResultList()) {
+				countMap.put((Integer) row[0], (Integer) row[1]);
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getPurchaseCounts, stack trace:", e);
+			countMap.clear();
+		}
+
+		return countMap;
+
+	}
+
+	// Moves the artwork of an album into the media store if it is enabled, so
+	// only the hash is written to the database.
+	private void storeArtwork(Album album) throws IOException {
+
+		if (mediaStore.isEnabled() && album.getArtwork() != null) {
+			album.setArtworkHash(mediaStore.put(album.getArtwork()));
+			album.setArtwork(null);
+		}
+
+	}
+
 }
@@ -1,5 +1,6 @@
 package io.esoma.khr.dao;
 
+import java.io.InputStream;
 import java.util.List;
 
 import io.esoma.khr.model.Album;
@@ -33,6 +34,42 @@ public interface KoalibeeDao {
 	 */
 	Koalibee getKoalibeeByEmail(String email);
 
+	/**
+	 * 
+	 * Gets the avatar of a koalibee. Only the AVATAR and AVATAR_TYPE columns are
+	 * read.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @return a koalibee object holding the avatar data and type, or null if the
+	 *         koalibee has no avatar.
+	 */
+	Koalibee getKoalibeeAvatar(int koalibeeId);
+
+	/**
+	 * 
+	 * Gets the version of the avatar of a koalibee without reading the avatar. It
+	 * is the hash of the avatar if it is kept in the media store, or else a tag
+	 * made of the koalibee ID and the number of times the avatar was replaced.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @return the version of the avatar, or null if the koalibee has no avatar.
+	 */
+	String getKoalibeeAvatarVersion(int koalibeeId);
+
+	/**
+	 * 
+	 * Replaces the avatar of a koalibee with the content of a stream. The stream is
+	 * copied into the BLOB as it is read.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param avatarType the file type of the avatar.
+	 * @param avatar     the stream holding the image data.
+	 * @param length     the number of bytes in the stream.
+	 * @return true if the avatar is stored, or false if the koalibee does not
+	 *         exist or the process fails.
+	 */
+	boolean updateKoalibeeAvatar(int koalibeeId, String avatarType, InputStream avatar, long length);
+
 	/**
 	 * 
 	 * Adds a new koalibee record to the database. Its credentials will also be
@@ -67,17 +104,24 @@ public interface KoalibeeDao {
 
 	/**
 	 * 
-	 * Updates the ETA balance of a koalibee. The calculation is done by the
-	 * service. This method is only responsible for persisting data.
+	 * Replaces a koalibee's password hash and salt with stronger ones. The update
+	 * only takes place if the stored hash is still the old one, so a password
+	 * changed in the meantime is never overwritten.
 	 * 
-	 * @param koalibee the koalibee object with the new balance.
-	 * @return true is balance is updated, or false otherwise.
+	 * @param koalibeeId   the ID of the koalibee.
+	 * @param oldHash      the hash the password was verified against.
+	 * @param passwordSalt the new salt.
+	 * @param passwordHash the new hash.
+	 * @return true if the hash is replaced, or false otherwise.
 	 */
-	boolean updateEtaBalance(Koalibee koalibee);
+	boolean upgradePasswordHash(int koalibeeId, String oldHash, String passwordSalt, String passwordHash);
 
 	/**
 	 * 
-	 * Adds a published album into a user's inventory.
+	 * Adds a published album into a user's inventory. The price is taken from the
+	 * purchaser's balance and credited to the publisher as a pending ETA ledger
+	 * entry in the same transaction, and nothing is changed if the balance is too
+	 * low or the album is already owned.
 	 * 
 	 * @param koalibeeId the ID of the purchaser.
 	 * @param albumId    the ID of the album being purchased.
@@ -85,6 +129,17 @@ public interface KoalibeeDao {
 	 */
 	boolean purchaseAlbum(int koalibeeId, int albumId);
 
+	/**
+	 * 
+	 * Checks if a user has purchased an album. The purchases of a user are read
+	 * from the database once and then answered from memory.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param albumId    the ID of the album.
+	 * @return true if the album is in the user's inventory, or false otherwise.
+	 */
+	boolean ownsAlbum(int koalibeeId, int albumId);
+
 	/**
 	 * 
 	 * Deletes a koalibee record from the database. This method can only be accessed
@@ -98,13 +153,23 @@ public interface KoalibeeDao {
 	/**
 	 * 
 	 * Gets a list of all emails registered with Koality Harmonia. It is used to
-	 * make sure a new user can only register with a new email address that is not
-	 * currently in the database.
+	 * build the in-memory email filter at startup.
 	 * 
 	 * @return the email list.
 	 */
 	List<String> getAllEmails();
 
+	/**
+	 * 
+	 * Checks if an email is already registered with a single lookup on the unique
+	 * EMAIL column.
+	 * 
+	 * @param email the email to be checked.
+	 * @return true if the email is registered or if the lookup fails, or false
+	 *         otherwise.
+	 */
+	boolean isEmailRegistered(String email);
+
 	/**
 	 * 
 	 * Gets a list of all koalibees in the database. It should only be used by a
@@ -116,7 +181,21 @@ public interface KoalibeeDao {
 
 	/**
 	 * 
-	 * Gets a list of all purchased albums of a user.
+	 * Gets a page of all koalibees sorted by ID. It should only be used by a system
+	 * administrator to manage users. The koalibees are detached summaries without
+	 * avatar, credentials or albums.
+	 * 
+	 * @param koalibeeId the ID of the last koalibee on the previous page, or 0 for
+	 *                   the first page.
+	 * @param limit      the largest number of koalibees to get.
+	 * @return the koalibee list.
+	 */
+	List<Koalibee> getKoalibeePage(int koalibeeId, int limit);
+
+	/**
+	 * 
+	 * Gets a list of all purchased albums of a user. Each album carries the URL
+	 * of its artwork instead of the image data.
 	 * 
 	 * @param koalibeeId the ID of the koalibee.
 	 * @return the album list.
@@ -1,5 +1,7 @@
 package io.esoma.khr.dao;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,9 +12,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import io.esoma.khr.index.OwnershipIndex;
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.EtaEntry;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.storage.MediaStore;
 import io.esoma.khr.utility.DataUtility;
+import io.esoma.khr.utility.DatabaseUtility;
 import io.esoma.khr.utility.LogUtility;
 
 /**
@@ -26,6 +32,8 @@ import io.esoma.khr.utility.LogUtility;
 public class KoalibeeDaoImpl implements KoalibeeDao {
 
 	private SessionFactory sessionFactory;
+	private OwnershipIndex ownershipIndex;
+	private MediaStore mediaStore;
 
 	public SessionFactory getSessionFactory() {
 		return sessionFactory;
@@ -39,6 +47,18 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 		this.sessionFactory = sessionFactory;
 	}
 
+	@Autowired
+	@Qualifier(value = "ownershipIndex")
+	public void setOwnershipIndex(OwnershipIndex ownershipIndex) {
+		this.ownershipIndex = ownershipIndex;
+	}
+
+	@Autowired
+	@Qualifier(value = "mediaStore")
+	public void setMediaStore(MediaStore mediaStore) {
+		this.mediaStore = mediaStore;
+	}
+
 	@Override
 	public Koalibee getKoalibeeById(int koalibeeId) {
 
@@ -49,9 +69,9 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 			tx = session.beginTransaction();
 			koalibee = session.get(Koalibee.class, koalibeeId);
 			// Obtain avatar data url.
-			if (koalibee.getAvatar() != null && koalibee.getAvatarType() != null) {
-				koalibee.setAvatarDataUrl(
-						DataUtility.encodeBytesToDataUrlImage(koalibee.getAvatar(), koalibee.getAvatarType()));
+			final byte[] avatar = this.readAvatar(koalibee);
+			if (avatar != null && koalibee.getAvatarType() != null) {
+				koalibee.setAvatarDataUrl(DataUtility.encodeBytesToDataUrlImage(avatar, koalibee.getAvatarType()));
 			}
 			tx.commit();
 		} catch (Exception e) {
@@ -76,9 +96,9 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 			tx = session.beginTransaction();
 			koalibee = session.createQuery(hql, Koalibee.class).setParameter("email", email).getSingleResult();
 			// Obtain avatar data url
-			if (koalibee.getAvatar() != null && koalibee.getAvatarType() != null) {
-				koalibee.setAvatarDataUrl(
-						DataUtility.encodeBytesToDataUrlImage(koalibee.getAvatar(), koalibee.getAvatarType()));
+			final byte[] avatar = this.readAvatar(koalibee);
+			if (avatar != null && koalibee.getAvatarType() != null) {
+				koalibee.setAvatarDataUrl(DataUtility.encodeBytesToDataUrlImage(avatar, koalibee.getAvatarType()));
 			}
 			tx.commit();
 		} catch (Exception e) {
@@ -91,6 +111,104 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 
 	}
 
+	@Override
+	public Koalibee getKoalibeeAvatar(int koalibeeId) {
+
+		Transaction tx = null;
+		Koalibee koalibee = null;
+
+		final String hql = "SELECT k.avatar, k.avatarType, k.avatarHash FROM Koalibee AS k "
+				+ "WHERE k.koalibeeId = :koalibeeId";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			Object[] row = session.createQuery(hql, Object[].class).setParameter("koalibeeId", koalibeeId)
+					.getSingleResult();
+			if ((row[0] != null || row[2] != null) && row[1] != null) {
+				koalibee = new Koalibee(koalibeeId);
+				koalibee.setAvatar(row[2] != null ? mediaStore.read((String) row[2]) : (byte[]) row[0]);
+				koalibee.setAvatarType((String) row[1]);
+				koalibee.setAvatarHash((String) row[2]);
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getKoalibeeAvatar, stack trace:", e);
+			koalibee = null;
+		}
+
+		return koalibee;
+
+	}
+
+	@Override
+	public String getKoalibeeAvatarVersion(int koalibeeId) {
+
+		Transaction tx = null;
+		String version = null;
+
+		final String hql = "SELECT k.avatarHash, k.avatarVersion FROM Koalibee AS k WHERE k.koalibeeId = :koalibeeId "
+				+ "AND k.avatarType IS NOT NULL AND (k.avatar IS NOT NULL OR k.avatarHash IS NOT NULL)";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			List<Object[]> rowList = session.createQuery(hql, Object[].class).setParameter("koalibeeId", koalibeeId)
+					.getResultList();
+			if (!rowList.isEmpty()) {
+				final Object[] row = rowList.get(0);
+				version = row[0] != null ? (String) row[0]
+						: "K" + koalibeeId + "v" + (row[1] != null ? (Integer) row[1] : 0);
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getKoalibeeAvatarVersion, stack trace:", e);
+			version = null;
+		}
+
+		return version;
+
+	}
+
+	@Override
+	public boolean updateKoalibeeAvatar(int koalibeeId, String avatarType, InputStream avatar, long length) {
+
+		Transaction tx = null;
+		boolean success = false;
+
+		// Every new avatar gets a new version, so cached copies of the old one are
+		// not reused.
+		final String blobSql = "UPDATE KOALIBEE SET AVATAR = ?, AVATAR_TYPE = ?, AVATAR_HASH = NULL, "
+				+ "AVATAR_VERSION = COALESCE(AVATAR_VERSION, 0) + 1 WHERE KOALIBEE_ID = ?";
+		final String hashSql = "UPDATE KOALIBEE SET AVATAR_HASH = ?, AVATAR_TYPE = ?, AVATAR = NULL, "
+				+ "AVATAR_VERSION = COALESCE(AVATAR_VERSION, 0) + 1 WHERE KOALIBEE_ID = ?";
+
+		try (Session session = sessionFactory.openSession()) {
+			// The upload is stored before the transaction begins, so no connection is
+			// held while it is read.
+			final String avatarHash = mediaStore.isEnabled() ? mediaStore.put(avatar, length) : null;
+			tx = session.beginTransaction();
+			final int count = avatarHash != null
+					? DatabaseUtility.updateMediaHash(session, hashSql, avatarHash, avatarType, koalibeeId)
+					: DatabaseUtility.updateBlob(session, blobSql, avatar, length, avatarType, koalibeeId);
+			if (count != 1) {
+				tx.rollback();
+				return false;
+			}
+			tx.commit();
+			// Drop the cached entry so that no stale state is served.
+			sessionFactory.getCache().evictEntityData(Koalibee.class, koalibeeId);
+			success = true;
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in updateKoalibeeAvatar, stack trace:", e);
+			success = false;
+		}
+
+		return success;
+
+	}
+
 	@Override
 	public int addKoalibee(Koalibee koalibee) {
 
@@ -98,6 +216,7 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 		int id = 0;
 
 		try (Session session = sessionFactory.openSession()) {
+			this.storeAvatar(koalibee);
 			tx = session.beginTransaction();
 			id = (int) session.save(koalibee);
 			tx.commit();
@@ -118,6 +237,7 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 		boolean success = false;
 
 		try (Session session = sessionFactory.openSession()) {
+			this.storeAvatar(koalibee);
 			tx = session.beginTransaction();
 			Koalibee persistKoalibee = session.get(Koalibee.class, koalibee.getKoalibeeId());
 
@@ -128,11 +248,16 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 			if (koalibee.getLastName() != null) {
 				persistKoalibee.setLastName(koalibee.getLastName());
 			}
-			if (koalibee.getAvatar() != null) {
+			if (koalibee.getAvatar() != null || koalibee.getAvatarHash() != null) {
 				persistKoalibee.setAvatar(koalibee.getAvatar());
+				persistKoalibee.setAvatarHash(koalibee.getAvatarHash());
 				persistKoalibee.setAvatarType(koalibee.getAvatarType());
+				persistKoalibee.setAvatarVersion(
+						persistKoalibee.getAvatarVersion() != null ? persistKoalibee.getAvatarVersion() + 1 : 1);
 			}
 			tx.commit();
+			// Drop the cached entry so that no stale state is served.
+			sessionFactory.getCache().evictEntityData(Koalibee.class, koalibee.getKoalibeeId());
 			success = true;
 		} catch (Exception e) {
 			// Debug message
@@ -176,20 +301,25 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 	}
 
 	@Override
-	public boolean updateEtaBalance(Koalibee koalibee) {
+	public boolean upgradePasswordHash(int koalibeeId, String oldHash, String passwordSalt, String passwordHash) {
 
 		Transaction tx = null;
 		boolean success = false;
 
+		final String hql = "UPDATE Credentials SET passwordSalt = :passwordSalt, passwordHash = :passwordHash "
+				+ "WHERE passwordHash = :oldHash AND credentialsId = "
+				+ "(SELECT k.credentials.credentialsId FROM Koalibee AS k WHERE k.koalibeeId = :koalibeeId)";
+
 		try (Session session = sessionFactory.openSession()) {
 			tx = session.beginTransaction();
-			Koalibee persistKoalibee = session.get(Koalibee.class, koalibee.getKoalibeeId());
-			persistKoalibee.setEtaBalance(koalibee.getEtaBalance());
+			int updated = session.createQuery(hql).setParameter("passwordSalt", passwordSalt)
+					.setParameter("passwordHash", passwordHash).setParameter("oldHash", oldHash)
+					.setParameter("koalibeeId", koalibeeId).executeUpdate();
 			tx.commit();
-			success = true;
+			success = updated == 1;
 		} catch (Exception e) {
 			// Debug message
-			LogUtility.MASTER_LOGGER.error("error in updateEtaBalance, stack trace:", e);
+			LogUtility.MASTER_LOGGER.error("error in upgradePasswordHash, stack trace:", e);
 			success = false;
 		}
 
@@ -203,13 +333,38 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 		Transaction tx = null;
 		boolean success = false;
 
+		final String priceHql = "SELECT a.koalibee.koalibeeId, a.etaPrice FROM Album AS a WHERE a.albumId = :albumId";
+		final String ownSql = "INSERT INTO KOALIBEE_ALBUM (KOALIBEE_ID, ALBUM_ID) VALUES (:koalibeeId, :albumId)";
+
 		try (Session session = sessionFactory.openSession()) {
 			tx = session.beginTransaction();
-			Koalibee koalibee = session.get(Koalibee.class, koalibeeId);
-			Album album = session.load(Album.class, albumId);
-			koalibee.getAlbumList().add(album);
+			Object[] price = session.createQuery(priceHql, Object[].class).setParameter("albumId", albumId)
+					.getSingleResult();
+			int publisherId = (Integer) price[0];
+			int etaPrice = (Integer) price[1];
+
+			// Publishers get their own albums for free.
+			if (publisherId != koalibeeId) {
+				if (!LedgerDaoImpl.debitBalance(session, koalibeeId, etaPrice, EtaEntry.PURCHASE)) {
+					tx.rollback();
+					return false;
+				}
+				// The publisher is paid through the ledger, so sales of a popular album do
+				// not queue up on the publisher's row.
+				LedgerDaoImpl.appendEntry(session, publisherId, etaPrice, EtaEntry.SALE, false);
+			}
+
+			// The primary key turns away a second purchase of the same album.
+			session.createNativeQuery(ownSql).addSynchronizedQuerySpace("KOALIBEE_ALBUM")
+					.setParameter("koalibeeId", koalibeeId).setParameter("albumId", albumId).executeUpdate();
 			tx.commit();
+			// Drop the cached entry of the charged koalibee so that no stale balance is
+			// served.
+			if (publisherId != koalibeeId) {
+				sessionFactory.getCache().evictEntityData(Koalibee.class, koalibeeId);
+			}
 			success = true;
+			this.ownershipIndex.addPurchase(koalibeeId, albumId);
 		} catch (Exception e) {
 			// Debug message
 			LogUtility.MASTER_LOGGER.error("error in purchaseAlbum, stack trace:", e);
@@ -220,18 +375,58 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 
 	}
 
+	@Override
+	public boolean ownsAlbum(int koalibeeId, int albumId) {
+
+		Boolean owns = this.ownershipIndex.owns(koalibeeId, albumId);
+		if (owns != null) {
+			return owns;
+		}
+
+		Transaction tx = null;
+		List<Integer> albumIdList = null;
+
+		final long stamp = this.ownershipIndex.getStamp(koalibeeId);
+		final String hql = "SELECT a.albumId FROM Koalibee AS k JOIN k.albumList AS a WHERE k.koalibeeId = :koalibeeId";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			albumIdList = session.createQuery(hql, Integer.class).setParameter("koalibeeId", koalibeeId)
+					.getResultList();
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in ownsAlbum, stack trace:", e);
+			return false;
+		}
+
+		this.ownershipIndex.load(koalibeeId, albumIdList, stamp);
+
+		return albumIdList.contains(albumId);
+
+	}
+
 	@Override
 	public boolean deleteKoalibee(int koalibeeId) {
 
 		Transaction tx = null;
 		boolean success = false;
 
+		final String hql = "SELECT r.album.albumId, r.rating FROM Review AS r WHERE r.koalibee.koalibeeId = :koalibeeId";
+
 		try (Session session = sessionFactory.openSession()) {
 			tx = session.beginTransaction();
+			// The database removes the reviews of the koalibee along with it, so take
+			// them out of the rating statistics first.
+			for (Object[] row : session.createQuery(hql, Object[].class).setParameter("koalibeeId", koalibeeId)
+					.getResultList()) {
+				ReviewDaoImpl.countRating(session, (int) row[0], (int) row[1], -1);
+			}
 			Koalibee persistKoalibee = session.load(Koalibee.class, koalibeeId);
 			session.delete(persistKoalibee);
 			tx.commit();
 			success = true;
+			this.ownershipIndex.evict(koalibeeId);
 		} catch (Exception e) {
 			// Debug message
 			LogUtility.MASTER_LOGGER.error("error in deleteKoalibee, stack trace:", e);
@@ -264,6 +459,29 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 
 	}
 
+	@Override
+	public boolean isEmailRegistered(String email) {
+
+		Transaction tx = null;
+		boolean registered = true;
+
+		final String hql = "SELECT k.koalibeeId FROM Koalibee AS k WHERE k.email = :email";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			registered = !session.createQuery(hql, Integer.class).setParameter("email", email).setMaxResults(1)
+					.getResultList().isEmpty();
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in isEmailRegistered, stack trace:", e);
+			registered = true;
+		}
+
+		return registered;
+
+	}
+
 	@Override
 	public List<Koalibee> getAllKoalibees() {
 
@@ -286,6 +504,30 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 
 	}
 
+	@Override
+	public List<Koalibee> getKoalibeePage(int koalibeeId, int limit) {
+
+		Transaction tx = null;
+		List<Koalibee> koalibeeList = new ArrayList<>();
+
+		final String hql = "SELECT new Koalibee(k.koalibeeId, k.firstName, k.lastName, k.email, k.etaBalance) "
+				+ "FROM Koalibee AS k WHERE k.koalibeeId > :koalibeeId ORDER BY k.koalibeeId ASC";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			session.createQuery(hql, Koalibee.class).setParameter("koalibeeId", koalibeeId).setMaxResults(limit)
+					.getResultList().forEach(k -> koalibeeList.add(k));
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getKoalibeePage, stack trace:", e);
+			koalibeeList.clear();
+		}
+
+		return koalibeeList;
+
+	}
+
 	@Override
 	public List<Album> getAllPurchasedAlbumsByKoalibeeId(int koalibeeId) {
 
@@ -296,9 +538,7 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 			tx = session.beginTransaction();
 			Koalibee koalibee = session.get(Koalibee.class, koalibeeId);
 			for (Album a : koalibee.getAlbumList()) {
-				if (a.getArtwork() != null && a.getArtworkType() != null) {
-					a.setArtworkDataUrl(DataUtility.encodeBytesToDataUrlImage(a.getArtwork(), a.getArtworkType()));
-				}
+				a.setArtworkUrl(DataUtility.getArtworkUrl(a));
 				albumList.add(a);
 			}
 			tx.commit();
@@ -312,4 +552,22 @@ public class KoalibeeDaoImpl implements KoalibeeDao {
 
 	}
 
+	// Reads the avatar of a koalibee, from the media store if it is kept there.
+	private byte[] readAvatar(Koalibee koalibee) throws IOException {
+
+		return koalibee.getAvatarHash() != null ? mediaStore.read(koalibee.getAvatarHash()) : koalibee.getAvatar();
+
+	}
+
+	// Moves the avatar of a koalibee into the media store if it is enabled, so
+	// only the hash is written to the database.
+	private void storeAvatar(Koalibee koalibee) throws IOException {
+
+		if (mediaStore.isEnabled() && koalibee.getAvatar() != null) {
+			koalibee.setAvatarHash(mediaStore.put(koalibee.getAvatar()));
+			koalibee.setAvatar(null);
+		}
+
+	}
+
 }
@@ -0,0 +1,60 @@
+package io.esoma.khr.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+import io.esoma.khr.model.EtaEntry;
+
+/**
+ * 
+ * The interface used for storing and applying the entries of the ETA ledger.
+ * 
+ * @author Eddy Soma
+ *
+ */
+public interface LedgerDao {
+
+	/**
+	 * 
+	 * Appends a pending entry to the ledger. The balance of the koalibee is not
+	 * touched until the entry is applied.
+	 * 
+	 * @param entry the entry holding the koalibee ID, the change and the reason.
+	 * @return the ID of the new entry, or 0 if the operation fails.
+	 */
+	int addEntry(EtaEntry entry);
+
+	/**
+	 * 
+	 * Takes an amount from the balance of a koalibee right away and records it in
+	 * the ledger. Pending entries count towards the balance, and the check and the
+	 * deduction happen in one statement.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param amount     the amount to be taken.
+	 * @param reason     the reason of the charge.
+	 * @return true if the charge is successful, or false if the balance is too low
+	 *         or the operation fails.
+	 */
+	boolean chargeBalance(int koalibeeId, int amount, String reason);
+
+	/**
+	 * 
+	 * Gets the sums of the pending entries of several koalibees in one query.
+	 * 
+	 * @param koalibeeIds the IDs of the koalibees.
+	 * @return the pending change of the balance by koalibee ID. Koalibees without
+	 *         pending entries are left out.
+	 */
+	Map<Integer, Integer> getPendingDeltas(Collection<Integer> koalibeeIds);
+
+	/**
+	 * 
+	 * Applies the oldest pending entries to the balances in one transaction.
+	 * 
+	 * @param batchSize the largest number of entries to apply.
+	 * @return the number of entries applied, or -1 if the operation fails.
+	 */
+	int applyPending(int batchSize);
+
+}
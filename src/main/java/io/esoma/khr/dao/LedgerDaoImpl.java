@@ -0,0 +1,226 @@
+package io.esoma.khr.dao;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import io.esoma.khr.model.EtaEntry;
+import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.utility.LogUtility;
+
+/**
+ * 
+ * The basic implementation of LedgerDao interface using Hibernate 5.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Repository(value = "ledgerDaoImplBasic")
+public class LedgerDaoImpl implements LedgerDao {
+
+	private SessionFactory sessionFactory;
+
+	public SessionFactory getSessionFactory() {
+		return sessionFactory;
+	}
+
+	// Wires a Oracle Database session factory by default. It can be substituted
+	// with a H2 session factory during integration testing.
+	@Autowired
+	@Qualifier(value = "oracleDBSessionFactory")
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	@Override
+	public int addEntry(EtaEntry entry) {
+
+		Transaction tx = null;
+		int id = 0;
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			id = appendEntry(session, entry.getKoalibeeId(), entry.getDelta(), entry.getReason(), false);
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in addEntry, stack trace:", e);
+			id = 0;
+		}
+
+		return id;
+
+	}
+
+	@Override
+	public boolean chargeBalance(int koalibeeId, int amount, String reason) {
+
+		Transaction tx = null;
+		boolean success = false;
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			if (!debitBalance(session, koalibeeId, amount, reason)) {
+				tx.rollback();
+				return false;
+			}
+			tx.commit();
+			// Drop the cached entry so that no stale state is served.
+			sessionFactory.getCache().evictEntityData(Koalibee.class, koalibeeId);
+			success = true;
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in chargeBalance, stack trace:", e);
+			success = false;
+		}
+
+		return success;
+
+	}
+
+	@Override
+	public Map<Integer, Integer> getPendingDeltas(Collection<Integer> koalibeeIds) {
+
+		Transaction tx = null;
+		Map<Integer, Integer> deltaMap = new HashMap<>();
+
+		if (koalibeeIds.isEmpty()) {
+			return deltaMap;
+		}
+
+		final String hql = "SELECT e.koalibeeId, SUM(e.delta) FROM EtaEntry AS e "
+				+ "WHERE e.koalibeeId IN (:koalibeeIds) AND e.isApplied = 'F' GROUP BY e.koalibeeId";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			List<Object[]> rowList = session.createQuery(hql, Object[].class)
+					.setParameterList("koalibeeIds", koalibeeIds).getResultList();
+			for (Object[] row : rowList) {
+				deltaMap.put((Integer) row[0], ((Number) row[1]).intValue());
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getPendingDeltas, stack trace:", e);
+			deltaMap = new HashMap<>();
+		}
+
+		return deltaMap;
+
+	}
+
+	@Override
+	public int applyPending(int batchSize) {
+
+		Transaction tx = null;
+		int count = 0;
+
+		final String selectHql = "SELECT e.entryId FROM EtaEntry AS e WHERE e.isApplied = 'F' ORDER BY e.entryId";
+		final String markHql = "UPDATE EtaEntry SET isApplied = 'T' WHERE isApplied = 'F' AND entryId IN (:entryIds)";
+		final String sumHql = "SELECT e.koalibeeId, SUM(e.delta) FROM EtaEntry AS e "
+				+ "WHERE e.entryId IN (:entryIds) GROUP BY e.koalibeeId";
+		final String applySql = "UPDATE KOALIBEE SET ETA_BALANCE = ETA_BALANCE + ? WHERE KOALIBEE_ID = ?";
+		final Map<Integer, Integer> deltaMap = new HashMap<>();
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			List<Integer> entryIdList = session.createQuery(selectHql, Integer.class).setMaxResults(batchSize)
+					.getResultList();
+			if (!entryIdList.isEmpty()) {
+				// Entries claimed by another applier in the meantime are left to it.
+				if (session.createQuery(markHql).setParameterList("entryIds", entryIdList)
+						.executeUpdate() != entryIdList.size()) {
+					tx.rollback();
+					return 0;
+				}
+				for (Object[] row : session.createQuery(sumHql, Object[].class)
+						.setParameterList("entryIds", entryIdList).getResultList()) {
+					deltaMap.put((Integer) row[0], ((Number) row[1]).intValue());
+				}
+				// Every koalibee row of the batch is updated once, whatever the number of
+				// entries. The statements go through JDBC, since a bulk HQL update would
+				// empty the whole Koalibee cache region.
+				session.doWork(connection -> {
+					try (PreparedStatement ps = connection.prepareStatement(applySql)) {
+						for (Map.Entry<Integer, Integer> delta : deltaMap.entrySet()) {
+							ps.setInt(1, delta.getValue());
+							ps.setInt(2, delta.getKey());
+							ps.addBatch();
+						}
+						ps.executeBatch();
+					}
+				});
+			}
+			tx.commit();
+			// Drop the cached entries of the changed koalibees only.
+			for (Integer koalibeeId : deltaMap.keySet()) {
+				sessionFactory.getCache().evictEntityData(Koalibee.class, koalibeeId);
+			}
+			count = entryIdList.size();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in applyPending, stack trace:", e);
+			count = -1;
+		}
+
+		return count;
+
+	}
+
+	// Appends an entry to the ledger in the transaction of the session. A pending
+	// entry is applied to the balance later, an applied one only records a change
+	// that has been made already.
+	static int appendEntry(Session session, int koalibeeId, int delta, String reason, boolean applied) {
+
+		EtaEntry entry = new EtaEntry(koalibeeId, delta, reason);
+		entry.setEntryTime(LocalDateTime.now());
+		entry.setIsApplied(applied ? "T" : "F");
+
+		return (int) session.save(entry);
+
+	}
+
+	// Takes an amount from a balance in the transaction of the session if the
+	// balance and the pending entries together cover it. The check and the
+	// deduction are one statement, so concurrent charges cannot overdraw it. It
+	// runs through JDBC so that only the charged koalibee has to be evicted from
+	// the cache, which the caller does after the commit.
+	static boolean debitBalance(Session session, int koalibeeId, int amount, String reason) {
+
+		final String sql = "UPDATE KOALIBEE SET ETA_BALANCE = ETA_BALANCE - ? WHERE KOALIBEE_ID = ? "
+				+ "AND ETA_BALANCE + (SELECT COALESCE(SUM(DELTA), 0) FROM ETA_LEDGER "
+				+ "WHERE KOALIBEE_ID = ? AND IS_APPLIED = 'F') >= ?";
+
+		// Entries saved earlier in the transaction count towards the check.
+		session.flush();
+		final int count = session.doReturningWork(connection -> {
+			try (PreparedStatement ps = connection.prepareStatement(sql)) {
+				ps.setInt(1, amount);
+				ps.setInt(2, koalibeeId);
+				ps.setInt(3, koalibeeId);
+				ps.setInt(4, amount);
+				return ps.executeUpdate();
+			}
+		});
+
+		if (count == 0) {
+			return false;
+		}
+
+		appendEntry(session, koalibeeId, -amount, reason, true);
+
+		return true;
+
+	}
+
+}
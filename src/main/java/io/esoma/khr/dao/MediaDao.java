@@ -0,0 +1,25 @@
+package io.esoma.khr.dao;
+
+/**
+ * 
+ * The interface used for moving media from the BLOB columns into the media
+ * store.
+ * 
+ * @author Eddy Soma
+ *
+ */
+public interface MediaDao {
+
+	/**
+	 * 
+	 * Moves the audio, artwork and avatars still kept in BLOB columns into the
+	 * media store. Each table is moved in a transaction of its own, and every
+	 * moved row keeps only the hash of its file.
+	 * 
+	 * @param batchSize the largest number of rows moved from each table.
+	 * @return the number of rows moved, or -1 if the operation fails. The tables
+	 *         moved before a failure stay committed.
+	 */
+	int migrateMedia(int batchSize);
+
+}
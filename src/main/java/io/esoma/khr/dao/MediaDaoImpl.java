@@ -0,0 +1,140 @@
+package io.esoma.khr.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.storage.MediaStore;
+import io.esoma.khr.utility.LogUtility;
+
+/**
+ * 
+ * The basic implementation of MediaDao interface using Hibernate 5.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Repository(value = "mediaDaoImplBasic")
+public class MediaDaoImpl implements MediaDao {
+
+	private SessionFactory sessionFactory;
+	private MediaStore mediaStore;
+
+	public SessionFactory getSessionFactory() {
+		return sessionFactory;
+	}
+
+	// Wires a Oracle Database session factory by default. It can be substituted
+	// with a H2 session factory during integration testing.
+	@Autowired
+	@Qualifier(value = "oracleDBSessionFactory")
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	@Autowired
+	@Qualifier(value = "mediaStore")
+	public void setMediaStore(MediaStore mediaStore) {
+		this.mediaStore = mediaStore;
+	}
+
+	@Override
+	public int migrateMedia(int batchSize) {
+
+		int count = 0;
+
+		try {
+			count += this.migrateTable("TRACK", "TRACK_ID", "AUDIO", "AUDIO_HASH", batchSize, null);
+			count += this.migrateTable("ALBUM", "ALBUM_ID", "ARTWORK", "ARTWORK_HASH", batchSize, Album.class);
+			count += this.migrateTable("KOALIBEE", "KOALIBEE_ID", "AVATAR", "AVATAR_HASH", batchSize, Koalibee.class);
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in migrateMedia, stack trace:", e);
+			count = -1;
+		}
+
+		return count;
+
+	}
+
+	// Moves a batch of one table in a transaction of its own, so the rows of a
+	// table are not kept locked while the next one is copied.
+	private int migrateTable(String table, String idColumn, String blobColumn, String hashColumn, int limit,
+			Class<?> cachedClass) {
+
+		try (Session session = sessionFactory.openSession()) {
+			final Transaction tx = session.beginTransaction();
+			final int count = this.migrateColumn(session, table, idColumn, blobColumn, hashColumn, limit);
+			tx.commit();
+			// Drop the cached entries so that no stale state is served.
+			if (count > 0 && cachedClass != null) {
+				sessionFactory.getCache().evictEntityData(cachedClass);
+			}
+			return count;
+		}
+
+	}
+
+	// Moves the BLOBs of up to a number of rows of one table into the media store
+	// in the transaction of the session. The batch is picked by a subquery that
+	// stops at the limit, and only those rows are locked while they are copied,
+	// so a concurrent upload cannot be overwritten by an older file.
+	private int migrateColumn(Session session, String table, String idColumn, String blobColumn,
+			String hashColumn, int limit) {
+
+		final String pending = blobColumn + " IS NOT NULL AND " + hashColumn + " IS NULL";
+		final String selectSql = "SELECT " + idColumn + ", " + blobColumn + " FROM " + table + " WHERE " + idColumn
+				+ " IN (SELECT " + idColumn + " FROM " + table + " WHERE " + pending + " ORDER BY " + idColumn
+				+ " FETCH FIRST ? ROWS ONLY) AND " + pending + " FOR UPDATE";
+		final String updateSql = "UPDATE " + table + " SET " + hashColumn + " = ?, " + blobColumn + " = NULL WHERE "
+				+ idColumn + " = ?";
+
+		return session.doReturningWork(connection -> {
+			// Files are stored first and the rows updated afterwards, so the result set
+			// is not read while it is being changed.
+			final Map<Integer, String> hashMap = new LinkedHashMap<>();
+			try (PreparedStatement ps = connection.prepareStatement(selectSql)) {
+				ps.setInt(1, limit);
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						Blob blob = rs.getBlob(2);
+						try (InputStream in = blob.getBinaryStream()) {
+							hashMap.put(rs.getInt(1), mediaStore.put(in, blob.length()));
+						} catch (IOException e) {
+							throw new SQLException("unable to store " + blobColumn + " of " + table, e);
+						} finally {
+							blob.free();
+						}
+					}
+				}
+			}
+			try (PreparedStatement ps = connection.prepareStatement(updateSql)) {
+				for (Map.Entry<Integer, String> entry : hashMap.entrySet()) {
+					ps.setString(1, entry.getValue());
+					ps.setInt(2, entry.getKey());
+					ps.addBatch();
+				}
+				if (!hashMap.isEmpty()) {
+					ps.executeBatch();
+				}
+			}
+			return hashMap.size();
+		});
+
+	}
+
+}
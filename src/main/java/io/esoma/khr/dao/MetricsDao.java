@@ -0,0 +1,32 @@
+package io.esoma.khr.dao;
+
+import java.util.Map;
+
+/**
+ * 
+ * The interface used for reading runtime statistics of the persistence layer.
+ * 
+ * @author Eddy Soma
+ *
+ */
+public interface MetricsDao {
+
+	/**
+	 * 
+	 * Gets the hit and miss statistics of every second-level cache region.
+	 * 
+	 * @return a map from region names to their counters, which is empty if the
+	 *         cache is not enabled.
+	 */
+	Map<String, Map<String, Long>> getCacheStatistics();
+
+	/**
+	 * 
+	 * Gets the usage and wait statistics of the database connection pool.
+	 * 
+	 * @return a map from statistic names to their values, which is empty if the
+	 *         data source is not pooled.
+	 */
+	Map<String, Long> getPoolStatistics();
+
+}
@@ -0,0 +1,92 @@
+package io.esoma.khr.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import io.esoma.khr.configuration.InstrumentedDataSource;
+import io.esoma.khr.utility.LogUtility;
+
+/**
+ * 
+ * The basic implementation of MetricsDao interface using Hibernate 5.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Repository(value = "metricsDaoImplBasic")
+public class MetricsDaoImpl implements MetricsDao {
+
+	private SessionFactory sessionFactory;
+
+	public SessionFactory getSessionFactory() {
+		return sessionFactory;
+	}
+
+	// Wires a Oracle Database session factory by default. It can be substituted
+	// with a H2 session factory during integration testing.
+	@Autowired
+	@Qualifier(value = "oracleDBSessionFactory")
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	@Override
+	public Map<String, Map<String, Long>> getCacheStatistics() {
+
+		Map<String, Map<String, Long>> cacheStatistics = new TreeMap<>();
+
+		try {
+			Statistics statistics = sessionFactory.getStatistics();
+			for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+				CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(regionName);
+				Map<String, Long> counters = new LinkedHashMap<>();
+				counters.put("hitCount", regionStatistics.getHitCount());
+				counters.put("missCount", regionStatistics.getMissCount());
+				counters.put("putCount", regionStatistics.getPutCount());
+				counters.put("elementCountInMemory", regionStatistics.getElementCountInMemory());
+				cacheStatistics.put(regionName, counters);
+			}
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getCacheStatistics, stack trace:", e);
+			cacheStatistics.clear();
+		}
+
+		return cacheStatistics;
+
+	}
+
+	@Override
+	public Map<String, Long> getPoolStatistics() {
+
+		Map<String, Long> poolStatistics = new LinkedHashMap<>();
+
+		try {
+			DataSource dataSource = sessionFactory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+					.getService(ConnectionProvider.class).unwrap(DataSource.class);
+			if (dataSource instanceof InstrumentedDataSource) {
+				poolStatistics.putAll(((InstrumentedDataSource) dataSource).getPoolStatistics());
+			}
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getPoolStatistics, stack trace:", e);
+			poolStatistics.clear();
+		}
+
+		return poolStatistics;
+
+	}
+
+}
@@ -54,6 +54,18 @@ public interface MomentDao {
 	 */
 	List<Moment> getAllMoments();
 
+	/**
+	 * 
+	 * Gets a page of all moments sorted by date and ID, latest first.
+	 * 
+	 * @param postDate the date of the last moment on the previous page, or null
+	 *                 for the first page.
+	 * @param momentId the ID of the last moment on the previous page.
+	 * @param limit    the largest number of moments to get.
+	 * @return the moment list.
+	 */
+	List<Moment> getMomentPage(LocalDate postDate, int momentId, int limit);
+
 	/**
 	 * 
 	 * Gets a list of all moments that were posted on a specific date.
@@ -7,6 +7,7 @@ import java.util.List;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.query.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
@@ -133,6 +134,38 @@ public class MomentDaoImpl implements MomentDao {
 
 	}
 
+	@Override
+	public List<Moment> getMomentPage(LocalDate postDate, int momentId, int limit) {
+
+		Transaction tx = null;
+		List<Moment> momentList = new ArrayList<>();
+
+		final String hql = "FROM Moment AS m JOIN FETCH m.koalibee "
+				+ (postDate == null ? ""
+						: "WHERE m.postDate <= :postDate AND (m.postDate < :postDate OR m.momentId < :momentId) ")
+				+ "ORDER BY m.postDate DESC, m.momentId DESC";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			Query<Moment> query = session.createQuery(hql, Moment.class).setMaxResults(limit);
+			if (postDate != null) {
+				query.setParameter("postDate", postDate).setParameter("momentId", momentId);
+			}
+			for (Moment m : query.getResultList()) {
+				m.setKoalibeeName(m.getKoalibee().getFirstName() + " " + m.getKoalibee().getLastName());
+				momentList.add(m);
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getMomentPage, stack trace:", e);
+			momentList.clear();
+		}
+
+		return momentList;
+
+	}
+
 	@Override
 	public List<Moment> getAllMomentsByDate(LocalDate postDate) {
 
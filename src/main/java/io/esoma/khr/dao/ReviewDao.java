@@ -35,7 +35,8 @@ public interface ReviewDao {
 
 	/**
 	 * 
-	 * Adds a new review record to the database.
+	 * Adds a new review record to the database. The rating statistics of the
+	 * album are updated in the same transaction.
 	 * 
 	 * @param review the review object.
 	 * @return the new ID if record is persisted, or 0 if the process fails.
@@ -45,7 +46,8 @@ public interface ReviewDao {
 	/**
 	 * 
 	 * Deletes a review record from the database. It can only be accessed by a
-	 * system administrator.
+	 * system administrator. The rating statistics of the album are updated in the
+	 * same transaction.
 	 * 
 	 * @param reviewId the ID of the record to be deleted.
 	 * @return true if record is deleted, or false otherwise.
@@ -61,6 +63,18 @@ public interface ReviewDao {
 	 */
 	List<Review> getAllReviews();
 
+	/**
+	 * 
+	 * Gets a page of all reviews sorted by ID. It should only be used by a system
+	 * administrator to manage reviews.
+	 * 
+	 * @param reviewId the ID of the last review on the previous page, or 0 for the
+	 *                 first page.
+	 * @param limit    the largest number of reviews to get.
+	 * @return the review list.
+	 */
+	List<Review> getReviewPage(int reviewId, int limit);
+
 	/**
 	 * 
 	 * Gets a list of all reviews posted on a specific album.
@@ -79,4 +93,14 @@ public interface ReviewDao {
 	 */
 	List<Review> getAllReviewsByKoalibee(int koalibeeId);
 
+	/**
+	 * 
+	 * Recounts the rating statistics of all albums from the REVIEW table,
+	 * replacing the stored ones in a single transaction. It should only be used by
+	 * a system administrator to repair the statistics.
+	 * 
+	 * @return true if the statistics are rebuilt, or false otherwise.
+	 */
+	boolean rebuildRatings();
+
 }
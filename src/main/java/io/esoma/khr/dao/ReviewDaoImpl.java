@@ -6,10 +6,12 @@ import java.util.List;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.query.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import io.esoma.khr.model.AlbumRating;
 import io.esoma.khr.model.Review;
 import io.esoma.khr.utility.LogUtility;
 
@@ -92,6 +94,7 @@ public class ReviewDaoImpl implements ReviewDao {
 		try (Session session = sessionFactory.openSession()) {
 			tx = session.beginTransaction();
 			id = (int) session.save(review);
+			countRating(session, review.getAlbum().getAlbumId(), review.getRating(), 1);
 			tx.commit();
 		} catch (Exception e) {
 			// Debug message
@@ -112,6 +115,7 @@ public class ReviewDaoImpl implements ReviewDao {
 		try (Session session = sessionFactory.openSession()) {
 			tx = session.beginTransaction();
 			Review review = session.load(Review.class, reviewId);
+			countRating(session, review.getAlbum().getAlbumId(), review.getRating(), -1);
 			session.delete(review);
 			tx.commit();
 			success = true;
@@ -151,6 +155,34 @@ public class ReviewDaoImpl implements ReviewDao {
 
 	}
 
+	@Override
+	public List<Review> getReviewPage(int reviewId, int limit) {
+
+		Transaction tx = null;
+		List<Review> reviewList = new ArrayList<>();
+
+		final String hql = "FROM Review AS r JOIN FETCH r.album JOIN FETCH r.koalibee WHERE r.reviewId > :reviewId "
+				+ "ORDER BY r.reviewId ASC";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			for (Review r : session.createQuery(hql, Review.class).setParameter("reviewId", reviewId)
+					.setMaxResults(limit).getResultList()) {
+				r.setAlbumName(r.getAlbum().getAlbumName());
+				r.setKoalibeeName(r.getKoalibee().getFirstName() + " " + r.getKoalibee().getLastName());
+				reviewList.add(r);
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getReviewPage, stack trace:", e);
+			reviewList.clear();
+		}
+
+		return reviewList;
+
+	}
+
 	@Override
 	public List<Review> getAllReviewsByAlbum(int albumId) {
 
@@ -202,4 +234,72 @@ public class ReviewDaoImpl implements ReviewDao {
 
 	}
 
+	@Override
+	public boolean rebuildRatings() {
+
+		Transaction tx = null;
+		boolean success = false;
+
+		final StringBuilder hql = new StringBuilder("INSERT INTO AlbumRating (albumId, ratingCount, ratingSum");
+		for (int i = AlbumRating.MIN_RATING; i <= AlbumRating.MAX_RATING; i++) {
+			hql.append(", rating").append(i);
+		}
+		// Every review counts towards the count and the sum, but only ratings in range
+		// have a histogram bucket, the same as when a review is deleted.
+		hql.append(") SELECT r.album.albumId, CAST(COUNT(r) AS integer), CAST(SUM(r.rating) AS integer)");
+		for (int i = AlbumRating.MIN_RATING; i <= AlbumRating.MAX_RATING; i++) {
+			hql.append(", CAST(SUM(CASE WHEN r.rating = ").append(i).append(" THEN 1 ELSE 0 END) AS integer)");
+		}
+		hql.append(" FROM Review AS r GROUP BY r.album.albumId");
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			session.createQuery("DELETE FROM AlbumRating").executeUpdate();
+			session.createQuery(hql.toString()).executeUpdate();
+			tx.commit();
+			success = true;
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in rebuildRatings, stack trace:", e);
+			success = false;
+		}
+
+		return success;
+
+	}
+
+	// Adds a rating to the statistics of an album, or takes it away when the change
+	// is -1. It runs in the transaction that adds or deletes the review. Reviews
+	// stored before ratings were checked may be out of range, and their removal
+	// only takes them out of the count and the sum, as rebuildRatings counts them.
+	static void countRating(Session session, int albumId, int rating, int change) {
+
+		final boolean inRange = rating >= AlbumRating.MIN_RATING && rating <= AlbumRating.MAX_RATING;
+		if (!inRange && change > 0) {
+			throw new IllegalArgumentException("rating is out of range: " + rating);
+		}
+
+		final String column = "rating" + rating;
+		final String hql = "UPDATE AlbumRating SET ratingCount = ratingCount + :change, ratingSum = ratingSum + :sum"
+				+ (inRange ? ", " + column + " = " + column + " + :change" : "") + " WHERE albumId = :albumId";
+
+		Query<?> query = session.createQuery(hql).setParameter("change", change).setParameter("sum", change * rating)
+				.setParameter("albumId", albumId);
+
+		if (query.executeUpdate() > 0 || change < 0) {
+			return;
+		}
+
+		// The first review of an album creates its row. The album is locked so that
+		// concurrent first reviews wait for each other instead of both inserting.
+		session.createNativeQuery("SELECT ALBUM_ID FROM ALBUM WHERE ALBUM_ID = :albumId FOR UPDATE")
+				.setParameter("albumId", albumId).getResultList();
+		if (query.executeUpdate() == 0) {
+			session.save(new AlbumRating(albumId));
+			session.flush();
+			query.executeUpdate();
+		}
+
+	}
+
 }
@@ -0,0 +1,57 @@
+package io.esoma.khr.dao;
+
+import java.util.List;
+
+import io.esoma.khr.model.Thumbnail;
+
+/**
+ * 
+ * The interface used for storing and reading the thumbnails of album artworks
+ * and koalibee avatars.
+ * 
+ * @author Eddy Soma
+ *
+ */
+public interface ThumbnailDao {
+
+	/**
+	 * 
+	 * Gets the thumbnail of an album artwork in one size.
+	 * 
+	 * @param albumId the ID of the album.
+	 * @param size    the size of the thumbnail.
+	 * @return the thumbnail, or null if it does not exist or the operation fails.
+	 */
+	Thumbnail getArtworkThumbnail(int albumId, int size);
+
+	/**
+	 * 
+	 * Gets the thumbnail of a koalibee avatar in one size.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param size       the size of the thumbnail.
+	 * @return the thumbnail, or null if it does not exist or the operation fails.
+	 */
+	Thumbnail getAvatarThumbnail(int koalibeeId, int size);
+
+	/**
+	 * 
+	 * Replaces all thumbnails of an album artwork in one transaction.
+	 * 
+	 * @param albumId       the ID of the album.
+	 * @param thumbnailList the new thumbnails, which may be empty.
+	 * @return true if the operation is successful, or false otherwise.
+	 */
+	boolean replaceArtworkThumbnails(int albumId, List<Thumbnail> thumbnailList);
+
+	/**
+	 * 
+	 * Replaces all thumbnails of a koalibee avatar in one transaction.
+	 * 
+	 * @param koalibeeId    the ID of the koalibee.
+	 * @param thumbnailList the new thumbnails, which may be empty.
+	 * @return true if the operation is successful, or false otherwise.
+	 */
+	boolean replaceAvatarThumbnails(int koalibeeId, List<Thumbnail> thumbnailList);
+
+}
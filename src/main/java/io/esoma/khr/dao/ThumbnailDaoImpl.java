@@ -0,0 +1,132 @@
+package io.esoma.khr.dao;
+
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import io.esoma.khr.model.Thumbnail;
+import io.esoma.khr.utility.LogUtility;
+
+/**
+ * 
+ * The basic implementation of ThumbnailDao interface using Hibernate 5.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Repository(value = "thumbnailDaoImplBasic")
+public class ThumbnailDaoImpl implements ThumbnailDao {
+
+	private SessionFactory sessionFactory;
+
+	public SessionFactory getSessionFactory() {
+		return sessionFactory;
+	}
+
+	// Wires a Oracle Database session factory by default. It can be substituted
+	// with a H2 session factory during integration testing.
+	@Autowired
+	@Qualifier(value = "oracleDBSessionFactory")
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	@Override
+	public Thumbnail getArtworkThumbnail(int albumId, int size) {
+
+		return this.getThumbnail("albumId", albumId, size);
+
+	}
+
+	@Override
+	public Thumbnail getAvatarThumbnail(int koalibeeId, int size) {
+
+		return this.getThumbnail("koalibeeId", koalibeeId, size);
+
+	}
+
+	@Override
+	public boolean replaceArtworkThumbnails(int albumId, List<Thumbnail> thumbnailList) {
+
+		for (Thumbnail thumbnail : thumbnailList) {
+			thumbnail.setAlbumId(albumId);
+			thumbnail.setKoalibeeId(null);
+		}
+
+		return this.replaceThumbnails("albumId", albumId, thumbnailList);
+
+	}
+
+	@Override
+	public boolean replaceAvatarThumbnails(int koalibeeId, List<Thumbnail> thumbnailList) {
+
+		for (Thumbnail thumbnail : thumbnailList) {
+			thumbnail.setAlbumId(null);
+			thumbnail.setKoalibeeId(koalibeeId);
+		}
+
+		return this.replaceThumbnails("koalibeeId", koalibeeId, thumbnailList);
+
+	}
+
+	// Reads the thumbnail of one size that belongs to the owner named by the
+	// property, including its image.
+	private Thumbnail getThumbnail(String owner, int ownerId, int size) {
+
+		Transaction tx = null;
+		Thumbnail thumbnail = null;
+
+		final String hql = "FROM Thumbnail AS t WHERE t." + owner + " = :ownerId AND t.imageSize = :size";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			thumbnail = session.createQuery(hql, Thumbnail.class).setParameter("ownerId", ownerId)
+					.setParameter("size", size).setMaxResults(1).uniqueResult();
+			if (thumbnail != null) {
+				// Load the lazy image before the session is closed.
+				thumbnail.getImage();
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getThumbnail, stack trace:", e);
+			thumbnail = null;
+		}
+
+		return thumbnail;
+
+	}
+
+	// Deletes the thumbnails of the owner named by the property and saves the new
+	// ones, so readers see either the old set or the new one.
+	private boolean replaceThumbnails(String owner, int ownerId, List<Thumbnail> thumbnailList) {
+
+		Transaction tx = null;
+		boolean success = false;
+
+		final String hql = "DELETE FROM Thumbnail WHERE " + owner + " = :ownerId";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			session.createQuery(hql).setParameter("ownerId", ownerId).executeUpdate();
+			for (Thumbnail thumbnail : thumbnailList) {
+				session.save(thumbnail);
+			}
+			tx.commit();
+			success = true;
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in replaceThumbnails, stack trace:", e);
+			success = false;
+		}
+
+		return success;
+
+	}
+
+}
@@ -1,6 +1,9 @@
 package io.esoma.khr.dao;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.function.Consumer;
 
 import io.esoma.khr.model.Track;
 
@@ -22,6 +25,47 @@ public interface TrackDao {
 	 */
 	Track getTrackById(int trackId);
 
+	/**
+	 * 
+	 * Gets the playback details of a track without reading its audio data. The
+	 * returned object contains the audio type, the demo flag, the audio size in
+	 * bytes, and an album holding only its ID and publishing status.
+	 * 
+	 * @param trackId the ID of the track.
+	 * @return the track object, or null if the ID is invalid or the track has no
+	 *         audio.
+	 */
+	Track getTrackAudioDetails(int trackId);
+
+	/**
+	 * 
+	 * Copies a range of a track's audio data to an output stream. Only the
+	 * requested bytes are read from the BLOB, in bounded chunks that are written
+	 * out after each read, so no database connection is held while the client
+	 * receives the data.
+	 * 
+	 * @param trackId the ID of the track.
+	 * @param offset  the zero-based position of the first byte to copy.
+	 * @param length  the number of bytes to copy.
+	 * @param out     the stream to write to.
+	 * @return the number of bytes written, or -1 if the process fails.
+	 */
+	long writeTrackAudio(int trackId, long offset, long length, OutputStream out);
+
+	/**
+	 * 
+	 * Replaces the audio of a track in an unpublished album with the content of a
+	 * stream. The stream is copied into the BLOB as it is read.
+	 * 
+	 * @param trackId   the ID of the track.
+	 * @param audioType the file type of the audio.
+	 * @param audio     the stream holding the audio data.
+	 * @param length    the number of bytes in the stream.
+	 * @return true if the audio is stored, or false if the track does not exist,
+	 *         its album is published, or the process fails.
+	 */
+	boolean updateTrackAudio(int trackId, String audioType, InputStream audio, long length);
+
 	/**
 	 * 
 	 * Adds a new track record to the database. Can only be added to an unpublished
@@ -32,6 +76,18 @@ public interface TrackDao {
 	 */
 	int addTrack(Track track);
 
+	/**
+	 * 
+	 * Adds new track records to the database in one transaction. The inserts are
+	 * sent to the database in JDBC batches. Either all tracks are persisted or
+	 * none of them is.
+	 * 
+	 * @param trackList the track objects.
+	 * @return the list of new IDs in the same order, which is empty if the process
+	 *         fails.
+	 */
+	List<Integer> addTracks(List<Track> trackList);
+
 	/**
 	 * 
 	 * Deletes a track record from the database. Can only delete from an unpublished
@@ -51,6 +107,31 @@ public interface TrackDao {
 	 */
 	List<Track> getAllTracks();
 
+	/**
+	 * 
+	 * Gets a page of all tracks sorted by name and ID. It should only be used by a
+	 * system administrator to manage tracks. The tracks are detached summaries
+	 * without audio or album.
+	 * 
+	 * @param trackName the name of the last track on the previous page, or null
+	 *                  for the first page.
+	 * @param trackId   the ID of the last track on the previous page.
+	 * @param limit     the largest number of tracks to get.
+	 * @return the track list.
+	 */
+	List<Track> getTrackPage(String trackName, int trackId, int limit);
+
+	/**
+	 * 
+	 * Passes all tracks sorted by name and ID to an action one at a time, without
+	 * loading the whole list. It should only be used by a system administrator to
+	 * export tracks. The tracks are detached summaries without audio or album.
+	 * 
+	 * @param action the action that takes each track.
+	 * @return the number of tracks, or -1 if the operation fails.
+	 */
+	int streamTracks(Consumer<? super Track> action);
+
 	/**
 	 * 
 	 * Gets a list of all tracks that belong to an album. Audio data urls will not
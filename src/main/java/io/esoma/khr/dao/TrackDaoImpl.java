@@ -1,17 +1,29 @@
 package io.esoma.khr.dao;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.query.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import io.esoma.khr.model.Album;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.storage.MediaStore;
 import io.esoma.khr.utility.DataUtility;
+import io.esoma.khr.utility.DatabaseUtility;
 import io.esoma.khr.utility.LogUtility;
 
 /**
@@ -24,7 +36,11 @@ import io.esoma.khr.utility.LogUtility;
 @Repository(value = "trackDaoImplBasic")
 public class TrackDaoImpl implements TrackDao {
 
+	// Largest number of audio bytes read from a BLOB in one session.
+	static final int STREAM_CHUNK_SIZE = 256 * 1024;
+
 	private SessionFactory sessionFactory;
+	private MediaStore mediaStore;
 
 	public SessionFactory getSessionFactory() {
 		return sessionFactory;
@@ -38,6 +54,12 @@ public class TrackDaoImpl implements TrackDao {
 		this.sessionFactory = sessionFactory;
 	}
 
+	@Autowired
+	@Qualifier(value = "mediaStore")
+	public void setMediaStore(MediaStore mediaStore) {
+		this.mediaStore = mediaStore;
+	}
+
 	@Override
 	public Track getTrackById(int trackId) {
 
@@ -48,9 +70,12 @@ public class TrackDaoImpl implements TrackDao {
 			tx = session.beginTransaction();
 			track = session.get(Track.class, trackId);
 			// Obtain audio data url if album is published.
-			if (track.getAlbum().getIsPublished().equals("T") && track.getAudio() != null
-					&& track.getAudioType() != null) {
-				track.setAudioDataUrl(DataUtility.encodeBytesToDataUrlAudio(track.getAudio(), track.getAudioType()));
+			if (track.getAlbum().getIsPublished().equals("T") && track.getAudioType() != null) {
+				final byte[] audio = track.getAudioHash() != null ? mediaStore.read(track.getAudioHash())
+						: track.getAudio();
+				if (audio != null) {
+					track.setAudioDataUrl(DataUtility.encodeBytesToDataUrlAudio(audio, track.getAudioType()));
+				}
 			}
 			// Initialize album details.
 			track.setAlbum(track.getAlbum());
@@ -65,6 +90,146 @@ public class TrackDaoImpl implements TrackDao {
 
 	}
 
+	@Override
+	public Track getTrackAudioDetails(int trackId) {
+
+		Transaction tx = null;
+		Track track = null;
+
+		final String sql = "SELECT T.AUDIO, T.AUDIO_HASH, T.AUDIO_TYPE, T.IS_DEMO, A.ALBUM_ID, A.IS_PUBLISHED "
+				+ "FROM TRACK T JOIN ALBUM A ON T.ALBUM_ID = A.ALBUM_ID WHERE T.TRACK_ID = ?";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			track = session.doReturningWork(connection -> {
+				try (PreparedStatement ps = connection.prepareStatement(sql)) {
+					ps.setInt(1, trackId);
+					try (ResultSet rs = ps.executeQuery()) {
+						if (!rs.next()) {
+							return null;
+						}
+						// Only the LOB locator is fetched here, not the content.
+						Blob audio = rs.getBlob(1);
+						String audioHash = rs.getString(2);
+						if (audio == null && audioHash == null) {
+							return null;
+						}
+						Track details = new Track(trackId);
+						if (audioHash != null) {
+							try {
+								details.setAudioSize(mediaStore.size(audioHash));
+							} catch (IOException e) {
+								throw new SQLException("unable to find stored audio", e);
+							}
+						} else {
+							details.setAudioSize(audio.length());
+						}
+						details.setAudioHash(audioHash);
+						details.setAudioType(rs.getString(3));
+						details.setIsDemo(rs.getString(4));
+						Album album = new Album(rs.getInt(5));
+						album.setIsPublished(rs.getString(6));
+						details.setAlbum(album);
+						return details;
+					}
+				}
+			});
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getTrackAudioDetails, stack trace:", e);
+			track = null;
+		}
+
+		return track;
+
+	}
+
+	@Override
+	public long writeTrackAudio(int trackId, long offset, long length, OutputStream out) {
+
+		Transaction tx = null;
+		String audioHash = null;
+
+		final String hql = "SELECT t.audioHash FROM Track AS t WHERE t.trackId = :trackId";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			audioHash = session.createQuery(hql, String.class).setParameter("trackId", trackId).uniqueResult();
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in writeTrackAudio, stack trace:", e);
+			return -1;
+		}
+
+		try {
+			// Stored audio is copied after the session is closed.
+			if (audioHash != null) {
+				return mediaStore.transfer(audioHash, offset, length, out);
+			}
+			// Audio in a BLOB is read one chunk at a time, and each chunk is written
+			// out after its session is closed, so a slow client never holds a database
+			// connection.
+			long count = 0;
+			while (count < length) {
+				final byte[] chunk = this.readAudioChunk(trackId, offset + count,
+						(int) Math.min(STREAM_CHUNK_SIZE, length - count));
+				if (chunk == null) {
+					return -1;
+				}
+				if (chunk.length == 0) {
+					break;
+				}
+				out.write(chunk);
+				count += chunk.length;
+			}
+			out.flush();
+			return count;
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in writeTrackAudio, stack trace:", e);
+			return -1;
+		}
+
+	}
+
+	@Override
+	public boolean updateTrackAudio(int trackId, String audioType, InputStream audio, long length) {
+
+		Transaction tx = null;
+		boolean success = false;
+
+		// Audio of a published album never changes.
+		final String blobSql = "UPDATE TRACK SET AUDIO = ?, AUDIO_TYPE = ?, AUDIO_HASH = NULL WHERE TRACK_ID = ? "
+				+ "AND ALBUM_ID IN (SELECT ALBUM_ID FROM ALBUM WHERE IS_PUBLISHED = 'F')";
+		final String hashSql = "UPDATE TRACK SET AUDIO_HASH = ?, AUDIO_TYPE = ?, AUDIO = NULL WHERE TRACK_ID = ? "
+				+ "AND ALBUM_ID IN (SELECT ALBUM_ID FROM ALBUM WHERE IS_PUBLISHED = 'F')";
+
+		try (Session session = sessionFactory.openSession()) {
+			// The upload is stored before the transaction begins, so no connection is
+			// held while it is read.
+			final String audioHash = mediaStore.isEnabled() ? mediaStore.put(audio, length) : null;
+			tx = session.beginTransaction();
+			final int count = audioHash != null
+					? DatabaseUtility.updateMediaHash(session, hashSql, audioHash, audioType, trackId)
+					: DatabaseUtility.updateBlob(session, blobSql, audio, length, audioType, trackId);
+			if (count != 1) {
+				tx.rollback();
+				return false;
+			}
+			tx.commit();
+			success = true;
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in updateTrackAudio, stack trace:", e);
+			success = false;
+		}
+
+		return success;
+
+	}
+
 	@Override
 	public int addTrack(Track track) {
 
@@ -72,6 +237,7 @@ public class TrackDaoImpl implements TrackDao {
 		int id = 0;
 
 		try (Session session = sessionFactory.openSession()) {
+			this.storeAudio(track);
 			tx = session.beginTransaction();
 			id = (int) session.save(track);
 			tx.commit();
@@ -85,6 +251,38 @@ public class TrackDaoImpl implements TrackDao {
 
 	}
 
+	@Override
+	public List<Integer> addTracks(List<Track> trackList) {
+
+		Transaction tx = null;
+		List<Integer> idList = new ArrayList<>();
+
+		// Flush once per JDBC batch to keep the persistence context small.
+		final int batchSize = DatabaseUtility.getJdbcBatchSize();
+
+		try (Session session = sessionFactory.openSession()) {
+			for (Track track : trackList) {
+				this.storeAudio(track);
+			}
+			tx = session.beginTransaction();
+			for (int i = 0; i < trackList.size(); i++) {
+				idList.add((int) session.save(trackList.get(i)));
+				if ((i + 1) % batchSize == 0) {
+					session.flush();
+					session.clear();
+				}
+			}
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in addTracks, stack trace:", e);
+			idList.clear();
+		}
+
+		return idList;
+
+	}
+
 	@Override
 	public boolean deleteTrack(int trackId) {
 
@@ -129,6 +327,58 @@ public class TrackDaoImpl implements TrackDao {
 
 	}
 
+	@Override
+	public List<Track> getTrackPage(String trackName, int trackId, int limit) {
+
+		Transaction tx = null;
+		List<Track> trackList = new ArrayList<>();
+
+		final String hql = "SELECT new Track(t.trackId, t.trackName, t.composer, t.trackLength, t.isDemo) "
+				+ "FROM Track AS t " + (trackName == null ? ""
+						: "WHERE t.trackName >= :trackName AND (t.trackName > :trackName OR t.trackId > :trackId) ")
+				+ "ORDER BY t.trackName ASC, t.trackId ASC";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			Query<Track> query = session.createQuery(hql, Track.class).setMaxResults(limit);
+			if (trackName != null) {
+				query.setParameter("trackName", trackName).setParameter("trackId", trackId);
+			}
+			query.getResultList().forEach(t -> trackList.add(t));
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in getTrackPage, stack trace:", e);
+			trackList.clear();
+		}
+
+		return trackList;
+
+	}
+
+	@Override
+	public int streamTracks(Consumer<? super Track> action) {
+
+		Transaction tx = null;
+		int count = 0;
+
+		final String hql = "SELECT new Track(t.trackId, t.trackName, t.composer, t.trackLength, t.isDemo) "
+				+ "FROM Track AS t ORDER BY t.trackName ASC, t.trackId ASC";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			count = DatabaseUtility.scroll(session, session.createQuery(hql, Track.class), action);
+			tx.commit();
+		} catch (Exception e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in streamTracks, stack trace:", e);
+			count = -1;
+		}
+
+		return count;
+
+	}
+
 	@Override
 	public List<Track> getAllTracksByAlbum(int albumId) {
 
@@ -152,4 +402,52 @@ public class TrackDaoImpl implements TrackDao {
 
 	}
 
+	// Moves the audio of a new track into the media store if it is enabled, so
+	// only the hash is written to the database.
+	private void storeAudio(Track track) throws IOException {
+
+		if (mediaStore.isEnabled() && track.getAudio() != null) {
+			track.setAudioHash(mediaStore.put(track.getAudio()));
+			track.setAudio(null);
+		}
+
+	}
+
+	// Reads up to the given number of bytes of a track's BLOB audio in a session
+	// of its own. Returns null if the track has no audio in a BLOB, or an empty
+	// array past the end of the audio.
+	private byte[] readAudioChunk(int trackId, long offset, int size) {
+
+		Transaction tx = null;
+		byte[] chunk = null;
+
+		final String sql = "SELECT AUDIO FROM TRACK WHERE TRACK_ID = ?";
+
+		try (Session session = sessionFactory.openSession()) {
+			tx = session.beginTransaction();
+			chunk = session.doReturningWork(connection -> {
+				try (PreparedStatement ps = connection.prepareStatement(sql)) {
+					ps.setInt(1, trackId);
+					try (ResultSet rs = ps.executeQuery()) {
+						if (!rs.next() || rs.getBlob(1) == null) {
+							return null;
+						}
+						Blob audio = rs.getBlob(1);
+						try {
+							final long available = Math.min(size, audio.length() - offset);
+							// BLOB positions start at 1.
+							return available > 0 ? audio.getBytes(offset + 1, (int) available) : new byte[0];
+						} finally {
+							audio.free();
+						}
+					}
+				}
+			});
+			tx.commit();
+		}
+
+		return chunk;
+
+	}
+
 }
@@ -0,0 +1,386 @@
+package io.esoma.khr.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.SearchHit;
+import io.esoma.khr.model.Track;
+
+/**
+ * 
+ * The in-memory inverted index of the published catalog. Album names, artists
+ * and genres, and track names and composers, are split into lowercase terms
+ * without accents, and every term is mapped to the albums and tracks that
+ * contain it. A search only reads the postings of its terms, so no query
+ * reaches the database. Postings are never modified once published; writers
+ * replace them under a lock, and readers never wait.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Component(value = "catalogIndex")
+public class CatalogIndex {
+
+	/**
+	 * The weights of the fields a term is found in. A document scores the sum of
+	 * the weights of every query term.
+	 */
+	static final int NAME_WEIGHT = 4;
+	static final int ARTIST_WEIGHT = 2;
+	static final int GENRE_WEIGHT = 1;
+
+	/**
+	 * The order of the results, highest score first. Ties list albums before
+	 * tracks and then go by ID, so the order is stable across pages.
+	 */
+	public static final Comparator<SearchHit> RANK_ORDER = Comparator.comparingInt(SearchHit::getScore).reversed()
+			.thenComparing(SearchHit::getType).thenComparingInt(SearchHit::getId);
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+	/**
+	 * An indexed album or track with the weight of each of its terms.
+	 */
+	private static final class Document {
+
+		private final SearchHit hit;
+		private final Map<String, Integer> terms;
+
+		private Document(SearchHit hit, Map<String, Integer> terms) {
+			this.hit = hit;
+			this.terms = terms;
+		}
+
+	}
+
+	/**
+	 * The documents by key and the postings by term. A complete reload swaps the
+	 * whole state at once.
+	 */
+	private static final class State {
+
+		private final Map<String, Document> documents = new ConcurrentHashMap<>();
+		private final Map<String, Map<String, Integer>> postings = new ConcurrentHashMap<>();
+		private final Map<Integer, Set<Integer>> albumTracks = new HashMap<>();
+
+	}
+
+	private final Object lock = new Object();
+	private volatile State state = new State();
+
+	/**
+	 * 
+	 * Folds a text to lowercase with its accents removed, and joins its runs of
+	 * letters and digits with single spaces.
+	 * 
+	 * @param text the text to be folded, which may be null.
+	 * @return the folded text, which is empty if the text has no terms.
+	 */
+	public static String normalize(String text) {
+
+		if (text == null) {
+			return "";
+		}
+
+		final String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+				.toLowerCase(Locale.ROOT);
+		final StringJoiner joiner = new StringJoiner(" ");
+		for (String term : SEPARATORS.split(folded)) {
+			if (!term.isEmpty()) {
+				joiner.add(term);
+			}
+		}
+
+		return joiner.toString();
+
+	}
+
+	/**
+	 * 
+	 * Splits a text into search terms. Terms are runs of letters and digits,
+	 * folded to lowercase with their accents removed.
+	 * 
+	 * @param text the text to be split, which may be null.
+	 * @return the distinct terms in order of appearance.
+	 */
+	public static Set<String> tokenize(String text) {
+
+		final Set<String> terms = new LinkedHashSet<>();
+
+		final String normalized = normalize(text);
+		if (!normalized.isEmpty()) {
+			terms.addAll(Arrays.asList(normalized.split(" ")));
+		}
+
+		return terms;
+
+	}
+
+	/**
+	 * 
+	 * Replaces the content of the index with the whole published catalog. It is
+	 * meant to run at startup, since changes recorded while the catalog is being
+	 * read are lost.
+	 * 
+	 * @param albums all published albums.
+	 * @param tracks the tracks of the published albums. Tracks of other albums
+	 *               are left out.
+	 */
+	public void load(Collection<Album> albums, Collection<Track> tracks) {
+
+		final State newState = new State();
+		final Map<Integer, Album> albumMap = new HashMap<>();
+
+		for (Album album : albums) {
+			albumMap.put(album.getAlbumId(), album);
+			append(newState, albumDocument(album));
+			newState.albumTracks.put(album.getAlbumId(), new LinkedHashSet<>());
+		}
+		for (Track track : tracks) {
+			final Album album = track.getAlbum() == null ? null : albumMap.get(track.getAlbum().getAlbumId());
+			if (album != null) {
+				append(newState, trackDocument(track, album));
+				newState.albumTracks.get(album.getAlbumId()).add(track.getTrackId());
+			}
+		}
+
+		synchronized (this.lock) {
+			this.state = newState;
+		}
+
+	}
+
+	/**
+	 * 
+	 * Adds a newly published album and its tracks to the index, replacing any
+	 * previous entry of the album.
+	 * 
+	 * @param album  the album, including its genre.
+	 * @param tracks all tracks of the album.
+	 */
+	public void addAlbum(Album album, Collection<Track> tracks) {
+
+		synchronized (this.lock) {
+			final State current = this.state;
+			removeAlbum(current, album.getAlbumId());
+			put(current, albumDocument(album));
+			final Set<Integer> trackIds = new LinkedHashSet<>();
+			for (Track track : tracks) {
+				put(current, trackDocument(track, album));
+				trackIds.add(track.getTrackId());
+			}
+			current.albumTracks.put(album.getAlbumId(), trackIds);
+		}
+
+	}
+
+	/**
+	 * 
+	 * Removes an album and its tracks from the index.
+	 * 
+	 * @param albumId the ID of the album.
+	 */
+	public void removeAlbum(int albumId) {
+
+		synchronized (this.lock) {
+			removeAlbum(this.state, albumId);
+		}
+
+	}
+
+	/**
+	 * 
+	 * Removes a track from the index.
+	 * 
+	 * @param trackId the ID of the track.
+	 */
+	public void removeTrack(int trackId) {
+
+		synchronized (this.lock) {
+			final State current = this.state;
+			final Document document = current.documents.get(SearchHit.TRACK + trackId);
+			if (document != null) {
+				remove(current, SearchHit.TRACK + trackId);
+				final Set<Integer> trackIds = current.albumTracks.get(document.hit.getAlbumId());
+				if (trackIds != null) {
+					trackIds.remove(trackId);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * 
+	 * Finds the albums and tracks that contain every term of a query.
+	 * 
+	 * @param query the text typed by a client.
+	 * @return the results in rank order, which is empty if the query has no
+	 *         terms or nothing matches.
+	 */
+	public List<SearchHit> search(String query) {
+
+		final State current = this.state;
+		final List<Map<String, Integer>> postingList = new ArrayList<>();
+
+		for (String term : tokenize(query)) {
+			final Map<String, Integer> postings = current.postings.get(term);
+			if (postings == null) {
+				return new ArrayList<>();
+			}
+			postingList.add(postings);
+		}
+
+		if (postingList.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		// Walk the rarest term and look the documents up in the other postings.
+		postingList.sort(Comparator.comparingInt(Map::size));
+		final List<SearchHit> hits = new ArrayList<>();
+		for (Map.Entry<String, Integer> entry : postingList.get(0).entrySet()) {
+			int score = entry.getValue();
+			for (int i = 1; i < postingList.size() && score > 0; i++) {
+				final Integer weight = postingList.get(i).get(entry.getKey());
+				score = weight == null ? 0 : score + weight;
+			}
+			final Document document = current.documents.get(entry.getKey());
+			if (score > 0 && document != null) {
+				hits.add(new SearchHit(document.hit, score));
+			}
+		}
+
+		hits.sort(RANK_ORDER);
+
+		return hits;
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of albums and tracks currently indexed.
+	 * 
+	 * @return the number of documents.
+	 */
+	public int size() {
+
+		return this.state.documents.size();
+
+	}
+
+	private static Document albumDocument(Album album) {
+
+		final String genreName = album.getGenre() == null ? null : album.getGenre().getGenreName();
+		final Map<String, Integer> terms = new HashMap<>();
+		addTerms(terms, album.getAlbumName(), NAME_WEIGHT);
+		addTerms(terms, album.getArtist(), ARTIST_WEIGHT);
+		addTerms(terms, genreName, GENRE_WEIGHT);
+
+		return new Document(new SearchHit(SearchHit.ALBUM, album.getAlbumId(), album.getAlbumName(),
+				album.getArtist(), genreName, album.getAlbumId()), terms);
+
+	}
+
+	private static Document trackDocument(Track track, Album album) {
+
+		final String genreName = album.getGenre() == null ? null : album.getGenre().getGenreName();
+		final Map<String, Integer> terms = new HashMap<>();
+		addTerms(terms, track.getTrackName(), NAME_WEIGHT);
+		addTerms(terms, track.getComposer(), ARTIST_WEIGHT);
+
+		return new Document(new SearchHit(SearchHit.TRACK, track.getTrackId(), track.getTrackName(),
+				track.getComposer(), genreName, album.getAlbumId()), terms);
+
+	}
+
+	// Adds the weight of a field to each of its terms.
+	private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+
+		for (String term : tokenize(text)) {
+			terms.merge(term, weight, Integer::sum);
+		}
+
+	}
+
+	// Adds a document of a state that is not published yet. Nobody reads the
+	// postings, so they are changed in place instead of copied.
+	private static void append(State state, Document document) {
+
+		final String key = document.hit.getType() + document.hit.getId();
+		state.documents.put(key, document);
+
+		for (Map.Entry<String, Integer> term : document.terms.entrySet()) {
+			state.postings.computeIfAbsent(term.getKey(), t -> new HashMap<>()).put(key, term.getValue());
+		}
+
+	}
+
+	// Adds a document to every posting of its terms. The postings are copied, so
+	// a reader never sees one being changed.
+	private static void put(State state, Document document) {
+
+		final String key = document.hit.getType() + document.hit.getId();
+		remove(state, key);
+		state.documents.put(key, document);
+
+		for (Map.Entry<String, Integer> term : document.terms.entrySet()) {
+			final Map<String, Integer> postings = new HashMap<>(
+					state.postings.getOrDefault(term.getKey(), Collections.emptyMap()));
+			postings.put(key, term.getValue());
+			state.postings.put(term.getKey(), postings);
+		}
+
+	}
+
+	// Removes a document from every posting of its terms.
+	private static void remove(State state, String key) {
+
+		final Document document = state.documents.remove(key);
+		if (document == null) {
+			return;
+		}
+
+		for (String term : document.terms.keySet()) {
+			final Map<String, Integer> postings = new HashMap<>(
+					state.postings.getOrDefault(term, Collections.emptyMap()));
+			postings.remove(key);
+			if (postings.isEmpty()) {
+				state.postings.remove(term);
+			} else {
+				state.postings.put(term, postings);
+			}
+		}
+
+	}
+
+	private static void removeAlbum(State state, int albumId) {
+
+		remove(state, SearchHit.ALBUM + albumId);
+
+		final Set<Integer> trackIds = state.albumTracks.remove(albumId);
+		if (trackIds != null) {
+			for (Integer trackId : trackIds) {
+				remove(state, SearchHit.TRACK + trackId);
+			}
+		}
+
+	}
+
+}
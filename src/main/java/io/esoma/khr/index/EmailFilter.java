@@ -0,0 +1,174 @@
+package io.esoma.khr.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 
+ * The in-memory Bloom filter of all registered emails. It answers whether an
+ * email might be registered without touching the database. A negative answer
+ * is always correct, while a positive answer has to be confirmed with an
+ * indexed lookup. The filter stays disabled, and reports every email as a
+ * possible match, until it has been built from the existing records.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Component(value = "emailFilter")
+public class EmailFilter {
+
+	/**
+	 * The minimum number of emails the filter is sized for.
+	 */
+	static final int DEFAULT_CAPACITY = 100000;
+
+	/**
+	 * The target false positive probability at full capacity.
+	 */
+	static final double FALSE_POSITIVE_RATE = 0.01;
+
+	/**
+	 * The bit array and its parameters are swapped together on rebuild.
+	 */
+	private static final class Bits {
+
+		private final AtomicLongArray words;
+		private final long size;
+		private final int hashCount;
+
+		private Bits(int capacity) {
+			long bitSize = (long) Math.ceil(-capacity * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+			this.words = new AtomicLongArray((int) ((bitSize + 63) / 64));
+			this.size = this.words.length() * 64L;
+			this.hashCount = Math.max(1, (int) Math.round((double) this.size / capacity * Math.log(2)));
+		}
+
+	}
+
+	private volatile Bits bits = new Bits(DEFAULT_CAPACITY);
+	private volatile boolean ready = false;
+
+	/**
+	 * 
+	 * Checks if the filter has been built and is able to rule out emails.
+	 * 
+	 * @return true if the filter is in use, or false otherwise.
+	 */
+	public boolean isReady() {
+		return this.ready;
+	}
+
+	/**
+	 * 
+	 * Replaces the content of the filter with a complete list of registered
+	 * emails. The filter is sized to leave room for the user base to double. It
+	 * stays disabled if the list is empty, because an empty list cannot be told
+	 * apart from a failed read.
+	 * 
+	 * @param emails all emails currently registered.
+	 */
+	public void rebuild(Collection<String> emails) {
+
+		if (emails == null || emails.isEmpty()) {
+			this.ready = false;
+			return;
+		}
+
+		Bits newBits = new Bits((int) Math.min(Integer.MAX_VALUE, Math.max(DEFAULT_CAPACITY, 2L * emails.size())));
+		for (String email : emails) {
+			set(newBits, email);
+		}
+
+		this.bits = newBits;
+		this.ready = true;
+
+	}
+
+	/**
+	 * 
+	 * Records a newly registered email.
+	 * 
+	 * @param email the email to be added.
+	 */
+	public void put(String email) {
+
+		if (email != null) {
+			set(this.bits, email);
+		}
+
+	}
+
+	/**
+	 * 
+	 * Checks if an email might have been registered.
+	 * 
+	 * @param email the email to be checked.
+	 * @return false if the email is definitely not registered, or true if it
+	 *         might be or if the filter is not ready.
+	 */
+	public boolean mightContain(String email) {
+
+		if (!this.ready || email == null) {
+			return true;
+		}
+
+		final Bits current = this.bits;
+		final long hash = hash(email);
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32) | 1;
+
+		for (int i = 1; i <= current.hashCount; ++i) {
+			long index = Math.floorMod(h1 + (long) i * h2, current.size);
+			if ((current.words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+
+		return true;
+
+	}
+
+	private static void set(Bits target, String email) {
+
+		final long hash = hash(email);
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32) | 1;
+
+		for (int i = 1; i <= target.hashCount; ++i) {
+			long index = Math.floorMod(h1 + (long) i * h2, target.size);
+			int word = (int) (index >>> 6);
+			long mask = 1L << index;
+			long current;
+			do {
+				current = target.words.get(word);
+			} while ((current & mask) == 0 && !target.words.compareAndSet(word, current, current | mask));
+		}
+
+	}
+
+	/**
+	 * Computes a 64-bit FNV-1a hash of the email followed by a finalizing mix, so
+	 * that both halves can be used as independent hash values.
+	 */
+	private static long hash(String email) {
+
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : email.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= (b & 0xff);
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+
+		return hash;
+
+	}
+
+}
@@ -0,0 +1,183 @@
+package io.esoma.khr.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 
+ * The in-memory index of the albums purchased by each koalibee. Every koalibee
+ * is mapped to a sorted array of album IDs, so an ownership check is a binary
+ * search that takes no lock. Arrays are loaded on demand and arbitrary
+ * koalibees are dropped once the index holds too many of them.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Component(value = "ownershipIndex")
+public class OwnershipIndex {
+
+	/**
+	 * The maximum number of koalibees kept in memory.
+	 */
+	static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * The number of purchase counters. It is a power of two.
+	 */
+	static final int STAMP_STRIPES = 4096;
+
+	private final int capacity;
+
+	private final Map<Integer, int[]> ownership = new ConcurrentHashMap<>();
+
+	/**
+	 * Counts the recorded purchases of the koalibees sharing a stripe. A load that
+	 * raced with a purchase of the same koalibee would miss it, so such a load is
+	 * not kept, while purchases of other koalibees mostly leave it alone.
+	 */
+	private final AtomicLongArray purchaseCounts = new AtomicLongArray(STAMP_STRIPES);
+
+	public OwnershipIndex() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public OwnershipIndex(final int capacity) {
+		super();
+		this.capacity = capacity;
+	}
+
+	/**
+	 * 
+	 * Checks if a koalibee owns an album according to the index.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param albumId    the ID of the album.
+	 * @return true or false if the koalibee is indexed, or null if its purchases
+	 *         have to be loaded first.
+	 */
+	public Boolean owns(int koalibeeId, int albumId) {
+
+		final int[] albums = this.ownership.get(koalibeeId);
+
+		if (albums == null) {
+			return null;
+		}
+
+		return Arrays.binarySearch(albums, albumId) >= 0;
+
+	}
+
+	/**
+	 * 
+	 * Gets a stamp that has to be taken before the purchases of a koalibee are
+	 * read from the database.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @return the current stamp.
+	 */
+	public long getStamp(int koalibeeId) {
+
+		return this.purchaseCounts.get(koalibeeId & (STAMP_STRIPES - 1));
+
+	}
+
+	/**
+	 * 
+	 * Indexes all albums purchased by a koalibee, replacing any previous entry.
+	 * The albums are not indexed if a purchase of the koalibee may have been
+	 * recorded since the stamp was taken.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param albumIds   the IDs of all purchased albums.
+	 * @param stamp      the stamp taken before the albums were read.
+	 */
+	public void load(int koalibeeId, Collection<Integer> albumIds, long stamp) {
+
+		final int[] albums = albumIds.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+
+		// Purchases of the koalibee update its entry under the same key, so the stamp
+		// cannot change while it is compared here.
+		this.ownership.compute(koalibeeId, (k, oldAlbums) -> stamp == this.getStamp(k) ? albums : oldAlbums);
+
+		if (this.ownership.size() > this.capacity) {
+			final Iterator<Integer> iterator = this.ownership.keySet().iterator();
+			while (this.ownership.size() > this.capacity && iterator.hasNext()) {
+				if (iterator.next() != koalibeeId) {
+					iterator.remove();
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * 
+	 * Records a new purchase. The index is left alone if the koalibee is not
+	 * indexed, because its purchases will be loaded in full on the next check.
+	 * 
+	 * @param koalibeeId the ID of the buyer.
+	 * @param albumId    the ID of the purchased album.
+	 */
+	public void addPurchase(int koalibeeId, int albumId) {
+
+		this.ownership.compute(koalibeeId, (k, albums) -> {
+			this.purchaseCounts.incrementAndGet(k & (STAMP_STRIPES - 1));
+			if (albums == null) {
+				return null;
+			}
+			final int index = Arrays.binarySearch(albums, albumId);
+			if (index >= 0) {
+				return albums;
+			}
+			// Arrays are never modified once published.
+			final int insert = -index - 1;
+			final int[] newAlbums = new int[albums.length + 1];
+			System.arraycopy(albums, 0, newAlbums, 0, insert);
+			newAlbums[insert] = albumId;
+			System.arraycopy(albums, insert, newAlbums, insert + 1, albums.length - insert);
+			return newAlbums;
+		});
+
+	}
+
+	/**
+	 * 
+	 * Removes a koalibee from the index.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 */
+	public void evict(int koalibeeId) {
+
+		this.ownership.remove(koalibeeId);
+
+	}
+
+	/**
+	 * 
+	 * Removes every koalibee from the index.
+	 */
+	public void clear() {
+
+		this.ownership.clear();
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of koalibees currently indexed.
+	 * 
+	 * @return the number of koalibees.
+	 */
+	public int size() {
+
+		return this.ownership.size();
+
+	}
+
+}
@@ -0,0 +1,240 @@
+package io.esoma.khr.index;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.stereotype.Component;
+
+import io.esoma.khr.model.Moment;
+
+/**
+ * 
+ * The in-memory buffer of the newest moments, kept in timeline order (latest
+ * date and ID first). Pages near the top of the timeline are cut from the
+ * buffer, and only pages past its end have to be read from the database. The
+ * buffer is an immutable snapshot that writers replace with a compare-and-set,
+ * so readers never wait for a lock. Once full, every new moment pushes the
+ * oldest one out.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Component(value = "recentMoments")
+public class RecentMoments {
+
+	/**
+	 * The maximum number of moments kept in memory.
+	 */
+	static final int DEFAULT_CAPACITY = 1000;
+
+	/**
+	 * The order of the timeline, latest first.
+	 */
+	static final Comparator<Moment> TIMELINE_ORDER = Comparator.comparing(Moment::getPostDate)
+			.thenComparingInt(Moment::getMomentId).reversed();
+
+	/**
+	 * A buffered timeline. It holds the newest moments of the database, or all of
+	 * them if it is complete. Every change creates a new snapshot with a higher
+	 * version, so a load that raced with the change can be detected.
+	 */
+	private static final class Snapshot {
+
+		private final Moment[] moments;
+		private final boolean complete;
+		private final long version;
+
+		private Snapshot(Moment[] moments, boolean complete, long version) {
+			this.moments = moments;
+			this.complete = complete;
+			this.version = version;
+		}
+
+	}
+
+	private final int capacity;
+
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(null, false, 0));
+
+	public RecentMoments() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public RecentMoments(int capacity) {
+		super();
+		this.capacity = capacity;
+	}
+
+	/**
+	 * 
+	 * Gets the maximum number of moments the buffer holds, which is also the number
+	 * of moments to read when it is loaded.
+	 * 
+	 * @return the capacity.
+	 */
+	public int getCapacity() {
+
+		return this.capacity;
+
+	}
+
+	/**
+	 * 
+	 * Cuts a page of the timeline from the buffer.
+	 * 
+	 * @param postDate the date of the last moment on the previous page, or null
+	 *                 for the first page.
+	 * @param momentId the ID of the last moment on the previous page.
+	 * @param limit    the largest number of moments to get.
+	 * @return the moment list, or null if the buffer is not loaded or the page
+	 *         runs past its end.
+	 */
+	public List<Moment> getPage(LocalDate postDate, int momentId, int limit) {
+
+		final Snapshot current = this.snapshot.get();
+		final Moment[] moments = current.moments;
+
+		if (moments == null) {
+			return null;
+		}
+
+		int start = 0;
+		if (postDate != null) {
+			start = Arrays.binarySearch(moments, new Moment(momentId, postDate), TIMELINE_ORDER);
+			start = start < 0 ? -start - 1 : start + 1;
+		}
+
+		final int end = (int) Math.min((long) start + limit, moments.length);
+		if (end - start < limit && !current.complete) {
+			return null;
+		}
+
+		return new ArrayList<>(Arrays.asList(moments).subList(start, end));
+
+	}
+
+	/**
+	 * 
+	 * Gets a stamp that has to be taken before the newest moments are read from
+	 * the database.
+	 * 
+	 * @return the current stamp.
+	 */
+	public long getStamp() {
+
+		return this.snapshot.get().version;
+
+	}
+
+	/**
+	 * 
+	 * Fills the buffer with the newest moments, replacing its content. The
+	 * moments are not kept if the buffer has changed since the stamp was taken.
+	 * 
+	 * @param moments the newest moments in timeline order, at most as many as
+	 *                the capacity.
+	 * @param stamp   the stamp taken before the moments were read.
+	 */
+	public void load(Collection<Moment> moments, long stamp) {
+
+		final Moment[] loaded = moments.toArray(new Moment[0]);
+		final boolean complete = loaded.length < this.capacity;
+
+		Snapshot current = this.snapshot.get();
+		while (current.version == stamp
+				&& !this.snapshot.compareAndSet(current, new Snapshot(loaded, complete, stamp + 1))) {
+			current = this.snapshot.get();
+		}
+
+	}
+
+	/**
+	 * 
+	 * Adds a newly posted moment to the buffer. A moment older than everything
+	 * kept in a full buffer is left out.
+	 * 
+	 * @param moment the new moment.
+	 */
+	public void add(Moment moment) {
+
+		Snapshot current;
+		Snapshot next;
+
+		do {
+			current = this.snapshot.get();
+			next = new Snapshot(current.moments, current.complete, current.version + 1);
+			if (current.moments != null) {
+				int index = Arrays.binarySearch(current.moments, moment, TIMELINE_ORDER);
+				if (index < 0 && (-index - 1 < current.moments.length || current.complete)) {
+					index = -index - 1;
+					Moment[] moments = new Moment[Math.min(current.moments.length + 1, this.capacity)];
+					System.arraycopy(current.moments, 0, moments, 0, Math.min(index, moments.length));
+					if (index < moments.length) {
+						moments[index] = moment;
+						System.arraycopy(current.moments, index, moments, index + 1, moments.length - index - 1);
+					}
+					// Pushing the oldest moment out leaves older ones only in the database.
+					next = new Snapshot(moments, current.complete && current.moments.length < this.capacity,
+							current.version + 1);
+				}
+			}
+		} while (!this.snapshot.compareAndSet(current, next));
+
+	}
+
+	/**
+	 * 
+	 * Removes a deleted moment from the buffer.
+	 * 
+	 * @param momentId the ID of the deleted moment.
+	 */
+	public void remove(int momentId) {
+
+		Snapshot current;
+		Snapshot next;
+
+		do {
+			current = this.snapshot.get();
+			Moment[] moments = current.moments;
+			if (moments != null) {
+				moments = Arrays.stream(moments).filter(m -> m.getMomentId() != momentId).toArray(Moment[]::new);
+			}
+			next = new Snapshot(moments, current.complete, current.version + 1);
+		} while (!this.snapshot.compareAndSet(current, next));
+
+	}
+
+	/**
+	 * 
+	 * Empties the buffer, so it will be loaded again from the database.
+	 */
+	public void clear() {
+
+		Snapshot current;
+
+		do {
+			current = this.snapshot.get();
+		} while (!this.snapshot.compareAndSet(current, new Snapshot(null, false, current.version + 1)));
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of moments currently buffered.
+	 * 
+	 * @return the number of moments.
+	 */
+	public int size() {
+
+		final Moment[] moments = this.snapshot.get().moments;
+
+		return moments == null ? 0 : moments.length;
+
+	}
+
+}
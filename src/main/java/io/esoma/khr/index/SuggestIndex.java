@@ -0,0 +1,337 @@
+package io.esoma.khr.index;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Track;
+
+/**
+ * 
+ * The in-memory prefix index of the names typed into the store search box.
+ * Album names, artists and composers of the published catalog are folded like
+ * search terms, and every word suffix of a name is kept in one sorted array,
+ * so the completions of a prefix are a single binary search followed by a
+ * scan. The array is rebuilt and swapped whenever the catalog changes, and
+ * readers never wait. Completions are ranked by the purchases of their albums,
+ * which are counted as they happen.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Component(value = "suggestIndex")
+public class SuggestIndex {
+
+	/**
+	 * A distinct name with the albums it appears on.
+	 */
+	private static final class Entry {
+
+		private final String key;
+		private final String text;
+		private final int[] albumIds;
+
+		private Entry(String key, String text, Collection<Integer> albumIds) {
+			this.key = key;
+			this.text = text;
+			this.albumIds = albumIds.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+	}
+
+	/**
+	 * The sorted word suffixes of every name, with the entry of each suffix at
+	 * the same position.
+	 */
+	private static final class Table {
+
+		private final String[] keys;
+		private final Entry[] entries;
+
+		private Table(String[] keys, Entry[] entries) {
+			this.keys = keys;
+			this.entries = entries;
+		}
+
+	}
+
+	/**
+	 * The names of a published album and the composers of its tracks by track ID.
+	 */
+	private static final class AlbumNames {
+
+		private final String albumName;
+		private final String artist;
+		private final Map<Integer, String> composers = new LinkedHashMap<>();
+
+		private AlbumNames(Album album) {
+			this.albumName = album.getAlbumName();
+			this.artist = album.getArtist();
+		}
+
+	}
+
+	private final Object lock = new Object();
+	private final Map<Integer, AlbumNames> albums = new HashMap<>();
+	private final Map<Integer, Integer> trackAlbums = new HashMap<>();
+	private final Map<Integer, Integer> purchaseCounts = new ConcurrentHashMap<>();
+	private volatile Table table = new Table(new String[0], new Entry[0]);
+
+	/**
+	 * 
+	 * Replaces the content of the index with the whole published catalog and the
+	 * purchase count of every album. It is meant to run at startup.
+	 * 
+	 * @param albums         all published albums.
+	 * @param tracks         the tracks of the published albums. Tracks of other
+	 *                       albums are left out.
+	 * @param purchaseCounts the number of purchases by album ID.
+	 */
+	public void load(Collection<Album> albums, Collection<Track> tracks, Map<Integer, Integer> purchaseCounts) {
+
+		synchronized (this.lock) {
+			this.albums.clear();
+			this.trackAlbums.clear();
+			for (Album album : albums) {
+				this.albums.put(album.getAlbumId(), new AlbumNames(album));
+			}
+			for (Track track : tracks) {
+				final AlbumNames names = track.getAlbum() == null ? null
+						: this.albums.get(track.getAlbum().getAlbumId());
+				if (names != null) {
+					names.composers.put(track.getTrackId(), track.getComposer());
+					this.trackAlbums.put(track.getTrackId(), track.getAlbum().getAlbumId());
+				}
+			}
+			this.purchaseCounts.clear();
+			this.purchaseCounts.putAll(purchaseCounts);
+			this.rebuild();
+		}
+
+	}
+
+	/**
+	 * 
+	 * Adds a newly published album and its tracks to the index, replacing any
+	 * previous entry of the album.
+	 * 
+	 * @param album  the album.
+	 * @param tracks all tracks of the album.
+	 */
+	public void addAlbum(Album album, Collection<Track> tracks) {
+
+		synchronized (this.lock) {
+			this.removeTracks(album.getAlbumId());
+			final AlbumNames names = new AlbumNames(album);
+			for (Track track : tracks) {
+				names.composers.put(track.getTrackId(), track.getComposer());
+				this.trackAlbums.put(track.getTrackId(), album.getAlbumId());
+			}
+			this.albums.put(album.getAlbumId(), names);
+			this.rebuild();
+		}
+
+	}
+
+	/**
+	 * 
+	 * Removes an album, the composers of its tracks and its purchase count from
+	 * the index.
+	 * 
+	 * @param albumId the ID of the album.
+	 */
+	public void removeAlbum(int albumId) {
+
+		synchronized (this.lock) {
+			this.purchaseCounts.remove(albumId);
+			this.removeTracks(albumId);
+			if (this.albums.remove(albumId) != null) {
+				this.rebuild();
+			}
+		}
+
+	}
+
+	/**
+	 * 
+	 * Removes the composer of a track from the index, unless another track of
+	 * the catalog has the same composer.
+	 * 
+	 * @param trackId the ID of the track.
+	 */
+	public void removeTrack(int trackId) {
+
+		synchronized (this.lock) {
+			final Integer albumId = this.trackAlbums.remove(trackId);
+			if (albumId != null) {
+				this.albums.get(albumId).composers.remove(trackId);
+				this.rebuild();
+			}
+		}
+
+	}
+
+	/**
+	 * 
+	 * Counts a new purchase of an album towards the rank of its names.
+	 * 
+	 * @param albumId the ID of the purchased album.
+	 */
+	public void addPurchase(int albumId) {
+
+		this.purchaseCounts.merge(albumId, 1, Integer::sum);
+
+	}
+
+	/**
+	 * 
+	 * Finds the names that contain a word starting with the given prefix, most
+	 * purchased first. Ties are listed in alphabetical order.
+	 * 
+	 * @param prefix   the text typed by a client. Its last word may be
+	 *                 incomplete.
+	 * @param limit    the maximum number of names returned.
+	 * @param albumIds the albums whose names may be returned, or null for all
+	 *                 albums. Only the purchases of these albums are counted.
+	 * @return the names, which is empty if the prefix has no terms or nothing
+	 *         matches.
+	 */
+	public List<String> suggest(String prefix, int limit, Collection<Integer> albumIds) {
+
+		final String key = CatalogIndex.normalize(prefix);
+		if (key.isEmpty() || limit < 1) {
+			return new ArrayList<>();
+		}
+
+		final Table current = this.table;
+		final Map<Entry, Integer> candidates = new HashMap<>();
+		for (int i = lowerBound(current.keys, key); i < current.keys.length && current.keys[i].startsWith(key); i++) {
+			final Entry entry = current.entries[i];
+			if (!candidates.containsKey(entry)) {
+				final int weight = this.getWeight(entry, albumIds);
+				if (weight >= 0) {
+					candidates.put(entry, weight);
+				}
+			}
+		}
+
+		return candidates.entrySet().stream()
+				.sorted(Map.Entry.<Entry, Integer>comparingByValue().reversed()
+						.thenComparing(e -> e.getKey().key))
+				.limit(limit).map(e -> e.getKey().text).collect(Collectors.toList());
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of distinct names currently indexed.
+	 * 
+	 * @return the number of names.
+	 */
+	public int size() {
+
+		final Table current = this.table;
+
+		return (int) Arrays.stream(current.entries).distinct().count();
+
+	}
+
+	// Sums the purchases of the allowed albums of an entry, or returns -1 if none
+	// of its albums is allowed.
+	private int getWeight(Entry entry, Collection<Integer> albumIds) {
+
+		int weight = -1;
+		for (int albumId : entry.albumIds) {
+			if (albumIds == null || albumIds.contains(albumId)) {
+				weight = Math.max(weight, 0) + this.purchaseCounts.getOrDefault(albumId, 0);
+			}
+		}
+
+		return weight;
+
+	}
+
+	private void removeTracks(int albumId) {
+
+		final AlbumNames names = this.albums.get(albumId);
+		if (names != null) {
+			this.trackAlbums.keySet().removeAll(names.composers.keySet());
+		}
+
+	}
+
+	// Builds a new table from the names of all albums and publishes it. Names that
+	// fold to the same text share one entry.
+	private void rebuild() {
+
+		final Map<String, String> texts = new HashMap<>();
+		final Map<String, Set<Integer>> albumSets = new HashMap<>();
+		for (Map.Entry<Integer, AlbumNames> album : this.albums.entrySet()) {
+			final List<String> names = new ArrayList<>();
+			names.add(album.getValue().albumName);
+			names.add(album.getValue().artist);
+			names.addAll(album.getValue().composers.values());
+			for (String name : names) {
+				final String key = CatalogIndex.normalize(name);
+				if (!key.isEmpty()) {
+					texts.putIfAbsent(key, name.trim());
+					albumSets.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(album.getKey());
+				}
+			}
+		}
+
+		final List<Map.Entry<String, Entry>> suffixes = new ArrayList<>();
+		for (Map.Entry<String, String> text : texts.entrySet()) {
+			final Entry entry = new Entry(text.getKey(), text.getValue(), albumSets.get(text.getKey()));
+			// Every word of a name can start a completion.
+			int start = 0;
+			while (start >= 0) {
+				suffixes.add(new AbstractMap.SimpleImmutableEntry<>(entry.key.substring(start), entry));
+				start = entry.key.indexOf(' ', start);
+				start = start < 0 ? -1 : start + 1;
+			}
+		}
+		suffixes.sort(Map.Entry.comparingByKey());
+
+		final String[] keys = new String[suffixes.size()];
+		final Entry[] entries = new Entry[suffixes.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = suffixes.get(i).getKey();
+			entries[i] = suffixes.get(i).getValue();
+		}
+
+		this.table = new Table(keys, entries);
+
+	}
+
+	// Finds the first key that is not less than the given one.
+	private static int lowerBound(String[] keys, String key) {
+
+		int low = 0;
+		int high = keys.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(key) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+
+	}
+
+}
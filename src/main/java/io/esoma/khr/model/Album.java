@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.List;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
@@ -18,6 +19,9 @@ import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * 
  * The entity that models an album.
@@ -27,10 +31,14 @@ import javax.persistence.Transient;
  */
 @Entity
 @Table(name = "ALBUM")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "khr.album", include = "non-lazy")
 public class Album implements Serializable {
 
 	public static final Integer[] BASIC_COLLECTION = new Integer[] { 1, 2, 4, 5, 7, 9, 17, 24, 28 };
 
+	public static final Integer[] DEMO_COLLECTION = new Integer[] { 1, 2, 3 };
+
 	private static final long serialVersionUID = 1L;
 
 	private int albumId;
@@ -38,6 +46,7 @@ public class Album implements Serializable {
 	private String artist;
 	private byte[] artwork;
 	private String artworkType;
+	private String artworkHash;
 	private int etaPrice;
 	private String isPromoted;
 	private String isPublished;
@@ -47,6 +56,10 @@ public class Album implements Serializable {
 	private List<Track> trackList;
 	private List<Review> reviewList;
 	private String artworkDataUrl;
+	private String artworkUrl;
+	private int ratingCount;
+	private int ratingSum;
+	private int[] ratingHistogram;
 
 	public Album() {
 		super();
@@ -57,9 +70,26 @@ public class Album implements Serializable {
 		this.albumId = albumId;
 	}
 
+	// Used by projection queries, so album lists never read the artwork.
+	public Album(int albumId, String albumName, String artist, String artworkType, int etaPrice,
+			String isPromoted, String isPublished, Integer genreId, String genreName, Integer ratingCount,
+			Integer ratingSum) {
+		super();
+		this.albumId = albumId;
+		this.albumName = albumName;
+		this.artist = artist;
+		this.artworkType = artworkType;
+		this.etaPrice = etaPrice;
+		this.isPromoted = isPromoted;
+		this.isPublished = isPublished;
+		this.genre = genreId == null ? null : new Genre(genreId, genreName);
+		this.ratingCount = ratingCount == null ? 0 : ratingCount;
+		this.ratingSum = ratingSum == null ? 0 : ratingSum;
+	}
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "albumIdGen")
-	@SequenceGenerator(name = "albumIdGen", sequenceName = "SEQ_ALBUM_ID", allocationSize = 1)
+	@SequenceGenerator(name = "albumIdGen", sequenceName = "SEQ_ALBUM_ID", allocationSize = 20)
 	@Column(name = "ALBUM_ID")
 	public int getAlbumId() {
 		return albumId;
@@ -107,6 +137,15 @@ public class Album implements Serializable {
 		this.artworkType = artworkType;
 	}
 
+	@Column(name = "ARTWORK_HASH")
+	public String getArtworkHash() {
+		return artworkHash;
+	}
+
+	public void setArtworkHash(String artworkHash) {
+		this.artworkHash = artworkHash;
+	}
+
 	@Column(name = "ETA_PRICE")
 	public int getEtaPrice() {
 		return etaPrice;
@@ -181,6 +220,42 @@ public class Album implements Serializable {
 		this.artworkDataUrl = artworkDataUrl;
 	}
 
+	@Transient
+	public String getArtworkUrl() {
+		return artworkUrl;
+	}
+
+	public void setArtworkUrl(String artworkUrl) {
+		this.artworkUrl = artworkUrl;
+	}
+
+	@Transient
+	public int getRatingCount() {
+		return ratingCount;
+	}
+
+	public void setRatingCount(int ratingCount) {
+		this.ratingCount = ratingCount;
+	}
+
+	@Transient
+	public int getRatingSum() {
+		return ratingSum;
+	}
+
+	public void setRatingSum(int ratingSum) {
+		this.ratingSum = ratingSum;
+	}
+
+	@Transient
+	public int[] getRatingHistogram() {
+		return ratingHistogram;
+	}
+
+	public void setRatingHistogram(int[] ratingHistogram) {
+		this.ratingHistogram = ratingHistogram;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
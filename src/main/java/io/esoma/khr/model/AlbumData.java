@@ -0,0 +1,87 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 
+ * The request model that holds the data of an album sent in a request body,
+ * such as a new album, an update, a publication or a purchase. It is bound by
+ * Jackson as the body is read, and an element absent from the body is left
+ * null.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AlbumData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private Integer albumId;
+	private String albumName;
+	private String artist;
+	private Integer genreId;
+	private Integer etaPrice;
+	private String artworkDataUrl;
+
+	public AlbumData() {
+		super();
+	}
+
+	public Integer getAlbumId() {
+		return albumId;
+	}
+
+	public void setAlbumId(Integer albumId) {
+		this.albumId = albumId;
+	}
+
+	public String getAlbumName() {
+		return albumName;
+	}
+
+	public void setAlbumName(String albumName) {
+		this.albumName = albumName;
+	}
+
+	public String getArtist() {
+		return artist;
+	}
+
+	public void setArtist(String artist) {
+		this.artist = artist;
+	}
+
+	public Integer getGenreId() {
+		return genreId;
+	}
+
+	public void setGenreId(Integer genreId) {
+		this.genreId = genreId;
+	}
+
+	public Integer getEtaPrice() {
+		return etaPrice;
+	}
+
+	public void setEtaPrice(Integer etaPrice) {
+		this.etaPrice = etaPrice;
+	}
+
+	public String getArtworkDataUrl() {
+		return artworkDataUrl;
+	}
+
+	public void setArtworkDataUrl(String artworkDataUrl) {
+		this.artworkDataUrl = artworkDataUrl;
+	}
+
+	@Override
+	public String toString() {
+		return "AlbumData [albumId=" + albumId + ", albumName=" + albumName + ", artist=" + artist + ", genreId="
+				+ genreId + ", etaPrice=" + etaPrice + "]";
+	}
+
+}
@@ -0,0 +1,202 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+/**
+ * 
+ * The entity that models the rating statistics of an album. The counters are
+ * kept in step with the REVIEW table by the review DAO, and they can be
+ * rebuilt from it at any time.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Entity
+@Table(name = "ALBUM_RATING")
+public class AlbumRating implements Serializable {
+
+	public static final int MIN_RATING = 1;
+
+	public static final int MAX_RATING = 10;
+
+	private static final long serialVersionUID = 1L;
+
+	private int albumId;
+	private int ratingCount;
+	private int ratingSum;
+
+	// The number of reviews for each rating, starting at MIN_RATING.
+	private int[] histogram = new int[MAX_RATING - MIN_RATING + 1];
+
+	public AlbumRating() {
+		super();
+	}
+
+	public AlbumRating(int albumId) {
+		super();
+		this.albumId = albumId;
+	}
+
+	@Id
+	@Column(name = "ALBUM_ID")
+	public int getAlbumId() {
+		return albumId;
+	}
+
+	public void setAlbumId(int albumId) {
+		this.albumId = albumId;
+	}
+
+	@Column(name = "RATING_COUNT")
+	public int getRatingCount() {
+		return ratingCount;
+	}
+
+	public void setRatingCount(int ratingCount) {
+		this.ratingCount = ratingCount;
+	}
+
+	@Column(name = "RATING_SUM")
+	public int getRatingSum() {
+		return ratingSum;
+	}
+
+	public void setRatingSum(int ratingSum) {
+		this.ratingSum = ratingSum;
+	}
+
+	@Column(name = "RATING_1")
+	public int getRating1() {
+		return histogram[0];
+	}
+
+	public void setRating1(int rating1) {
+		this.histogram[0] = rating1;
+	}
+
+	@Column(name = "RATING_2")
+	public int getRating2() {
+		return histogram[1];
+	}
+
+	public void setRating2(int rating2) {
+		this.histogram[1] = rating2;
+	}
+
+	@Column(name = "RATING_3")
+	public int getRating3() {
+		return histogram[2];
+	}
+
+	public void setRating3(int rating3) {
+		this.histogram[2] = rating3;
+	}
+
+	@Column(name = "RATING_4")
+	public int getRating4() {
+		return histogram[3];
+	}
+
+	public void setRating4(int rating4) {
+		this.histogram[3] = rating4;
+	}
+
+	@Column(name = "RATING_5")
+	public int getRating5() {
+		return histogram[4];
+	}
+
+	public void setRating5(int rating5) {
+		this.histogram[4] = rating5;
+	}
+
+	@Column(name = "RATING_6")
+	public int getRating6() {
+		return histogram[5];
+	}
+
+	public void setRating6(int rating6) {
+		this.histogram[5] = rating6;
+	}
+
+	@Column(name = "RATING_7")
+	public int getRating7() {
+		return histogram[6];
+	}
+
+	public void setRating7(int rating7) {
+		this.histogram[6] = rating7;
+	}
+
+	@Column(name = "RATING_8")
+	public int getRating8() {
+		return histogram[7];
+	}
+
+	public void setRating8(int rating8) {
+		this.histogram[7] = rating8;
+	}
+
+	@Column(name = "RATING_9")
+	public int getRating9() {
+		return histogram[8];
+	}
+
+	public void setRating9(int rating9) {
+		this.histogram[8] = rating9;
+	}
+
+	@Column(name = "RATING_10")
+	public int getRating10() {
+		return histogram[9];
+	}
+
+	public void setRating10(int rating10) {
+		this.histogram[9] = rating10;
+	}
+
+	@Transient
+	public int[] getHistogram() {
+		return Arrays.copyOf(histogram, histogram.length);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + albumId;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		AlbumRating other = (AlbumRating) obj;
+		if (albumId != other.albumId) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "AlbumRating [albumId=" + albumId + ", ratingCount=" + ratingCount + ", ratingSum=" + ratingSum
+				+ ", histogram=" + Arrays.toString(histogram) + "]";
+	}
+
+}
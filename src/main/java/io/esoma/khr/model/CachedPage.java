@@ -0,0 +1,69 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+
+/**
+ * 
+ * A page of a list that has already been serialized to JSON. It holds the
+ * response body, the entity tag that identifies it and the cursor that requests
+ * the page after it.
+ * 
+ * @author Eddy Soma
+ *
+ */
+public class CachedPage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private byte[] body;
+	private String eTag;
+	private String nextCursor;
+
+	public CachedPage() {
+		super();
+	}
+
+	public CachedPage(byte[] body, String eTag, String nextCursor) {
+		super();
+		this.body = body;
+		this.eTag = eTag;
+		this.nextCursor = nextCursor;
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+	public void setBody(byte[] body) {
+		this.body = body;
+	}
+
+	public String getETag() {
+		return eTag;
+	}
+
+	public void setETag(String eTag) {
+		this.eTag = eTag;
+	}
+
+	/**
+	 * 
+	 * Gets the cursor of the next page.
+	 * 
+	 * @return the cursor, or null if this is the last page.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	@Override
+	public String toString() {
+		return "CachedPage [size=" + (body == null ? 0 : body.length) + ", eTag=" + eTag + ", nextCursor="
+				+ nextCursor + "]";
+	}
+
+}
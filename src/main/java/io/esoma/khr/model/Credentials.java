@@ -39,7 +39,7 @@ public class Credentials implements Serializable {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "credentialsIdGen")
-	@SequenceGenerator(name = "credentialsIdGen", sequenceName = "SEQ_CREDENTIALS_ID", allocationSize = 1)
+	@SequenceGenerator(name = "credentialsIdGen", sequenceName = "SEQ_CREDENTIALS_ID", allocationSize = 20)
 	@Column(name = "CREDENTIALS_ID")
 	public int getCredentialsId() {
 		return credentialsId;
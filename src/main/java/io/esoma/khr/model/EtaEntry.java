@@ -0,0 +1,146 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+/**
+ * 
+ * The entity that models an entry of the ETA ledger. Every change of a
+ * koalibee's balance is appended as an entry. Rewards stay pending until the
+ * ledger service folds them into the balance, while charges are applied at
+ * once.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Entity
+@Table(name = "ETA_LEDGER")
+public class EtaEntry implements Serializable {
+
+	// Reasons of the balance changes.
+	public static final String MOMENT_REWARD = "MOMENT";
+	public static final String REVIEW_REWARD = "REVIEW";
+	public static final String PUBLISH_REWARD = "PUBLISH";
+	public static final String PROMOTION_FEE = "PROMOTION";
+	public static final String REFUND = "REFUND";
+	public static final String PURCHASE = "PURCHASE";
+	public static final String SALE = "SALE";
+
+	private static final long serialVersionUID = 1L;
+
+	private int entryId;
+	private int koalibeeId;
+	private int delta;
+	private String reason;
+	private LocalDateTime entryTime;
+	private String isApplied;
+
+	public EtaEntry() {
+		super();
+	}
+
+	public EtaEntry(int koalibeeId, int delta, String reason) {
+		super();
+		this.koalibeeId = koalibeeId;
+		this.delta = delta;
+		this.reason = reason;
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entryIdGen")
+	@SequenceGenerator(name = "entryIdGen", sequenceName = "SEQ_ENTRY_ID", allocationSize = 20)
+	@Column(name = "ENTRY_ID")
+	public int getEntryId() {
+		return entryId;
+	}
+
+	public void setEntryId(int entryId) {
+		this.entryId = entryId;
+	}
+
+	@Column(name = "KOALIBEE_ID")
+	public int getKoalibeeId() {
+		return koalibeeId;
+	}
+
+	public void setKoalibeeId(int koalibeeId) {
+		this.koalibeeId = koalibeeId;
+	}
+
+	@Column(name = "DELTA")
+	public int getDelta() {
+		return delta;
+	}
+
+	public void setDelta(int delta) {
+		this.delta = delta;
+	}
+
+	@Column(name = "REASON")
+	public String getReason() {
+		return reason;
+	}
+
+	public void setReason(String reason) {
+		this.reason = reason;
+	}
+
+	@Column(name = "ENTRY_TIME")
+	public LocalDateTime getEntryTime() {
+		return entryTime;
+	}
+
+	public void setEntryTime(LocalDateTime entryTime) {
+		this.entryTime = entryTime;
+	}
+
+	@Column(name = "IS_APPLIED")
+	public String getIsApplied() {
+		return isApplied;
+	}
+
+	public void setIsApplied(String isApplied) {
+		this.isApplied = isApplied;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + entryId;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		EtaEntry other = (EtaEntry) obj;
+		if (entryId != other.entryId) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "EtaEntry [entryId=" + entryId + ", koalibeeId=" + koalibeeId + ", delta=" + delta + ", reason="
+				+ reason + "]";
+	}
+
+}
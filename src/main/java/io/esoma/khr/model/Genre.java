@@ -2,6 +2,7 @@ package io.esoma.khr.model;
 
 import java.io.Serializable;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -10,6 +11,9 @@ import javax.persistence.Id;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * 
  * The entity that models a music genre.
@@ -19,6 +23,8 @@ import javax.persistence.Table;
  */
 @Entity
 @Table(name = "GENRE")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "khr.genre")
 public class Genre implements Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -43,7 +49,7 @@ public class Genre implements Serializable {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "genreIdGen")
-	@SequenceGenerator(name = "genreIdGen", sequenceName = "SEQ_GENRE_ID", allocationSize = 1)
+	@SequenceGenerator(name = "genreIdGen", sequenceName = "SEQ_GENRE_ID", allocationSize = 20)
 	@Column(name = "GENRE_ID")
 	public int getGenreId() {
 		return genreId;
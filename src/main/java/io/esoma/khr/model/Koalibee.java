@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.List;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -20,6 +21,9 @@ import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * 
  * The entity that models a user of Koality Harmonia.
@@ -29,6 +33,8 @@ import javax.persistence.Transient;
  */
 @Entity
 @Table(name = "KOALIBEE")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "khr.koalibee", include = "non-lazy")
 public class Koalibee implements Serializable {
 
 	public static final int[] PREMIUM_USERS = new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11 };
@@ -42,6 +48,8 @@ public class Koalibee implements Serializable {
 	private int etaBalance;
 	private byte[] avatar;
 	private String avatarType;
+	private String avatarHash;
+	private Integer avatarVersion;
 
 	private Credentials credentials;
 	private List<Album> albumList;
@@ -56,9 +64,20 @@ public class Koalibee implements Serializable {
 		this.koalibeeId = koalibeeId;
 	}
 
+	// Used by projection queries, so koalibee lists never read the avatar or
+	// the credentials.
+	public Koalibee(int koalibeeId, String firstName, String lastName, String email, int etaBalance) {
+		super();
+		this.koalibeeId = koalibeeId;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.email = email;
+		this.etaBalance = etaBalance;
+	}
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "koalibeeIdGen")
-	@SequenceGenerator(name = "koalibeeIdGen", sequenceName = "SEQ_KOALIBEE_ID", allocationSize = 1)
+	@SequenceGenerator(name = "koalibeeIdGen", sequenceName = "SEQ_KOALIBEE_ID", allocationSize = 20)
 	@Column(name = "KOALIBEE_ID")
 	public int getKoalibeeId() {
 		return koalibeeId;
@@ -124,6 +143,24 @@ public class Koalibee implements Serializable {
 		this.avatarType = avatarType;
 	}
 
+	@Column(name = "AVATAR_HASH")
+	public String getAvatarHash() {
+		return avatarHash;
+	}
+
+	public void setAvatarHash(String avatarHash) {
+		this.avatarHash = avatarHash;
+	}
+
+	@Column(name = "AVATAR_VERSION")
+	public Integer getAvatarVersion() {
+		return avatarVersion;
+	}
+
+	public void setAvatarVersion(Integer avatarVersion) {
+		this.avatarVersion = avatarVersion;
+	}
+
 	@OneToOne(fetch = FetchType.EAGER, cascade = CascadeType.ALL)
 	@JoinColumn(name = "CREDENTIALS_ID")
 	public Credentials getCredentials() {
@@ -0,0 +1,76 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 
+ * The request model that holds the data of a koalibee sent in a request body,
+ * such as a registration, a login or an update. It is bound by Jackson as the
+ * body is read, and an element absent from the body is left null.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class KoalibeeData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String firstName;
+	private String lastName;
+	private String email;
+	private String password;
+	private String avatarDataUrl;
+
+	public KoalibeeData() {
+		super();
+	}
+
+	public String getFirstName() {
+		return firstName;
+	}
+
+	public void setFirstName(String firstName) {
+		this.firstName = firstName;
+	}
+
+	public String getLastName() {
+		return lastName;
+	}
+
+	public void setLastName(String lastName) {
+		this.lastName = lastName;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public void setEmail(String email) {
+		this.email = email;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public void setPassword(String password) {
+		this.password = password;
+	}
+
+	public String getAvatarDataUrl() {
+		return avatarDataUrl;
+	}
+
+	public void setAvatarDataUrl(String avatarDataUrl) {
+		this.avatarDataUrl = avatarDataUrl;
+	}
+
+	@Override
+	public String toString() {
+		return "KoalibeeData [firstName=" + firstName + ", lastName=" + lastName + ", email=" + email + "]";
+	}
+
+}
@@ -52,7 +52,7 @@ public class Moment implements Serializable {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "momentIdGen")
-	@SequenceGenerator(name = "momentIdGen", sequenceName = "SEQ_MOMENT_ID", allocationSize = 1)
+	@SequenceGenerator(name = "momentIdGen", sequenceName = "SEQ_MOMENT_ID", allocationSize = 20)
 	@Column(name = "MOMENT_ID")
 	public int getMomentId() {
 		return momentId;
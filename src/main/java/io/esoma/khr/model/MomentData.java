@@ -0,0 +1,58 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 
+ * The request model that holds the data of a moment sent in a request body,
+ * either a new post or the conditions of a search. It is bound by Jackson as
+ * the body is read, and an element absent from the body is left null.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MomentData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private Integer koalibeeId;
+	private String postDate;
+	private String postComment;
+
+	public MomentData() {
+		super();
+	}
+
+	public Integer getKoalibeeId() {
+		return koalibeeId;
+	}
+
+	public void setKoalibeeId(Integer koalibeeId) {
+		this.koalibeeId = koalibeeId;
+	}
+
+	public String getPostDate() {
+		return postDate;
+	}
+
+	public void setPostDate(String postDate) {
+		this.postDate = postDate;
+	}
+
+	public String getPostComment() {
+		return postComment;
+	}
+
+	public void setPostComment(String postComment) {
+		this.postComment = postComment;
+	}
+
+	@Override
+	public String toString() {
+		return "MomentData [koalibeeId=" + koalibeeId + ", postDate=" + postDate + ", postComment=" + postComment + "]";
+	}
+
+}
@@ -0,0 +1,59 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 
+ * A page of a list that is read with keyset pagination. It holds the items of
+ * the page and the opaque cursor that requests the page after it.
+ * 
+ * @author Eddy Soma
+ *
+ * @param <T> the type of the items.
+ */
+public class Page<T> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private List<T> items;
+	private String nextCursor;
+
+	public Page() {
+		super();
+	}
+
+	public Page(List<T> items, String nextCursor) {
+		super();
+		this.items = items;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	public void setItems(List<T> items) {
+		this.items = items;
+	}
+
+	/**
+	 * 
+	 * Gets the cursor of the next page.
+	 * 
+	 * @return the cursor, or null if this is the last page.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	@Override
+	public String toString() {
+		return "Page [items=" + items + ", nextCursor=" + nextCursor + "]";
+	}
+
+}
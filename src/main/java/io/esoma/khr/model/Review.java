@@ -47,7 +47,7 @@ public class Review implements Serializable {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reviewIdGen")
-	@SequenceGenerator(name = "reviewIdGen", sequenceName = "SEQ_REVIEW_ID", allocationSize = 1)
+	@SequenceGenerator(name = "reviewIdGen", sequenceName = "SEQ_REVIEW_ID", allocationSize = 20)
 	@Column(name = "REVIEW_ID")
 	public int getReviewId() {
 		return reviewId;
@@ -0,0 +1,68 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 
+ * The request model that holds the data of a review sent in a request body,
+ * either a new review or the conditions of a search. It is bound by Jackson as
+ * the body is read, and an element absent from the body is left null.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ReviewData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private Integer albumId;
+	private Integer koalibeeId;
+	private Integer rating;
+	private String reviewComment;
+
+	public ReviewData() {
+		super();
+	}
+
+	public Integer getAlbumId() {
+		return albumId;
+	}
+
+	public void setAlbumId(Integer albumId) {
+		this.albumId = albumId;
+	}
+
+	public Integer getKoalibeeId() {
+		return koalibeeId;
+	}
+
+	public void setKoalibeeId(Integer koalibeeId) {
+		this.koalibeeId = koalibeeId;
+	}
+
+	public Integer getRating() {
+		return rating;
+	}
+
+	public void setRating(Integer rating) {
+		this.rating = rating;
+	}
+
+	public String getReviewComment() {
+		return reviewComment;
+	}
+
+	public void setReviewComment(String reviewComment) {
+		this.reviewComment = reviewComment;
+	}
+
+	@Override
+	public String toString() {
+		return "ReviewData [albumId=" + albumId + ", koalibeeId=" + koalibeeId + ", rating=" + rating
+				+ ", reviewComment=" + reviewComment + "]";
+	}
+
+}
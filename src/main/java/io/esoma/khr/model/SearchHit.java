@@ -0,0 +1,140 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+
+/**
+ * 
+ * A result of the catalog search. It names a published album or one of its
+ * tracks and carries the fields shown in a result list, so no entity has to be
+ * read to display it.
+ * 
+ * @author Eddy Soma
+ *
+ */
+public class SearchHit implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String ALBUM = "ALBUM";
+	public static final String TRACK = "TRACK";
+
+	private String type;
+	private int id;
+	private String name;
+	private String artist;
+	private String genreName;
+	private int albumId;
+	private int score;
+
+	public SearchHit() {
+		super();
+	}
+
+	public SearchHit(String type, int id, String name, String artist, String genreName, int albumId) {
+		super();
+		this.type = type;
+		this.id = id;
+		this.name = name;
+		this.artist = artist;
+		this.genreName = genreName;
+		this.albumId = albumId;
+	}
+
+	public SearchHit(SearchHit hit, int score) {
+		this(hit.type, hit.id, hit.name, hit.artist, hit.genreName, hit.albumId);
+		this.score = score;
+	}
+
+	/**
+	 * 
+	 * Gets the type of the result.
+	 * 
+	 * @return either ALBUM or TRACK.
+	 */
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * 
+	 * Gets the ID of the album or track.
+	 * 
+	 * @return the ID.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * 
+	 * Gets the artist of an album or the composer of a track.
+	 * 
+	 * @return the name of the artist.
+	 */
+	public String getArtist() {
+		return artist;
+	}
+
+	public void setArtist(String artist) {
+		this.artist = artist;
+	}
+
+	public String getGenreName() {
+		return genreName;
+	}
+
+	public void setGenreName(String genreName) {
+		this.genreName = genreName;
+	}
+
+	/**
+	 * 
+	 * Gets the ID of the album, which is the album that holds a track.
+	 * 
+	 * @return the album ID.
+	 */
+	public int getAlbumId() {
+		return albumId;
+	}
+
+	public void setAlbumId(int albumId) {
+		this.albumId = albumId;
+	}
+
+	/**
+	 * 
+	 * Gets the relevance of the result. Higher scores are listed first.
+	 * 
+	 * @return the score.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	public void setScore(int score) {
+		this.score = score;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchHit [type=" + type + ", id=" + id + ", name=" + name + ", artist=" + artist + ", genreName="
+				+ genreName + ", albumId=" + albumId + ", score=" + score + "]";
+	}
+
+}
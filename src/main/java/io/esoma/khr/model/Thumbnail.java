@@ -0,0 +1,140 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+/**
+ * 
+ * The entity that models a scaled-down copy of an album artwork or a koalibee
+ * avatar. Every image has one thumbnail for each of the fixed sizes, and the
+ * owner is named by either the album ID or the koalibee ID.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Entity
+@Table(name = "THUMBNAIL")
+public class Thumbnail implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private int thumbnailId;
+	private Integer albumId;
+	private Integer koalibeeId;
+	private int imageSize;
+	private byte[] image;
+	private String imageType;
+
+	public Thumbnail() {
+		super();
+	}
+
+	public Thumbnail(int imageSize, byte[] image, String imageType) {
+		super();
+		this.imageSize = imageSize;
+		this.image = image;
+		this.imageType = imageType;
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "thumbnailIdGen")
+	@SequenceGenerator(name = "thumbnailIdGen", sequenceName = "SEQ_THUMBNAIL_ID", allocationSize = 20)
+	@Column(name = "THUMBNAIL_ID")
+	public int getThumbnailId() {
+		return thumbnailId;
+	}
+
+	public void setThumbnailId(int thumbnailId) {
+		this.thumbnailId = thumbnailId;
+	}
+
+	@Column(name = "ALBUM_ID")
+	public Integer getAlbumId() {
+		return albumId;
+	}
+
+	public void setAlbumId(Integer albumId) {
+		this.albumId = albumId;
+	}
+
+	@Column(name = "KOALIBEE_ID")
+	public Integer getKoalibeeId() {
+		return koalibeeId;
+	}
+
+	public void setKoalibeeId(Integer koalibeeId) {
+		this.koalibeeId = koalibeeId;
+	}
+
+	@Column(name = "IMAGE_SIZE")
+	public int getImageSize() {
+		return imageSize;
+	}
+
+	public void setImageSize(int imageSize) {
+		this.imageSize = imageSize;
+	}
+
+	@Lob
+	@Column(name = "IMAGE", columnDefinition = "BLOB")
+	@Basic(fetch = FetchType.LAZY)
+	public byte[] getImage() {
+		return image;
+	}
+
+	public void setImage(byte[] image) {
+		this.image = image;
+	}
+
+	@Column(name = "IMAGE_TYPE")
+	public String getImageType() {
+		return imageType;
+	}
+
+	public void setImageType(String imageType) {
+		this.imageType = imageType;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + thumbnailId;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		Thumbnail other = (Thumbnail) obj;
+		if (thumbnailId != other.thumbnailId) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Thumbnail [thumbnailId=" + thumbnailId + ", albumId=" + albumId + ", koalibeeId=" + koalibeeId
+				+ ", imageSize=" + imageSize + ", imageType=" + imageType + "]";
+	}
+
+}
@@ -35,10 +35,12 @@ public class Track implements Serializable {
 	private int trackLength;
 	private byte[] audio;
 	private String audioType;
+	private String audioHash;
 	private String isDemo;
 
 	private Album album;
 	private String audioDataUrl;
+	private long audioSize;
 
 	public Track() {
 		super();
@@ -49,9 +51,19 @@ public class Track implements Serializable {
 		this.trackId = trackId;
 	}
 
+	// Used by projection queries, so track lists never read the audio.
+	public Track(int trackId, String trackName, String composer, int trackLength, String isDemo) {
+		super();
+		this.trackId = trackId;
+		this.trackName = trackName;
+		this.composer = composer;
+		this.trackLength = trackLength;
+		this.isDemo = isDemo;
+	}
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trackIdGen")
-	@SequenceGenerator(name = "trackIdGen", sequenceName = "SEQ_TRACK_ID", allocationSize = 1)
+	@SequenceGenerator(name = "trackIdGen", sequenceName = "SEQ_TRACK_ID", allocationSize = 20)
 	@Column(name = "TRACK_ID")
 	public int getTrackId() {
 		return trackId;
@@ -108,6 +120,15 @@ public class Track implements Serializable {
 		this.audioType = audioType;
 	}
 
+	@Column(name = "AUDIO_HASH")
+	public String getAudioHash() {
+		return audioHash;
+	}
+
+	public void setAudioHash(String audioHash) {
+		this.audioHash = audioHash;
+	}
+
 	@Column(name = "IS_DEMO")
 	public String getIsDemo() {
 		return isDemo;
@@ -136,6 +157,15 @@ public class Track implements Serializable {
 		this.audioDataUrl = audioDataUrl;
 	}
 
+	@Transient
+	public long getAudioSize() {
+		return audioSize;
+	}
+
+	public void setAudioSize(long audioSize) {
+		this.audioSize = audioSize;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,77 @@
+package io.esoma.khr.model;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 
+ * The request model that holds the data of a new track sent in a request body.
+ * It is bound by Jackson as the body is read, and an element absent from the
+ * body is left null.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TrackData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String trackName;
+	private String composer;
+	private Integer trackLength;
+	private String audioDataUrl;
+	private String isDemo;
+
+	public TrackData() {
+		super();
+	}
+
+	public String getTrackName() {
+		return trackName;
+	}
+
+	public void setTrackName(String trackName) {
+		this.trackName = trackName;
+	}
+
+	public String getComposer() {
+		return composer;
+	}
+
+	public void setComposer(String composer) {
+		this.composer = composer;
+	}
+
+	public Integer getTrackLength() {
+		return trackLength;
+	}
+
+	public void setTrackLength(Integer trackLength) {
+		this.trackLength = trackLength;
+	}
+
+	public String getAudioDataUrl() {
+		return audioDataUrl;
+	}
+
+	public void setAudioDataUrl(String audioDataUrl) {
+		this.audioDataUrl = audioDataUrl;
+	}
+
+	public String getIsDemo() {
+		return isDemo;
+	}
+
+	public void setIsDemo(String isDemo) {
+		this.isDemo = isDemo;
+	}
+
+	@Override
+	public String toString() {
+		return "TrackData [trackName=" + trackName + ", composer=" + composer + ", trackLength=" + trackLength
+				+ ", isDemo=" + isDemo + "]";
+	}
+
+}
@@ -1,21 +1,45 @@
 package io.esoma.khr.service;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-
-import org.json.JSONObject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import io.esoma.khr.dao.AlbumDao;
 import io.esoma.khr.dao.KoalibeeDao;
 import io.esoma.khr.dao.TrackDao;
+import io.esoma.khr.index.CatalogIndex;
+import io.esoma.khr.index.SuggestIndex;
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumData;
+import io.esoma.khr.model.CachedPage;
+import io.esoma.khr.model.EtaEntry;
 import io.esoma.khr.model.Genre;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.storage.MediaStore;
 import io.esoma.khr.utility.DataUtility;
 import io.esoma.khr.utility.LogUtility;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -25,11 +49,75 @@ import io.esoma.khr.utility.LogUtility;
  *
  */
 @Service(value = "albumService")
-public class AlbumService {
+public class AlbumService implements DisposableBean {
+
+	/**
+	 * The age after which the demo albums are reloaded in the background, in
+	 * milliseconds.
+	 */
+	static final long DEMO_REFRESH_MILLIS = 60000;
 
 	private KoalibeeDao koalibeeDao;
 	private TrackDao trackDao;
 	private AlbumDao albumDao;
+	private LedgerService ledgerService;
+	private ThumbnailService thumbnailService;
+
+	private CatalogIndex catalogIndex;
+	private SuggestIndex suggestIndex;
+	private MediaStore mediaStore;
+
+	/**
+	 * The largest number of serialized catalog pages kept in memory.
+	 */
+	static final int CATALOG_CACHE_SIZE = 256;
+
+	/**
+	 * The version of the album catalog, bumped on every change to an album.
+	 */
+	private final AtomicLong catalogVersion = new AtomicLong();
+
+	/**
+	 * The serialized pages of the published catalog, keyed by the catalog version
+	 * they were built from. Concurrent requests for the same page share one
+	 * future, so only the first of them builds it.
+	 */
+	private final ConcurrentMap<String, CompletableFuture<CachedPage>> catalogPages = new ConcurrentHashMap<>();
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+	private final long demoRefreshMillis;
+	private final ExecutorService demoRefresher;
+	private final AtomicBoolean demoRefreshing = new AtomicBoolean();
+
+	/**
+	 * The snapshot of the demo albums and the time it was loaded. Every change to
+	 * a demo album bumps the version, so a load that raced with it is not kept.
+	 */
+	private final Object demoLock = new Object();
+	private List<Album> demoAlbums;
+	private long demoLoadedAt;
+	private long demoVersion;
+
+	public AlbumService() {
+		this(DEMO_REFRESH_MILLIS);
+	}
+
+	AlbumService(long demoRefreshMillis) {
+		super();
+		this.demoRefreshMillis = demoRefreshMillis;
+		this.demoRefresher = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "khr-demo-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void destroy() {
+
+		this.demoRefresher.shutdownNow();
+
+	}
 
 	@Autowired
 	@Qualifier(value = "koalibeeDaoImplBasic")
@@ -49,6 +137,36 @@ public class AlbumService {
 		this.albumDao = albumDao;
 	}
 
+	@Autowired
+	@Qualifier(value = "ledgerService")
+	public void setLedgerService(LedgerService ledgerService) {
+		this.ledgerService = ledgerService;
+	}
+
+	@Autowired
+	@Qualifier(value = "thumbnailService")
+	public void setThumbnailService(ThumbnailService thumbnailService) {
+		this.thumbnailService = thumbnailService;
+	}
+
+	@Autowired
+	@Qualifier(value = "catalogIndex")
+	public void setCatalogIndex(CatalogIndex catalogIndex) {
+		this.catalogIndex = catalogIndex;
+	}
+
+	@Autowired
+	@Qualifier(value = "suggestIndex")
+	public void setSuggestIndex(SuggestIndex suggestIndex) {
+		this.suggestIndex = suggestIndex;
+	}
+
+	@Autowired
+	@Qualifier(value = "mediaStore")
+	public void setMediaStore(MediaStore mediaStore) {
+		this.mediaStore = mediaStore;
+	}
+
 	/**
 	 * 
 	 * Retrieves the data of an album by its ID. Proxy variables which cannot be
@@ -65,6 +183,7 @@ public class AlbumService {
 		if (album != null) {
 			album.setArtwork(null);
 			album.setArtworkType(null);
+			album.setArtworkHash(null);
 			album.setReviewList(null);
 			album.setTrackList(null);
 			if (album.getKoalibee() != null) {
@@ -81,29 +200,48 @@ public class AlbumService {
 
 	}
 
+	/**
+	 * 
+	 * Retrieves the artwork of a published album.
+	 * 
+	 * @param albumId the ID of the album.
+	 * @return an album object holding only the artwork data and type, or null if
+	 *         the album is not published or has no artwork.
+	 */
+	public Album getArtwork(int albumId) {
+
+		return this.albumDao.getAlbumArtwork(albumId);
+
+	}
+
+	/**
+	 * 
+	 * Retrieves the version of the artwork of a published album, which changes
+	 * whenever the artwork does. The artwork itself is not read.
+	 * 
+	 * @param albumId the ID of the album.
+	 * @return the version of the artwork, or null if the album is not published
+	 *         or has no artwork.
+	 */
+	public String getArtworkVersion(int albumId) {
+
+		return this.albumDao.getAlbumArtworkVersion(albumId);
+
+	}
+
 	/**
 	 * 
 	 * Attempts to create a new album under the ownership of a koalibee with the
-	 * given data encoded in a JSON string. The koalibee should have been
+	 * given data bound from the request body. The koalibee should have been
 	 * authenticated first.
 	 * 
 	 * @param koalibeeId the ID of the koalibee.
-	 * @param albumData  the JSON string sent from the request.
+	 * @param albumData  the data sent from the request.
 	 * @return a positive integer if the creation succeeds, or 0 if it fails.
 	 */
-	public int create(int koalibeeId, String albumData) {
-
-		// Data element names
-		final String ALBUM_NAME = "albumName";
-		final String ARTIST = "artist";
-		final String GENRE_ID = "genreId";
+	public int create(int koalibeeId, AlbumData albumData) {
 
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(albumData);
-		} catch (Exception e) {
+		if (albumData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return 0;
 		}
@@ -118,29 +256,23 @@ public class AlbumService {
 		}
 
 		// Extract album data.
-		try {
-			String albumName = jo.getString(ALBUM_NAME);
-			album.setAlbumName(albumName);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, ALBUM_NAME));
+		if (albumData.getAlbumName() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "albumName"));
 			return 0;
 		}
+		album.setAlbumName(albumData.getAlbumName());
 
-		try {
-			String artist = jo.getString(ARTIST);
-			album.setArtist(artist);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, ARTIST));
+		if (albumData.getArtist() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "artist"));
 			return 0;
 		}
+		album.setArtist(albumData.getArtist());
 
-		try {
-			int genreId = jo.getInt(GENRE_ID);
-			album.setGenre(new Genre(genreId));
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, GENRE_ID));
+		if (albumData.getGenreId() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "genreId"));
 			return 0;
 		}
+		album.setGenre(new Genre(albumData.getGenreId()));
 
 		// Set other default values.
 		album.setKoalibee(koalibee);
@@ -154,21 +286,17 @@ public class AlbumService {
 	/**
 	 * 
 	 * Attempts to update the basic information of an unpublished album. KoalibeeId
-	 * is passed from the user's JWS and used to verify ownership.
+	 * is passed from the user's JWS and used to verify ownership. Elements absent
+	 * from the data are left unchanged.
 	 * 
 	 * @param koalibeeId the ID of the owner.
 	 * @param albumId    the ID of the album to be updated.
-	 * @param albumData  the JSON string containing the update information.
+	 * @param albumData  the update information sent from the request.
 	 * @return true if the update is successful, or false if it fails.
 	 */
-	public boolean update(int koalibeeId, int albumId, String albumData) {
+	public boolean update(int koalibeeId, int albumId, AlbumData albumData) {
 
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(albumData);
-		} catch (Exception e) {
+		if (albumData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return false;
 		}
@@ -181,31 +309,46 @@ public class AlbumService {
 			return false;
 		}
 
-		// Try update the album name.
-		try {
-			String albumName = jo.getString("albumName");
-			album.setAlbumName(albumName);
-		} catch (Exception e) {
-			album.setAlbumName(null);
+		// Try update the album name, the artist and the genre ID.
+		album.setAlbumName(albumData.getAlbumName());
+		album.setArtist(albumData.getArtist());
+		if (albumData.getGenreId() != null) {
+			album.setGenre(new Genre(albumData.getGenreId()));
 		}
 
-		// Try update the artist.
-		try {
-			String artist = jo.getString("artist");
-			album.setArtist(artist);
-		} catch (Exception e) {
-			album.setArtist(null);
+		return this.recordChange(albumId, this.albumDao.updateAlbum(album));
+
+	}
+
+	/**
+	 * 
+	 * Stores the artwork of an unpublished album once the whole upload has arrived
+	 * and its content is found to be an image of its type. Only the creator is
+	 * allowed to access this method.
+	 * 
+	 * @param koalibeeId  the ID of the owner.
+	 * @param albumId     the ID of the album.
+	 * @param artworkType the file type of the artwork.
+	 * @param artwork     the body of the upload.
+	 * @param length      the length of the upload in bytes.
+	 * @return true if the artwork is stored, or false if the content does not
+	 *         match its type or the upload fails.
+	 */
+	public boolean uploadArtwork(int koalibeeId, int albumId, String artworkType, InputStream artwork, long length) {
+
+		if (length < 1) {
+			return false;
 		}
 
-		// Try update the genre ID.
-		try {
-			int genreId = jo.getInt("genreId");
-			album.setGenre(new Genre(genreId));
-		} catch (Exception e) {
-			album.setGenre(null);
+		// Verify ownership.
+		List<Album> albumList = this.albumDao.getUnpublishedAlbumsByKoalibee(koalibeeId);
+		if (!albumList.contains(new Album(albumId))) {
+			return false;
 		}
 
-		return this.albumDao.updateAlbum(album);
+		return this.recordChange(albumId, DataUtility.storeUpload(artwork, length, artworkType,
+				!this.mediaStore.isEnabled(),
+				in -> this.albumDao.updateAlbumArtwork(albumId, artworkType, in, length)));
 
 	}
 
@@ -223,12 +366,18 @@ public class AlbumService {
 
 		// For system administrator.
 		if (koalibeeId == -777) {
-			return this.albumDao.deleteAlbum(albumId);
+			if (!this.recordChange(albumId, this.albumDao.deleteAlbum(albumId))) {
+				return false;
+			}
+			// Published albums may be deleted as well.
+			this.catalogIndex.removeAlbum(albumId);
+			this.suggestIndex.removeAlbum(albumId);
+			return true;
 		} else {
 			// Check ownership.
 			List<Album> albumList = this.albumDao.getUnpublishedAlbumsByKoalibee(koalibeeId);
 			if (albumList.contains(new Album(albumId))) {
-				return this.albumDao.deleteAlbum(albumId);
+				return this.recordChange(albumId, this.albumDao.deleteAlbum(albumId));
 			} else {
 				return false;
 			}
@@ -238,25 +387,18 @@ public class AlbumService {
 
 	/**
 	 * 
-	 * Attempts to publish an album with the given data encoded in a JSON string.
+	 * Attempts to publish an album with the given data bound from the request
+	 * body. Every track must have audio, and the artwork can be left out if it
+	 * has been uploaded already.
 	 * 
 	 * @param koalibeeId the ID of the publisher.
 	 * @param albumId    the ID of the album to be published.
-	 * @param albumData  the JSON string sent from the request.
+	 * @param albumData  the data sent from the request.
 	 * @return true if the publishing is successful, or false if it fails.
 	 */
-	public boolean publish(int koalibeeId, int albumId, String albumData) {
-
-		// Data element names
-		final String ETA_PRICE = "etaPrice";
-		final String ARTWORK_DATA_URL = "artworkDataUrl";
+	public boolean publish(int koalibeeId, int albumId, AlbumData albumData) {
 
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(albumData);
-		} catch (Exception e) {
+		if (albumData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return false;
 		}
@@ -277,35 +419,40 @@ public class AlbumService {
 			return false;
 		}
 
-		// Check if the album contains at least one track.
+		// Check if the album contains at least one track, and all of them have audio.
 		List<Track> trackList = this.trackDao.getAllTracksByAlbum(albumId);
-		if (trackList.isEmpty()) {
+		if (trackList.isEmpty() || trackList.stream().anyMatch(t -> t.getAudioType() == null)) {
 			return false;
 		}
 
 		// Extract publishing details.
-		try {
-			int etaPrice = jo.getInt(ETA_PRICE);
-			album.setEtaPrice(etaPrice);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, ETA_PRICE));
+		if (albumData.getEtaPrice() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "etaPrice"));
 			return false;
 		}
-
-		try {
-			String artworkDataUrl = jo.getString(ARTWORK_DATA_URL);
-			album.setArtwork(DataUtility.decodeDataUrlToBytes(artworkDataUrl));
-			album.setArtworkType(artworkDataUrl.substring(artworkDataUrl.indexOf('/') + 1, artworkDataUrl.indexOf(';'))
-					.toUpperCase());
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, ARTWORK_DATA_URL));
-			return false;
+		album.setEtaPrice(albumData.getEtaPrice());
+
+		final String artworkDataUrl = albumData.getArtworkDataUrl();
+		if (artworkDataUrl != null || album.getArtworkType() == null) {
+			final String artworkType = DataUtility.getDataUrlType(artworkDataUrl);
+			final byte[] artwork = artworkType == null ? null : DataUtility.decodeDataUrlToBytes(artworkDataUrl);
+			if (artwork == null) {
+				LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "artworkDataUrl"));
+				return false;
+			}
+			album.setArtwork(artwork);
+			album.setArtworkType(artworkType);
+		} else {
+			// Keep the uploaded artwork.
+			album.setArtwork(null);
 		}
 
 		// Publish the album and award the publisher.
-		if (this.albumDao.publishAlbum(album)) {
-			publisher.setEtaBalance(publisher.getEtaBalance() + 40);
-			this.koalibeeDao.updateEtaBalance(publisher);
+		if (this.recordChange(albumId, this.albumDao.publishAlbum(album))) {
+			this.ledgerService.reward(publisher.getKoalibeeId(), 40, EtaEntry.PUBLISH_REWARD);
+			this.thumbnailService.refreshArtwork(albumId);
+			this.catalogIndex.addAlbum(album, trackList);
+			this.suggestIndex.addAlbum(album, trackList);
 			return true;
 		} else {
 			return false;
@@ -344,39 +491,73 @@ public class AlbumService {
 			return false;
 		}
 
-		// Deduct the promotion fee from the publisher.
-		if (publisher.getEtaBalance() < 100) {
+		// Deduct the promotion fee from the publisher, and give it back if the
+		// promotion fails.
+		if (!this.ledgerService.charge(koalibeeId, 100, EtaEntry.PROMOTION_FEE)) {
 			return false;
+		}
+
+		if (this.recordChange(albumId, this.albumDao.promoteAlbum(albumId))) {
+			return true;
 		} else {
-			publisher.setEtaBalance(publisher.getEtaBalance() - 100);
-			this.koalibeeDao.updateEtaBalance(publisher);
-			return this.albumDao.promoteAlbum(albumId);
+			this.ledgerService.reward(koalibeeId, 100, EtaEntry.REFUND);
+			return false;
 		}
 
 	}
 
 	/**
 	 * 
-	 * Retrieves all albums (published and unpublished). It can only be accessed by
-	 * a system administrator.
+	 * Retrieves a page of all albums (published and unpublished) sorted by name.
+	 * It can only be accessed by a system administrator.
 	 * 
-	 * @return the album list.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the album page, or null if the cursor is invalid.
 	 */
-	public List<Album> getAll() {
+	public Page<Album> getAll(String cursor, Integer limit) {
 
-		List<Album> albumList = this.albumDao.getAllAlbums();
+		String albumName = null;
+		int albumId = 0;
 
-		// Truncate proxies.
-		for (Album a : albumList) {
-			a.setArtwork(null);
-			a.setArtworkType(null);
-			a.setArtworkDataUrl(null);
-			a.setTrackList(null);
-			a.setReviewList(null);
-			a.setKoalibee(null);
+		if (cursor != null) {
+			String[] keys = PageUtility.decodeCursor(cursor, 2);
+			if (keys == null) {
+				return null;
+			}
+			albumName = keys[0];
+			albumId = Integer.parseInt(keys[1]);
 		}
 
-		return albumList;
+		final int size = PageUtility.getPageSize(limit);
+
+		// Fetch one more album to find out if there is a next page.
+		List<Album> albumList = this.albumDao.getAlbumPage(albumName, albumId, size + 1);
+
+		// The summaries hold no proxies, only the artwork type is hidden.
+		albumList.forEach(a -> a.setArtworkType(null));
+
+		return PageUtility.toPage(albumList, size, a -> PageUtility.encodeCursor(a.getAlbumName(), a.getAlbumId()));
+
+	}
+
+	/**
+	 * 
+	 * Writes all albums (published and unpublished) sorted by name to an output
+	 * stream as a JSON array. The albums are serialized as they are read from the
+	 * database, so the memory in use stays the same however many albums there
+	 * are. It can only be accessed by a system administrator.
+	 * 
+	 * @param out the stream to write to.
+	 * @return true if the whole list is written, or false otherwise.
+	 */
+	public boolean writeAll(OutputStream out) {
+
+		return DataUtility.writeJsonArray(out, this.objectMapper, action -> this.albumDao.streamAlbums(a -> {
+			// The summaries hold no proxies, only the artwork type is hidden.
+			a.setArtworkType(null);
+			action.accept(a);
+		}));
 
 	}
 
@@ -395,6 +576,7 @@ public class AlbumService {
 		for (Album a : albumList) {
 			a.setArtwork(null);
 			a.setArtworkType(null);
+			a.setArtworkHash(null);
 			a.setArtworkDataUrl(null);
 			a.setTrackList(null);
 			a.setReviewList(null);
@@ -407,25 +589,229 @@ public class AlbumService {
 
 	/**
 	 * 
-	 * Retrieves all published albums that are visible to the public.
+	 * Retrieves a page of published albums that are visible to the public, sorted
+	 * by name.
 	 * 
-	 * @return the album list.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the album page, or null if the cursor is invalid.
 	 */
-	public List<Album> getPublished() {
+	public Page<Album> getPublished(String cursor, Integer limit) {
 
-		List<Album> albumList = this.albumDao.getAllPublishedAlbums();
+		String albumName = null;
+		int albumId = 0;
 
-		// Truncate proxies.
-		for (Album a : albumList) {
-			a.setArtwork(null);
-			a.setArtworkType(null);
-			a.setTrackList(null);
-			a.setReviewList(null);
-			a.setKoalibee(null);
+		if (cursor != null) {
+			String[] keys = PageUtility.decodeCursor(cursor, 2);
+			if (keys == null) {
+				return null;
+			}
+			albumName = keys[0];
+			albumId = Integer.parseInt(keys[1]);
+		}
+
+		final int size = PageUtility.getPageSize(limit);
+
+		// Fetch one more album to find out if there is a next page.
+		List<Album> albumList = this.albumDao.getPublishedAlbumPage(albumName, albumId, size + 1);
+
+		// The summaries hold no proxies, only the artwork type is hidden.
+		albumList.forEach(a -> a.setArtworkType(null));
+
+		return PageUtility.toPage(albumList, size, a -> PageUtility.encodeCursor(a.getAlbumName(), a.getAlbumId()));
+
+	}
+
+	/**
+	 * 
+	 * Retrieves a page of published albums already serialized to JSON. The pages
+	 * are cached until the next change to the catalog, and only one request
+	 * builds a missing page while the others wait for it. Non-premium users only
+	 * see the albums of the basic collection.
+	 * 
+	 * @param cursor  the cursor of the page, or null for the first page.
+	 * @param limit   the requested page size, or null for the default size.
+	 * @param premium whether the sender is a premium user.
+	 * @return the serialized page, or null if the cursor is invalid.
+	 */
+	public CachedPage getPublishedJson(String cursor, Integer limit, boolean premium) {
+
+		final String version = this.catalogVersion.get() + ":";
+		final String key = version + premium + ":" + PageUtility.getPageSize(limit) + ":" + cursor;
+
+		CompletableFuture<CachedPage> future = this.catalogPages.get(key);
+		if (future != null) {
+			return future.join();
+		}
+
+		// Pages of older versions are never requested again.
+		if (this.catalogPages.size() >= CATALOG_CACHE_SIZE) {
+			this.catalogPages.clear();
+		}
+		this.catalogPages.keySet().removeIf(k -> !k.startsWith(version));
+
+		CompletableFuture<CachedPage> newFuture = new CompletableFuture<>();
+		future = this.catalogPages.putIfAbsent(key, newFuture);
+		if (future != null) {
+			return future.join();
+		}
+
+		try {
+			Page<Album> page = this.getPublished(cursor, limit);
+			newFuture.complete(page == null ? null : this.serialize(page, premium));
+			// Empty pages may come from a database error, so they are not kept.
+			if (page == null || page.getItems().isEmpty()) {
+				this.catalogPages.remove(key, newFuture);
+			}
+		} catch (RuntimeException e) {
+			this.catalogPages.remove(key, newFuture);
+			newFuture.completeExceptionally(e);
+		}
+
+		return newFuture.join();
+
+	}
+
+	private CachedPage serialize(Page<Album> page, boolean premium) {
+
+		List<Album> albumList = page.getItems();
+
+		if (!premium) {
+			List<Integer> basicList = Arrays.asList(Album.BASIC_COLLECTION);
+			albumList.removeIf(a -> !basicList.contains(a.getAlbumId()));
+		}
+
+		try {
+			byte[] body = this.objectMapper.writeValueAsBytes(albumList);
+			return new CachedPage(body, DataUtility.getEntityTag(body), page.getNextCursor());
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("unable to serialize the album page", e);
+		}
+
+	}
+
+	/**
+	 * 
+	 * Retrieves the demo albums shown to visitors who have not registered. They
+	 * are served from an in-memory snapshot that is loaded with a single query,
+	 * reloaded in the background once it is old and dropped whenever a demo album
+	 * changes.
+	 * 
+	 * @return the unmodifiable demo album list.
+	 */
+	public List<Album> getDemos() {
+
+		List<Album> albumList;
+		boolean stale;
+
+		synchronized (this.demoLock) {
+			albumList = this.demoAlbums;
+			stale = System.currentTimeMillis() - this.demoLoadedAt >= this.demoRefreshMillis;
+		}
+
+		if (albumList == null) {
+			return this.loadDemos();
+		}
+
+		// Serve the old snapshot while a single refresh runs.
+		if (stale && this.demoRefreshing.compareAndSet(false, true)) {
+			try {
+				this.demoRefresher.execute(() -> {
+					try {
+						this.loadDemos();
+					} finally {
+						this.demoRefreshing.set(false);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				this.demoRefreshing.set(false);
+			}
+		}
+
+		return albumList;
+
+	}
+
+	private List<Album> loadDemos() {
+
+		long version;
+		synchronized (this.demoLock) {
+			version = this.demoVersion;
+		}
+
+		List<Album> albumList = Collections
+				.unmodifiableList(this.albumDao.getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION)));
+
+		// An empty list may come from a database error, so it is not kept.
+		synchronized (this.demoLock) {
+			if (version == this.demoVersion && !albumList.isEmpty()) {
+				this.demoAlbums = albumList;
+				this.demoLoadedAt = System.currentTimeMillis();
+			}
 		}
 
 		return albumList;
 
 	}
 
+	/**
+	 * 
+	 * Gets the current version of the album catalog. It changes whenever an album
+	 * is updated, deleted, published, promoted or rated through the services, or
+	 * its publisher changes.
+	 * 
+	 * @return the catalog version.
+	 */
+	public long getCatalogVersion() {
+
+		return this.catalogVersion.get();
+
+	}
+
+	/**
+	 * 
+	 * Records a change to the rating statistics of an album. The serialized
+	 * catalog pages carry the ratings, so they are built again afterwards.
+	 */
+	public void recordRating() {
+
+		this.catalogVersion.incrementAndGet();
+
+	}
+
+	/**
+	 * 
+	 * Records a change to the albums made outside the album services, such as a
+	 * publisher changing names or being deleted along with its albums. The
+	 * serialized catalog pages and the demo albums are built again afterwards.
+	 */
+	public void recordCatalogChange() {
+
+		this.catalogVersion.incrementAndGet();
+		this.dropDemos();
+
+	}
+
+	private boolean recordChange(int albumId, boolean changed) {
+
+		if (changed) {
+			this.catalogVersion.incrementAndGet();
+			if (Arrays.asList(Album.DEMO_COLLECTION).contains(albumId)) {
+				this.dropDemos();
+			}
+		}
+
+		return changed;
+
+	}
+
+	private void dropDemos() {
+
+		synchronized (this.demoLock) {
+			++this.demoVersion;
+			this.demoAlbums = null;
+		}
+
+	}
+
 }
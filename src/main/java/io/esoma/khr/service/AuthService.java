@@ -1,10 +1,15 @@
 package io.esoma.khr.service;
 
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.crypto.SecretKey;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import io.esoma.khr.utility.SecurityUtility;
@@ -24,10 +29,13 @@ public class AuthService {
 	public static final String ADMIN_NAME = "admin";
 	public static final String INVALID_ADMIN_CREDENTIALS = "invalid administrator credentials";
 	public static final String INVALID_KOALIBEE_CREDENTIALS = "invalid koalibee credentials";
+	public static final String SERVER_BUSY = "server is busy, try again later";
 
 	private static final String ADMIN_SALT = "ADMIN";
 	private static final String ADMIN_HASH = "D780C505B2308EBD462B5622497E1ACAE98B34C12895692404BB0A4AE7B937C7";
 
+	private HashingService hashingService;
+
 	/**
 	 * The signing key for issuing and parsing JSON Web Tokens.
 	 */
@@ -50,6 +58,48 @@ public class AuthService {
 	 */
 	private LocalDateTime lastAccessed;
 
+	/**
+	 * The maximum number of verified tokens kept in memory.
+	 */
+	static final int MAX_VERIFIED_TOKENS = 10000;
+
+	/**
+	 * The minimum time in seconds between two purges of expired tokens.
+	 */
+	static final int TOKEN_PURGE_INTERVAL = 60;
+
+	/**
+	 * A token whose signature and claims have already been verified.
+	 */
+	private static final class VerifiedToken {
+
+		private final int koalibeeId;
+		private final LocalDateTime expiration;
+
+		private VerifiedToken(int koalibeeId, LocalDateTime expiration) {
+			this.koalibeeId = koalibeeId;
+			this.expiration = expiration;
+		}
+
+	}
+
+	/**
+	 * The cache of verified tokens. It is replaced whenever the signing key
+	 * changes, so a token signed by an old key is never found.
+	 */
+	private volatile Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+	/**
+	 * The moment after which a full cache may be purged of expired tokens again.
+	 */
+	private volatile LocalDateTime nextTokenPurge = LocalDateTime.MIN;
+
+	@Autowired
+	@Qualifier(value = "hashingService")
+	public void setHashingService(HashingService hashingService) {
+		this.hashingService = hashingService;
+	}
+
 	/**
 	 * Refreshes the signing key to prevent brute force attacks.
 	 */
@@ -57,15 +107,44 @@ public class AuthService {
 
 		key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
 
+		this.verifiedTokens = new ConcurrentHashMap<>();
+
 		this.lastAccessed = LocalDateTime.now();
 
 	}
 
+	/**
+	 * 
+	 * Gets the number of verified tokens currently cached.
+	 * 
+	 * @return the number of tokens.
+	 */
+	int getVerifiedTokenCount() {
+
+		return this.verifiedTokens.size();
+
+	}
+
+	/**
+	 * 
+	 * Checks if a token is currently cached.
+	 * 
+	 * @param jws the JWS to look up.
+	 * @return true if the token is cached.
+	 */
+	boolean hasVerifiedToken(String jws) {
+
+		return this.verifiedTokens.containsKey(jws);
+
+	}
+
 	/**
 	 * 
 	 * Authenticates a user's credentials data by validating the password. It can
 	 * authenticate both regular users and system administrator. It will first
 	 * refresh the signing key if the last one has been used for more than 24 hours.
+	 * The password is checked on the hashing pool, and the request is turned away
+	 * when the pool is saturated.
 	 * 
 	 * @param authData the credentials map prepared by koalibee service.
 	 * @return a JSON web token representing the user if the credentials are valid,
@@ -85,7 +164,7 @@ public class AuthService {
 		try {
 			// Authenticate a system administrator.
 			if (authData.get(EMAIL).equals(ADMIN_NAME)) {
-				if (SecurityUtility.isValidPassword(authData.get(PS), ADMIN_SALT, ADMIN_HASH)) {
+				if (this.hashingService.verify(authData.get(PS), ADMIN_SALT, ADMIN_HASH)) {
 					return SecurityUtility.buildAuthJws(-777, "", this.key);
 				} else {
 					return INVALID_ADMIN_CREDENTIALS;
@@ -94,7 +173,7 @@ public class AuthService {
 
 			// Authenticate a koalibee.
 			if (authData.get(EMAIL).contains("@")) {
-				if (SecurityUtility.isValidPassword(authData.get(PS), authData.get("passwordSalt"),
+				if (this.hashingService.verify(authData.get(PS), authData.get("passwordSalt"),
 						authData.get("passwordHash"))) {
 					return SecurityUtility.buildAuthJws(Integer.parseInt(authData.get("koalibeeId")),
 							authData.get(EMAIL), this.key);
@@ -104,16 +183,39 @@ public class AuthService {
 			} else {
 				return "bad request";
 			}
+		} catch (RejectedExecutionException e) {
+			return SERVER_BUSY;
 		} catch (Exception e) {
 			return "unknown error";
 		}
 
 	}
 
+	/**
+	 * 
+	 * Issues a JSON web token to a koalibee whose password has just been set, so
+	 * the password does not need to be hashed a second time.
+	 * 
+	 * @param koalibeeId the koalibee's ID.
+	 * @param email      the koalibee's email address.
+	 * @return a JSON web token representing the koalibee.
+	 */
+	public String issueToken(int koalibeeId, String email) {
+
+		// Check if the signing key needs to be refreshed.
+		if (LocalDateTime.now().compareTo(this.lastAccessed.plusHours(24)) > 0) {
+			this.resetKey();
+		}
+
+		return SecurityUtility.buildAuthJws(koalibeeId, email, this.key);
+
+	}
+
 	/**
 	 * 
 	 * Retrieves the koalibee ID from a JWS. This method will first refresh the
-	 * signing key if it is necessary.
+	 * signing key if it is necessary. Verified tokens are remembered until they
+	 * expire, so repeated requests from a session skip signature verification.
 	 * 
 	 * @param jws the JWS sent from the quest.
 	 * @return the koalibee ID if the JWS represents a valid user, or -777 when a
@@ -127,17 +229,38 @@ public class AuthService {
 			return -1;
 		}
 
+		if (jws == null) {
+			return 0;
+		}
+
+		// Take the cache together with the key it belongs to.
+		final Map<String, VerifiedToken> tokenCache = this.verifiedTokens;
+		final SecretKey signingKey = this.key;
+
+		// Skip verification for a known token.
+		VerifiedToken verifiedToken = tokenCache.get(jws);
+		if (verifiedToken != null) {
+			if (LocalDateTime.now().compareTo(verifiedToken.expiration) < 0) {
+				return verifiedToken.koalibeeId;
+			} else {
+				tokenCache.remove(jws);
+				return -1;
+			}
+		}
+
 		Integer id;
 		LocalDateTime timeCreated;
 
 		try {
 			// Parse claims.
-			Object[] claims = SecurityUtility.parseAuthJws(jws, this.key);
+			Object[] claims = SecurityUtility.parseAuthJws(jws, signingKey);
 			id = (Integer) claims[0];
 			timeCreated = LocalDateTime.parse(claims[2].toString());
 
 			// Check session expiration.
 			if (SecurityUtility.jwsHasNotExpired(timeCreated)) {
+				cacheVerifiedToken(tokenCache, jws, new VerifiedToken(id,
+						SecurityUtility.getJwsExpiration(timeCreated)));
 				return id;
 			} else {
 				return -1;
@@ -148,4 +271,30 @@ public class AuthService {
 
 	}
 
+	/**
+	 * 
+	 * Adds a verified token to the cache. Once the cache is full, expired tokens
+	 * are purged at most once per interval, and arbitrary tokens are evicted to
+	 * make room. An evicted token is simply verified again on its next use.
+	 */
+	private void cacheVerifiedToken(Map<String, VerifiedToken> tokenCache, String jws,
+			VerifiedToken verifiedToken) {
+
+		if (tokenCache.size() >= MAX_VERIFIED_TOKENS) {
+			final LocalDateTime now = LocalDateTime.now();
+			if (now.compareTo(this.nextTokenPurge) > 0) {
+				this.nextTokenPurge = now.plusSeconds(TOKEN_PURGE_INTERVAL);
+				tokenCache.values().removeIf(t -> now.compareTo(t.expiration) >= 0);
+			}
+			final Iterator<String> iterator = tokenCache.keySet().iterator();
+			while (tokenCache.size() >= MAX_VERIFIED_TOKENS && iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+			}
+		}
+
+		tokenCache.put(jws, verifiedToken);
+
+	}
+
 }
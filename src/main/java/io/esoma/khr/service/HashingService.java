@@ -0,0 +1,237 @@
+package io.esoma.khr.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import io.esoma.khr.utility.SecurityUtility;
+
+/**
+ * 
+ * The service class that computes and verifies password hashes on a dedicated
+ * pool of worker threads. The pool has a bounded queue, so a burst of logins is
+ * turned away once the queue is full instead of occupying the request threads
+ * that serve the catalog.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Service(value = "hashingService")
+public class HashingService implements DisposableBean {
+
+	/**
+	 * The longest time a request thread waits for a hash, in seconds.
+	 */
+	static final long HASH_TIMEOUT = 10;
+
+	private static final int RATE_WINDOW = 60;
+
+	private final int iterations;
+	private final int queueCapacity;
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	/**
+	 * The number of hashes completed in each second of the last minute, and the
+	 * second each slot belongs to.
+	 */
+	private final AtomicLongArray rateCounts = new AtomicLongArray(RATE_WINDOW);
+	private final AtomicLongArray rateSeconds = new AtomicLongArray(RATE_WINDOW);
+
+	public HashingService() {
+		this(SecurityUtility.getConfiguredHashIterations(), SecurityUtility.getConfiguredHashThreads(),
+				SecurityUtility.getConfiguredHashQueueCapacity());
+	}
+
+	HashingService(int iterations, int threads, int queueCapacity) {
+		super();
+		this.iterations = iterations;
+		this.queueCapacity = queueCapacity;
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), r -> {
+					Thread thread = new Thread(r, "khr-hashing-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	@Override
+	public void destroy() {
+
+		this.executor.shutdownNow();
+
+	}
+
+	/**
+	 * 
+	 * Computes an iterated hash of a password with the configured number of
+	 * iterations.
+	 * 
+	 * @param password the password to be hashed.
+	 * @param salt     the random salt.
+	 * @return the hash string.
+	 * @throws RejectedExecutionException if the pool is too busy to take the task
+	 *                                    or does not finish it in time.
+	 */
+	public String hash(String password, String salt) throws RejectedExecutionException {
+
+		return this.await(this.submit(() -> SecurityUtility.getPBKDF2Digest(password, salt, this.iterations)));
+
+	}
+
+	/**
+	 * 
+	 * Starts computing an iterated hash of a password without waiting for the
+	 * result. It is used for work that the response does not depend on.
+	 * 
+	 * @param password the password to be hashed.
+	 * @param salt     the random salt.
+	 * @return the future hash string.
+	 * @throws RejectedExecutionException if the pool is too busy to take the task.
+	 */
+	public CompletableFuture<String> hashAsync(String password, String salt) throws RejectedExecutionException {
+
+		return this.submit(() -> SecurityUtility.getPBKDF2Digest(password, salt, this.iterations));
+
+	}
+
+	/**
+	 * 
+	 * Checks if a password matches a stored hash. Both single-round and iterated
+	 * hashes are accepted.
+	 * 
+	 * @param password the input password to be validated.
+	 * @param salt     the random salt stored in the database.
+	 * @param hash     the hash string stored in the database.
+	 * @return true if the password is valid, or false otherwise.
+	 * @throws RejectedExecutionException if the pool is too busy to take the task
+	 *                                    or does not finish it in time.
+	 */
+	public boolean verify(String password, String salt, String hash) throws RejectedExecutionException {
+
+		return this.await(this.submit(() -> SecurityUtility.isValidPassword(password, salt, hash)));
+
+	}
+
+	/**
+	 * 
+	 * Checks if a stored hash is weaker than the ones currently created, so it
+	 * should be replaced after the next successful login.
+	 * 
+	 * @param hash the hash string stored in the database.
+	 * @return true if the hash should be upgraded, or false otherwise.
+	 */
+	public boolean needsUpgrade(String hash) {
+
+		return SecurityUtility.getHashIterations(hash) < this.iterations;
+
+	}
+
+	/**
+	 * 
+	 * Gets the runtime statistics of the hashing pool.
+	 * 
+	 * @return a map from statistic names to their values.
+	 */
+	public Map<String, Long> getStatistics() {
+
+		Map<String, Long> statistics = new LinkedHashMap<>();
+
+		long completed = this.completedCount.get();
+
+		statistics.put("iterations", (long) this.iterations);
+		statistics.put("poolSize", (long) this.executor.getMaximumPoolSize());
+		statistics.put("activeCount", (long) this.executor.getActiveCount());
+		statistics.put("queueDepth", (long) this.executor.getQueue().size());
+		statistics.put("queueCapacity", (long) this.queueCapacity);
+		statistics.put("completedCount", completed);
+		statistics.put("rejectedCount", this.rejectedCount.get());
+		statistics.put("lastMinuteCount", this.getLastMinuteCount());
+		statistics.put("averageMicros", completed == 0 ? 0L : this.totalNanos.get() / completed / 1000);
+
+		return statistics;
+
+	}
+
+	private <T> CompletableFuture<T> submit(Supplier<T> task) {
+
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				long start = System.nanoTime();
+				T result = task.get();
+				this.record(System.nanoTime() - start);
+				return result;
+			}, this.executor);
+		} catch (RejectedExecutionException e) {
+			this.rejectedCount.incrementAndGet();
+			throw e;
+		}
+
+	}
+
+	private <T> T await(Future<T> future) {
+
+		try {
+			return future.get(HASH_TIMEOUT, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			this.rejectedCount.incrementAndGet();
+			throw new RejectedExecutionException("password hashing timed out", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("interrupted while hashing", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("password hashing failed", e.getCause());
+		}
+
+	}
+
+	private void record(long nanos) {
+
+		this.completedCount.incrementAndGet();
+		this.totalNanos.addAndGet(nanos);
+
+		long second = System.currentTimeMillis() / 1000;
+		int slot = (int) (second % RATE_WINDOW);
+		long slotSecond = this.rateSeconds.get(slot);
+		if (slotSecond != second && this.rateSeconds.compareAndSet(slot, slotSecond, second)) {
+			this.rateCounts.set(slot, 0);
+		}
+		this.rateCounts.incrementAndGet(slot);
+
+	}
+
+	private long getLastMinuteCount() {
+
+		long second = System.currentTimeMillis() / 1000;
+		long count = 0;
+		for (int i = 0; i < RATE_WINDOW; i++) {
+			if (second - this.rateSeconds.get(i) < RATE_WINDOW) {
+				count += this.rateCounts.get(i);
+			}
+		}
+
+		return count;
+
+	}
+
+}
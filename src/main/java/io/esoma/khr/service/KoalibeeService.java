@@ -1,21 +1,34 @@
 package io.esoma.khr.service;
 
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
-import org.json.JSONObject;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import io.esoma.khr.dao.AlbumDao;
 import io.esoma.khr.dao.KoalibeeDao;
+import io.esoma.khr.index.CatalogIndex;
+import io.esoma.khr.index.EmailFilter;
+import io.esoma.khr.index.RecentMoments;
+import io.esoma.khr.index.SuggestIndex;
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumData;
 import io.esoma.khr.model.Credentials;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.KoalibeeData;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.storage.MediaStore;
 import io.esoma.khr.utility.DataUtility;
 import io.esoma.khr.utility.LogUtility;
+import io.esoma.khr.utility.PageUtility;
 import io.esoma.khr.utility.SecurityUtility;
 
 /**
@@ -26,7 +39,7 @@ import io.esoma.khr.utility.SecurityUtility;
  *
  */
 @Service(value = "koalibeeService")
-public class KoalibeeService {
+public class KoalibeeService implements InitializingBean {
 
 	// Error messages
 	public static final String BAD_REQUEST = "bad request";
@@ -48,7 +61,17 @@ public class KoalibeeService {
 	private KoalibeeDao koalibeeDao;
 	private AlbumDao albumDao;
 
+	private AlbumService albumService;
 	private AuthService authService;
+	private HashingService hashingService;
+	private LedgerService ledgerService;
+	private ThumbnailService thumbnailService;
+
+	private CatalogIndex catalogIndex;
+	private EmailFilter emailFilter;
+	private RecentMoments recentMoments;
+	private SuggestIndex suggestIndex;
+	private MediaStore mediaStore;
 
 	@Autowired
 	@Qualifier(value = "koalibeeDaoImplBasic")
@@ -62,33 +85,111 @@ public class KoalibeeService {
 		this.albumDao = albumDao;
 	}
 
+	@Autowired
+	@Qualifier(value = "albumService")
+	public void setAlbumService(AlbumService albumService) {
+		this.albumService = albumService;
+	}
+
 	@Autowired
 	@Qualifier(value = "authService")
 	public void setAuthService(AuthService authService) {
 		this.authService = authService;
 	}
 
+	@Autowired
+	@Qualifier(value = "hashingService")
+	public void setHashingService(HashingService hashingService) {
+		this.hashingService = hashingService;
+	}
+
+	@Autowired
+	@Qualifier(value = "ledgerService")
+	public void setLedgerService(LedgerService ledgerService) {
+		this.ledgerService = ledgerService;
+	}
+
+	@Autowired
+	@Qualifier(value = "thumbnailService")
+	public void setThumbnailService(ThumbnailService thumbnailService) {
+		this.thumbnailService = thumbnailService;
+	}
+
+	@Autowired
+	@Qualifier(value = "catalogIndex")
+	public void setCatalogIndex(CatalogIndex catalogIndex) {
+		this.catalogIndex = catalogIndex;
+	}
+
+	@Autowired
+	@Qualifier(value = "emailFilter")
+	public void setEmailFilter(EmailFilter emailFilter) {
+		this.emailFilter = emailFilter;
+	}
+
+	@Autowired
+	@Qualifier(value = "recentMoments")
+	public void setRecentMoments(RecentMoments recentMoments) {
+		this.recentMoments = recentMoments;
+	}
+
+	@Autowired
+	@Qualifier(value = "suggestIndex")
+	public void setSuggestIndex(SuggestIndex suggestIndex) {
+		this.suggestIndex = suggestIndex;
+	}
+
+	@Autowired
+	@Qualifier(value = "mediaStore")
+	public void setMediaStore(MediaStore mediaStore) {
+		this.mediaStore = mediaStore;
+	}
+
+	/**
+	 * 
+	 * Builds the email filter from all registered emails once the dependencies
+	 * are wired at startup.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+
+		this.emailFilter.rebuild(this.koalibeeDao.getAllEmails());
+
+	}
+
+	/**
+	 * 
+	 * Checks if an email has been registered. Emails ruled out by the filter are
+	 * accepted without querying the database.
+	 * 
+	 * @param email the email to be checked.
+	 * @return true if the email is registered, or false otherwise.
+	 */
+	boolean isEmailTaken(String email) {
+
+		if (!this.emailFilter.mightContain(email)) {
+			return false;
+		}
+
+		return this.koalibeeDao.isEmailRegistered(email);
+
+	}
+
 	/**
 	 * 
-	 * Attempts to register a new koalibee with the given data encoded in a JSON
-	 * string. The value of the return string depends on the result of the process.
+	 * Attempts to register a new koalibee with the given data bound from the
+	 * request body. The value of the return string depends on the result of the
+	 * process.
 	 * 
-	 * @param koalibeeData the JSON string sent from the request.
+	 * @param koalibeeData the data sent from the request.
 	 * @return a JSON web token representing the new koalibee if the registration is
 	 *         successful, or a generic string with an error message when the
 	 *         process fails for a specific reason, or null when an unknown error
 	 *         occurs.
 	 */
-	public String register(String koalibeeData) {
-
-		JSONObject jo;
-
-		Map<String, String> authData = new HashMap<>();
+	public String register(KoalibeeData koalibeeData) {
 
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(koalibeeData);
-		} catch (Exception e) {
+		if (koalibeeData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return BAD_REQUEST;
 		}
@@ -97,66 +198,56 @@ public class KoalibeeService {
 		Koalibee koalibee = new Koalibee();
 
 		// Validate first name.
-		try {
-			String firstName = jo.getString(FIRST_NAME);
-			if (firstName.length() < 1) {
-				return BAD_FIRST_NAME;
-			} else {
-				koalibee.setFirstName(firstName);
-			}
-		} catch (Exception e) {
+		String firstName = koalibeeData.getFirstName();
+		if (firstName == null) {
 			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, FIRST_NAME));
 			return BAD_FIRST_NAME;
+		} else if (firstName.length() < 1) {
+			return BAD_FIRST_NAME;
+		} else {
+			koalibee.setFirstName(firstName);
 		}
 		// Validate last name.
-		try {
-			String lastName = jo.getString(LAST_NAME);
-			if (lastName.length() < 1) {
-				return BAD_LAST_NAME;
-			} else {
-				koalibee.setLastName(lastName);
-			}
-		} catch (Exception e) {
+		String lastName = koalibeeData.getLastName();
+		if (lastName == null) {
 			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, LAST_NAME));
 			return BAD_LAST_NAME;
+		} else if (lastName.length() < 1) {
+			return BAD_LAST_NAME;
+		} else {
+			koalibee.setLastName(lastName);
 		}
 		// Validate email.
-		try {
-			String email = jo.getString(EMAIL);
-			if (!email.contains("@") || email.length() < 5) {
-				return BAD_EMAIL;
-			} else {
-				if (this.koalibeeDao.getAllEmails().contains(email)) {
-					return DUPLICATE_EMAIL;
-				} else {
-					koalibee.setEmail(email);
-					credentials.setEmail(email);
-					authData.put(EMAIL, email);
-				}
-			}
-		} catch (Exception e) {
+		String email = koalibeeData.getEmail();
+		if (email == null) {
 			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, EMAIL));
 			return BAD_EMAIL;
+		} else if (!email.contains("@") || email.length() < 5) {
+			return BAD_EMAIL;
+		} else if (this.isEmailTaken(email)) {
+			return DUPLICATE_EMAIL;
+		} else {
+			koalibee.setEmail(email);
+			credentials.setEmail(email);
 		}
 
 		// Validate password.
-		try {
-			String password = jo.getString(PS);
-			if (password.length() < 6) {
-				return BAD_PS;
-			} else {
-				String passwordSalt = SecurityUtility.getPasswordSaltStandard();
-				String passwordHash = SecurityUtility.getSHA256Digest(password + passwordSalt);
-				credentials.setPasswordSalt(passwordSalt);
-				credentials.setPasswordHash(passwordHash);
-				authData.put(PS, password);
-				authData.put("passwordSalt", passwordSalt);
-				authData.put("passwordHash", passwordHash);
-				koalibee.setCredentials(credentials);
-			}
-		} catch (Exception e) {
+		String password = koalibeeData.getPassword();
+		if (password == null) {
 			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, PS));
 			return BAD_PS;
+		} else if (password.length() < 6) {
+			return BAD_PS;
+		}
+		try {
+			String passwordSalt = SecurityUtility.getPasswordSaltStrong();
+			String passwordHash = this.hashingService.hash(password, passwordSalt);
+			credentials.setPasswordSalt(passwordSalt);
+			credentials.setPasswordHash(passwordHash);
+			koalibee.setCredentials(credentials);
+		} catch (RejectedExecutionException e) {
+			LogUtility.ROOT_LOGGER.warn("password hashing pool is saturated");
+			return AuthService.SERVER_BUSY;
 		}
 
 		// Each new account receives 100 free ETA coins.
@@ -164,8 +255,8 @@ public class KoalibeeService {
 		// Persist the new user in the database.
 		Integer koalibeeId = this.koalibeeDao.addKoalibee(koalibee);
 		if (koalibeeId != 0) {
-			authData.put("koalibeeId", koalibeeId.toString());
-			return authService.authenticate(authData);
+			this.emailFilter.put(koalibee.getEmail());
+			return authService.issueToken(koalibeeId, koalibee.getEmail());
 		} else {
 			return DATABASE_ERROR;
 		}
@@ -174,21 +265,17 @@ public class KoalibeeService {
 
 	/**
 	 * 
-	 * Attempts to login a koalibee with the given credentials encoded in a JSON
-	 * string.
+	 * Attempts to login a koalibee with the given credentials bound from the
+	 * request body. A password hash weaker than the current one is replaced in the
+	 * background after a successful login.
 	 * 
-	 * @param credentialsData the JSON string sent from the request.
+	 * @param credentialsData the credentials sent from the request.
 	 * @return a JSON web token representing the koalibee if the credentials are
 	 *         valid, or a generic string with an error message.
 	 */
-	public String login(String credentialsData) {
-
-		JSONObject jo;
+	public String login(KoalibeeData credentialsData) {
 
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(credentialsData);
-		} catch (Exception e) {
+		if (credentialsData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return BAD_REQUEST;
 		}
@@ -196,21 +283,17 @@ public class KoalibeeService {
 		Map<String, String> authData = new HashMap<>();
 
 		// Retrieve email.
-		try {
-			String email = jo.getString(EMAIL);
-			authData.put(EMAIL, email);
-		} catch (Exception e) {
+		if (credentialsData.getEmail() == null) {
 			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, EMAIL));
 			return BAD_EMAIL;
 		}
+		authData.put(EMAIL, credentialsData.getEmail());
 		// Retrieve password.
-		try {
-			String password = jo.getString(PS);
-			authData.put(PS, password);
-		} catch (Exception e) {
+		if (credentialsData.getPassword() == null) {
 			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, PS));
 			return BAD_PS;
 		}
+		authData.put(PS, credentialsData.getPassword());
 
 		// Check if the user is a system administrator.
 		if (authData.get(EMAIL).equals(AuthService.ADMIN_NAME)) {
@@ -221,7 +304,11 @@ public class KoalibeeService {
 				authData.put("koalibeeId", Integer.toString(koalibee.getKoalibeeId()));
 				authData.put("passwordSalt", koalibee.getCredentials().getPasswordSalt());
 				authData.put("passwordHash", koalibee.getCredentials().getPasswordHash());
-				return authService.authenticate(authData);
+				String result = authService.authenticate(authData);
+				if (result.contains(".") && this.hashingService.needsUpgrade(authData.get("passwordHash"))) {
+					this.upgradePasswordHash(koalibee.getKoalibeeId(), authData.get(PS), authData.get("passwordHash"));
+				}
+				return result;
 			} else {
 				return NULL_EMAIL;
 			}
@@ -229,6 +316,41 @@ public class KoalibeeService {
 
 	}
 
+	/**
+	 * 
+	 * Rehashes a verified password with the current cost and stores it unless the
+	 * password has been changed in the meantime. The upgrade is skipped when the
+	 * hashing pool is saturated and tried again at the next login.
+	 */
+	private void upgradePasswordHash(int koalibeeId, String password, String oldHash) {
+
+		final String passwordSalt = SecurityUtility.getPasswordSaltStrong();
+
+		try {
+			this.hashingService.hashAsync(password, passwordSalt).thenAccept(
+					passwordHash -> this.koalibeeDao.upgradePasswordHash(koalibeeId, oldHash, passwordSalt, passwordHash));
+		} catch (RejectedExecutionException e) {
+			LogUtility.ROOT_LOGGER.warn("password hash upgrade postponed, hashing pool is saturated");
+		}
+
+	}
+
+	/**
+	 * 
+	 * Adds the rewards not yet applied to the stored balances, so every view of a
+	 * koalibee shows the current balance. The pending entries of all koalibees
+	 * are summed in one query.
+	 */
+	private void addPendingRewards(List<Koalibee> koalibeeList) {
+
+		final Map<Integer, Integer> pendingMap = this.ledgerService
+				.getPending(koalibeeList.stream().map(Koalibee::getKoalibeeId).collect(Collectors.toList()));
+		for (Koalibee k : koalibeeList) {
+			k.setEtaBalance(k.getEtaBalance() + pendingMap.getOrDefault(k.getKoalibeeId(), 0));
+		}
+
+	}
+
 	/**
 	 * 
 	 * Retrieves the data of a koalibee by its ID. Proxy variables which cannot be
@@ -241,10 +363,13 @@ public class KoalibeeService {
 
 		Koalibee koalibee = this.koalibeeDao.getKoalibeeById(koalibeeId);
 
-		// Truncate proxies.
+		// Truncate proxies and add the rewards not yet applied to the balance.
 		if (koalibee != null) {
+			this.addPendingRewards(Collections.singletonList(koalibee));
 			koalibee.setAvatar(null);
 			koalibee.setAvatarType(null);
+			koalibee.setAvatarHash(null);
+			koalibee.setAvatarVersion(null);
 			koalibee.setCredentials(null);
 			koalibee.setAlbumList(null);
 		}
@@ -255,21 +380,45 @@ public class KoalibeeService {
 
 	/**
 	 * 
-	 * Updates the basic information of a koalibee with the given data encoded in a
-	 * JSON string.
+	 * Retrieves the avatar of a koalibee.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @return a koalibee object holding only the avatar data and type, or null if
+	 *         the koalibee has no avatar.
+	 */
+	public Koalibee getAvatar(int koalibeeId) {
+
+		return this.koalibeeDao.getKoalibeeAvatar(koalibeeId);
+
+	}
+
+	/**
+	 * 
+	 * Retrieves the version of the avatar of a koalibee, which changes whenever
+	 * the avatar does. The avatar itself is not read.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @return the version of the avatar, or null if the koalibee has no avatar.
+	 */
+	public String getAvatarVersion(int koalibeeId) {
+
+		return this.koalibeeDao.getKoalibeeAvatarVersion(koalibeeId);
+
+	}
+
+	/**
+	 * 
+	 * Updates the basic information of a koalibee with the given data bound from
+	 * the request body. Elements that are absent or empty are left unchanged, and
+	 * so is the avatar if its data url is malformed.
 	 * 
 	 * @param koalibeeId   the ID of the koalibee.
-	 * @param koalibeeData the JSON string sent from the request.
+	 * @param koalibeeData the data sent from the request.
 	 * @return true if the update is successful, or false if it fails.
 	 */
-	public boolean updateInformation(int koalibeeId, String koalibeeData) {
+	public boolean updateInformation(int koalibeeId, KoalibeeData koalibeeData) {
 
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(koalibeeData);
-		} catch (Exception e) {
+		if (koalibeeData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return false;
 		}
@@ -277,55 +426,85 @@ public class KoalibeeService {
 		Koalibee koalibee = new Koalibee(koalibeeId);
 
 		// Try update the first name.
-		try {
-			String firstName = jo.getString(FIRST_NAME);
-			if (firstName.length() > 0) {
-				koalibee.setFirstName(firstName);
-			}
-		} catch (Exception e) {
-			koalibee.setFirstName(null);
+		String firstName = koalibeeData.getFirstName();
+		if (firstName != null && firstName.length() > 0) {
+			koalibee.setFirstName(firstName);
 		}
 		// Try update the last name.
-		try {
-			String lastName = jo.getString(LAST_NAME);
-			if (lastName.length() > 0) {
-				koalibee.setLastName(lastName);
-			}
-		} catch (Exception e) {
-			koalibee.setLastName(null);
+		String lastName = koalibeeData.getLastName();
+		if (lastName != null && lastName.length() > 0) {
+			koalibee.setLastName(lastName);
 		}
 
 		// Try update the avatar.
-		try {
-			String avatarDataUrl = jo.getString("avatarDataUrl");
+		String avatarDataUrl = koalibeeData.getAvatarDataUrl();
+		String avatarType = DataUtility.getDataUrlType(avatarDataUrl);
+		if (avatarType != null) {
 			koalibee.setAvatar(DataUtility.decodeDataUrlToBytes(avatarDataUrl));
-			koalibee.setAvatarType(
-					avatarDataUrl.substring(avatarDataUrl.indexOf('/') + 1, avatarDataUrl.indexOf(';')).toUpperCase());
-		} catch (Exception e) {
-			koalibee.setAvatar(null);
+			if (koalibee.getAvatar() != null) {
+				koalibee.setAvatarType(avatarType);
+			}
+		}
+
+		if (!this.koalibeeDao.updateKoalibee(koalibee)) {
+			return false;
+		}
+
+		// Buffered moments and album pages carry the name of their poster.
+		if (koalibee.getFirstName() != null || koalibee.getLastName() != null) {
+			this.recentMoments.clear();
+			this.albumService.recordCatalogChange();
+		}
+		if (koalibee.getAvatarType() != null) {
+			this.thumbnailService.refreshAvatar(koalibeeId);
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * 
+	 * Stores the avatar of a koalibee once the whole upload has arrived and its
+	 * content is found to be an image of its type. The koalibee should have been
+	 * authenticated first.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param avatarType the file type of the avatar.
+	 * @param avatar     the body of the upload.
+	 * @param length     the length of the upload in bytes.
+	 * @return true if the avatar is stored, or false if the content does not
+	 *         match its type or the upload fails.
+	 */
+	public boolean uploadAvatar(int koalibeeId, String avatarType, InputStream avatar, long length) {
+
+		if (length < 1) {
+			return false;
+		}
+
+		if (!DataUtility.storeUpload(avatar, length, avatarType, !this.mediaStore.isEnabled(),
+				in -> this.koalibeeDao.updateKoalibeeAvatar(koalibeeId, avatarType, in, length))) {
+			return false;
 		}
 
-		return this.koalibeeDao.updateKoalibee(koalibee);
+		this.thumbnailService.refreshAvatar(koalibeeId);
+
+		return true;
 
 	}
 
 	/**
 	 * 
-	 * Updates the credentials of a koalibee with the given data encoded in a JSON
-	 * string.
+	 * Updates the credentials of a koalibee with the given data bound from the
+	 * request body. Elements that are absent are left unchanged.
 	 * 
 	 * @param koalibeeId      the ID of the koalibee.
-	 * @param credentialsData the JSON string sent from the request.
+	 * @param credentialsData the credentials sent from the request.
 	 * @return true if the update is successful, or false if it fails.
 	 */
-	public boolean updateCredentials(int koalibeeId, String credentialsData) {
-
-		JSONObject jo;
+	public boolean updateCredentials(int koalibeeId, KoalibeeData credentialsData) {
 
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(credentialsData);
-		} catch (Exception e) {
+		if (credentialsData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return false;
 		}
@@ -333,101 +512,73 @@ public class KoalibeeService {
 		Credentials credentials = new Credentials();
 		Koalibee koalibee = new Koalibee(koalibeeId);
 
-		// Try update the email.
-		try {
-			String email = jo.getString(EMAIL);
-			if (!this.koalibeeDao.getAllEmails().contains(email)) {
-				credentials.setEmail(email);
-			} else {
-				// Reject the request if a duplicate email is found.
+		// Try update the email, rejecting the request if a duplicate is found.
+		String email = credentialsData.getEmail();
+		if (email != null) {
+			if (this.isEmailTaken(email)) {
 				return false;
 			}
-		} catch (Exception e) {
-			credentials.setEmail(null);
+			credentials.setEmail(email);
 		}
 
 		// Try update the password.
-		try {
-			String password = jo.getString(PS);
-			String passwordSalt = SecurityUtility.getPasswordSaltStandard();
-			String passwordHash = SecurityUtility.getSHA256Digest(password + passwordSalt);
-			credentials.setPasswordSalt(passwordSalt);
-			credentials.setPasswordHash(passwordHash);
-		} catch (Exception e) {
-			credentials.setPasswordSalt(null);
+		String password = credentialsData.getPassword();
+		if (password != null) {
+			try {
+				String passwordSalt = SecurityUtility.getPasswordSaltStrong();
+				String passwordHash = this.hashingService.hash(password, passwordSalt);
+				credentials.setPasswordSalt(passwordSalt);
+				credentials.setPasswordHash(passwordHash);
+			} catch (RejectedExecutionException e) {
+				LogUtility.ROOT_LOGGER.warn("password hashing pool is saturated");
+				return false;
+			}
 		}
 
 		koalibee.setCredentials(credentials);
 
-		return this.koalibeeDao.updateCredentials(koalibee);
+		if (!this.koalibeeDao.updateCredentials(koalibee)) {
+			return false;
+		}
+
+		this.emailFilter.put(credentials.getEmail());
+
+		return true;
 
 	}
 
 	/**
 	 * 
 	 * Adds an album to a koalibee's inventory and deducting the ETA price from the
-	 * its balance.
+	 * its balance. The purchase fails if the balance is not sufficient.
 	 * 
 	 * @param koalibeeId the ID of the koalibee.
-	 * @param albumData  the JSON string containing the album data.
+	 * @param albumData  the data sent from the request, holding the album ID.
 	 * @return true if the purchase is successful, or false if it fails.
 	 */
-	public boolean purchaseAlbum(int koalibeeId, String albumData) {
-
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(albumData);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
-			return false;
-		}
+	public boolean purchaseAlbum(int koalibeeId, AlbumData albumData) {
 
 		// Try get the album ID.
-		int albumId;
-		try {
-			albumId = jo.getInt(ALBUM_ID);
-		} catch (Exception e) {
+		if (albumData == null || albumData.getAlbumId() == null) {
 			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, ALBUM_ID));
 			return false;
 		}
+		final int albumId = albumData.getAlbumId();
 
 		// Check if the koalibee already has the album.
-		if (this.koalibeeDao.getAllPurchasedAlbumsByKoalibeeId(koalibeeId).contains(new Album(albumId))) {
+		if (this.koalibeeDao.ownsAlbum(koalibeeId, albumId)) {
 			return false;
 		}
 
-		// Check if the koalibee has sufficient balance.
-		Album album = this.albumDao.getAlbumById(albumId);
-		Koalibee koalibee = this.koalibeeDao.getKoalibeeById(koalibeeId);
-
-		// Hotfix for publishers purchase his/her own album.
-		if (album.getKoalibee().getKoalibeeId() == koalibee.getKoalibeeId()) {
-			return this.koalibeeDao.purchaseAlbum(koalibeeId, albumId);
-		}
-
-		if (koalibee.getEtaBalance() < album.getEtaPrice()) {
+		// The balances and the inventory are updated in one transaction.
+		if (!this.koalibeeDao.purchaseAlbum(koalibeeId, albumId)) {
 			return false;
-		} else {
-			koalibee.setEtaBalance(koalibee.getEtaBalance() - album.getEtaPrice());
-			// Credit the publisher.
-			Koalibee publisher = album.getKoalibee();
-			publisher.setEtaBalance(publisher.getEtaBalance() + album.getEtaPrice());
-			if (this.koalibeeDao.updateEtaBalance(koalibee)) {
-				if (this.koalibeeDao.purchaseAlbum(koalibeeId, albumId)) {
-					this.koalibeeDao.updateEtaBalance(publisher);
-					return true;
-				} else {
-					koalibee.setEtaBalance(koalibee.getEtaBalance() + album.getEtaPrice());
-					this.koalibeeDao.updateEtaBalance(koalibee);
-					return false;
-				}
-			} else {
-				return false;
-			}
 		}
 
+		this.suggestIndex.addPurchase(albumId);
+
+		return true;
+
 	}
 
 	/**
@@ -440,31 +591,51 @@ public class KoalibeeService {
 	 */
 	public boolean delete(int koalibeeId) {
 
-		return this.koalibeeDao.deleteKoalibee(koalibeeId);
+		// The moments and albums of the koalibee are deleted along with it, so its
+		// published albums are looked up first to be dropped from the indexes.
+		final List<Integer> albumIdList = this.albumDao.getPublishedAlbumIdsByKoalibee(koalibeeId);
+		if (this.koalibeeDao.deleteKoalibee(koalibeeId)) {
+			for (Integer albumId : albumIdList) {
+				this.catalogIndex.removeAlbum(albumId);
+				this.suggestIndex.removeAlbum(albumId);
+			}
+			this.recentMoments.clear();
+			this.albumService.recordCatalogChange();
+			return true;
+		}
+
+		return false;
 
 	}
 
 	/**
 	 * 
-	 * Retrieves all registered koalibees. It can only be access by a system
-	 * administrator.
+	 * Retrieves a page of registered koalibees sorted by ID. It can only be access
+	 * by a system administrator.
 	 * 
-	 * @return the koalibee list.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the koalibee page, or null if the cursor is invalid.
 	 */
-	public List<Koalibee> getAll() {
+	public Page<Koalibee> getAll(String cursor, Integer limit) {
 
-		List<Koalibee> koalibeeList = this.koalibeeDao.getAllKoalibees();
+		int koalibeeId = 0;
 
-		// Truncate proxies.
-		for (Koalibee k : koalibeeList) {
-			k.setAvatar(null);
-			k.setAvatarType(null);
-			k.setAvatarDataUrl(null);
-			k.setAlbumList(null);
-			k.setCredentials(null);
+		if (cursor != null) {
+			String[] keys = PageUtility.decodeCursor(cursor, 1);
+			if (keys == null) {
+				return null;
+			}
+			koalibeeId = Integer.parseInt(keys[0]);
 		}
 
-		return koalibeeList;
+		final int size = PageUtility.getPageSize(limit);
+
+		// Fetch one more koalibee to find out if there is a next page.
+		List<Koalibee> koalibeeList = this.koalibeeDao.getKoalibeePage(koalibeeId, size + 1);
+		this.addPendingRewards(koalibeeList);
+
+		return PageUtility.toPage(koalibeeList, size, k -> PageUtility.encodeCursor(k.getKoalibeeId()));
 
 	}
 
@@ -484,6 +655,7 @@ public class KoalibeeService {
 		for (Album a : albumList) {
 			a.setArtwork(null);
 			a.setArtworkType(null);
+			a.setArtworkHash(null);
 			a.setKoalibee(null);
 			a.setReviewList(null);
 			a.setTrackList(null);
@@ -508,6 +680,7 @@ public class KoalibeeService {
 		for (Album a : albumList) {
 			a.setArtwork(null);
 			a.setArtworkType(null);
+			a.setArtworkHash(null);
 			a.setArtworkDataUrl(null);
 			a.setKoalibee(null);
 			a.setReviewList(null);
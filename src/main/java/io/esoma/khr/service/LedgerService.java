@@ -0,0 +1,163 @@
+package io.esoma.khr.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import io.esoma.khr.dao.LedgerDao;
+import io.esoma.khr.model.EtaEntry;
+import io.esoma.khr.utility.DatabaseUtility;
+import io.esoma.khr.utility.LogUtility;
+
+/**
+ * 
+ * The service class that keeps the ETA balances through an append-only ledger.
+ * Rewards are appended as pending entries without touching the koalibee row,
+ * and a background applier folds them into the balances in batches. Charges
+ * are taken from the balance at once, with the pending rewards counted in.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Service(value = "ledgerService")
+public class LedgerService implements InitializingBean, DisposableBean {
+
+	private final long interval;
+	private final int batchSize;
+	private ScheduledExecutorService scheduler;
+
+	private LedgerDao ledgerDao;
+
+	public LedgerService() {
+		this(DatabaseUtility.getLedgerInterval(), DatabaseUtility.getLedgerBatchSize());
+	}
+
+	LedgerService(long interval, int batchSize) {
+		super();
+		this.interval = interval;
+		this.batchSize = batchSize;
+	}
+
+	@Autowired
+	@Qualifier(value = "ledgerDaoImplBasic")
+	public void setLedgerDao(LedgerDao ledgerDao) {
+		this.ledgerDao = ledgerDao;
+	}
+
+	/**
+	 * 
+	 * Starts the applier once the dependencies are wired at startup, unless it is
+	 * turned off.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+
+		if (this.interval > 0) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "khr-ledger");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.scheduler.scheduleWithFixedDelay(this::applyPending, this.interval, this.interval,
+					TimeUnit.MILLISECONDS);
+		}
+
+	}
+
+	/**
+	 * 
+	 * Stops the applier and applies the entries still pending.
+	 */
+	@Override
+	public void destroy() throws InterruptedException {
+
+		if (this.scheduler != null) {
+			this.scheduler.shutdown();
+			this.scheduler.awaitTermination(5, TimeUnit.SECONDS);
+		}
+
+		this.applyPending();
+
+	}
+
+	/**
+	 * 
+	 * Appends a reward to the ledger. It is added to the balance by the next run
+	 * of the applier.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param amount     the number of ETA coins to be added.
+	 * @param reason     the reason of the reward.
+	 * @return true if the reward is recorded, or false if it fails.
+	 */
+	public boolean reward(int koalibeeId, int amount, String reason) {
+
+		return this.ledgerDao.addEntry(new EtaEntry(koalibeeId, amount, reason)) > 0;
+
+	}
+
+	/**
+	 * 
+	 * Takes a number of ETA coins from a koalibee right away.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param amount     the number of ETA coins to be taken.
+	 * @param reason     the reason of the charge.
+	 * @return true if the charge is successful, or false if the balance with the
+	 *         pending rewards is too low or the operation fails.
+	 */
+	public boolean charge(int koalibeeId, int amount, String reason) {
+
+		return this.ledgerDao.chargeBalance(koalibeeId, amount, reason);
+
+	}
+
+	/**
+	 * 
+	 * Gets the sums of the rewards of several koalibees that are not applied yet.
+	 * Adding one to the stored balance gives the current balance.
+	 * 
+	 * @param koalibeeIds the IDs of the koalibees.
+	 * @return the pending change of the balance by koalibee ID. Koalibees without
+	 *         pending rewards are left out.
+	 */
+	public Map<Integer, Integer> getPending(Collection<Integer> koalibeeIds) {
+
+		return this.ledgerDao.getPendingDeltas(koalibeeIds);
+
+	}
+
+	/**
+	 * 
+	 * Applies the pending entries in batches until none is left or a batch fails.
+	 * 
+	 * @return the number of entries applied.
+	 */
+	public int applyPending() {
+
+		int total = 0;
+
+		try {
+			int count;
+			do {
+				count = this.ledgerDao.applyPending(this.batchSize);
+				total += Math.max(0, count);
+			} while (count == this.batchSize);
+		} catch (RuntimeException e) {
+			// An exception would cancel the scheduled runs.
+			LogUtility.MASTER_LOGGER.error("error in applyPending, stack trace:", e);
+		}
+
+		return total;
+
+	}
+
+}
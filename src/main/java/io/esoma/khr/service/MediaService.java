@@ -0,0 +1,121 @@
+package io.esoma.khr.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import io.esoma.khr.dao.MediaDao;
+import io.esoma.khr.storage.MediaStore;
+import io.esoma.khr.utility.DatabaseUtility;
+import io.esoma.khr.utility.LogUtility;
+
+/**
+ * 
+ * The service class that moves existing media into the media store. Once the
+ * store is enabled, a background job copies the BLOBs still kept in the
+ * database into it in batches and clears them, so the migration does not hold
+ * up startup.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Service(value = "mediaService")
+public class MediaService implements InitializingBean, DisposableBean {
+
+	private final int batchSize;
+	private volatile boolean stopped;
+	private ExecutorService executor;
+
+	private MediaDao mediaDao;
+	private MediaStore mediaStore;
+
+	public MediaService() {
+		this(DatabaseUtility.getMediaBatchSize());
+	}
+
+	MediaService(int batchSize) {
+		super();
+		this.batchSize = batchSize;
+	}
+
+	@Autowired
+	@Qualifier(value = "mediaDaoImplBasic")
+	public void setMediaDao(MediaDao mediaDao) {
+		this.mediaDao = mediaDao;
+	}
+
+	@Autowired
+	@Qualifier(value = "mediaStore")
+	public void setMediaStore(MediaStore mediaStore) {
+		this.mediaStore = mediaStore;
+	}
+
+	/**
+	 * 
+	 * Starts the migration once the dependencies are wired at startup, if the
+	 * store is enabled.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+
+		if (this.mediaStore.isEnabled()) {
+			this.executor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "khr-media");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.executor.execute(this::migrate);
+		}
+
+	}
+
+	/**
+	 * 
+	 * Stops the migration after the batch in progress. The rest is moved at the
+	 * next startup.
+	 */
+	@Override
+	public void destroy() throws InterruptedException {
+
+		this.stopped = true;
+
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+
+	}
+
+	/**
+	 * 
+	 * Moves the media kept in the database into the store in batches until none
+	 * is left, a batch fails or the service is stopped.
+	 * 
+	 * @return the number of rows moved.
+	 */
+	public int migrate() {
+
+		int total = 0;
+
+		try {
+			int count;
+			do {
+				count = this.mediaDao.migrateMedia(this.batchSize);
+				total += Math.max(0, count);
+			} while (count > 0 && !this.stopped);
+		} catch (RuntimeException e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in migrate, stack trace:", e);
+		}
+
+		return total;
+
+	}
+
+}
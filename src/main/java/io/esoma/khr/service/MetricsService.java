@@ -0,0 +1,92 @@
+package io.esoma.khr.service;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import io.esoma.khr.dao.MetricsDao;
+
+/**
+ * 
+ * The service class that collects runtime statistics used for tuning.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Service(value = "metricsService")
+public class MetricsService {
+
+	private MetricsDao metricsDao;
+	private HashingService hashingService;
+	private QueryService queryService;
+
+	@Autowired
+	@Qualifier(value = "metricsDaoImplBasic")
+	public void setMetricsDao(MetricsDao metricsDao) {
+		this.metricsDao = metricsDao;
+	}
+
+	@Autowired
+	@Qualifier(value = "hashingService")
+	public void setHashingService(HashingService hashingService) {
+		this.hashingService = hashingService;
+	}
+
+	@Autowired
+	@Qualifier(value = "queryService")
+	public void setQueryService(QueryService queryService) {
+		this.queryService = queryService;
+	}
+
+	/**
+	 * 
+	 * Retrieves the hit and miss counters of the second-level cache regions.
+	 * 
+	 * @return a map from region names to their counters.
+	 */
+	public Map<String, Map<String, Long>> getCacheStatistics() {
+
+		return this.metricsDao.getCacheStatistics();
+
+	}
+
+	/**
+	 * 
+	 * Retrieves the hash rate and queue depth of the password hashing pool.
+	 * 
+	 * @return a map from statistic names to their values.
+	 */
+	public Map<String, Long> getHashingStatistics() {
+
+		return this.hashingService.getStatistics();
+
+	}
+
+	/**
+	 * 
+	 * Retrieves the usage and wait statistics of the database connection pool.
+	 * 
+	 * @return a map from statistic names to their values.
+	 */
+	public Map<String, Long> getPoolStatistics() {
+
+		return this.metricsDao.getPoolStatistics();
+
+	}
+
+	/**
+	 * 
+	 * Retrieves the queue depth and outcome counters of the pool that runs the
+	 * database work of controller methods.
+	 * 
+	 * @return a map from statistic names to their values.
+	 */
+	public Map<String, Long> getQueryStatistics() {
+
+		return this.queryService.getStatistics();
+
+	}
+
+}
@@ -1,19 +1,24 @@
 package io.esoma.khr.service;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import io.esoma.khr.dao.KoalibeeDao;
 import io.esoma.khr.dao.MomentDao;
+import io.esoma.khr.index.RecentMoments;
+import io.esoma.khr.model.EtaEntry;
 import io.esoma.khr.model.Koalibee;
 import io.esoma.khr.model.Moment;
+import io.esoma.khr.model.MomentData;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.utility.LogUtility;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -27,6 +32,8 @@ public class MomentService {
 
 	private MomentDao momentDao;
 	private KoalibeeDao koalibeeDao;
+	private RecentMoments recentMoments;
+	private LedgerService ledgerService;
 
 	@Autowired
 	@Qualifier(value = "momentDaoImplBasic")
@@ -40,6 +47,18 @@ public class MomentService {
 		this.koalibeeDao = koalibeeDao;
 	}
 
+	@Autowired
+	@Qualifier(value = "recentMoments")
+	public void setRecentMoments(RecentMoments recentMoments) {
+		this.recentMoments = recentMoments;
+	}
+
+	@Autowired
+	@Qualifier(value = "ledgerService")
+	public void setLedgerService(LedgerService ledgerService) {
+		this.ledgerService = ledgerService;
+	}
+
 	/**
 	 * 
 	 * Retrieves the data of a moment by its ID. Proxy variables which cannot be
@@ -65,47 +84,30 @@ public class MomentService {
 	 * 
 	 * Searches for a specific moment by its poster and post date.
 	 * 
-	 * @param momentData the JSON string containing the search conditions sent from
-	 *                   the request.
+	 * @param momentData the search conditions sent from the request.
 	 * @return the found moment object, or null if the search yields no result.
 	 */
-	public Moment searchOne(String momentData) {
-
-		// Data element names
-		final String KOALIBEE_ID = "koalibeeId";
-		final String POST_DATE = "postDate";
+	public Moment searchOne(MomentData momentData) {
 
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(momentData);
-		} catch (Exception e) {
+		if (momentData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return null;
 		}
 
-		int koalibeeId;
-		LocalDate postDate;
-
 		// Extract koalibee ID.
-		try {
-			koalibeeId = jo.getInt(KOALIBEE_ID);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, KOALIBEE_ID));
+		if (momentData.getKoalibeeId() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "koalibeeId"));
 			return null;
 		}
 
 		// Extract ISO date string and convert it to a LocalDate.
-		try {
-			String dateString = jo.getString(POST_DATE).substring(0, 10);
-			postDate = LocalDate.parse(dateString);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, POST_DATE));
+		LocalDate postDate = parsePostDate(momentData.getPostDate());
+		if (postDate == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "postDate"));
 			return null;
 		}
 
-		Moment moment = this.momentDao.getMomentByKoalibeeAndDate(koalibeeId, postDate);
+		Moment moment = this.momentDao.getMomentByKoalibeeAndDate(momentData.getKoalibeeId(), postDate);
 
 		// Truncate proxies.
 		if (moment != null) {
@@ -118,24 +120,16 @@ public class MomentService {
 
 	/**
 	 * 
-	 * Attempts to post a new moment by a koalibee with the given data encoded in a
-	 * JSON string. The koalibee should have been authenticated first.
+	 * Attempts to post a new moment by a koalibee with the given data bound from
+	 * the request body. The koalibee should have been authenticated first.
 	 * 
 	 * @param koalibeeId the ID of the poster.
-	 * @param momentData     the JSON string sent from the request.
+	 * @param momentData the data sent from the request.
 	 * @return a positive integer if the posting succeeds, or 0 if it fails.
 	 */
-	public int postOne(int koalibeeId, String momentData) {
-
-		// Data element names
-		final String POST_COMMENT = "postComment";
+	public int postOne(int koalibeeId, MomentData momentData) {
 
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(momentData);
-		} catch (Exception e) {
+		if (momentData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return 0;
 		}
@@ -153,13 +147,11 @@ public class MomentService {
 		koalibee.setKoalibeeId(koalibeeId);
 
 		// Extract moment data.
-		try {
-			String postComment = jo.getString(POST_COMMENT);
-			moment.setPostComment(postComment);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, POST_COMMENT));
+		if (momentData.getPostComment() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "postComment"));
 			return 0;
 		}
+		moment.setPostComment(momentData.getPostComment());
 
 		// Check for double posting.
 		Moment persistMoment = this.momentDao.getMomentByKoalibeeAndDate(koalibee.getKoalibeeId(), LocalDate.now());
@@ -175,10 +167,14 @@ public class MomentService {
 			return 0;
 		}
 
+		// Put a detached copy at the top of the timeline.
+		Moment recentMoment = new Moment(momentId, moment.getPostDate());
+		recentMoment.setPostComment(moment.getPostComment());
+		recentMoment.setKoalibeeName(persistKoalibee.getFirstName() + " " + persistKoalibee.getLastName());
+		this.recentMoments.add(recentMoment);
+
 		// Add ETA coins to the koalibee's balance.
-		int newBalance = persistKoalibee.getEtaBalance() + 20;
-		persistKoalibee.setEtaBalance(newBalance);
-		this.koalibeeDao.updateEtaBalance(persistKoalibee);
+		this.ledgerService.reward(koalibeeId, 20, EtaEntry.MOMENT_REWARD);
 
 		return momentId;
 
@@ -186,18 +182,47 @@ public class MomentService {
 
 	/**
 	 * 
-	 * Retrieves all posted moments. Will truncate all proxy variables.
+	 * Retrieves a page of posted moments, latest first. Will truncate all proxy
+	 * variables. The database is only read for pages past the newest moments kept
+	 * in memory.
 	 * 
-	 * @return the moment list.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the moment page, or null if the cursor is invalid.
 	 */
-	public List<Moment> getAll() {
+	public Page<Moment> getAll(String cursor, Integer limit) {
+
+		LocalDate postDate = null;
+		int momentId = 0;
+
+		if (cursor != null) {
+			String[] keys = PageUtility.decodeCursor(cursor, 2);
+			if (keys == null) {
+				return null;
+			}
+			try {
+				postDate = LocalDate.parse(keys[0]);
+			} catch (DateTimeParseException e) {
+				return null;
+			}
+			momentId = Integer.parseInt(keys[1]);
+		}
 
-		List<Moment> momentList = this.momentDao.getAllMoments();
+		final int size = PageUtility.getPageSize(limit);
 
-		// Truncate proxies.
-		momentList.forEach(m -> m.setKoalibee(null));
+		// Fetch one more moment to find out if there is a next page. The newest
+		// moments are served from memory, loading them first if needed.
+		List<Moment> momentList = this.recentMoments.getPage(postDate, momentId, size + 1);
+		if (momentList == null && this.loadRecentMoments()) {
+			momentList = this.recentMoments.getPage(postDate, momentId, size + 1);
+		}
+		if (momentList == null) {
+			momentList = this.momentDao.getMomentPage(postDate, momentId, size + 1);
+			// Truncate proxies.
+			momentList.forEach(m -> m.setKoalibee(null));
+		}
 
-		return momentList;
+		return PageUtility.toPage(momentList, size, m -> PageUtility.encodeCursor(m.getPostDate(), m.getMomentId()));
 
 	}
 
@@ -205,31 +230,21 @@ public class MomentService {
 	 * 
 	 * Retrieves all moments posted on the given date.
 	 * 
-	 * @param dateData the JSON string containing the date information.
-	 * @return the moment list, or null if the date information is invalid.
+	 * @param dateData the date information sent from the request.
+	 * @return the moment list, or an empty list if the date information is
+	 *         invalid.
 	 */
-	public List<Moment> getByDate(String dateData) {
-
-		// Data element names
-		final String POST_DATE = "postDate";
-
-		JSONObject jo;
+	public List<Moment> getByDate(MomentData dateData) {
 
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(dateData);
-		} catch (Exception e) {
+		if (dateData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return new ArrayList<>();
 		}
 
 		// Extract the date information.
-		LocalDate postDate;
-		try {
-			String dateString = jo.getString(POST_DATE).substring(0, 10);
-			postDate = LocalDate.parse(dateString);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, POST_DATE));
+		LocalDate postDate = parsePostDate(dateData.getPostDate());
+		if (postDate == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "postDate"));
 			return new ArrayList<>();
 		}
 
@@ -242,6 +257,22 @@ public class MomentService {
 
 	}
 
+	// Reads the date part of an ISO date or date-time string. Returns null if it
+	// is absent or not a valid date.
+	private static LocalDate parsePostDate(String postDate) {
+
+		if (postDate == null || postDate.length() < 10) {
+			return null;
+		}
+
+		try {
+			return LocalDate.parse(postDate.substring(0, 10));
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+
+	}
+
 	/**
 	 * 
 	 * Deletes the moment with the given ID from the database. This can only be
@@ -252,7 +283,33 @@ public class MomentService {
 	 */
 	public boolean delete(int momentId) {
 
-		return this.momentDao.deleteMoment(momentId);
+		if (this.momentDao.deleteMoment(momentId)) {
+			this.recentMoments.remove(momentId);
+			return true;
+		}
+
+		return false;
+
+	}
+
+	private boolean loadRecentMoments() {
+
+		if (this.recentMoments.size() > 0) {
+			return false;
+		}
+
+		final long stamp = this.recentMoments.getStamp();
+		List<Moment> momentList = this.momentDao.getMomentPage(null, 0, this.recentMoments.getCapacity());
+
+		// An empty list may come from a database error, so it is not kept.
+		if (momentList.isEmpty()) {
+			return false;
+		}
+
+		momentList.forEach(m -> m.setKoalibee(null));
+		this.recentMoments.load(momentList, stamp);
+
+		return true;
 
 	}
 
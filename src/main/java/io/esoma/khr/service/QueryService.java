@@ -0,0 +1,183 @@
+package io.esoma.khr.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import io.esoma.khr.utility.DatabaseUtility;
+
+/**
+ * 
+ * The service class that runs the database work of controller methods on a
+ * dedicated pool of worker threads, so a slow query does not hold on to a
+ * request thread of the server. The pool is sized to the connection pool and
+ * has a bounded queue. A request is answered with 503 if the queue is full or
+ * if its work does not finish in time.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Service(value = "queryService")
+public class QueryService implements DisposableBean {
+
+	private final boolean asynchronous;
+	private final int queueCapacity;
+	private final long timeout;
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong timedOutCount = new AtomicLong();
+
+	public QueryService() {
+		this(DatabaseUtility.isAsyncQueryEnabled(), DatabaseUtility.getQueryThreads(),
+				DatabaseUtility.getQueryQueueCapacity(), DatabaseUtility.getQueryTimeout());
+	}
+
+	public QueryService(boolean asynchronous, int threads, int queueCapacity, long timeout) {
+		super();
+		this.asynchronous = asynchronous;
+		this.queueCapacity = queueCapacity;
+		this.timeout = timeout;
+
+		if (asynchronous) {
+			final AtomicInteger threadNumber = new AtomicInteger();
+			this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(queueCapacity), r -> {
+						Thread thread = new Thread(r, "khr-query-" + threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}, new ThreadPoolExecutor.AbortPolicy());
+		} else {
+			this.executor = null;
+		}
+	}
+
+	@Override
+	public void destroy() {
+
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+
+	}
+
+	/**
+	 * 
+	 * Runs the work of a controller method and completes the response with its
+	 * result. If the asynchronous mode is turned off, the work is done right away
+	 * on the calling thread.
+	 * 
+	 * @param task the work that builds the response.
+	 * @return the deferred response, which is set to 503 if the work is rejected
+	 *         or times out. An exception thrown by the work is passed on to the
+	 *         exception handlers.
+	 */
+	public <T> DeferredResult<ResponseEntity<T>> submit(Supplier<ResponseEntity<T>> task) {
+
+		final DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(this.timeout);
+
+		if (this.executor == null) {
+			result.setResult(task.get());
+			return result;
+		}
+
+		final AtomicReference<Future<?>> future = new AtomicReference<>();
+
+		result.onTimeout(() -> {
+			// A task still waiting in the queue is dropped, a running query is left to end.
+			Future<?> pending = future.get();
+			if (pending != null) {
+				pending.cancel(false);
+			}
+			this.timedOutCount.incrementAndGet();
+			result.setResult(unavailable());
+		});
+
+		try {
+			future.set(this.executor.submit(() -> {
+				try {
+					ResponseEntity<T> response = task.get();
+					this.completedCount.incrementAndGet();
+					result.setResult(response);
+				} catch (RuntimeException e) {
+					this.failedCount.incrementAndGet();
+					result.setErrorResult(e);
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			this.rejectedCount.incrementAndGet();
+			result.setResult(unavailable());
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * 
+	 * Completes a response right away on the calling thread. It is meant for
+	 * requests answered without any database work, such as those that cannot be
+	 * authenticated, so they never wait in the queue.
+	 * 
+	 * @param response the response.
+	 * @return the deferred response, which is already set.
+	 */
+	public <T> DeferredResult<ResponseEntity<T>> complete(ResponseEntity<T> response) {
+
+		final DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(this.timeout);
+		result.setResult(response);
+
+		return result;
+
+	}
+
+	/**
+	 * 
+	 * Gets the runtime statistics of the query pool.
+	 * 
+	 * @return a map from statistic names to their values.
+	 */
+	public Map<String, Long> getStatistics() {
+
+		Map<String, Long> statistics = new LinkedHashMap<>();
+
+		statistics.put("asynchronous", this.asynchronous ? 1L : 0L);
+		statistics.put("poolSize", this.executor == null ? 0L : (long) this.executor.getMaximumPoolSize());
+		statistics.put("activeCount", this.executor == null ? 0L : (long) this.executor.getActiveCount());
+		statistics.put("queueDepth", this.executor == null ? 0L : (long) this.executor.getQueue().size());
+		statistics.put("queueCapacity", (long) this.queueCapacity);
+		statistics.put("timeoutMillis", this.timeout);
+		statistics.put("completedCount", this.completedCount.get());
+		statistics.put("failedCount", this.failedCount.get());
+		statistics.put("rejectedCount", this.rejectedCount.get());
+		statistics.put("timedOutCount", this.timedOutCount.get());
+
+		return statistics;
+
+	}
+
+	// Builds the response sent when the work cannot be done in time.
+	private static <T> ResponseEntity<T> unavailable() {
+
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+
+	}
+
+}
@@ -2,7 +2,6 @@ package io.esoma.khr.service;
 
 import java.util.List;
 
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
@@ -10,9 +9,14 @@ import org.springframework.stereotype.Service;
 import io.esoma.khr.dao.KoalibeeDao;
 import io.esoma.khr.dao.ReviewDao;
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumRating;
+import io.esoma.khr.model.EtaEntry;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Review;
+import io.esoma.khr.model.ReviewData;
 import io.esoma.khr.utility.LogUtility;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -26,6 +30,8 @@ public class ReviewService {
 
 	private KoalibeeDao koalibeeDao;
 	private ReviewDao reviewDao;
+	private AlbumService albumService;
+	private LedgerService ledgerService;
 
 	@Autowired
 	@Qualifier(value = "koalibeeDaoImplBasic")
@@ -39,6 +45,18 @@ public class ReviewService {
 		this.reviewDao = reviewDao;
 	}
 
+	@Autowired
+	@Qualifier(value = "albumService")
+	public void setAlbumService(AlbumService albumService) {
+		this.albumService = albumService;
+	}
+
+	@Autowired
+	@Qualifier(value = "ledgerService")
+	public void setLedgerService(LedgerService ledgerService) {
+		this.ledgerService = ledgerService;
+	}
+
 	/**
 	 * 
 	 * Gets a review from the database with the given ID. It can be accessed
@@ -66,44 +84,29 @@ public class ReviewService {
 	 * Searches for a specific review posted by a koalibee on a particular album. It
 	 * can be accessed publicly.
 	 * 
-	 * @param reviewData the JSON string containing the search conditions.
+	 * @param reviewData the search conditions sent from the request.
 	 * @return the found review object, or null if the search yields no result.
 	 */
-	public Review searchOne(String reviewData) {
-
-		// Data element names
-		final String ALBUM_ID = "albumId";
-		final String KOALIBEE_ID = "koalibeeId";
+	public Review searchOne(ReviewData reviewData) {
 
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(reviewData);
-		} catch (Exception e) {
+		if (reviewData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return null;
 		}
 
-		int albumId;
-		int koalibeeId;
-
 		// Extract search conditions.
-		try {
-			albumId = jo.getInt(ALBUM_ID);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, ALBUM_ID));
+		if (reviewData.getAlbumId() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "albumId"));
 			return null;
 		}
 
-		try {
-			koalibeeId = jo.getInt(KOALIBEE_ID);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, KOALIBEE_ID));
+		if (reviewData.getKoalibeeId() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "koalibeeId"));
 			return null;
 		}
 
-		Review review = this.reviewDao.getReviewByAlbumAndKoalibee(albumId, koalibeeId);
+		Review review = this.reviewDao.getReviewByAlbumAndKoalibee(reviewData.getAlbumId(),
+				reviewData.getKoalibeeId());
 
 		// Truncate proxies.
 		if (review != null) {
@@ -118,25 +121,17 @@ public class ReviewService {
 	/**
 	 * 
 	 * Attempts to post a new review on an album. Each user is only allowed to post
-	 * one review on each album. The album has to be public and owned by the poster.
+	 * one review on each album. The album has to be public and owned by the poster,
+	 * and the rating has to be between 1 and 10.
 	 * 
 	 * @param koalibeeId the ID of the poster.
 	 * @param albumId    the ID of the album.
-	 * @param reviewData the JSON string containing the review information.
+	 * @param reviewData the review information sent from the request.
 	 * @return a positive integer if the posting succeeds, or 0 if it fails.
 	 */
-	public int post(int koalibeeId, int albumId, String reviewData) {
+	public int post(int koalibeeId, int albumId, ReviewData reviewData) {
 
-		// Data element names
-		final String RATING = "rating";
-		final String REVIEW_COMMENT = "reviewComment";
-
-		JSONObject jo;
-
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(reviewData);
-		} catch (Exception e) {
+		if (reviewData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return 0;
 		}
@@ -147,30 +142,28 @@ public class ReviewService {
 		}
 
 		// Verify ownership.
-		List<Album> albumList = this.koalibeeDao.getAllPurchasedAlbumsByKoalibeeId(koalibeeId);
-		albumList.removeIf(a -> a.getAlbumId() != albumId);
-		if (albumList.isEmpty()) {
+		if (!this.koalibeeDao.ownsAlbum(koalibeeId, albumId)) {
 			return 0;
 		}
 
 		Review review = new Review();
 
 		// Extract review data.
-		try {
-			int rating = jo.getInt(RATING);
-			review.setRating(rating);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, RATING));
+		if (reviewData.getRating() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "rating"));
+			return 0;
+		}
+		review.setRating(reviewData.getRating());
+
+		if (review.getRating() < AlbumRating.MIN_RATING || review.getRating() > AlbumRating.MAX_RATING) {
 			return 0;
 		}
 
-		try {
-			String reviewComment = jo.getString(REVIEW_COMMENT);
-			review.setReviewComment(reviewComment);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, REVIEW_COMMENT));
+		if (reviewData.getReviewComment() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "reviewComment"));
 			return 0;
 		}
+		review.setReviewComment(reviewData.getReviewComment());
 
 		review.setAlbum(new Album(albumId));
 		review.setKoalibee(new Koalibee(koalibeeId));
@@ -178,9 +171,8 @@ public class ReviewService {
 		// Award the poster.
 		int reviewId = this.reviewDao.addReview(review);
 		if (reviewId > 0) {
-			Koalibee koalibee = this.koalibeeDao.getKoalibeeById(koalibeeId);
-			koalibee.setEtaBalance(koalibee.getEtaBalance() + 10);
-			this.koalibeeDao.updateEtaBalance(koalibee);
+			this.albumService.recordRating();
+			this.ledgerService.reward(koalibeeId, 10, EtaEntry.REVIEW_REWARD);
 		}
 
 		return reviewId;
@@ -197,27 +189,65 @@ public class ReviewService {
 	 */
 	public boolean delete(int reviewId) {
 
-		return this.reviewDao.deleteReview(reviewId);
+		if (this.reviewDao.deleteReview(reviewId)) {
+			this.albumService.recordRating();
+			return true;
+		}
+
+		return false;
 
 	}
 
 	/**
 	 * 
-	 * Retrieves all reviews from the database. It can only be accessed by a system
-	 * administrator.
+	 * Recounts the rating statistics of all albums from their reviews. It can only
+	 * be accessed by a system administrator.
 	 * 
-	 * @return the review list.
+	 * @return true if the statistics are rebuilt, or false if it fails.
 	 */
-	public List<Review> getAll() {
+	public boolean rebuildRatings() {
 
-		List<Review> reviewList = this.reviewDao.getAllReviews();
+		if (this.reviewDao.rebuildRatings()) {
+			this.albumService.recordRating();
+			return true;
+		}
+
+		return false;
+
+	}
+
+	/**
+	 * 
+	 * Retrieves a page of all reviews sorted by ID. It can only be accessed by a
+	 * system administrator.
+	 * 
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the review page, or null if the cursor is invalid.
+	 */
+	public Page<Review> getAll(String cursor, Integer limit) {
+
+		int reviewId = 0;
+
+		if (cursor != null) {
+			String[] keys = PageUtility.decodeCursor(cursor, 1);
+			if (keys == null) {
+				return null;
+			}
+			reviewId = Integer.parseInt(keys[0]);
+		}
+
+		final int size = PageUtility.getPageSize(limit);
+
+		// Fetch one more review to find out if there is a next page.
+		List<Review> reviewList = this.reviewDao.getReviewPage(reviewId, size + 1);
 
 		for (Review r : reviewList) {
 			r.setAlbum(null);
 			r.setKoalibee(null);
 		}
 
-		return reviewList;
+		return PageUtility.toPage(reviewList, size, r -> PageUtility.encodeCursor(r.getReviewId()));
 
 	}
 
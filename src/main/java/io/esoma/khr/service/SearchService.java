@@ -0,0 +1,156 @@
+package io.esoma.khr.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import io.esoma.khr.dao.AlbumDao;
+import io.esoma.khr.dao.TrackDao;
+import io.esoma.khr.index.CatalogIndex;
+import io.esoma.khr.index.SuggestIndex;
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.model.SearchHit;
+import io.esoma.khr.model.Track;
+import io.esoma.khr.utility.PageUtility;
+
+/**
+ * 
+ * The service class that searches the published catalog. Searches and name
+ * suggestions are served from in-memory indexes, which are built from the
+ * database at startup and kept up to date by the other services.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Service(value = "searchService")
+public class SearchService implements InitializingBean {
+
+	/**
+	 * The number of suggestions returned by default, and the largest number that
+	 * can be requested.
+	 */
+	public static final int DEFAULT_SUGGESTIONS = 10;
+	public static final int MAX_SUGGESTIONS = 50;
+
+	private AlbumDao albumDao;
+	private TrackDao trackDao;
+
+	private CatalogIndex catalogIndex;
+	private SuggestIndex suggestIndex;
+
+	@Autowired
+	@Qualifier(value = "albumDaoImplBasic")
+	public void setAlbumDao(AlbumDao albumDao) {
+		this.albumDao = albumDao;
+	}
+
+	@Autowired
+	@Qualifier(value = "trackDaoImplBasic")
+	public void setTrackDao(TrackDao trackDao) {
+		this.trackDao = trackDao;
+	}
+
+	@Autowired
+	@Qualifier(value = "catalogIndex")
+	public void setCatalogIndex(CatalogIndex catalogIndex) {
+		this.catalogIndex = catalogIndex;
+	}
+
+	@Autowired
+	@Qualifier(value = "suggestIndex")
+	public void setSuggestIndex(SuggestIndex suggestIndex) {
+		this.suggestIndex = suggestIndex;
+	}
+
+	/**
+	 * 
+	 * Builds the catalog and suggestion indexes from all published albums and
+	 * their tracks once the dependencies are wired at startup.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+
+		final List<Album> albumList = this.albumDao.getAllPublishedAlbums();
+		final List<Track> trackList = this.trackDao.getAllTracks();
+
+		this.catalogIndex.load(albumList, trackList);
+		this.suggestIndex.load(albumList, trackList, this.albumDao.getPurchaseCounts());
+
+	}
+
+	/**
+	 * 
+	 * Retrieves a page of the albums and tracks that match every term of a query,
+	 * highest score first. Non-premium users only find the albums of the basic
+	 * collection and their tracks.
+	 * 
+	 * @param query   the text typed by a client.
+	 * @param cursor  the cursor of the page, or null for the first page.
+	 * @param limit   the requested page size, or null for the default size.
+	 * @param premium whether the sender is a premium user.
+	 * @return the result page, or null if the cursor is invalid.
+	 */
+	public Page<SearchHit> search(String query, String cursor, Integer limit, boolean premium) {
+
+		int start = 0;
+		List<SearchHit> hitList = this.catalogIndex.search(query);
+
+		if (!premium) {
+			List<Integer> basicList = Arrays.asList(Album.BASIC_COLLECTION);
+			hitList.removeIf(h -> !basicList.contains(h.getAlbumId()));
+		}
+
+		if (cursor != null) {
+			String[] keys = PageUtility.decodeCursor(cursor, 3);
+			if (keys == null || !(SearchHit.ALBUM.equals(keys[1]) || SearchHit.TRACK.equals(keys[1]))) {
+				return null;
+			}
+			final SearchHit last = new SearchHit(keys[1], Integer.parseInt(keys[2]), null, null, null, 0);
+			try {
+				last.setScore(Integer.parseInt(keys[0]));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			// Start right after the last result, even if it is gone.
+			start = Collections.binarySearch(hitList, last, CatalogIndex.RANK_ORDER);
+			start = start < 0 ? -start - 1 : start + 1;
+		}
+
+		final int size = PageUtility.getPageSize(limit);
+
+		// Take one more result to find out if there is a next page.
+		List<SearchHit> pageList = new ArrayList<>(hitList.subList(start, Math.min(hitList.size(), start + size + 1)));
+
+		return PageUtility.toPage(pageList, size,
+				h -> PageUtility.encodeCursor(h.getScore(), h.getType(), h.getId()));
+
+	}
+
+	/**
+	 * 
+	 * Retrieves the album names, artists and composers that contain a word
+	 * starting with the given prefix, most purchased first. Non-premium users
+	 * only get the names found in the basic collection.
+	 * 
+	 * @param prefix  the text typed by a client.
+	 * @param limit   the requested number of suggestions, or null for the
+	 *                default number.
+	 * @param premium whether the sender is a premium user.
+	 * @return the list of suggestions.
+	 */
+	public List<String> suggest(String prefix, Integer limit, boolean premium) {
+
+		final int size = limit == null ? DEFAULT_SUGGESTIONS : Math.max(1, Math.min(MAX_SUGGESTIONS, limit));
+
+		return this.suggestIndex.suggest(prefix, size, premium ? null : Arrays.asList(Album.BASIC_COLLECTION));
+
+	}
+
+}
@@ -0,0 +1,272 @@
+package io.esoma.khr.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import io.esoma.khr.dao.AlbumDao;
+import io.esoma.khr.dao.KoalibeeDao;
+import io.esoma.khr.dao.ThumbnailDao;
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Thumbnail;
+import io.esoma.khr.utility.ImageUtility;
+import io.esoma.khr.utility.LogUtility;
+
+/**
+ * 
+ * The service class that makes and serves the thumbnails of album artworks and
+ * koalibee avatars. Images are decoded and scaled by a background thread, so
+ * no request waits for it. Images stored before thumbnails existed get theirs
+ * the first time one is asked for.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Service(value = "thumbnailService")
+public class ThumbnailService implements DisposableBean {
+
+	/**
+	 * The largest number of images waiting for their thumbnails. Requests beyond
+	 * it are dropped and made again on a later miss.
+	 */
+	static final int QUEUE_SIZE = 256;
+
+	/**
+	 * The largest number of failed images remembered. The least recently asked
+	 * for are forgotten first, and tried again on their next miss.
+	 */
+	static final int FAILED_CAPACITY = 10000;
+
+	private AlbumDao albumDao;
+	private KoalibeeDao koalibeeDao;
+	private ThumbnailDao thumbnailDao;
+
+	/**
+	 * The keys of the images waiting for their thumbnails, and of the images that
+	 * are missing or could not be decoded. A failed image is not tried again until
+	 * it is replaced.
+	 */
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+	private final Map<String, Boolean> failed;
+
+	/**
+	 * The keys of the replaced images whose thumbnails are not made yet, with a
+	 * token of the latest replacement. Their old thumbnails are never served.
+	 */
+	private final Map<String, Object> stale = new ConcurrentHashMap<>();
+
+	// One thread keeps the jobs of an image in the order they were made, so an
+	// older image never overwrites the thumbnails of a newer one.
+	private final ThreadPoolExecutor executor;
+
+	public ThumbnailService() {
+		super();
+		this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+					Thread thread = new Thread(r, "khr-thumbnail");
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.failed = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > FAILED_CAPACITY;
+			}
+
+		});
+	}
+
+	@Autowired
+	@Qualifier(value = "albumDaoImplBasic")
+	public void setAlbumDao(AlbumDao albumDao) {
+		this.albumDao = albumDao;
+	}
+
+	@Autowired
+	@Qualifier(value = "koalibeeDaoImplBasic")
+	public void setKoalibeeDao(KoalibeeDao koalibeeDao) {
+		this.koalibeeDao = koalibeeDao;
+	}
+
+	@Autowired
+	@Qualifier(value = "thumbnailDaoImplBasic")
+	public void setThumbnailDao(ThumbnailDao thumbnailDao) {
+		this.thumbnailDao = thumbnailDao;
+	}
+
+	/**
+	 * 
+	 * Stops the background thread after the job in progress. Images still waiting
+	 * get their thumbnails on a later miss.
+	 */
+	@Override
+	public void destroy() throws InterruptedException {
+
+		this.executor.shutdownNow();
+		this.executor.awaitTermination(5, TimeUnit.SECONDS);
+
+	}
+
+	/**
+	 * 
+	 * Makes the thumbnails of an album artwork in the background. It is called
+	 * once the album is published, after which the artwork never changes.
+	 * 
+	 * @param albumId the ID of the album.
+	 */
+	public void refreshArtwork(int albumId) {
+
+		this.failed.remove("A" + albumId);
+		this.submitArtwork(albumId);
+
+	}
+
+	/**
+	 * 
+	 * Replaces the thumbnails of a koalibee avatar in the background. It is
+	 * called every time the avatar changes, and the old thumbnails are not served
+	 * from then on, so they never stand for the new avatar.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 */
+	public void refreshAvatar(int koalibeeId) {
+
+		this.stale.put("K" + koalibeeId, new Object());
+		this.failed.remove("K" + koalibeeId);
+		this.submitAvatar(koalibeeId);
+
+	}
+
+	/**
+	 * 
+	 * Gets the thumbnail of an album artwork that serves a requested size. If it
+	 * has not been made yet, it is made in the background.
+	 * 
+	 * @param albumId the ID of the album.
+	 * @param size    the size requested by a client.
+	 * @return the thumbnail, or null if the original artwork should be served.
+	 */
+	public Thumbnail getArtwork(int albumId, int size) {
+
+		final int thumbnailSize = ImageUtility.getThumbnailSize(size);
+		if (thumbnailSize == 0) {
+			return null;
+		}
+
+		final Thumbnail thumbnail = this.thumbnailDao.getArtworkThumbnail(albumId, thumbnailSize);
+		if (thumbnail == null && this.failed.get("A" + albumId) == null) {
+			this.submitArtwork(albumId);
+		}
+
+		return thumbnail;
+
+	}
+
+	/**
+	 * 
+	 * Gets the thumbnail of a koalibee avatar that serves a requested size. If it
+	 * has not been made yet, it is made in the background.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param size       the size requested by a client.
+	 * @return the thumbnail, or null if the original avatar should be served.
+	 */
+	public Thumbnail getAvatar(int koalibeeId, int size) {
+
+		final int thumbnailSize = ImageUtility.getThumbnailSize(size);
+		if (thumbnailSize == 0) {
+			return null;
+		}
+
+		// Replaced avatars are served in full until their thumbnails are made.
+		if (this.stale.containsKey("K" + koalibeeId)) {
+			this.submitAvatar(koalibeeId);
+			return null;
+		}
+
+		final Thumbnail thumbnail = this.thumbnailDao.getAvatarThumbnail(koalibeeId, thumbnailSize);
+		if (thumbnail == null && this.failed.get("K" + koalibeeId) == null) {
+			this.submitAvatar(koalibeeId);
+		}
+
+		return thumbnail;
+
+	}
+
+	private void submitArtwork(int albumId) {
+
+		this.submit("A" + albumId, () -> {
+			final Album album = this.albumDao.getAlbumArtwork(albumId);
+			return album == null ? null : album.getArtwork();
+		}, thumbnailList -> this.thumbnailDao.replaceArtworkThumbnails(albumId, thumbnailList));
+
+	}
+
+	private void submitAvatar(int koalibeeId) {
+
+		this.submit("K" + koalibeeId, () -> {
+			final Koalibee koalibee = this.koalibeeDao.getKoalibeeAvatar(koalibeeId);
+			return koalibee == null ? null : koalibee.getAvatar();
+		}, thumbnailList -> this.thumbnailDao.replaceAvatarThumbnails(koalibeeId, thumbnailList));
+
+	}
+
+	// Queues a job for an image unless one is waiting already. The job leaves the
+	// pending set before it reads the image, so a change made while it runs
+	// queues another job. The old thumbnails of a replaced image are dropped even
+	// if the new one fails, and the image is only cleared as stale if it was not
+	// replaced again in the meantime.
+	private void submit(String key, Supplier<byte[]> reader, Consumer<List<Thumbnail>> writer) {
+
+		if (!this.pending.add(key)) {
+			return;
+		}
+
+		try {
+			this.executor.execute(() -> {
+				this.pending.remove(key);
+				final Object token = this.stale.get(key);
+				try {
+					final byte[] image = reader.get();
+					final List<Thumbnail> thumbnailList = image == null ? new ArrayList<>()
+							: ImageUtility.createThumbnails(image);
+					if (thumbnailList.isEmpty()) {
+						this.failed.put(key, Boolean.TRUE);
+					}
+					if (!thumbnailList.isEmpty() || token != null) {
+						writer.accept(thumbnailList);
+					}
+					if (token != null) {
+						this.stale.remove(key, token);
+					}
+				} catch (RuntimeException e) {
+					// Debug message
+					LogUtility.MASTER_LOGGER.error("error in submit, stack trace:", e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			this.pending.remove(key);
+		}
+
+	}
+
+}
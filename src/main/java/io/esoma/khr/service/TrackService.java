@@ -1,20 +1,30 @@
 package io.esoma.khr.service;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import io.esoma.khr.dao.AlbumDao;
 import io.esoma.khr.dao.KoalibeeDao;
 import io.esoma.khr.dao.TrackDao;
+import io.esoma.khr.index.CatalogIndex;
+import io.esoma.khr.index.SuggestIndex;
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.model.TrackData;
+import io.esoma.khr.storage.MediaStore;
 import io.esoma.khr.utility.DataUtility;
 import io.esoma.khr.utility.LogUtility;
+import io.esoma.khr.utility.PageUtility;
 
 /**
  * 
@@ -26,10 +36,21 @@ import io.esoma.khr.utility.LogUtility;
 @Service(value = "trackService")
 public class TrackService {
 
+	/**
+	 * The largest number of tracks accepted in one bulk request.
+	 */
+	public static final int MAX_BULK_TRACKS = 50;
+
 	private KoalibeeDao koalibeeDao;
 	private AlbumDao albumDao;
 	private TrackDao trackDao;
 
+	private CatalogIndex catalogIndex;
+	private SuggestIndex suggestIndex;
+	private MediaStore mediaStore;
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
 	@Autowired
 	@Qualifier(value = "koalibeeDaoImplBasic")
 	public void setKoalibeeDao(KoalibeeDao koalibeeDao) {
@@ -48,6 +69,24 @@ public class TrackService {
 		this.trackDao = trackDao;
 	}
 
+	@Autowired
+	@Qualifier(value = "catalogIndex")
+	public void setCatalogIndex(CatalogIndex catalogIndex) {
+		this.catalogIndex = catalogIndex;
+	}
+
+	@Autowired
+	@Qualifier(value = "suggestIndex")
+	public void setSuggestIndex(SuggestIndex suggestIndex) {
+		this.suggestIndex = suggestIndex;
+	}
+
+	@Autowired
+	@Qualifier(value = "mediaStore")
+	public void setMediaStore(MediaStore mediaStore) {
+		this.mediaStore = mediaStore;
+	}
+
 	/**
 	 * 
 	 * Gets a track from a published album with the given ID. The koalibee must own
@@ -78,21 +117,20 @@ public class TrackService {
 			track.setAlbum(null);
 			track.setAudio(null);
 			track.setAudioType(null);
+			track.setAudioHash(null);
 			return track;
 		}
 
 		// Verify ownership.
-		if (koalibeeId != -777) {
-			List<Album> albumList = this.koalibeeDao.getAllPurchasedAlbumsByKoalibeeId(koalibeeId);
-			if (!albumList.contains(track.getAlbum())) {
-				return null;
-			}
+		if (!this.ownsAlbum(koalibeeId, track.getAlbum())) {
+			return null;
 		}
 
 		// Truncate proxies.
 		track.setAlbum(null);
 		track.setAudio(null);
 		track.setAudioType(null);
+		track.setAudioHash(null);
 
 		return track;
 
@@ -100,96 +138,257 @@ public class TrackService {
 
 	/**
 	 * 
-	 * Adds a track to an unpublished album with the given data encoded in a JSON
-	 * string. Only the creator is allowed to access this method.
+	 * Gets the playback details of a track so its audio can be streamed. The same
+	 * access rules as getOne apply: the album must be published, and the koalibee
+	 * must own it unless the track is a demo.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param trackId    the ID of the track.
+	 * @return the track with audio type and size, or null if the ID is invalid or
+	 *         if the user does not have access.
+	 */
+	public Track getStreamable(int koalibeeId, int trackId) {
+
+		Track track = this.trackDao.getTrackAudioDetails(trackId);
+
+		// Check if the track is published.
+		if (track == null || !track.getAlbum().getIsPublished().equals("T")) {
+			return null;
+		}
+
+		// Verify ownership of non-demo tracks.
+		if (!track.getIsDemo().equals("T") && !this.ownsAlbum(koalibeeId, track.getAlbum())) {
+			return null;
+		}
+
+		return track;
+
+	}
+
+	/**
+	 * 
+	 * Writes a range of a track's audio data to an output stream. Access should
+	 * have been verified with getStreamable first.
+	 * 
+	 * @param trackId the ID of the track.
+	 * @param offset  the zero-based position of the first byte.
+	 * @param length  the number of bytes to write.
+	 * @param out     the stream to write to.
+	 * @return true if all requested bytes are written, or false otherwise.
+	 */
+	public boolean streamAudio(int trackId, long offset, long length, OutputStream out) {
+
+		return this.trackDao.writeTrackAudio(trackId, offset, length, out) == length;
+
+	}
+
+	/**
+	 * 
+	 * Checks if a koalibee has purchased an album. A system administrator owns
+	 * every album.
+	 * 
+	 * @param koalibeeId the ID of the koalibee.
+	 * @param album      the album to check.
+	 * @return true if the koalibee owns the album, or false otherwise.
+	 */
+	private boolean ownsAlbum(int koalibeeId, Album album) {
+
+		if (koalibeeId == -777) {
+			return true;
+		}
+
+		return this.koalibeeDao.ownsAlbum(koalibeeId, album.getAlbumId());
+
+	}
+
+	/**
+	 * 
+	 * Adds a track to an unpublished album with the given data bound from the
+	 * request body. Only the creator is allowed to access this method.
 	 * 
 	 * @param koalibeeId the ID of the creator.
 	 * @param albumId    the ID of the album to add track to.
-	 * @param trackData  the JSON string sent from the request.
+	 * @param trackData  the data sent from the request.
 	 * @return a positive integer if the posting succeeds, or 0 if it fails.
 	 */
-	public int addOne(int koalibeeId, int albumId, String trackData) {
+	public int addOne(int koalibeeId, int albumId, TrackData trackData) {
 
-		// Data element names
-		final String TRACK_NAME = "trackName";
-		final String COMPOSER = "composer";
-		final String TRACK_LENGTH = "trackLength";
-		final String AUDIO_DATA_URL = "audioDataUrl";
-		final String IS_DEMO = "isDemo";
+		if (trackData == null) {
+			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
+			return 0;
+		}
 
-		JSONObject jo;
+		Album album = this.getEditableAlbum(koalibeeId, albumId);
+		if (album == null) {
+			return 0;
+		}
 
-		// Parse the JSON string.
-		try {
-			jo = new JSONObject(trackData);
-		} catch (Exception e) {
+		Track track = this.toTrack(trackData);
+		if (track == null) {
+			return 0;
+		}
+
+		track.setAlbum(album);
+
+		return this.trackDao.addTrack(track);
+
+	}
+
+	/**
+	 * 
+	 * Adds several tracks to an unpublished album in one transaction. The data is
+	 * a list of tracks in the same format accepted by addOne. Either all tracks
+	 * are added or none of them is. Only the creator is allowed to access this
+	 * method.
+	 * 
+	 * @param koalibeeId the ID of the creator.
+	 * @param albumId    the ID of the album to add tracks to.
+	 * @param tracksData the list of tracks sent from the request.
+	 * @return the number of tracks added, or 0 if it fails.
+	 */
+	public int addMany(int koalibeeId, int albumId, List<TrackData> tracksData) {
+
+		if (tracksData == null) {
 			LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
 			return 0;
 		}
 
+		if (tracksData.size() < 1 || tracksData.size() > MAX_BULK_TRACKS) {
+			return 0;
+		}
+
+		Album album = this.getEditableAlbum(koalibeeId, albumId);
+		if (album == null) {
+			return 0;
+		}
+
+		List<Track> trackList = new ArrayList<>();
+
+		// Reject the whole request if any track is invalid.
+		for (TrackData trackData : tracksData) {
+			if (trackData == null) {
+				LogUtility.ROOT_LOGGER.warn(LogUtility.BAD_JSON);
+				return 0;
+			}
+			Track track = this.toTrack(trackData);
+			if (track == null) {
+				return 0;
+			}
+			track.setAlbum(album);
+			trackList.add(track);
+		}
+
+		return this.trackDao.addTracks(trackList).size();
+
+	}
+
+	/**
+	 * 
+	 * Stores the audio of a track on an unpublished album once the whole upload
+	 * has arrived and its content is found to be audio of its type. Only the
+	 * creator is allowed to access this method.
+	 * 
+	 * @param koalibeeId the ID of the creator.
+	 * @param trackId    the ID of the track.
+	 * @param audioType  the file type of the audio.
+	 * @param audio      the body of the upload.
+	 * @param length     the length of the upload in bytes.
+	 * @return true if the audio is stored, or false if the content does not
+	 *         match its type or the upload fails.
+	 */
+	public boolean uploadAudio(int koalibeeId, int trackId, String audioType, InputStream audio, long length) {
+
+		if (length < 1) {
+			return false;
+		}
+
+		Track track = this.trackDao.getTrackById(trackId);
+		if (track == null || this.getEditableAlbum(koalibeeId, track.getAlbum().getAlbumId()) == null) {
+			return false;
+		}
+
+		return DataUtility.storeUpload(audio, length, audioType, !this.mediaStore.isEnabled(),
+				in -> this.trackDao.updateTrackAudio(trackId, audioType, in, length));
+
+	}
+
+	/**
+	 * 
+	 * Gets an album that tracks can be added to. The album must be unpublished
+	 * and belong to the koalibee.
+	 * 
+	 * @return the album, or null if it cannot be edited by the koalibee.
+	 */
+	private Album getEditableAlbum(int koalibeeId, int albumId) {
+
 		// Check if the album is unpublished.
 		Album album = this.albumDao.getAlbumById(albumId);
 		if (album != null) {
 			if (!album.getIsPublished().equals("F")) {
-				return 0;
+				return null;
 			}
 		} else {
-			return 0;
+			return null;
 		}
 
 		// Verify ownership.
 		if (album.getKoalibee().getKoalibeeId() != koalibeeId) {
-			return 0;
+			return null;
 		}
 
+		return album;
+
+	}
+
+	/**
+	 * 
+	 * Builds a new track from the data sent in a request. The audio is optional,
+	 * since it can be uploaded separately, but it must be valid if it is sent.
+	 * 
+	 * @return the track without an album, or null if an element is missing.
+	 */
+	private Track toTrack(TrackData trackData) {
+
 		Track track = new Track();
 
 		// Extract track data.
-		try {
-			String trackName = jo.getString(TRACK_NAME);
-			track.setTrackName(trackName);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, TRACK_NAME));
-			return 0;
+		if (trackData.getTrackName() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "trackName"));
+			return null;
 		}
+		track.setTrackName(trackData.getTrackName());
 
-		try {
-			String composer = jo.getString(COMPOSER);
-			track.setComposer(composer);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, COMPOSER));
-			return 0;
+		if (trackData.getComposer() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "composer"));
+			return null;
 		}
+		track.setComposer(trackData.getComposer());
 
-		try {
-			int trackLength = jo.getInt(TRACK_LENGTH);
-			track.setTrackLength(trackLength);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, TRACK_LENGTH));
-			return 0;
+		if (trackData.getTrackLength() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "trackLength"));
+			return null;
 		}
-
-		try {
-			String audioDataUrl = jo.getString(AUDIO_DATA_URL);
-			track.setAudio(DataUtility.decodeDataUrlToBytes(audioDataUrl));
-			track.setAudioType(
-					audioDataUrl.substring(audioDataUrl.indexOf('/') + 1, audioDataUrl.indexOf(';')).toUpperCase());
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, AUDIO_DATA_URL));
-			return 0;
+		track.setTrackLength(trackData.getTrackLength());
+
+		final String audioDataUrl = trackData.getAudioDataUrl();
+		if (audioDataUrl != null) {
+			final String audioType = DataUtility.getDataUrlType(audioDataUrl);
+			final byte[] audio = audioType == null ? null : DataUtility.decodeDataUrlToBytes(audioDataUrl);
+			if (audio == null) {
+				LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "audioDataUrl"));
+				return null;
+			}
+			track.setAudio(audio);
+			track.setAudioType(audioType);
 		}
 
-		try {
-			String isDemo = jo.getString(IS_DEMO);
-			track.setIsDemo(isDemo);
-		} catch (Exception e) {
-			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, IS_DEMO));
-			return 0;
+		if (trackData.getIsDemo() == null) {
+			LogUtility.ROOT_LOGGER.warn(String.format(LogUtility.MISSING_JSON_ELEMENT, "isDemo"));
+			return null;
 		}
+		track.setIsDemo(trackData.getIsDemo());
 
-		track.setAlbum(album);
-
-		return this.trackDao.addTrack(track);
+		return track;
 
 	}
 
@@ -206,7 +405,13 @@ public class TrackService {
 
 		// For system administrator.
 		if (koalibeeId == -777) {
-			return this.trackDao.deleteTrack(trackId);
+			if (!this.trackDao.deleteTrack(trackId)) {
+				return false;
+			}
+			// Tracks of published albums may be deleted as well.
+			this.catalogIndex.removeTrack(trackId);
+			this.suggestIndex.removeTrack(trackId);
+			return true;
 		} else {
 			Track track = this.trackDao.getTrackById(trackId);
 			if (track != null) {
@@ -230,24 +435,49 @@ public class TrackService {
 
 	/**
 	 * 
-	 * Retrieves all tracks from the database. This can only be accessed by a system
-	 * administrator.
+	 * Retrieves a page of all tracks sorted by name. This can only be accessed by a
+	 * system administrator.
 	 * 
-	 * @return the track list.
+	 * @param cursor the cursor of the page, or null for the first page.
+	 * @param limit  the requested page size, or null for the default size.
+	 * @return the track page, or null if the cursor is invalid.
 	 */
-	public List<Track> getAll() {
+	public Page<Track> getAll(String cursor, Integer limit) {
 
-		List<Track> trackList = this.trackDao.getAllTracks();
+		String trackName = null;
+		int trackId = 0;
 
-		// Truncate proxies.
-		for (Track t : trackList) {
-			t.setAlbum(null);
-			t.setAudio(null);
-			t.setAudioType(null);
-			t.setAudioDataUrl(null);
+		if (cursor != null) {
+			String[] keys = PageUtility.decodeCursor(cursor, 2);
+			if (keys == null) {
+				return null;
+			}
+			trackName = keys[0];
+			trackId = Integer.parseInt(keys[1]);
 		}
 
-		return trackList;
+		final int size = PageUtility.getPageSize(limit);
+
+		// Fetch one more track to find out if there is a next page.
+		List<Track> trackList = this.trackDao.getTrackPage(trackName, trackId, size + 1);
+
+		return PageUtility.toPage(trackList, size, t -> PageUtility.encodeCursor(t.getTrackName(), t.getTrackId()));
+
+	}
+
+	/**
+	 * 
+	 * Writes all tracks sorted by name to an output stream as a JSON array. The
+	 * tracks are serialized as they are read from the database, so the memory in
+	 * use stays the same however many tracks there are. This can only be accessed
+	 * by a system administrator.
+	 * 
+	 * @param out the stream to write to.
+	 * @return true if the whole list is written, or false otherwise.
+	 */
+	public boolean writeAll(OutputStream out) {
+
+		return DataUtility.writeJsonArray(out, this.objectMapper, action -> this.trackDao.streamTracks(action));
 
 	}
 
@@ -282,6 +512,7 @@ public class TrackService {
 			t.setAlbum(null);
 			t.setAudio(null);
 			t.setAudioType(null);
+			t.setAudioHash(null);
 			t.setAudioDataUrl(null);
 		}
 
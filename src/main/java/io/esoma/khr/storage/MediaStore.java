@@ -0,0 +1,223 @@
+package io.esoma.khr.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.springframework.stereotype.Component;
+
+import io.esoma.khr.utility.DatabaseUtility;
+
+/**
+ * 
+ * The on-disk store of media files. Every file is named by the SHA-256 hash of
+ * its content, so identical files are stored once and a stored file never
+ * changes. Entities keep only the hash and the file type. The store is turned
+ * off unless KHR_MEDIA_DIR names its directory, in which case media stays in
+ * the BLOB columns.
+ * 
+ * @author Eddy Soma
+ *
+ */
+@Component(value = "mediaStore")
+public class MediaStore {
+
+	/**
+	 * The length of a hash in hexadecimal digits.
+	 */
+	public static final int HASH_LENGTH = 64;
+
+	private final Path root;
+
+	public MediaStore() {
+		this(DatabaseUtility.getMediaDirectory());
+	}
+
+	public MediaStore(String directory) {
+		super();
+		this.root = directory == null || directory.isEmpty() ? null : Paths.get(directory).toAbsolutePath();
+	}
+
+	/**
+	 * 
+	 * Checks if media is kept in the store rather than in the database.
+	 * 
+	 * @return true if the store is configured, or false otherwise.
+	 */
+	public boolean isEnabled() {
+
+		return this.root != null;
+
+	}
+
+	/**
+	 * 
+	 * Stores a file held in memory.
+	 * 
+	 * @param data the content of the file.
+	 * @return the hash of the content.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public String put(byte[] data) throws IOException {
+
+		return this.put(new ByteArrayInputStream(data), data.length);
+
+	}
+
+	/**
+	 * 
+	 * Stores a file read from a stream. The content is written to a temporary file
+	 * while its hash is computed, and then moved to its final name. If the same
+	 * content is stored already, the copy is dropped.
+	 * 
+	 * @param in     the stream holding the content.
+	 * @param length the number of bytes in the stream.
+	 * @return the hash of the content.
+	 * @throws IOException if the stream does not hold the given number of bytes
+	 *                     or the file cannot be written.
+	 */
+	public String put(InputStream in, long length) throws IOException {
+
+		final MessageDigest digest = newDigest();
+		final Path temp = Files.createTempFile(Files.createDirectories(this.root), "upload", ".tmp");
+
+		try {
+			final long copied;
+			try (InputStream digestIn = new DigestInputStream(in, digest)) {
+				copied = Files.copy(digestIn, temp, StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (copied != length) {
+				throw new EOFException("expected " + length + " bytes but read " + copied);
+			}
+
+			final String hash = String.format("%064x", new BigInteger(1, digest.digest()));
+			final Path file = this.getPath(hash);
+			if (!Files.exists(file)) {
+				Files.createDirectories(file.getParent());
+				try {
+					Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+				} catch (FileAlreadyExistsException e) {
+					// Stored by a concurrent upload of the same content.
+				}
+			}
+
+			return hash;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+
+	}
+
+	/**
+	 * 
+	 * Gets the size of a stored file.
+	 * 
+	 * @param hash the hash of the file.
+	 * @return the size in bytes.
+	 * @throws IOException if the file does not exist.
+	 */
+	public long size(String hash) throws IOException {
+
+		return Files.size(this.getPath(hash));
+
+	}
+
+	/**
+	 * 
+	 * Reads a whole stored file through a memory-mapped buffer. It is meant for
+	 * small files such as images.
+	 * 
+	 * @param hash the hash of the file.
+	 * @return the content of the file.
+	 * @throws IOException if the file does not exist or cannot be read.
+	 */
+	public byte[] read(String hash) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(this.getPath(hash), StandardOpenOption.READ)) {
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			final byte[] data = new byte[buffer.remaining()];
+			buffer.get(data);
+			return data;
+		}
+
+	}
+
+	/**
+	 * 
+	 * Writes a range of a stored file to an output stream with transferTo. The
+	 * file is never read into memory as a whole, and the range is cut at the end
+	 * of the file.
+	 * 
+	 * @param hash   the hash of the file.
+	 * @param offset the zero-based position of the first byte.
+	 * @param length the number of bytes to write.
+	 * @param out    the stream to write to.
+	 * @return the number of bytes written.
+	 * @throws IOException if the file does not exist or cannot be written out.
+	 */
+	public long transfer(String hash, long offset, long length, OutputStream out) throws IOException {
+
+		final WritableByteChannel target = Channels.newChannel(out);
+		long count = 0;
+
+		try (FileChannel channel = FileChannel.open(this.getPath(hash), StandardOpenOption.READ)) {
+			final long end = Math.min(channel.size(), offset + length);
+			while (offset + count < end) {
+				final long sent = channel.transferTo(offset + count, end - offset - count, target);
+				if (sent <= 0) {
+					break;
+				}
+				count += sent;
+			}
+		}
+
+		out.flush();
+
+		return count;
+
+	}
+
+	// Maps a hash to its file. Files are spread over subdirectories named by the
+	// first two digits, and anything but a lowercase hash is rejected so that no
+	// path outside the store can be formed.
+	Path getPath(String hash) {
+
+		if (!this.isEnabled()) {
+			throw new IllegalStateException("media store is not configured");
+		}
+		if (hash == null || !hash.matches("[0-9a-f]{" + HASH_LENGTH + "}")) {
+			throw new IllegalArgumentException("invalid media hash: " + hash);
+		}
+
+		return this.root.resolve(hash.substring(0, 2)).resolve(hash);
+
+	}
+
+	private static MessageDigest newDigest() {
+
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports SHA-256.
+			throw new IllegalStateException(e);
+		}
+
+	}
+
+}
@@ -1,6 +1,27 @@
 package io.esoma.khr.utility;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Base64;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.esoma.khr.model.Album;
 
 /**
  * 
@@ -12,6 +33,11 @@ import java.util.Base64;
  */
 public class DataUtility {
 
+	/**
+	 * The longest file type the database can store.
+	 */
+	public static final int MAX_TYPE_LENGTH = 4;
+
 	private DataUtility() {
 		// Include a private constructor to prevent instantiation.
 	}
@@ -59,13 +85,429 @@ public class DataUtility {
 	 * and stored in the database.
 	 * 
 	 * @param dataUrl the data url of the uploaded file.
-	 * @return the decoded byte array.
+	 * @return the decoded byte array, or null if the data is not valid base64.
 	 */
 	public static byte[] decodeDataUrlToBytes(String dataUrl) {
 
 		String blobData = dataUrl.substring(dataUrl.indexOf("base64,") + 7);
 
-		return Base64.getDecoder().decode(blobData);
+		try {
+			return Base64.getDecoder().decode(blobData);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+
+	}
+
+	/**
+	 * 
+	 * Returns the file type of a base64 encoded data url, which is the subtype of
+	 * its MIME type in upper case, such as PNG for an image/png url. Parameters
+	 * between the MIME type and the base64 marker, such as a charset, are
+	 * ignored. Only the header of the url is read, so a malformed url costs
+	 * nothing.
+	 * 
+	 * @param dataUrl the data url of the uploaded file, or null.
+	 * @return the file type, or null if the url is not a base64 encoded data url.
+	 */
+	public static String getDataUrlType(String dataUrl) {
+
+		if (dataUrl == null || !dataUrl.startsWith("data:")) {
+			return null;
+		}
+
+		final int comma = dataUrl.indexOf(',');
+		final int slash = dataUrl.indexOf('/');
+		final int semicolon = dataUrl.indexOf(';');
+
+		// The header ends with the base64 marker, and the MIME type is followed by
+		// either the marker or the first parameter.
+		if (comma < 0 || !dataUrl.startsWith(";base64", comma - 7) || slash < 0 || semicolon <= slash + 1) {
+			return null;
+		}
+
+		return dataUrl.substring(slash + 1, semicolon).toUpperCase();
+
+	}
+
+	/**
+	 * 
+	 * Returns the file type of an uploaded file from the Content-Type header of
+	 * the request, such as OGG for audio/ogg. Parameters of the media type are
+	 * ignored. The subtype must be alphanumeric and short enough to be stored.
+	 * 
+	 * @param contentType the Content-Type header of the request, or null.
+	 * @param category    the expected top-level type, such as audio or image.
+	 * @return the file type, or null if the media type is not accepted.
+	 */
+	public static String getUploadType(String contentType, String category) {
+
+		if (contentType == null) {
+			return null;
+		}
+
+		final int semicolon = contentType.indexOf(';');
+		final String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim();
+		final String prefix = category + "/";
+
+		if (!mediaType.regionMatches(true, 0, prefix, 0, prefix.length())) {
+			return null;
+		}
+
+		final String subtype = mediaType.substring(prefix.length());
+
+		if (subtype.isEmpty() || subtype.length() > MAX_TYPE_LENGTH
+				|| !subtype.chars().allMatch(Character::isLetterOrDigit)) {
+			return null;
+		}
+
+		return subtype.toUpperCase();
+
+	}
+
+	/**
+	 * 
+	 * Wraps the body of an upload so that exactly its declared length is read.
+	 * Reading stops at that length even if the client sends more, and a body that
+	 * ends early fails with an EOFException, so a truncated file is never stored.
+	 * Nothing is buffered beyond the reads of the caller.
+	 * 
+	 * @param in     the body of the request.
+	 * @param length the declared length of the body in bytes.
+	 * @return the wrapped stream.
+	 */
+	public static InputStream limitUpload(InputStream in, long length) {
+
+		return new FilterInputStream(in) {
+
+			private long remaining = length;
+
+			@Override
+			public int read() throws IOException {
+
+				if (this.remaining <= 0) {
+					return -1;
+				}
+
+				final int b = super.read();
+				if (b < 0) {
+					throw new EOFException("upload ended " + this.remaining + " bytes early");
+				}
+
+				this.remaining--;
+
+				return b;
+
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+
+				if (len == 0) {
+					return 0;
+				} else if (this.remaining <= 0) {
+					return -1;
+				}
+
+				final int read = super.read(b, off, (int) Math.min(len, this.remaining));
+				if (read < 0) {
+					throw new EOFException("upload ended " + this.remaining + " bytes early");
+				}
+
+				this.remaining -= read;
+
+				return read;
+
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+
+				final long skipped = super.skip(Math.min(n, this.remaining));
+
+				this.remaining -= skipped;
+
+				return skipped;
+
+			}
+
+			@Override
+			public int available() throws IOException {
+
+				return (int) Math.min(super.available(), this.remaining);
+
+			}
+
+			@Override
+			public boolean markSupported() {
+
+				return false;
+
+			}
+
+		};
+
+	}
+
+	/**
+	 * 
+	 * Checks if the first bytes of a file match its declared type, such as the
+	 * signature of a PNG image for PNG. Types without a known signature are not
+	 * accepted.
+	 * 
+	 * @param header the first bytes of the file, at least 12 unless the file is
+	 *               shorter.
+	 * @param type   the declared file type in upper case.
+	 * @return true if the content is of the type, or false otherwise.
+	 */
+	public static boolean isContentOfType(byte[] header, String type) {
+
+		switch (type) {
+		case "PNG":
+			return startsWith(header, 0, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n');
+		case "JPEG":
+		case "JPG":
+			return startsWith(header, 0, 0xFF, 0xD8, 0xFF);
+		case "GIF":
+			return startsWith(header, 0, 'G', 'I', 'F', '8');
+		case "BMP":
+			return startsWith(header, 0, 'B', 'M');
+		case "WEBP":
+			return startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P');
+		case "TIFF":
+			return startsWith(header, 0, 'I', 'I', '*', 0) || startsWith(header, 0, 'M', 'M', 0, '*');
+		case "MPEG":
+		case "MP3":
+			// Either an ID3 tag or the sync bits of the first frame.
+			return startsWith(header, 0, 'I', 'D', '3')
+					|| header.length > 1 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xE0) == 0xE0;
+		case "AAC":
+			return startsWith(header, 0, 'A', 'D', 'I', 'F')
+					|| header.length > 1 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xF6) == 0xF0;
+		case "OGG":
+		case "OPUS":
+			return startsWith(header, 0, 'O', 'g', 'g', 'S');
+		case "FLAC":
+			return startsWith(header, 0, 'f', 'L', 'a', 'C');
+		case "WAV":
+		case "WAVE":
+			return startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'A', 'V', 'E');
+		case "MP4":
+		case "M4A":
+			return startsWith(header, 4, 'f', 't', 'y', 'p');
+		case "WEBM":
+			return startsWith(header, 0, 0x1A, 0x45, 0xDF, 0xA3);
+		default:
+			return false;
+		}
+
+	}
+
+	/**
+	 * 
+	 * Checks the first bytes of an upload against the declared type and passes the
+	 * body to an action. When spooling, the body is first copied to a temporary
+	 * file and the action only runs once the whole body has arrived, so a slow
+	 * client never keeps a database connection busy; the file is deleted
+	 * afterwards. Without spooling, the body is streamed to the action directly,
+	 * which suits an action that makes its own copy before touching the database.
+	 * 
+	 * @param in     the body of the request.
+	 * @param length the declared length of the body in bytes.
+	 * @param type   the declared file type in upper case.
+	 * @param spool  whether the body is copied to a temporary file first.
+	 * @param store  the action that stores the content read from a stream.
+	 * @return the result of the action, or false if the body is not of its type
+	 *         or cannot be read in full.
+	 */
+	public static boolean storeUpload(InputStream in, long length, String type, boolean spool,
+			Predicate<InputStream> store) {
+
+		final InputStream body = limitUpload(in, length);
+		Path spoolPath = null;
+
+		try {
+			final byte[] header = new byte[(int) Math.min(12, length)];
+			int count = 0;
+			while (count < header.length) {
+				count += body.read(header, count, header.length - count);
+			}
+			if (!isContentOfType(header, type)) {
+				LogUtility.ROOT_LOGGER.warn("upload rejected, the content is not of type " + type);
+				return false;
+			}
+
+			final InputStream content = new SequenceInputStream(new ByteArrayInputStream(header), body);
+			if (!spool) {
+				return store.test(content);
+			}
+
+			spoolPath = Files.createTempFile("upload", ".tmp");
+			Files.copy(content, spoolPath, StandardCopyOption.REPLACE_EXISTING);
+			try (InputStream spooled = Files.newInputStream(spoolPath)) {
+				return store.test(spooled);
+			}
+		} catch (IOException e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in storeUpload, stack trace:", e);
+			return false;
+		} finally {
+			deleteSpool(spoolPath);
+		}
+
+	}
+
+	// Deletes a spooled upload. A failure is only logged, since the file is in the
+	// temporary directory.
+	private static void deleteSpool(Path spool) {
+
+		try {
+			if (spool != null) {
+				Files.deleteIfExists(spool);
+			}
+		} catch (IOException e) {
+			LogUtility.ROOT_LOGGER.warn("failed to delete the upload spool " + spool);
+		}
+
+	}
+
+	// Checks if the bytes from an offset start with the given values.
+	private static boolean startsWith(byte[] bytes, int offset, int... values) {
+
+		if (bytes.length < offset + values.length) {
+			return false;
+		}
+
+		for (int i = 0; i < values.length; i++) {
+			if ((bytes[offset + i] & 0xFF) != values[i]) {
+				return false;
+			}
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * 
+	 * Returns a strong entity tag for a piece of binary content. The tag is the
+	 * quoted MD5 digest of the bytes, so it changes whenever the content changes.
+	 * 
+	 * @param bytes the content to be tagged.
+	 * @return the quoted entity tag.
+	 */
+	public static String getEntityTag(byte[] bytes) {
+
+		return "\"".concat(DigestUtils.md5DigestAsHex(bytes)).concat("\"");
+
+	}
+
+	/**
+	 * 
+	 * Returns a strong entity tag for a stored image or one of its thumbnails. The
+	 * tag is made of the version of the image, so it can be checked without
+	 * reading the image.
+	 * 
+	 * @param version the version of the image, which changes whenever the image
+	 *                does.
+	 * @param size    the size of the thumbnail, or 0 for the image itself.
+	 * @return the quoted entity tag.
+	 */
+	public static String getEntityTag(String version, int size) {
+
+		return "\"".concat(version).concat(size > 0 ? "-" + size : "").concat("\"");
+
+	}
+
+	/**
+	 * 
+	 * Checks if the value of an If-None-Match header matches an entity tag. The
+	 * header may contain a comma separated list of tags, weak tags, or a wildcard.
+	 * 
+	 * @param ifNoneMatch the header value sent by the client, may be null.
+	 * @param eTag        the current entity tag of the resource.
+	 * @return true if the client already has the current content, or false
+	 *         otherwise.
+	 */
+	public static boolean matchesEntityTag(String ifNoneMatch, String eTag) {
+
+		if (ifNoneMatch == null || eTag == null) {
+			return false;
+		}
+
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(eTag)) {
+				return true;
+			}
+		}
+
+		return false;
+
+	}
+
+	/**
+	 * 
+	 * Returns the URL from which the artwork of a published album can be fetched.
+	 * Album lists carry this URL instead of the encoded image so the artwork is
+	 * downloaded once and cached by the client.
+	 * 
+	 * @param album the album whose artwork is to be referenced.
+	 * @return the artwork URL, or null if the album is not published or has no
+	 *         artwork.
+	 */
+	public static String getArtworkUrl(Album album) {
+
+		if (!"T".equals(album.getIsPublished()) || album.getArtworkType() == null) {
+			return null;
+		}
+
+		return "/album/artwork/" + album.getAlbumId();
+
+	}
+
+	/**
+	 * 
+	 * Writes a JSON array to a stream, serializing each element as soon as the
+	 * source hands it over. Only the element being written is held in memory. If
+	 * the source fails, the array is left open, so the client cannot mistake the
+	 * truncated output for a complete list.
+	 * 
+	 * @param out          the stream to write to. It is flushed but not closed.
+	 * @param objectMapper the mapper used to serialize the elements.
+	 * @param source       the function that passes every element to the given
+	 *                     action and returns their number, or a negative number
+	 *                     if it fails.
+	 * @return true if the whole array is written, or false otherwise.
+	 */
+	public static boolean writeJsonArray(OutputStream out, ObjectMapper objectMapper,
+			ToIntFunction<Consumer<Object>> source) {
+
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+			generator.writeStartArray();
+			final int count = source.applyAsInt(element -> {
+				try {
+					generator.writeObject(element);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			if (count < 0) {
+				return false;
+			}
+			generator.writeEndArray();
+		} catch (IOException | UncheckedIOException e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in writeJsonArray, stack trace:", e);
+			return false;
+		}
+
+		return true;
 
 	}
 
@@ -1,5 +1,17 @@
 package io.esoma.khr.utility;
 
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
 /**
  * 
  * The Utility class with static methods that return database related values and
@@ -152,4 +164,401 @@ public class DatabaseUtility {
 
 	}
 
+	/**
+	 * 
+	 * Gets a configuration variable of the application. A JVM system property of
+	 * the same name takes precedence over the environmental variable.
+	 * 
+	 * @param name         the name of the variable.
+	 * @param defaultValue the value returned if the variable is not set.
+	 * @return the value of the variable.
+	 */
+	static String getVariable(String name, String defaultValue) {
+
+		String value = System.getProperty(name);
+		if (value == null) {
+			value = System.getenv(name);
+		}
+
+		return value != null ? value.trim() : defaultValue;
+
+	}
+
+	/**
+	 * 
+	 * Gets a numeric configuration variable of the application. The default value
+	 * is used if the variable is not set or is not a number.
+	 * 
+	 * @param name         the name of the variable.
+	 * @param defaultValue the value returned if the variable is not usable.
+	 * @return the value of the variable.
+	 */
+	static int getIntVariable(String name, int defaultValue) {
+
+		try {
+			return Integer.parseInt(getVariable(name, Integer.toString(defaultValue)));
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+
+	}
+
+	/**
+	 * 
+	 * Checks if Hibernate should log the SQL statements it executes. It is turned
+	 * on by setting KHR_SHOW_SQL to true.
+	 * 
+	 * @return true if the statements are logged, or false otherwise.
+	 */
+	public static boolean isShowSqlEnabled() {
+
+		return Boolean.parseBoolean(getVariable("KHR_SHOW_SQL", "false"));
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of statements Hibernate sends to the database in one JDBC
+	 * batch. It is read from KHR_JDBC_BATCH_SIZE.
+	 * 
+	 * @return the batch size.
+	 */
+	public static int getJdbcBatchSize() {
+
+		return Math.max(1, getIntVariable("KHR_JDBC_BATCH_SIZE", 20));
+
+	}
+
+	/**
+	 * 
+	 * Gets the Hibernate properties that group inserts and updates into JDBC
+	 * batches. Statements are ordered by entity so that a batch is not broken up
+	 * by statements of another table.
+	 * 
+	 * @return the properties object.
+	 */
+	public static Properties getJdbcBatchProperties() {
+
+		Properties batchProperties = new Properties();
+
+		batchProperties.setProperty("hibernate.jdbc.batch_size", Integer.toString(getJdbcBatchSize()));
+		batchProperties.setProperty("hibernate.order_inserts", "true");
+		batchProperties.setProperty("hibernate.order_updates", "true");
+		batchProperties.setProperty("hibernate.jdbc.batch_versioned_data", "true");
+
+		return batchProperties;
+
+	}
+
+	/**
+	 * 
+	 * Applies the connection pool settings to a data source. The sizing, the
+	 * longest wait for a connection, the prepared statement cache and the
+	 * connection validation are read from variables that start with the given
+	 * prefix, such as KHR_POOL_MAX_TOTAL.
+	 * 
+	 * @param dataSource     the data source to be configured.
+	 * @param variablePrefix the prefix of the variables, which keeps the settings
+	 *                       of different databases apart.
+	 */
+	public static void configureConnectionPool(BasicDataSource dataSource, String variablePrefix) {
+
+		final String prefix = variablePrefix + "_POOL_";
+
+		int maxTotal = Math.max(1, getIntVariable(prefix + "MAX_TOTAL", 20));
+		int maxIdle = Math.min(maxTotal, Math.max(0, getIntVariable(prefix + "MAX_IDLE", 10)));
+		int minIdle = Math.min(maxIdle, Math.max(0, getIntVariable(prefix + "MIN_IDLE", 2)));
+
+		dataSource.setMaxTotal(maxTotal);
+		dataSource.setMaxIdle(maxIdle);
+		dataSource.setMinIdle(minIdle);
+		dataSource.setInitialSize(minIdle);
+		dataSource.setMaxWaitMillis(getIntVariable(prefix + "MAX_WAIT", 5000));
+
+		// Cache prepared statements per connection, a size of 0 turns the cache off.
+		int statementCacheSize = Math.max(0, getIntVariable(prefix + "STATEMENTS", 50));
+		dataSource.setPoolPreparedStatements(statementCacheSize > 0);
+		dataSource.setMaxOpenPreparedStatements(statementCacheSize);
+
+		// Validate with Connection.isValid on borrow and while idle.
+		boolean validate = Boolean.parseBoolean(getVariable(prefix + "VALIDATE", "true"));
+		dataSource.setTestOnBorrow(validate);
+		dataSource.setTestWhileIdle(validate);
+		dataSource.setValidationQueryTimeout(5);
+		dataSource.setTimeBetweenEvictionRunsMillis(validate ? 60000 : -1);
+
+	}
+
+	/**
+	 * 
+	 * Checks if the database work of controller methods should run on the query
+	 * pool instead of the request threads. It is turned off by setting
+	 * KHR_ASYNC_QUERIES to false.
+	 * 
+	 * @return true if the work runs asynchronously, or false otherwise.
+	 */
+	public static boolean isAsyncQueryEnabled() {
+
+		return Boolean.parseBoolean(getVariable("KHR_ASYNC_QUERIES", "true"));
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of threads that run database work for controller methods.
+	 * It is read from KHR_QUERY_THREADS and defaults to the size of the Oracle
+	 * connection pool, so every thread can hold a connection.
+	 * 
+	 * @return the number of threads.
+	 */
+	public static int getQueryThreads() {
+
+		return Math.max(1, getIntVariable("KHR_QUERY_THREADS", Math.max(1, getIntVariable("KHR_POOL_MAX_TOTAL", 20))));
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of requests allowed to wait for a query thread. It is read
+	 * from KHR_QUERY_QUEUE.
+	 * 
+	 * @return the capacity of the queue.
+	 */
+	public static int getQueryQueueCapacity() {
+
+		return Math.max(1, getIntVariable("KHR_QUERY_QUEUE", 100));
+
+	}
+
+	/**
+	 * 
+	 * Gets the longest time a request waits for its database work, in
+	 * milliseconds. It is read from KHR_QUERY_TIMEOUT.
+	 * 
+	 * @return the timeout.
+	 */
+	public static long getQueryTimeout() {
+
+		return Math.max(1, getIntVariable("KHR_QUERY_TIMEOUT", 10000));
+
+	}
+
+	/**
+	 * 
+	 * Gets the delay between two runs of the ETA ledger applier, in milliseconds.
+	 * It is read from KHR_LEDGER_INTERVAL. A value of 0 or less turns the applier
+	 * off, so pending entries are only applied at shutdown.
+	 * 
+	 * @return the delay.
+	 */
+	public static long getLedgerInterval() {
+
+		return Math.max(0, getIntVariable("KHR_LEDGER_INTERVAL", 2000));
+
+	}
+
+	/**
+	 * 
+	 * Gets the largest number of ETA ledger entries applied in one transaction. It
+	 * is read from KHR_LEDGER_BATCH and is capped at 1000, the longest ID list an
+	 * Oracle IN condition takes.
+	 * 
+	 * @return the batch size.
+	 */
+	public static int getLedgerBatchSize() {
+
+		return Math.min(1000, Math.max(1, getIntVariable("KHR_LEDGER_BATCH", 500)));
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of rows fetched from the database at a time while a result
+	 * is streamed. It is read from KHR_STREAM_FETCH_SIZE.
+	 * 
+	 * @return the fetch size.
+	 */
+	public static int getStreamFetchSize() {
+
+		return Math.max(1, getIntVariable("KHR_STREAM_FETCH_SIZE", 100));
+
+	}
+
+	/**
+	 * 
+	 * Passes the results of a query to an action one at a time. The rows are read
+	 * through a forward-only cursor in fetches of the stream fetch size, and the
+	 * session is cleared after every fetch, so the memory in use does not grow
+	 * with the number of results.
+	 * 
+	 * @param <T>     the type of the results.
+	 * @param session the session the query is created from.
+	 * @param query   the query to run.
+	 * @param action  the action that takes each result.
+	 * @return the number of results.
+	 */
+	public static <T> int scroll(Session session, Query<T> query, Consumer<? super T> action) {
+
+		final int fetchSize = getStreamFetchSize();
+		int count = 0;
+
+		query.setFetchSize(fetchSize).setReadOnly(true).setCacheMode(CacheMode.IGNORE);
+
+		try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+			while (results.next()) {
+				@SuppressWarnings("unchecked")
+				T result = (T) results.get(0);
+				action.accept(result);
+				if (++count % fetchSize == 0) {
+					session.clear();
+				}
+			}
+		}
+
+		return count;
+
+	}
+
+	/**
+	 * 
+	 * Gets the largest file accepted by the upload endpoints, in bytes. It is read
+	 * from KHR_MAX_UPLOAD_SIZE.
+	 * 
+	 * @return the size limit.
+	 */
+	public static long getMaxUploadSize() {
+
+		return Math.max(1, getIntVariable("KHR_MAX_UPLOAD_SIZE", 20 * 1024 * 1024));
+
+	}
+
+	/**
+	 * 
+	 * Gets the directory of the media store. It is read from KHR_MEDIA_DIR, and the
+	 * store is turned off if it is not set.
+	 * 
+	 * @return the directory, or an empty string.
+	 */
+	public static String getMediaDirectory() {
+
+		return getVariable("KHR_MEDIA_DIR", "");
+
+	}
+
+	/**
+	 * 
+	 * Gets the largest number of rows of each table moved into the media store in
+	 * one transaction. It is read from KHR_MEDIA_BATCH.
+	 * 
+	 * @return the batch size.
+	 */
+	public static int getMediaBatchSize() {
+
+		return Math.max(1, getIntVariable("KHR_MEDIA_BATCH", 20));
+
+	}
+
+	/**
+	 * 
+	 * Writes a stream into a BLOB column in the transaction of the session. The
+	 * stream is handed to the driver with setBinaryStream, which copies it to the
+	 * database as it is read instead of building a byte array first. Uploads are
+	 * spooled to a temporary file beforehand, so the statement never waits for a
+	 * client.
+	 * 
+	 * @param session the session the statement runs in.
+	 * @param sql     the update statement. Its parameters are the BLOB, the file
+	 *                type and the ID of the row, in that order.
+	 * @param data    the stream holding the new content.
+	 * @param length  the number of bytes in the stream.
+	 * @param type    the file type of the content.
+	 * @param id      the ID of the row.
+	 * @return the number of rows updated.
+	 */
+	public static int updateBlob(Session session, String sql, InputStream data, long length, String type, int id) {
+
+		return session.doReturningWork(connection -> {
+			try (PreparedStatement ps = connection.prepareStatement(sql)) {
+				ps.setBinaryStream(1, data, length);
+				ps.setString(2, type);
+				ps.setInt(3, id);
+				return ps.executeUpdate();
+			}
+		});
+
+	}
+
+	/**
+	 * 
+	 * Points a row at a file of the media store in the transaction of the session,
+	 * clearing its BLOB column. This is the counterpart of updateBlob when media
+	 * is kept on disk.
+	 * 
+	 * @param session the session the statement runs in.
+	 * @param sql     the update statement. Its parameters are the hash, the file
+	 *                type and the ID of the row, in that order.
+	 * @param hash    the hash of the stored file.
+	 * @param type    the file type of the content.
+	 * @param id      the ID of the row.
+	 * @return the number of rows updated.
+	 */
+	public static int updateMediaHash(Session session, String sql, String hash, String type, int id) {
+
+		return session.doReturningWork(connection -> {
+			try (PreparedStatement ps = connection.prepareStatement(sql)) {
+				ps.setString(1, hash);
+				ps.setString(2, type);
+				ps.setInt(3, id);
+				return ps.executeUpdate();
+			}
+		});
+
+	}
+
+	/**
+	 * 
+	 * Checks if the Hibernate second-level cache should be enabled. The cache is
+	 * opt-in and is turned on by setting KHR_L2_CACHE to true.
+	 * 
+	 * @return true if the cache is enabled, or false otherwise.
+	 */
+	public static boolean isSecondLevelCacheEnabled() {
+
+		return Boolean.parseBoolean(getVariable("KHR_L2_CACHE", "false"));
+
+	}
+
+	/**
+	 * 
+	 * Gets the Hibernate properties of the second-level cache. The cache regions
+	 * are defined in kh-ehcache.xml and statistics are collected whenever the
+	 * cache is enabled.
+	 * 
+	 * @param regionPrefix the prefix that keeps the regions of different session
+	 *                     factories apart.
+	 * @return the properties object, which only disables the cache if it is not
+	 *         enabled.
+	 */
+	public static Properties getSecondLevelCacheProperties(String regionPrefix) {
+
+		Properties cacheProperties = new Properties();
+
+		if (!isSecondLevelCacheEnabled()) {
+			cacheProperties.setProperty("hibernate.cache.use_second_level_cache", "false");
+			return cacheProperties;
+		}
+
+		cacheProperties.setProperty("hibernate.cache.use_second_level_cache", "true");
+		cacheProperties.setProperty("hibernate.cache.use_query_cache", "false");
+		cacheProperties.setProperty("hibernate.cache.region_prefix", regionPrefix);
+		cacheProperties.setProperty("hibernate.cache.region.factory_class", "jcache");
+		cacheProperties.setProperty("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+		cacheProperties.setProperty("hibernate.javax.cache.uri", "classpath:kh-ehcache.xml");
+		cacheProperties.setProperty("hibernate.javax.cache.missing_cache_strategy", "fail");
+		cacheProperties.setProperty("hibernate.generate_statistics", "true");
+
+		return cacheProperties;
+
+	}
+
 }
@@ -0,0 +1,201 @@
+package io.esoma.khr.utility;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import io.esoma.khr.model.Thumbnail;
+
+/**
+ * 
+ * The utility class with static methods that decode images and make their
+ * thumbnails with the image I/O of the JDK.
+ * 
+ * @author Eddy Soma
+ *
+ */
+public class ImageUtility {
+
+	/**
+	 * The sizes of the thumbnails in pixels, from the smallest. A thumbnail fits in
+	 * a square of its size and keeps the aspect ratio of the image.
+	 */
+	public static final int[] THUMBNAIL_SIZES = { 64, 160, 320 };
+
+	/**
+	 * The largest number of pixels an image may declare. Larger images are not
+	 * decoded at all.
+	 */
+	public static final long MAX_PIXELS = 100_000_000L;
+
+	/**
+	 * The quality of the JPEG thumbnails, from 0 to 1.
+	 */
+	static final float JPEG_QUALITY = 0.85f;
+
+	private ImageUtility() {
+		// Include a private constructor to prevent instantiation.
+	}
+
+	/**
+	 * 
+	 * Finds the thumbnail size that serves a requested size, which is the smallest
+	 * one not below it.
+	 * 
+	 * @param size the size requested by a client.
+	 * @return the thumbnail size, or 0 if the request is larger than every
+	 *         thumbnail and the original image should be used.
+	 */
+	public static int getThumbnailSize(int size) {
+
+		for (int thumbnailSize : THUMBNAIL_SIZES) {
+			if (size <= thumbnailSize) {
+				return thumbnailSize;
+			}
+		}
+
+		return 0;
+
+	}
+
+	/**
+	 * 
+	 * Makes a thumbnail of an image for every size. Images with transparency are
+	 * encoded as PNG, and others as JPEG. An image smaller than a size is only
+	 * encoded again, never enlarged.
+	 * 
+	 * @param data the content of the image file.
+	 * @return the thumbnails from the smallest, or an empty list if the image
+	 *         cannot be decoded.
+	 */
+	public static List<Thumbnail> createThumbnails(byte[] data) {
+
+		final List<Thumbnail> thumbnailList = new ArrayList<>();
+
+		try {
+			BufferedImage image = decode(data, THUMBNAIL_SIZES[THUMBNAIL_SIZES.length - 1] * 2);
+			if (image == null) {
+				return thumbnailList;
+			}
+			final boolean alpha = image.getColorModel().hasAlpha();
+			// Scale down from the largest size, so every step starts from a smaller image.
+			for (int i = THUMBNAIL_SIZES.length - 1; i >= 0; i--) {
+				image = scale(image, THUMBNAIL_SIZES[i], alpha);
+				thumbnailList.add(0, new Thumbnail(THUMBNAIL_SIZES[i], alpha ? encodePng(image) : encodeJpeg(image),
+						alpha ? "PNG" : "JPEG"));
+			}
+		} catch (IOException | RuntimeException e) {
+			// Debug message
+			LogUtility.MASTER_LOGGER.error("error in createThumbnails, stack trace:", e);
+			thumbnailList.clear();
+		}
+
+		return thumbnailList;
+
+	}
+
+	// Decodes an image, skipping rows and columns of a large one so that the
+	// result is not much larger than the given edge. The dimensions are read
+	// from the header first, so an oversized image never reaches the decoder.
+	static BufferedImage decode(byte[] data, int edge) throws IOException {
+
+		try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+			final Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			final ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				final int width = reader.getWidth(0);
+				final int height = reader.getHeight(0);
+				if ((long) width * height > MAX_PIXELS) {
+					return null;
+				}
+				final ImageReadParam param = reader.getDefaultReadParam();
+				final int step = Math.max(1, Math.max(width, height) / edge);
+				param.setSourceSubsampling(step, step, 0, 0);
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+
+	}
+
+	// Scales an image to fit in a square of the given size. The image is halved
+	// until it is close to the size, which keeps a bilinear filter from skipping
+	// pixels.
+	static BufferedImage scale(BufferedImage image, int size, boolean alpha) {
+
+		final int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		BufferedImage result = image;
+
+		do {
+			final int longest = Math.max(result.getWidth(), result.getHeight());
+			final double ratio = Math.min(1.0, (double) Math.max(size, longest / 2) / longest);
+			final int width = Math.max(1, (int) Math.round(result.getWidth() * ratio));
+			final int height = Math.max(1, (int) Math.round(result.getHeight() * ratio));
+			final BufferedImage scaled = new BufferedImage(width, height, type);
+			final Graphics2D graphics = scaled.createGraphics();
+			try {
+				graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+						RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				graphics.drawImage(result, 0, 0, width, height, null);
+			} finally {
+				graphics.dispose();
+			}
+			result = scaled;
+		} while (Math.max(result.getWidth(), result.getHeight()) > size);
+
+		return result;
+
+	}
+
+	// Encodes an image as PNG.
+	static byte[] encodePng(BufferedImage image) throws IOException {
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+
+		return out.toByteArray();
+
+	}
+
+	// Encodes an image as JPEG with a fixed quality.
+	static byte[] encodeJpeg(BufferedImage image) throws IOException {
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+
+		try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+			writer.setOutput(ios);
+			final ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(JPEG_QUALITY);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+
+		return out.toByteArray();
+
+	}
+
+}
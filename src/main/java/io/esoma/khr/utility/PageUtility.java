@@ -0,0 +1,174 @@
+package io.esoma.khr.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.http.HttpHeaders;
+
+import io.esoma.khr.model.Page;
+
+/**
+ * 
+ * The utility class with static methods that support keyset pagination. A list
+ * is sorted by a few stable keys that end with the entity ID, and each page
+ * starts right after the keys of the last item of the previous page, so every
+ * page is read from an index in the same time regardless of its position.
+ * 
+ * @author Eddy Soma
+ *
+ */
+public class PageUtility {
+
+	private PageUtility() {
+		// Include a private constructor to prevent instantiation.
+	}
+
+	/**
+	 * The response header that carries the cursor of the next page.
+	 */
+	public static final String NEXT_CURSOR = "Next-Cursor";
+
+	public static final int DEFAULT_PAGE_SIZE = 50;
+	public static final int MAX_PAGE_SIZE = 200;
+
+	private static final char SEPARATOR = '\n';
+
+	/**
+	 * 
+	 * Gets the number of items on a page from the requested limit.
+	 * 
+	 * @param limit the requested limit, or null if it is not given.
+	 * @return the page size between 1 and the maximum page size.
+	 */
+	public static int getPageSize(Integer limit) {
+
+		if (limit == null) {
+			return DEFAULT_PAGE_SIZE;
+		}
+
+		return Math.max(1, Math.min(MAX_PAGE_SIZE, limit));
+
+	}
+
+	/**
+	 * 
+	 * Encodes the sort keys of an item into an opaque cursor that is safe to be
+	 * used in a URL.
+	 * 
+	 * @param keys the sort keys. The last one is the entity ID.
+	 * @return the cursor string.
+	 */
+	public static String encodeCursor(Object... keys) {
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0) {
+				sb.append(SEPARATOR);
+			}
+			sb.append(keys[i]);
+		}
+
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+	}
+
+	/**
+	 * 
+	 * Decodes a cursor into its sort keys.
+	 * 
+	 * @param cursor the cursor string sent from the request.
+	 * @param length the expected number of keys.
+	 * @return the sort keys, or null if the cursor is malformed or its last key is
+	 *         not an ID. Only the first key may contain the separator.
+	 */
+	public static String[] decodeCursor(String cursor, int length) {
+
+		String[] keys = new String[length];
+
+		try {
+			String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+			// Split from the end, so the first key may contain the separator.
+			int end = text.length();
+			for (int i = length - 1; i > 0; i--) {
+				int start = text.lastIndexOf(SEPARATOR, end - 1);
+				if (start < 0) {
+					return null;
+				}
+				keys[i] = text.substring(start + 1, end);
+				end = start;
+			}
+			keys[0] = text.substring(0, end);
+
+			if (Integer.parseInt(keys[length - 1]) < 0) {
+				return null;
+			}
+		} catch (IllegalArgumentException e) {
+			// Also handles NumberFormatException.
+			return null;
+		}
+
+		return keys;
+
+	}
+
+	/**
+	 * 
+	 * Makes a page from the items fetched for it. One item more than the page size
+	 * should be fetched, so the next cursor is only given when there is a next
+	 * page.
+	 * 
+	 * @param items    the fetched items, which are trimmed to the page size.
+	 * @param size     the page size.
+	 * @param cursorOf the function that encodes the cursor of an item.
+	 * @return the page object.
+	 */
+	public static <T> Page<T> toPage(List<T> items, int size, Function<T, String> cursorOf) {
+
+		String nextCursor = null;
+
+		if (items.size() > size) {
+			items.subList(size, items.size()).clear();
+			nextCursor = cursorOf.apply(items.get(size - 1));
+		}
+
+		return new Page<>(items, nextCursor);
+
+	}
+
+	/**
+	 * 
+	 * Gets the response headers of a page. The next cursor is only included when
+	 * there is a next page.
+	 * 
+	 * @param page the page object.
+	 * @return the headers object.
+	 */
+	public static HttpHeaders getPageHeaders(Page<?> page) {
+
+		return getPageHeaders(page.getNextCursor());
+
+	}
+
+	/**
+	 * 
+	 * Gets the response headers of a page from its next cursor.
+	 * 
+	 * @param nextCursor the cursor of the next page, or null if there is none.
+	 * @return the headers object.
+	 */
+	public static HttpHeaders getPageHeaders(String nextCursor) {
+
+		HttpHeaders headers = new HttpHeaders();
+
+		if (nextCursor != null) {
+			headers.set(NEXT_CURSOR, nextCursor);
+		}
+
+		return headers;
+
+	}
+
+}
@@ -1,10 +1,13 @@
 package io.esoma.khr.utility;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 
 import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 import org.apache.commons.lang3.RandomStringUtils;
 
@@ -23,6 +26,14 @@ import io.jsonwebtoken.Jwts;
  */
 public class SecurityUtility {
 
+	/**
+	 * The prefix of an iterated password hash. Hashes without it are single-round
+	 * SHA-256 digests created by earlier versions of the application.
+	 */
+	public static final String PBKDF2_PREFIX = "PBKDF2$";
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
 	private SecurityUtility() {
 		// Include a private constructor to prevent instantiation.
 	}
@@ -54,6 +65,19 @@ public class SecurityUtility {
 
 	}
 
+	/**
+	 * 
+	 * Returns a randomly generated alphanumeric string with a fixed length of 16
+	 * characters. It is the salt used together with iterated password hashes.
+	 * 
+	 * @return the 16-character string.
+	 */
+	public static String getPasswordSaltStrong() {
+
+		return RandomStringUtils.randomAlphanumeric(16);
+
+	}
+
 	/**
 	 * 
 	 * Returns a string representation of the hexadecimal digest of a string input
@@ -79,12 +103,62 @@ public class SecurityUtility {
 		byte[] bytes = md.digest();
 
 		// Convert the result into a string.
-		StringBuilder digest = new StringBuilder("");
-		for (byte b : bytes) {
-			digest.append(String.format("%02X", b));
+		return toHex(bytes);
+
+	}
+
+	/**
+	 * 
+	 * Returns an iterated hash of a password using PBKDF2 with HMAC-SHA256. The
+	 * number of iterations is stored in the result so the cost can be raised
+	 * without invalidating existing hashes.
+	 * 
+	 * @param password   the password to be hashed.
+	 * @param salt       the random salt.
+	 * @param iterations the number of iterations.
+	 * @return the hash string in the form PBKDF2$iterations$digest, or null if
+	 *         the algorithm is not available.
+	 */
+	public static String getPBKDF2Digest(String password, String salt, int iterations) {
+
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), iterations,
+				256);
+
+		try {
+			byte[] bytes = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+			return PBKDF2_PREFIX + iterations + "$" + toHex(bytes);
+		} catch (Exception e) {
+			return null;
+		} finally {
+			spec.clearPassword();
 		}
 
-		return new String(digest);
+	}
+
+	/**
+	 * 
+	 * Gets the number of iterations recorded in a password hash.
+	 * 
+	 * @param hash the hash string stored in the database.
+	 * @return the number of iterations, or 0 if it is a single-round SHA-256
+	 *         digest or cannot be read.
+	 */
+	public static int getHashIterations(String hash) {
+
+		if (hash == null || !hash.startsWith(PBKDF2_PREFIX)) {
+			return 0;
+		}
+
+		int end = hash.indexOf('$', PBKDF2_PREFIX.length());
+		if (end < 0) {
+			return 0;
+		}
+
+		try {
+			return Integer.parseInt(hash.substring(PBKDF2_PREFIX.length(), end));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
 
 	}
 
@@ -92,7 +166,8 @@ public class SecurityUtility {
 	 * 
 	 * Checks if the input password is valid by appending the salt to the end of the
 	 * password and comparing the hash of the entire string to the given hash
-	 * retrieved from the database. Returns true if the hashes compare equal.
+	 * retrieved from the database. Returns true if the hashes compare equal. An
+	 * iterated hash is recomputed with the number of iterations it records.
 	 * 
 	 * @param password the input password to be validated.
 	 * @param salt     the random salt stored in the database.
@@ -101,7 +176,72 @@ public class SecurityUtility {
 	 */
 	public static boolean isValidPassword(String password, String salt, String hash) {
 
-		return hash.equals(getSHA256Digest(password.concat(salt)));
+		String digest;
+
+		if (hash.startsWith(PBKDF2_PREFIX)) {
+			int iterations = getHashIterations(hash);
+			if (iterations < 1) {
+				return false;
+			}
+			digest = getPBKDF2Digest(password, salt, iterations);
+		} else {
+			digest = getSHA256Digest(password.concat(salt));
+		}
+
+		return digest != null && MessageDigest.isEqual(hash.getBytes(StandardCharsets.UTF_8),
+				digest.getBytes(StandardCharsets.UTF_8));
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of iterations used for new password hashes. It is read from
+	 * KHR_HASH_ITERATIONS and never goes below 1000.
+	 * 
+	 * @return the number of iterations.
+	 */
+	public static int getConfiguredHashIterations() {
+
+		return Math.max(1000, DatabaseUtility.getIntVariable("KHR_HASH_ITERATIONS", 100000));
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of threads that compute password hashes. It is read from
+	 * KHR_HASH_THREADS and defaults to half of the available processors.
+	 * 
+	 * @return the number of threads.
+	 */
+	public static int getConfiguredHashThreads() {
+
+		return Math.max(1,
+				DatabaseUtility.getIntVariable("KHR_HASH_THREADS", Runtime.getRuntime().availableProcessors() / 2));
+
+	}
+
+	/**
+	 * 
+	 * Gets the number of password hashing tasks allowed to wait for a thread. It is
+	 * read from KHR_HASH_QUEUE.
+	 * 
+	 * @return the capacity of the queue.
+	 */
+	public static int getConfiguredHashQueueCapacity() {
+
+		return Math.max(1, DatabaseUtility.getIntVariable("KHR_HASH_QUEUE", 64));
+
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+			hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+		}
+
+		return new String(hex);
 
 	}
 
@@ -163,10 +303,24 @@ public class SecurityUtility {
 	 */
 	public static boolean jwsHasNotExpired(LocalDateTime timeCreated) {
 
-		LocalDateTime expiration = timeCreated.plusMinutes(30);
+		LocalDateTime expiration = getJwsExpiration(timeCreated);
 
 		return LocalDateTime.now().compareTo(expiration) < 0;
 
 	}
 
+	/**
+	 * 
+	 * Returns the moment when an auth JWS expires based on the time it was
+	 * created.
+	 * 
+	 * @param timeCreated the time that the JWS was created.
+	 * @return the expiration time.
+	 */
+	public static LocalDateTime getJwsExpiration(LocalDateTime timeCreated) {
+
+		return timeCreated.plusMinutes(30);
+
+	}
+
 }
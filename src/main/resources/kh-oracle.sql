@@ -1,3 +1,13 @@
+---- ==================== PREPARE SEQUENCES ====================
+---- The sample data takes consecutive IDs.
+--ALTER SEQUENCE SEQ_GENRE_ID INCREMENT BY 1;
+--ALTER SEQUENCE SEQ_KOALIBEE_ID INCREMENT BY 1;
+--ALTER SEQUENCE SEQ_CREDENTIALS_ID INCREMENT BY 1;
+--ALTER SEQUENCE SEQ_MOMENT_ID INCREMENT BY 1;
+--ALTER SEQUENCE SEQ_ALBUM_ID INCREMENT BY 1;
+--ALTER SEQUENCE SEQ_TRACK_ID INCREMENT BY 1;
+--ALTER SEQUENCE SEQ_REVIEW_ID INCREMENT BY 1;
+--
 ---- ==================== INSERT GENRE ====================
 --INSERT INTO GENRE (GENRE_ID, GENRE_NAME)
 --VALUES (SEQ_GENRE_ID.NEXTVAL, 'Classical');
@@ -190,4 +200,29 @@
 --INSERT INTO REVIEW (REVIEW_ID, RATING, REVIEW_COMMENT, ALBUM_ID, KOALIBEE_ID)
 --VALUES (SEQ_REVIEW_ID.NEXTVAL, 8, 'Oh Oh this is good. Miku like.', 5, 5);
 --
---COMMIT;
\ No newline at end of file
+---- ==================== INSERT ALBUM_RATING ====================
+--INSERT INTO ALBUM_RATING (ALBUM_ID, RATING_COUNT, RATING_SUM, RATING_1, RATING_2, RATING_3, RATING_4, RATING_5, RATING_6, RATING_7, RATING_8, RATING_9, RATING_10)
+--SELECT ALBUM_ID, COUNT(*), SUM(RATING),
+--SUM(CASE WHEN RATING = 1 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 2 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 3 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 4 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 5 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 6 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 7 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 8 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 9 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 10 THEN 1 ELSE 0 END)
+--FROM REVIEW GROUP BY ALBUM_ID;
+--
+--COMMIT;
+--
+---- ==================== RESTORE SEQUENCES ====================
+---- Hibernate allocates IDs in blocks of 20 with the pooled optimizer.
+--ALTER SEQUENCE SEQ_GENRE_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_KOALIBEE_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_CREDENTIALS_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_MOMENT_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_ALBUM_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_TRACK_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_REVIEW_ID INCREMENT BY 20;
@@ -6,8 +6,13 @@
 --DROP SEQUENCE SEQ_ALBUM_ID;
 --DROP SEQUENCE SEQ_TRACK_ID;
 --DROP SEQUENCE SEQ_REVIEW_ID;
+--DROP SEQUENCE SEQ_ENTRY_ID;
+--DROP SEQUENCE SEQ_THUMBNAIL_ID;
 --
 ---- ==================== DROP TABLES ====================
+--DROP TABLE THUMBNAIL;
+--DROP TABLE ETA_LEDGER;
+--DROP TABLE ALBUM_RATING;
 --DROP TABLE KOALIBEE_ALBUM;
 --DROP TABLE REVIEW;
 --DROP TABLE MOMENT;
@@ -31,14 +36,16 @@ CREATE TABLE KOALIBEE (
 	ETA_BALANCE INT NOT NULL,
 	AVATAR BLOB,
 	AVATAR_TYPE VARCHAR2(4),
+	AVATAR_HASH VARCHAR2(64),
+	AVATAR_VERSION INT,
 	CREDENTIALS_ID INT NOT NULL
 );
 
 CREATE TABLE CREDENTIALS (
 	CREDENTIALS_ID INT PRIMARY KEY,
 	EMAIL VARCHAR2(100) UNIQUE NOT NULL,
-	PASSWORD_HASH VARCHAR2(64) NOT NULL,
-	PASSWORD_SALT VARCHAR2(4) NOT NULL
+	PASSWORD_HASH VARCHAR2(100) NOT NULL,
+	PASSWORD_SALT VARCHAR2(32) NOT NULL
 );
 
 CREATE TABLE MOMENT (
@@ -55,6 +62,7 @@ CREATE TABLE ALBUM (
 	ARTIST VARCHAR2(100),
 	ARTWORK BLOB,
 	ARTWORK_TYPE VARCHAR2(4),
+	ARTWORK_HASH VARCHAR2(64),
 	ETA_PRICE INT NOT NULL,
 	IS_PROMOTED VARCHAR2(1) NOT NULL,
 	IS_PUBLISHED VARCHAR2(1) NOT NULL,
@@ -69,6 +77,7 @@ CREATE TABLE TRACK (
 	TRACK_LENGTH INT NOT NULL,
 	AUDIO BLOB,
 	AUDIO_TYPE VARCHAR2(4),
+	AUDIO_HASH VARCHAR2(64),
 	IS_DEMO VARCHAR2(1) NOT NULL,
 	ALBUM_ID INT NOT NULL
 );
@@ -88,40 +97,84 @@ CREATE TABLE KOALIBEE_ALBUM (
 	PRIMARY KEY (KOALIBEE_ID, ALBUM_ID)
 );
 
+CREATE TABLE ALBUM_RATING (
+	ALBUM_ID INT PRIMARY KEY,
+	RATING_COUNT INT NOT NULL,
+	RATING_SUM INT NOT NULL,
+	RATING_1 INT NOT NULL,
+	RATING_2 INT NOT NULL,
+	RATING_3 INT NOT NULL,
+	RATING_4 INT NOT NULL,
+	RATING_5 INT NOT NULL,
+	RATING_6 INT NOT NULL,
+	RATING_7 INT NOT NULL,
+	RATING_8 INT NOT NULL,
+	RATING_9 INT NOT NULL,
+	RATING_10 INT NOT NULL
+);
+
+CREATE TABLE ETA_LEDGER (
+	ENTRY_ID INT PRIMARY KEY,
+	KOALIBEE_ID INT NOT NULL,
+	DELTA INT NOT NULL,
+	REASON VARCHAR2(20) NOT NULL,
+	ENTRY_TIME TIMESTAMP NOT NULL,
+	IS_APPLIED VARCHAR2(1) NOT NULL
+);
+
+CREATE TABLE THUMBNAIL (
+	THUMBNAIL_ID INT PRIMARY KEY,
+	ALBUM_ID INT,
+	KOALIBEE_ID INT,
+	IMAGE_SIZE INT NOT NULL,
+	IMAGE BLOB,
+	IMAGE_TYPE VARCHAR2(4)
+);
+
 -- ==================== CREATE SEQUENCES ====================
 CREATE SEQUENCE SEQ_GENRE_ID
 START WITH 1
-INCREMENT BY 1
+INCREMENT BY 20
 NOCACHE;
 
 CREATE SEQUENCE SEQ_KOALIBEE_ID
 START WITH 1
-INCREMENT BY 1
+INCREMENT BY 20
 NOCACHE;
 
 CREATE SEQUENCE SEQ_CREDENTIALS_ID
 START WITH 1
-INCREMENT BY 1
+INCREMENT BY 20
 NOCACHE;
 
 CREATE SEQUENCE SEQ_MOMENT_ID
 START WITH 1
-INCREMENT BY 1
+INCREMENT BY 20
 NOCACHE;
 
 CREATE SEQUENCE SEQ_ALBUM_ID
 START WITH 1
-INCREMENT BY 1
+INCREMENT BY 20
 NOCACHE;
 
 CREATE SEQUENCE SEQ_TRACK_ID
 START WITH 1
-INCREMENT BY 1
+INCREMENT BY 20
 NOCACHE;
 
 CREATE SEQUENCE SEQ_REVIEW_ID
 START WITH 1
-INCREMENT BY 1
+INCREMENT BY 20
+NOCACHE;
+
+CREATE SEQUENCE SEQ_ENTRY_ID
+START WITH 1
+INCREMENT BY 20
+NOCACHE;
+
+CREATE SEQUENCE SEQ_THUMBNAIL_ID
+START WITH 1
+INCREMENT BY 20
 NOCACHE;
 
 -- ==================== CREATE CONSTRAINTS ====================
@@ -168,4 +221,72 @@ ON DELETE CASCADE;
 ALTER TABLE KOALIBEE_ALBUM
 ADD CONSTRAINT FK_ALBUM_ID_KA
 FOREIGN KEY (ALBUM_ID) REFERENCES ALBUM(ALBUM_ID)
-ON DELETE CASCADE;
\ No newline at end of file
+ON DELETE CASCADE;
+
+ALTER TABLE ALBUM_RATING
+ADD CONSTRAINT FK_ALBUM_ID_AR
+FOREIGN KEY (ALBUM_ID) REFERENCES ALBUM(ALBUM_ID)
+ON DELETE CASCADE;
+
+ALTER TABLE ETA_LEDGER
+ADD CONSTRAINT FK_KOALIBEE_ID_EL
+FOREIGN KEY (KOALIBEE_ID) REFERENCES KOALIBEE(KOALIBEE_ID)
+ON DELETE CASCADE;
+
+ALTER TABLE THUMBNAIL
+ADD CONSTRAINT FK_ALBUM_ID_THUMBNAIL
+FOREIGN KEY (ALBUM_ID) REFERENCES ALBUM(ALBUM_ID)
+ON DELETE CASCADE;
+
+ALTER TABLE THUMBNAIL
+ADD CONSTRAINT FK_KOALIBEE_ID_THUMBNAIL
+FOREIGN KEY (KOALIBEE_ID) REFERENCES KOALIBEE(KOALIBEE_ID)
+ON DELETE CASCADE;
+
+-- ==================== CREATE INDEXES ====================
+-- Sort keys of the paginated lists.
+CREATE INDEX IDX_ALBUM_NAME_ID ON ALBUM (ALBUM_NAME, ALBUM_ID);
+
+CREATE INDEX IDX_TRACK_NAME_ID ON TRACK (TRACK_NAME, TRACK_ID);
+
+CREATE INDEX IDX_MOMENT_DATE_ID ON MOMENT (POST_DATE, MOMENT_ID);
+
+-- Pending entries of the ETA ledger, read by the applier and summed per koalibee.
+CREATE INDEX IDX_ETA_LEDGER_PENDING ON ETA_LEDGER (IS_APPLIED, KOALIBEE_ID, DELTA);
+
+-- Thumbnails looked up by their image and size.
+CREATE INDEX IDX_THUMBNAIL_ALBUM ON THUMBNAIL (ALBUM_ID, IMAGE_SIZE);
+
+CREATE INDEX IDX_THUMBNAIL_KOALIBEE ON THUMBNAIL (KOALIBEE_ID, IMAGE_SIZE);
+
+---- ==================== MIGRATIONS ====================
+---- Widens the credentials columns of an existing schema for iterated password hashes.
+--ALTER TABLE CREDENTIALS MODIFY (PASSWORD_HASH VARCHAR2(100), PASSWORD_SALT VARCHAR2(32));
+---- Matches the sequences of an existing schema to the pooled ID allocation (allocationSize = 20).
+--ALTER SEQUENCE SEQ_GENRE_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_KOALIBEE_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_CREDENTIALS_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_MOMENT_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_ALBUM_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_TRACK_ID INCREMENT BY 20;
+--ALTER SEQUENCE SEQ_REVIEW_ID INCREMENT BY 20;
+---- Fills the rating statistics of an existing schema from its reviews, after ALBUM_RATING is created.
+--INSERT INTO ALBUM_RATING (ALBUM_ID, RATING_COUNT, RATING_SUM, RATING_1, RATING_2, RATING_3, RATING_4, RATING_5, RATING_6, RATING_7, RATING_8, RATING_9, RATING_10)
+--SELECT ALBUM_ID, COUNT(*), SUM(RATING),
+--SUM(CASE WHEN RATING = 1 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 2 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 3 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 4 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 5 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 6 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 7 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 8 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 9 THEN 1 ELSE 0 END),
+--SUM(CASE WHEN RATING = 10 THEN 1 ELSE 0 END)
+--FROM REVIEW GROUP BY ALBUM_ID;
+---- Adds the media store hashes to an existing schema.
+--ALTER TABLE KOALIBEE ADD (AVATAR_HASH VARCHAR2(64));
+--ALTER TABLE ALBUM ADD (ARTWORK_HASH VARCHAR2(64));
+--ALTER TABLE TRACK ADD (AUDIO_HASH VARCHAR2(64));
+---- Adds the avatar versions that tag cached avatars to an existing schema.
+--ALTER TABLE KOALIBEE ADD (AVATAR_VERSION INT);
@@ -0,0 +1,66 @@
+package io.esoma.khr.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.esoma.khr.utility.DatabaseUtility;
+
+public class InstrumentedDataSourceTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Test
+	public void testGetPoolStatisticsN() throws Exception {
+
+		try (InstrumentedDataSource dataSource = new InstrumentedDataSource()) {
+			dataSource.setMaxTotal(7);
+
+			Map<String, Long> poolStatistics = dataSource.getPoolStatistics();
+
+			assertEquals(7L, poolStatistics.get("maxTotal").longValue());
+
+			assertEquals(0L, poolStatistics.get("active").longValue());
+
+			assertEquals(0L, poolStatistics.get("borrowedCount").longValue());
+		}
+
+	}
+
+	@Test
+	public void testGetPoolStatistics() throws Exception {
+
+		try (InstrumentedDataSource dataSource = new InstrumentedDataSource()) {
+			dataSource.setDriverClassName(DatabaseUtility.getH2DBDriverClassName());
+			dataSource.setUrl("jdbc:h2:mem:pool");
+			dataSource.setUsername(DatabaseUtility.getH2DBUsername());
+			dataSource.setPassword(DatabaseUtility.getH2DBPassword());
+
+			try (Connection connection = dataSource.getConnection()) {
+				Map<String, Long> poolStatistics = dataSource.getPoolStatistics();
+
+				assertEquals(1L, poolStatistics.get("active").longValue());
+
+				assertTrue(poolStatistics.get("borrowedCount") >= 1);
+			}
+
+			assertEquals(0L, dataSource.getPoolStatistics().get("active").longValue());
+		}
+
+	}
+
+}
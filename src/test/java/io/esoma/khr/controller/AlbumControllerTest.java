@@ -1,12 +1,19 @@
 package io.esoma.khr.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,12 +28,22 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumData;
+import io.esoma.khr.model.CachedPage;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.model.Thumbnail;
 import io.esoma.khr.service.AlbumService;
 import io.esoma.khr.service.AuthService;
 import io.esoma.khr.service.KoalibeeServiceTest;
+import io.esoma.khr.service.QueryService;
+import io.esoma.khr.service.ThumbnailService;
+import io.esoma.khr.utility.DatabaseUtility;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -40,6 +57,8 @@ public class AlbumControllerTest {
 	private AuthService authService;
 	@Mock
 	private AlbumService albumService;
+	@Mock
+	private ThumbnailService thumbnailService;
 
 	{
 		this.albumController = new AlbumController();
@@ -74,16 +93,29 @@ public class AlbumControllerTest {
 		when(this.authService.reauthenticate("14j")).thenReturn(14);
 
 		when(this.albumService.getOne(anyInt())).thenReturn(null);
-		when(this.albumService.create(anyInt(), anyString())).thenReturn(0);
-		when(this.albumService.update(anyInt(), anyInt(), anyString())).thenReturn(false);
+		when(this.albumService.create(anyInt(), any(AlbumData.class))).thenReturn(0);
+		when(this.albumService.update(anyInt(), anyInt(), any(AlbumData.class))).thenReturn(false);
 		when(this.albumService.delete(anyInt(), anyInt())).thenReturn(false);
-		when(this.albumService.publish(anyInt(), anyInt(), anyString())).thenReturn(false);
+		when(this.albumService.publish(anyInt(), anyInt(), any(AlbumData.class))).thenReturn(false);
 		when(this.albumService.promote(anyInt(), anyInt())).thenReturn(false);
-		when(this.albumService.getAll()).thenReturn(new ArrayList<>(albumList));
-		when(this.albumService.getPublished()).thenReturn(new ArrayList<>(albumList));
+		when(this.albumService.getAll(null, null)).thenReturn(new Page<>(new ArrayList<>(albumList), null));
+		when(this.albumService.getPublishedJson(null, null, true))
+				.thenReturn(new CachedPage("[{\"albumId\":1}]".getBytes(), "\"premium\"", null));
+		when(this.albumService.getPublishedJson(null, null, false))
+				.thenReturn(new CachedPage("[]".getBytes(), "\"basic\"", null));
 
 		this.albumController.setAuthService(this.authService);
 		this.albumController.setAlbumService(this.albumService);
+		this.albumController.setQueryService(new QueryService(false, 1, 1, 1000));
+		this.albumController.setThumbnailService(this.thumbnailService);
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getResponse(DeferredResult<T> deferredResult) {
+
+		// The query service runs inline, so the result is already set.
+		return (T) deferredResult.getResult();
 
 	}
 
@@ -99,6 +131,12 @@ public class AlbumControllerTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetQueryService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testGetAlbumEx() throws Exception {
 
@@ -187,10 +225,152 @@ public class AlbumControllerTest {
 
 	}
 
+	@Test
+	public void testGetArtworkNF() throws Exception {
+
+		when(this.albumService.getArtworkVersion(1)).thenReturn(null);
+
+		ResponseEntity<byte[]> result = this.albumController.getArtwork(1, null, null);
+
+		assertEquals(404, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetArtworkS() throws Exception {
+
+		final Album album = new Album(5);
+		album.setArtwork("art".getBytes());
+		album.setArtworkType("JPG");
+
+		when(this.albumService.getArtworkVersion(5)).thenReturn("A5");
+		when(this.albumService.getArtwork(5)).thenReturn(album);
+
+		ResponseEntity<byte[]> result = this.albumController.getArtwork(5, "\"stale\"", null);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("art", new String(result.getBody()));
+
+		assertEquals("image/jpg", result.getHeaders().getContentType().toString());
+
+		assertEquals("\"A5\"", result.getHeaders().getETag());
+
+		assertEquals("max-age=86400, public", result.getHeaders().getCacheControl());
+
+	}
+
+	@Test
+	public void testGetArtworkNM() throws Exception {
+
+		when(this.albumService.getArtworkVersion(5)).thenReturn("A5");
+
+		ResponseEntity<byte[]> result = this.albumController.getArtwork(5, "\"A5\"", null);
+
+		assertEquals(304, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+		// The artwork is never read to confirm a cached copy.
+		verify(this.albumService, never()).getArtwork(anyInt());
+
+	}
+
+	@Test
+	public void testGetArtworkBR() throws Exception {
+
+		ResponseEntity<byte[]> result = this.albumController.getArtwork(5, null, 0);
+
+		assertEquals(400, result.getStatusCodeValue());
+
+		verify(this.albumService, never()).getArtwork(anyInt());
+
+	}
+
+	@Test
+	public void testGetArtworkT() throws Exception {
+
+		when(this.albumService.getArtworkVersion(5)).thenReturn("A5");
+		when(this.thumbnailService.getArtwork(5, 100)).thenReturn(new Thumbnail(160, "thumb".getBytes(), "PNG"));
+
+		ResponseEntity<byte[]> result = this.albumController.getArtwork(5, "\"A5\"", 100);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("thumb", new String(result.getBody()));
+
+		assertEquals("image/png", result.getHeaders().getContentType().toString());
+
+		assertEquals("\"A5-160\"", result.getHeaders().getETag());
+
+		assertEquals("max-age=86400, public", result.getHeaders().getCacheControl());
+
+		verify(this.albumService, never()).getArtwork(anyInt());
+
+	}
+
+	@Test
+	public void testGetArtworkTP() throws Exception {
+
+		final Album album = new Album(5);
+		album.setArtwork("art".getBytes());
+		album.setArtworkType("JPG");
+
+		when(this.albumService.getArtworkVersion(5)).thenReturn("A5");
+		when(this.thumbnailService.getArtwork(5, 100)).thenReturn(null);
+		when(this.albumService.getArtwork(5)).thenReturn(album);
+
+		ResponseEntity<byte[]> result = this.albumController.getArtwork(5, null, 100);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("art", new String(result.getBody()));
+
+		// The original stands in until the thumbnail is made.
+		assertEquals("no-cache, public", result.getHeaders().getCacheControl());
+
+	}
+
+	@Test
+	public void testGetArtworkTL() throws Exception {
+
+		final Album album = new Album(5);
+		album.setArtwork("art".getBytes());
+		album.setArtworkType("JPG");
+
+		when(this.albumService.getArtworkVersion(5)).thenReturn("A5");
+		when(this.albumService.getArtwork(5)).thenReturn(album);
+
+		ResponseEntity<byte[]> result = this.albumController.getArtwork(5, null, 1000);
+
+		// No thumbnail is that large, so the original is final.
+		assertEquals("max-age=86400, public", result.getHeaders().getCacheControl());
+
+		verify(this.thumbnailService, never()).getArtwork(anyInt(), anyInt());
+
+	}
+
+	@Test
+	public void testGetArtworkTNM() throws Exception {
+
+		when(this.albumService.getArtworkVersion(5)).thenReturn("A5");
+
+		ResponseEntity<byte[]> result = this.albumController.getArtwork(5, "\"A5-160\"", 100);
+
+		assertEquals(304, result.getStatusCodeValue());
+
+		assertEquals("max-age=86400, public", result.getHeaders().getCacheControl());
+
+		verify(this.thumbnailService, never()).getArtwork(anyInt(), anyInt());
+
+	}
+
 	@Test
 	public void testCreateAlbumEx() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.createAlbum(1, "data", "exj");
+		ResponseEntity<String> result = this.albumController.createAlbum(1, new AlbumData(), "exj");
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -201,7 +381,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testCreateAlbumIn() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.createAlbum(1, "data", "ivj");
+		ResponseEntity<String> result = this.albumController.createAlbum(1, new AlbumData(), "ivj");
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -212,7 +392,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testCreateAlbumF() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.createAlbum(1, "data", "1j");
+		ResponseEntity<String> result = this.albumController.createAlbum(1, new AlbumData(), "1j");
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -223,9 +403,11 @@ public class AlbumControllerTest {
 	@Test
 	public void testCreateAlbumS() throws Exception {
 
-		when(this.albumService.create(1, "good data")).thenReturn(1);
+		final AlbumData albumData = new AlbumData();
 
-		ResponseEntity<String> result = this.albumController.createAlbum(1, "good data", "1j");
+		when(this.albumService.create(1, albumData)).thenReturn(1);
+
+		ResponseEntity<String> result = this.albumController.createAlbum(1, albumData, "1j");
 
 		assertEquals(201, result.getStatusCodeValue());
 
@@ -236,7 +418,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testUpdateAlbumInformationEx() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.updateAlbumInformation(1, "data", "exj");
+		ResponseEntity<String> result = this.albumController.updateAlbumInformation(1, new AlbumData(), "exj");
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -247,7 +429,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testUpdateAlbumInformationIn() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.updateAlbumInformation(1, "data", "ivj");
+		ResponseEntity<String> result = this.albumController.updateAlbumInformation(1, new AlbumData(), "ivj");
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -258,7 +440,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testUpdateAlbumInformationF() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.updateAlbumInformation(1, "data", "1j");
+		ResponseEntity<String> result = this.albumController.updateAlbumInformation(1, new AlbumData(), "1j");
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -269,9 +451,11 @@ public class AlbumControllerTest {
 	@Test
 	public void testUpdateAlbumInformationS() throws Exception {
 
-		when(this.albumService.update(1, 1, "good data")).thenReturn(true);
+		final AlbumData albumData = new AlbumData();
+
+		when(this.albumService.update(1, 1, albumData)).thenReturn(true);
 
-		ResponseEntity<String> result = this.albumController.updateAlbumInformation(1, "good data", "1j");
+		ResponseEntity<String> result = this.albumController.updateAlbumInformation(1, albumData, "1j");
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -279,6 +463,81 @@ public class AlbumControllerTest {
 
 	}
 
+	@Test
+	public void testUploadAlbumArtworkEx() throws Exception {
+
+		ResponseEntity<String> result = this.albumController.uploadAlbumArtwork(1, "image/png", 3L,
+				new ByteArrayInputStream("png".getBytes()), "exj");
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.AUTH_TOKEN_EXPIRED, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAlbumArtworkIn() throws Exception {
+
+		ResponseEntity<String> result = this.albumController.uploadAlbumArtwork(1, "image/png", 3L,
+				new ByteArrayInputStream("png".getBytes()), "ivj");
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.UNAUTHORIZED, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAlbumArtworkTL() throws Exception {
+
+		ResponseEntity<String> result = this.albumController.uploadAlbumArtwork(1, "image/png",
+				DatabaseUtility.getMaxUploadSize() + 1, new ByteArrayInputStream("png".getBytes()), "1j");
+
+		assertEquals(413, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.PAYLOAD_TOO_LARGE, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAlbumArtworkUM() throws Exception {
+
+		ResponseEntity<String> result = this.albumController.uploadAlbumArtwork(1, "audio/ogg", 3L,
+				new ByteArrayInputStream("png".getBytes()), "1j");
+
+		assertEquals(415, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.UNSUPPORTED_MEDIA_TYPE, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAlbumArtworkF() throws Exception {
+
+		ResponseEntity<String> result = this.albumController.uploadAlbumArtwork(1, "image/png", 3L,
+				new ByteArrayInputStream("png".getBytes()), "1j");
+
+		assertEquals(422, result.getStatusCodeValue());
+
+		assertEquals("unable to upload the artwork", result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAlbumArtworkS() throws Exception {
+
+		final InputStream artwork = new ByteArrayInputStream("png".getBytes());
+
+		when(this.albumService.uploadArtwork(1, 1, "PNG", artwork, 3)).thenReturn(true);
+
+		ResponseEntity<String> result = this.albumController.uploadAlbumArtwork(1, "image/png", 3L, artwork, "1j");
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("artwork has been successfully uploaded", result.getBody());
+
+	}
+
 	@Test
 	public void testDeleteAlbumEx() throws Exception {
 
@@ -328,7 +587,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testPublishAlbumEx() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.publishAlbum(1, "good data", "exj");
+		ResponseEntity<String> result = this.albumController.publishAlbum(1, new AlbumData(), "exj");
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -339,7 +598,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testPublishAlbumIn() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.publishAlbum(1, "good data", "ivj");
+		ResponseEntity<String> result = this.albumController.publishAlbum(1, new AlbumData(), "ivj");
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -350,7 +609,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testPublishAlbumF() throws Exception {
 
-		ResponseEntity<String> result = this.albumController.publishAlbum(1, "good data", "1j");
+		ResponseEntity<String> result = this.albumController.publishAlbum(1, new AlbumData(), "1j");
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -361,9 +620,11 @@ public class AlbumControllerTest {
 	@Test
 	public void testPublishAlbumS() throws Exception {
 
-		when(this.albumService.publish(1, 1, "good data")).thenReturn(true);
+		final AlbumData albumData = new AlbumData();
+
+		when(this.albumService.publish(1, 1, albumData)).thenReturn(true);
 
-		ResponseEntity<String> result = this.albumController.publishAlbum(1, "good data", "1j");
+		ResponseEntity<String> result = this.albumController.publishAlbum(1, albumData, "1j");
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -421,7 +682,7 @@ public class AlbumControllerTest {
 	@Test
 	public void testListAllAlbumsUA() throws Exception {
 
-		ResponseEntity<List<Album>> result = this.albumController.listAllAlbums("ivj");
+		ResponseEntity<List<Album>> result = getResponse(this.albumController.listAllAlbums("ivj", null, null));
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -432,44 +693,151 @@ public class AlbumControllerTest {
 	@Test
 	public void testListAllAlbumsS() throws Exception {
 
-		ResponseEntity<List<Album>> result = this.albumController.listAllAlbums("adj");
+		ResponseEntity<List<Album>> result = getResponse(this.albumController.listAllAlbums("adj", null, null));
 
 		assertEquals(200, result.getStatusCodeValue());
 
 		assertEquals(4, result.getBody().size());
 
+		assertNull(result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testListAllAlbumsC() throws Exception {
+
+		when(this.albumService.getAll("cur", 2))
+				.thenReturn(new Page<>(new ArrayList<>(albumList.subList(0, 2)), "next"));
+
+		ResponseEntity<List<Album>> result = getResponse(this.albumController.listAllAlbums("adj", "cur", 2));
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals(2, result.getBody().size());
+
+		assertEquals("next", result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testListAllAlbumsBC() throws Exception {
+
+		ResponseEntity<List<Album>> result = getResponse(this.albumController.listAllAlbums("adj", "bad", null));
+
+		assertEquals(400, result.getStatusCodeValue());
+
+		assertEquals(0, result.getBody().size());
+
+	}
+
+	@Test
+	public void testExportAlbumsUA() throws Exception {
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.albumController.exportAlbums("1j", response);
+
+		assertEquals(401, response.getStatus());
+
+	}
+
+	@Test
+	public void testExportAlbumsS() throws Exception {
+
+		when(this.albumService.writeAll(any(OutputStream.class))).thenReturn(true);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.albumController.exportAlbums("adj", response);
+
+		assertEquals(200, response.getStatus());
+
+		assertEquals("application/json", response.getContentType());
+
+	}
+
+	@Test
+	public void testExportAlbumsF() throws Exception {
+
+		when(this.albumService.writeAll(any(OutputStream.class))).thenReturn(false);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.albumController.exportAlbums("adj", response);
+
+		assertEquals(500, response.getStatus());
+
 	}
 
 	@Test
 	public void testGetAllPublicationsUA() throws Exception {
 
-		ResponseEntity<List<Album>> result = this.albumController.getAllPublications("exj");
+		ResponseEntity<byte[]> result = getResponse(this.albumController.getAllPublications("exj", null, null, null));
 
 		assertEquals(401, result.getStatusCodeValue());
 
-		assertEquals(0, result.getBody().size());
+		assertEquals("[]", new String(result.getBody()));
 
 	}
 
 	@Test
 	public void testGetAllPublicationsPS() throws Exception {
 
-		ResponseEntity<List<Album>> result = this.albumController.getAllPublications("1j");
+		ResponseEntity<byte[]> result = getResponse(this.albumController.getAllPublications("1j", null, null, null));
 
 		assertEquals(200, result.getStatusCodeValue());
 
-		assertEquals(4, result.getBody().size());
+		assertEquals("\"premium\"", result.getHeaders().getETag());
+
+		assertEquals("[{\"albumId\":1}]", new String(result.getBody()));
 
 	}
 
 	@Test
 	public void testGetAllPublicationsNPS() throws Exception {
 
-		ResponseEntity<List<Album>> result = this.albumController.getAllPublications("14j");
+		ResponseEntity<byte[]> result = getResponse(this.albumController.getAllPublications("14j", null, null, null));
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("\"basic\"", result.getHeaders().getETag());
+
+	}
+
+	@Test
+	public void testGetAllPublicationsNM() throws Exception {
+
+		ResponseEntity<byte[]> result = getResponse(this.albumController.getAllPublications("1j", null, null,
+				"\"other\", W/\"premium\""));
+
+		assertEquals(304, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetAllPublicationsC() throws Exception {
+
+		when(this.albumService.getPublishedJson("cur", 2, false))
+				.thenReturn(new CachedPage("[]".getBytes(), "\"basic\"", "next"));
+
+		ResponseEntity<byte[]> result = getResponse(this.albumController.getAllPublications("14j", "cur", 2, null));
 
 		assertEquals(200, result.getStatusCodeValue());
 
-		assertEquals(3, result.getBody().size());
+		assertEquals("next", result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testGetAllPublicationsBC() throws Exception {
+
+		ResponseEntity<byte[]> result = getResponse(this.albumController.getAllPublications("1j", "bad", null, null));
+
+		assertEquals(400, result.getStatusCodeValue());
+
+		assertEquals("[]", new String(result.getBody()));
 
 	}
 
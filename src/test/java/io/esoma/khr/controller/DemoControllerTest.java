@@ -2,9 +2,9 @@ package io.esoma.khr.controller;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.AfterClass;
@@ -60,7 +60,12 @@ public class DemoControllerTest {
 	@Before
 	public void setUp() throws Exception {
 
-		when(this.albumService.getOne(anyInt())).thenAnswer(i -> new Album(i.getArgument(0)));
+		final List<Album> albumList = new ArrayList<>();
+		for (int i : Album.DEMO_COLLECTION) {
+			albumList.add(new Album(i));
+		}
+
+		when(this.albumService.getDemos()).thenReturn(albumList);
 
 		this.demoController.setAlbumService(this.albumService);
 
@@ -79,9 +84,9 @@ public class DemoControllerTest {
 
 		assertEquals(200, result.getStatusCodeValue());
 
-		assertEquals(DemoController.demoAlbums.length, result.getBody().size());
+		assertEquals(Album.DEMO_COLLECTION.length, result.getBody().size());
 
-		for (int i : DemoController.demoAlbums) {
+		for (int i : Album.DEMO_COLLECTION) {
 			assertTrue(result.getBody().contains(new Album(i)));
 		}
 
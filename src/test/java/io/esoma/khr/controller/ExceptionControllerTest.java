@@ -74,7 +74,7 @@ public class ExceptionControllerTest {
 		assertEquals(400, result.getStatusCodeValue());
 
 		assertEquals(
-				"This request is missing a request body, or the request body is incompatible with the type <java.lang.String>",
+				"This request is missing a request body, or the request body is not valid JSON of the expected form.",
 				result.getBody());
 
 	}
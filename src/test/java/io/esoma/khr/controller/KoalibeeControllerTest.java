@@ -3,10 +3,14 @@ package io.esoma.khr.controller;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,12 +25,20 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumData;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.KoalibeeData;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.model.Thumbnail;
 import io.esoma.khr.service.AuthService;
 import io.esoma.khr.service.KoalibeeService;
 import io.esoma.khr.service.KoalibeeServiceTest;
+import io.esoma.khr.service.QueryService;
+import io.esoma.khr.service.ThumbnailService;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -38,6 +50,8 @@ public class KoalibeeControllerTest {
 	private AuthService authService;
 	@Mock
 	private KoalibeeService koalibeeService;
+	@Mock
+	private ThumbnailService thumbnailService;
 
 	{
 		this.koalibeeController = new KoalibeeController();
@@ -61,13 +75,23 @@ public class KoalibeeControllerTest {
 
 		when(this.koalibeeService.getOne(anyInt())).thenReturn(null);
 		when(this.koalibeeService.getOne(1)).thenReturn(new Koalibee(1));
-		when(this.koalibeeService.updateInformation(anyInt(), anyString())).thenReturn(false);
-		when(this.koalibeeService.updateCredentials(anyInt(), anyString())).thenReturn(false);
-		when(this.koalibeeService.purchaseAlbum(anyInt(), anyString())).thenReturn(false);
+		when(this.koalibeeService.updateInformation(anyInt(), any(KoalibeeData.class))).thenReturn(false);
+		when(this.koalibeeService.updateCredentials(anyInt(), any(KoalibeeData.class))).thenReturn(false);
+		when(this.koalibeeService.purchaseAlbum(anyInt(), any(AlbumData.class))).thenReturn(false);
 		when(this.koalibeeService.delete(anyInt())).thenReturn(false);
 
 		this.koalibeeController.setAuthService(this.authService);
 		this.koalibeeController.setKoalibeeService(this.koalibeeService);
+		this.koalibeeController.setQueryService(new QueryService(false, 1, 1, 1000));
+		this.koalibeeController.setThumbnailService(this.thumbnailService);
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getResponse(DeferredResult<T> deferredResult) {
+
+		// The query service runs inline, so the result is already set.
+		return (T) deferredResult.getResult();
 
 	}
 
@@ -83,10 +107,16 @@ public class KoalibeeControllerTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetQueryService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testRegisterKoalibeeBQ() throws Exception {
 
-		final String badRequest = "bq";
+		final KoalibeeData badRequest = new KoalibeeData();
 
 		when(this.koalibeeService.register(badRequest)).thenReturn(null);
 
@@ -101,7 +131,7 @@ public class KoalibeeControllerTest {
 	@Test
 	public void testRegisterKoalibeeBD() throws Exception {
 
-		final String badData = "bd";
+		final KoalibeeData badData = new KoalibeeData();
 
 		when(this.koalibeeService.register(badData)).thenReturn("bad");
 
@@ -113,10 +143,25 @@ public class KoalibeeControllerTest {
 
 	}
 
+	@Test
+	public void testRegisterKoalibeeSU() throws Exception {
+
+		final KoalibeeData busyData = new KoalibeeData();
+
+		when(this.koalibeeService.register(busyData)).thenReturn(AuthService.SERVER_BUSY);
+
+		ResponseEntity<String> result = this.koalibeeController.registerKoalibee(busyData);
+
+		assertEquals(503, result.getStatusCodeValue());
+
+		assertEquals(AuthService.SERVER_BUSY, result.getBody());
+
+	}
+
 	@Test
 	public void testRegisterKoalibeeS() throws Exception {
 
-		final String goodData = "gd";
+		final KoalibeeData goodData = new KoalibeeData();
 
 		when(this.koalibeeService.register(goodData)).thenReturn("a.good.jws");
 
@@ -131,7 +176,7 @@ public class KoalibeeControllerTest {
 	@Test
 	public void testLoginKoalibeeBQ() throws Exception {
 
-		final String badRequest = "bq";
+		final KoalibeeData badRequest = new KoalibeeData();
 
 		when(this.koalibeeService.login(badRequest)).thenReturn(null);
 
@@ -146,7 +191,7 @@ public class KoalibeeControllerTest {
 	@Test
 	public void testLoginKoalibeeBD() throws Exception {
 
-		final String badData = "bd";
+		final KoalibeeData badData = new KoalibeeData();
 
 		when(this.koalibeeService.login(badData)).thenReturn("bad");
 
@@ -158,10 +203,25 @@ public class KoalibeeControllerTest {
 
 	}
 
+	@Test
+	public void testLoginKoalibeeSU() throws Exception {
+
+		final KoalibeeData busyData = new KoalibeeData();
+
+		when(this.koalibeeService.login(busyData)).thenReturn(AuthService.SERVER_BUSY);
+
+		ResponseEntity<String> result = this.koalibeeController.loginKoalibee(busyData);
+
+		assertEquals(503, result.getStatusCodeValue());
+
+		assertEquals(AuthService.SERVER_BUSY, result.getBody());
+
+	}
+
 	@Test
 	public void testLoginKoalibeeS() throws Exception {
 
-		final String goodData = "gd";
+		final KoalibeeData goodData = new KoalibeeData();
 
 		when(this.koalibeeService.login(goodData)).thenReturn("a.good.jws");
 
@@ -233,6 +293,265 @@ public class KoalibeeControllerTest {
 
 	}
 
+	@Test
+	public void testGetAvatarEx() throws Exception {
+
+		final String expiredJws = "exj";
+
+		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(1, expiredJws, null, null, null);
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetAvatarIn() throws Exception {
+
+		final String invalidJws = "ivj";
+
+		when(this.authService.reauthenticate(invalidJws)).thenReturn(0);
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(1, null, invalidJws, null, null);
+
+		assertEquals(401, result.getStatusCodeValue());
+
+	}
+
+	@Test
+	public void testGetAvatarUA() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(2, koalibeeJws, null, null, null);
+
+		assertEquals(401, result.getStatusCodeValue());
+
+	}
+
+	@Test
+	public void testGetAvatarNF() throws Exception {
+
+		final String adminJws = "adj";
+
+		when(this.authService.reauthenticate(adminJws)).thenReturn(-777);
+		when(this.koalibeeService.getAvatarVersion(5)).thenReturn(null);
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(5, adminJws, null, null, null);
+
+		assertEquals(404, result.getStatusCodeValue());
+
+		verify(this.koalibeeService, never()).getAvatar(anyInt());
+
+	}
+
+	@Test
+	public void testGetAvatarS() throws Exception {
+
+		final String koalibeeJws = "koj";
+		final Koalibee koalibee = new Koalibee(1);
+		koalibee.setAvatar("ava".getBytes());
+		koalibee.setAvatarType("PNG");
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+		when(this.koalibeeService.getAvatarVersion(1)).thenReturn("K1v2");
+		when(this.koalibeeService.getAvatar(1)).thenReturn(koalibee);
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(1, null, koalibeeJws, "\"K1v1\"", null);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("ava", new String(result.getBody()));
+
+		assertEquals("image/png", result.getHeaders().getContentType().toString());
+
+		assertEquals("\"K1v2\"", result.getHeaders().getETag());
+
+		assertEquals("no-cache, private", result.getHeaders().getCacheControl());
+
+	}
+
+	@Test
+	public void testGetAvatarNM() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+		when(this.koalibeeService.getAvatarVersion(1)).thenReturn("K1v2");
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(1, koalibeeJws, null, "\"K1v2\"", null);
+
+		assertEquals(304, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+		// The avatar is never read to confirm a cached copy.
+		verify(this.koalibeeService, never()).getAvatar(anyInt());
+
+	}
+
+	@Test
+	public void testGetAvatarBR() throws Exception {
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(1, "koj", null, null, -5);
+
+		assertEquals(400, result.getStatusCodeValue());
+
+		verify(this.koalibeeService, never()).getAvatar(anyInt());
+
+	}
+
+	@Test
+	public void testGetAvatarT() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+		when(this.koalibeeService.getAvatarVersion(1)).thenReturn("K1v2");
+		when(this.thumbnailService.getAvatar(1, 64)).thenReturn(new Thumbnail(64, "thumb".getBytes(), "JPEG"));
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(1, null, koalibeeJws, "\"K1v2\"", 64);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("thumb", new String(result.getBody()));
+
+		assertEquals("image/jpeg", result.getHeaders().getContentType().toString());
+
+		assertEquals("\"K1v2-64\"", result.getHeaders().getETag());
+
+		assertEquals("no-cache, private", result.getHeaders().getCacheControl());
+
+		verify(this.koalibeeService, never()).getAvatar(anyInt());
+
+	}
+
+	@Test
+	public void testGetAvatarTP() throws Exception {
+
+		final String koalibeeJws = "koj";
+		final Koalibee koalibee = new Koalibee(1);
+		koalibee.setAvatar("ava".getBytes());
+		koalibee.setAvatarType("PNG");
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+		when(this.koalibeeService.getAvatarVersion(1)).thenReturn("K1v2");
+		when(this.thumbnailService.getAvatar(1, 64)).thenReturn(null);
+		when(this.koalibeeService.getAvatar(1)).thenReturn(koalibee);
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(1, null, koalibeeJws, null, 64);
+
+		// The original stands in until the thumbnail is made.
+		assertEquals("ava", new String(result.getBody()));
+
+		assertEquals("\"K1v2\"", result.getHeaders().getETag());
+
+	}
+
+	@Test
+	public void testGetAvatarTNM() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+		when(this.koalibeeService.getAvatarVersion(1)).thenReturn("K1v2");
+
+		ResponseEntity<byte[]> result = this.koalibeeController.getAvatar(1, null, koalibeeJws, "\"K1v2-64\"", 64);
+
+		assertEquals(304, result.getStatusCodeValue());
+
+		verify(this.thumbnailService, never()).getAvatar(anyInt(), anyInt());
+
+	}
+
+	@Test
+	public void testUploadAvatarEx() throws Exception {
+
+		final String expiredJws = "exj";
+
+		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
+
+		ResponseEntity<String> result = this.koalibeeController.uploadAvatar(1, "image/png", 3L,
+				new ByteArrayInputStream("png".getBytes()), expiredJws);
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.AUTH_TOKEN_EXPIRED, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAvatarIn() throws Exception {
+
+		final String otherJws = "otj";
+
+		when(this.authService.reauthenticate(otherJws)).thenReturn(2);
+
+		ResponseEntity<String> result = this.koalibeeController.uploadAvatar(1, "image/png", 3L,
+				new ByteArrayInputStream("png".getBytes()), otherJws);
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.UNAUTHORIZED, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAvatarLR() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+
+		ResponseEntity<String> result = this.koalibeeController.uploadAvatar(1, "image/png", null,
+				new ByteArrayInputStream("png".getBytes()), koalibeeJws);
+
+		assertEquals(411, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.LENGTH_REQUIRED, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAvatarUM() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+
+		ResponseEntity<String> result = this.koalibeeController.uploadAvatar(1, null, 3L,
+				new ByteArrayInputStream("png".getBytes()), koalibeeJws);
+
+		assertEquals(415, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.UNSUPPORTED_MEDIA_TYPE, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadAvatarS() throws Exception {
+
+		final InputStream avatar = new ByteArrayInputStream("png".getBytes());
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+
+		when(this.koalibeeService.uploadAvatar(1, "PNG", avatar, 3)).thenReturn(true);
+
+		ResponseEntity<String> result = this.koalibeeController.uploadAvatar(1, "image/png", 3L, avatar, koalibeeJws);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("avatar uploaded successfully", result.getBody());
+
+	}
+
 	@Test
 	public void testUpdateKoalibeeEx() throws Exception {
 
@@ -240,7 +559,7 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
 
-		ResponseEntity<String> result = this.koalibeeController.updateKoalibee(1, "data", expiredJws);
+		ResponseEntity<String> result = this.koalibeeController.updateKoalibee(1, new KoalibeeData(), expiredJws);
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -255,7 +574,7 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(invalidJws)).thenReturn(0);
 
-		ResponseEntity<String> result = this.koalibeeController.updateKoalibee(1, "data", invalidJws);
+		ResponseEntity<String> result = this.koalibeeController.updateKoalibee(1, new KoalibeeData(), invalidJws);
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -270,7 +589,7 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
 
-		ResponseEntity<String> result = this.koalibeeController.updateKoalibee(1, "data", koalibeeJws);
+		ResponseEntity<String> result = this.koalibeeController.updateKoalibee(1, new KoalibeeData(), koalibeeJws);
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -281,13 +600,15 @@ public class KoalibeeControllerTest {
 	@Test
 	public void testUpdateKoalibeeS() throws Exception {
 
+		final KoalibeeData koalibeeData = new KoalibeeData();
+
 		final String koalibeeJws = "koj";
 
 		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
 
-		when(this.koalibeeService.updateInformation(1, "good data")).thenReturn(true);
+		when(this.koalibeeService.updateInformation(1, koalibeeData)).thenReturn(true);
 
-		ResponseEntity<String> result = this.koalibeeController.updateKoalibee(1, "good data", koalibeeJws);
+		ResponseEntity<String> result = this.koalibeeController.updateKoalibee(1, koalibeeData, koalibeeJws);
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -302,7 +623,8 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
 
-		ResponseEntity<String> result = this.koalibeeController.changeKoalibeeCredentials(1, "data", expiredJws);
+		ResponseEntity<String> result = this.koalibeeController.changeKoalibeeCredentials(1, new KoalibeeData(),
+				expiredJws);
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -317,7 +639,8 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(invalidJws)).thenReturn(0);
 
-		ResponseEntity<String> result = this.koalibeeController.changeKoalibeeCredentials(1, "data", invalidJws);
+		ResponseEntity<String> result = this.koalibeeController.changeKoalibeeCredentials(1, new KoalibeeData(),
+				invalidJws);
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -332,7 +655,8 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
 
-		ResponseEntity<String> result = this.koalibeeController.changeKoalibeeCredentials(1, "data", koalibeeJws);
+		ResponseEntity<String> result = this.koalibeeController.changeKoalibeeCredentials(1, new KoalibeeData(),
+				koalibeeJws);
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -343,13 +667,15 @@ public class KoalibeeControllerTest {
 	@Test
 	public void testChangeKoalibeeCredentialsS() throws Exception {
 
+		final KoalibeeData koalibeeData = new KoalibeeData();
+
 		final String koalibeeJws = "koj";
 
 		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
 
-		when(this.koalibeeService.updateCredentials(1, "good creds")).thenReturn(true);
+		when(this.koalibeeService.updateCredentials(1, koalibeeData)).thenReturn(true);
 
-		ResponseEntity<String> result = this.koalibeeController.changeKoalibeeCredentials(1, "good creds", koalibeeJws);
+		ResponseEntity<String> result = this.koalibeeController.changeKoalibeeCredentials(1, koalibeeData, koalibeeJws);
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -364,7 +690,8 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
 
-		ResponseEntity<String> result = this.koalibeeController.purchaseAlbumForKoalibee(1, "data", expiredJws);
+		ResponseEntity<String> result = this.koalibeeController.purchaseAlbumForKoalibee(1, new AlbumData(),
+				expiredJws);
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -379,7 +706,8 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(invalidJws)).thenReturn(0);
 
-		ResponseEntity<String> result = this.koalibeeController.purchaseAlbumForKoalibee(1, "data", invalidJws);
+		ResponseEntity<String> result = this.koalibeeController.purchaseAlbumForKoalibee(1, new AlbumData(),
+				invalidJws);
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -394,7 +722,8 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
 
-		ResponseEntity<String> result = this.koalibeeController.purchaseAlbumForKoalibee(1, "data", koalibeeJws);
+		ResponseEntity<String> result = this.koalibeeController.purchaseAlbumForKoalibee(1, new AlbumData(),
+				koalibeeJws);
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -405,13 +734,15 @@ public class KoalibeeControllerTest {
 	@Test
 	public void testPurchaseAlbumForKoalibeeS() throws Exception {
 
+		final AlbumData albumData = new AlbumData();
+
 		final String koalibeeJws = "koj";
 
 		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
 
-		when(this.koalibeeService.purchaseAlbum(1, "album")).thenReturn(true);
+		when(this.koalibeeService.purchaseAlbum(1, albumData)).thenReturn(true);
 
-		ResponseEntity<String> result = this.koalibeeController.purchaseAlbumForKoalibee(1, "album", koalibeeJws);
+		ResponseEntity<String> result = this.koalibeeController.purchaseAlbumForKoalibee(1, albumData, koalibeeJws);
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -488,7 +819,8 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
 
-		ResponseEntity<List<Koalibee>> result = this.koalibeeController.listAllKoalibees(expiredJws);
+		ResponseEntity<List<Koalibee>> result = getResponse(
+				this.koalibeeController.listAllKoalibees(expiredJws, null, null));
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -503,7 +835,8 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(unauthedJws)).thenReturn(1);
 
-		ResponseEntity<List<Koalibee>> result = this.koalibeeController.listAllKoalibees(unauthedJws);
+		ResponseEntity<List<Koalibee>> result = getResponse(
+				this.koalibeeController.listAllKoalibees(unauthedJws, null, null));
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -518,14 +851,56 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(adminJws)).thenReturn(-777);
 
-		when(this.koalibeeService.getAll()).thenReturn(new ArrayList<Koalibee>());
+		when(this.koalibeeService.getAll(null, null)).thenReturn(new Page<>(new ArrayList<Koalibee>(), null));
 
-		ResponseEntity<List<Koalibee>> result = this.koalibeeController.listAllKoalibees(adminJws);
+		ResponseEntity<List<Koalibee>> result = getResponse(
+				this.koalibeeController.listAllKoalibees(adminJws, null, null));
 
 		assertEquals(200, result.getStatusCodeValue());
 
 		assertTrue(result.getBody() instanceof ArrayList);
 
+		assertNull(result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testListAllKoalibeesC() throws Exception {
+
+		final String adminJws = "adj";
+
+		when(this.authService.reauthenticate(adminJws)).thenReturn(-777);
+
+		final List<Koalibee> koalibeeList = new ArrayList<>();
+		koalibeeList.add(new Koalibee(3));
+
+		when(this.koalibeeService.getAll("cur", 1)).thenReturn(new Page<>(koalibeeList, "next"));
+
+		ResponseEntity<List<Koalibee>> result = getResponse(
+				this.koalibeeController.listAllKoalibees(adminJws, "cur", 1));
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals(1, result.getBody().size());
+
+		assertEquals("next", result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testListAllKoalibeesBC() throws Exception {
+
+		final String adminJws = "adj";
+
+		when(this.authService.reauthenticate(adminJws)).thenReturn(-777);
+
+		ResponseEntity<List<Koalibee>> result = getResponse(
+				this.koalibeeController.listAllKoalibees(adminJws, "bad", null));
+
+		assertEquals(400, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
 	}
 
 	@Test
@@ -535,7 +910,7 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
 
-		ResponseEntity<List<Album>> result = this.koalibeeController.getKoalibeeInventory(1, expiredJws);
+		ResponseEntity<List<Album>> result = getResponse(this.koalibeeController.getKoalibeeInventory(1, expiredJws));
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -550,7 +925,7 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(invalidJws)).thenReturn(0);
 
-		ResponseEntity<List<Album>> result = this.koalibeeController.getKoalibeeInventory(1, invalidJws);
+		ResponseEntity<List<Album>> result = getResponse(this.koalibeeController.getKoalibeeInventory(1, invalidJws));
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -567,7 +942,7 @@ public class KoalibeeControllerTest {
 
 		when(this.koalibeeService.getInventory(1)).thenReturn(new ArrayList<Album>());
 
-		ResponseEntity<List<Album>> result = this.koalibeeController.getKoalibeeInventory(1, koalibeeJws);
+		ResponseEntity<List<Album>> result = getResponse(this.koalibeeController.getKoalibeeInventory(1, koalibeeJws));
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -582,7 +957,7 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
 
-		ResponseEntity<List<Album>> result = this.koalibeeController.getKoalibeeCreations(1, expiredJws);
+		ResponseEntity<List<Album>> result = getResponse(this.koalibeeController.getKoalibeeCreations(1, expiredJws));
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -597,7 +972,7 @@ public class KoalibeeControllerTest {
 
 		when(this.authService.reauthenticate(invalidJws)).thenReturn(0);
 
-		ResponseEntity<List<Album>> result = this.koalibeeController.getKoalibeeCreations(1, invalidJws);
+		ResponseEntity<List<Album>> result = getResponse(this.koalibeeController.getKoalibeeCreations(1, invalidJws));
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -614,7 +989,7 @@ public class KoalibeeControllerTest {
 
 		when(this.koalibeeService.getUnpublished(1)).thenReturn(new ArrayList<Album>());
 
-		ResponseEntity<List<Album>> result = this.koalibeeController.getKoalibeeCreations(1, koalibeeJws);
+		ResponseEntity<List<Album>> result = getResponse(this.koalibeeController.getKoalibeeCreations(1, koalibeeJws));
 
 		assertEquals(200, result.getStatusCodeValue());
 
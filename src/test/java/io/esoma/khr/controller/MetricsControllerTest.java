@@ -0,0 +1,266 @@
+package io.esoma.khr.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.ResponseEntity;
+
+import io.esoma.khr.service.AuthService;
+import io.esoma.khr.service.MetricsService;
+
+@RunWith(MockitoJUnitRunner.StrictStubs.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MetricsControllerTest {
+
+	private MetricsController metricsController;
+
+	@Mock
+	private AuthService authService;
+	@Mock
+	private MetricsService metricsService;
+
+	{
+		this.metricsController = new MetricsController();
+
+		// Initialize mock objects.
+		MockitoAnnotations.initMocks(MetricsControllerTest.class);
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.metricsController.setAuthService(this.authService);
+		this.metricsController.setMetricsService(this.metricsService);
+
+	}
+
+	@Test
+	public void testSetAuthService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetMetricsService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testGetCacheStatisticsEx() throws Exception {
+
+		final String expiredJws = "exj";
+
+		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
+
+		ResponseEntity<Map<String, Map<String, Long>>> result = this.metricsController.getCacheStatistics(expiredJws);
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetCacheStatisticsUA() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+
+		ResponseEntity<Map<String, Map<String, Long>>> result = this.metricsController.getCacheStatistics(koalibeeJws);
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetCacheStatisticsS() throws Exception {
+
+		final String adminJws = "adj";
+		final Map<String, Map<String, Long>> cacheStatistics = new HashMap<>();
+		cacheStatistics.put("oracle.khr.genre", new HashMap<>());
+
+		when(this.authService.reauthenticate(adminJws)).thenReturn(-777);
+		when(this.metricsService.getCacheStatistics()).thenReturn(cacheStatistics);
+
+		ResponseEntity<Map<String, Map<String, Long>>> result = this.metricsController.getCacheStatistics(adminJws);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertTrue(result.getBody().containsKey("oracle.khr.genre"));
+
+	}
+
+	@Test
+	public void testGetHashingStatisticsEx() throws Exception {
+
+		final String expiredJws = "exj";
+
+		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getHashingStatistics(expiredJws);
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetHashingStatisticsUA() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getHashingStatistics(koalibeeJws);
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetHashingStatisticsS() throws Exception {
+
+		final String adminJws = "adj";
+		final Map<String, Long> hashingStatistics = new HashMap<>();
+		hashingStatistics.put("queueDepth", 3L);
+
+		when(this.authService.reauthenticate(adminJws)).thenReturn(-777);
+		when(this.metricsService.getHashingStatistics()).thenReturn(hashingStatistics);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getHashingStatistics(adminJws);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals(3L, result.getBody().get("queueDepth").longValue());
+
+	}
+
+	@Test
+	public void testGetPoolStatisticsEx() throws Exception {
+
+		final String expiredJws = "exj";
+
+		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getPoolStatistics(expiredJws);
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetPoolStatisticsUA() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getPoolStatistics(koalibeeJws);
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetPoolStatisticsS() throws Exception {
+
+		final String adminJws = "adj";
+		final Map<String, Long> poolStatistics = new HashMap<>();
+		poolStatistics.put("active", 5L);
+
+		when(this.authService.reauthenticate(adminJws)).thenReturn(-777);
+		when(this.metricsService.getPoolStatistics()).thenReturn(poolStatistics);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getPoolStatistics(adminJws);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals(5L, result.getBody().get("active").longValue());
+
+	}
+
+	@Test
+	public void testGetQueryStatisticsEx() throws Exception {
+
+		final String expiredJws = "exj";
+
+		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getQueryStatistics(expiredJws);
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetQueryStatisticsUA() throws Exception {
+
+		final String koalibeeJws = "koj";
+
+		when(this.authService.reauthenticate(koalibeeJws)).thenReturn(1);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getQueryStatistics(koalibeeJws);
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertNull(result.getBody());
+
+	}
+
+	@Test
+	public void testGetQueryStatisticsS() throws Exception {
+
+		final String adminJws = "adj";
+		final Map<String, Long> queryStatistics = new HashMap<>();
+		queryStatistics.put("rejectedCount", 4L);
+
+		when(this.authService.reauthenticate(adminJws)).thenReturn(-777);
+		when(this.metricsService.getQueryStatistics()).thenReturn(queryStatistics);
+
+		ResponseEntity<Map<String, Long>> result = this.metricsController.getQueryStatistics(adminJws);
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals(4L, result.getBody().get("rejectedCount").longValue());
+
+	}
+
+}
@@ -2,6 +2,7 @@ package io.esoma.khr.controller;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -20,11 +21,16 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import io.esoma.khr.model.Moment;
+import io.esoma.khr.model.MomentData;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.service.AuthService;
 import io.esoma.khr.service.KoalibeeServiceTest;
 import io.esoma.khr.service.MomentService;
+import io.esoma.khr.service.QueryService;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -62,12 +68,21 @@ public class MomentControllerTest {
 		when(this.authService.reauthenticate("adj")).thenReturn(-777);
 
 		when(this.momentService.getOne(anyInt())).thenReturn(null);
-		when(this.momentService.getByDate(anyString())).thenReturn(new ArrayList<Moment>());
-		when(this.momentService.postOne(anyInt(), anyString())).thenReturn(0);
+		when(this.momentService.getByDate(any(MomentData.class))).thenReturn(new ArrayList<Moment>());
+		when(this.momentService.postOne(anyInt(), any(MomentData.class))).thenReturn(0);
 		when(this.momentService.delete(anyInt())).thenReturn(false);
 
 		this.momentController.setAuthService(this.authService);
 		this.momentController.setMomentService(this.momentService);
+		this.momentController.setQueryService(new QueryService(false, 1, 1, 1000));
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getResponse(DeferredResult<T> deferredResult) {
+
+		// The query service runs inline, so the result is already set.
+		return (T) deferredResult.getResult();
 
 	}
 
@@ -83,6 +98,12 @@ public class MomentControllerTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetQueryService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testGetMomentN() throws Exception {
 
@@ -112,7 +133,7 @@ public class MomentControllerTest {
 	@Test
 	public void testPostMomentEx() throws Exception {
 
-		ResponseEntity<String> result = this.momentController.postMoment(1, "data", "exj");
+		ResponseEntity<String> result = this.momentController.postMoment(1, new MomentData(), "exj");
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -123,7 +144,7 @@ public class MomentControllerTest {
 	@Test
 	public void testPostMomentIn() throws Exception {
 
-		ResponseEntity<String> result = this.momentController.postMoment(1, "data", "ivj");
+		ResponseEntity<String> result = this.momentController.postMoment(1, new MomentData(), "ivj");
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -134,10 +155,12 @@ public class MomentControllerTest {
 	@Test
 	public void testPostMomentF() throws Exception {
 
+		final MomentData momentData = new MomentData();
+
 		when(this.authService.reauthenticate("1")).thenReturn(1);
-		when(this.momentService.postOne(1, "bad")).thenReturn(0);
+		when(this.momentService.postOne(1, momentData)).thenReturn(0);
 
-		ResponseEntity<String> result = this.momentController.postMoment(1, "bad", "1");
+		ResponseEntity<String> result = this.momentController.postMoment(1, momentData, "1");
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -148,10 +171,12 @@ public class MomentControllerTest {
 	@Test
 	public void testPostMomentS() throws Exception {
 
+		final MomentData momentData = new MomentData();
+
 		when(this.authService.reauthenticate("1")).thenReturn(1);
-		when(this.momentService.postOne(1, "good")).thenReturn(1);
+		when(this.momentService.postOne(1, momentData)).thenReturn(1);
 
-		ResponseEntity<String> result = this.momentController.postMoment(1, "good", "1");
+		ResponseEntity<String> result = this.momentController.postMoment(1, momentData, "1");
 
 		assertEquals(201, result.getStatusCodeValue());
 
@@ -166,14 +191,27 @@ public class MomentControllerTest {
 		momentList.add(new Moment(1));
 		momentList.add(new Moment(3));
 
-		when(this.momentService.getAll()).thenReturn(momentList);
+		when(this.momentService.getAll(null, 2)).thenReturn(new Page<>(momentList, "next"));
 
-		ResponseEntity<List<Moment>> result = this.momentController.getAllPostedMomentsChrono();
+		ResponseEntity<List<Moment>> result = getResponse(this.momentController.getAllPostedMomentsChrono(null, 2));
 
 		assertEquals(200, result.getStatusCodeValue());
 
 		assertEquals(2, result.getBody().size());
 
+		assertEquals("next", result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testGetAllPostedMomentsChronoBC() throws Exception {
+
+		ResponseEntity<List<Moment>> result = getResponse(this.momentController.getAllPostedMomentsChrono("bad", null));
+
+		assertEquals(400, result.getStatusCodeValue());
+
+		assertEquals(0, result.getBody().size());
+
 	}
 
 	@Test
@@ -184,9 +222,12 @@ public class MomentControllerTest {
 		momentList.add(new Moment(5));
 		momentList.add(new Moment(6));
 
-		when(this.momentService.getByDate("2018-06-09")).thenReturn(momentList);
+		final MomentData dateData = new MomentData();
+		dateData.setPostDate("2018-06-09");
+
+		when(this.momentService.getByDate(dateData)).thenReturn(momentList);
 
-		ResponseEntity<List<Moment>> result = this.momentController.findMomentsByDate("2018-06-09");
+		ResponseEntity<List<Moment>> result = getResponse(this.momentController.findMomentsByDate(dateData));
 
 		assertEquals(200, result.getStatusCodeValue());
 
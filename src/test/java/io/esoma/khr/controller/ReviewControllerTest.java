@@ -1,7 +1,9 @@
 package io.esoma.khr.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -20,11 +22,16 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Review;
+import io.esoma.khr.model.ReviewData;
 import io.esoma.khr.service.AuthService;
 import io.esoma.khr.service.KoalibeeServiceTest;
+import io.esoma.khr.service.QueryService;
 import io.esoma.khr.service.ReviewService;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -73,14 +80,23 @@ public class ReviewControllerTest {
 		when(this.authService.reauthenticate("2j")).thenReturn(2);
 
 		when(this.reviewService.getOne(anyInt())).thenReturn(null);
-		when(this.reviewService.searchOne(anyString())).thenReturn(null);
+		when(this.reviewService.searchOne(any(ReviewData.class))).thenReturn(null);
 		when(this.reviewService.getByAlbum(anyInt())).thenReturn(new ArrayList<Review>());
-		when(this.reviewService.post(anyInt(), anyInt(), anyString())).thenReturn(0);
+		when(this.reviewService.post(anyInt(), anyInt(), any(ReviewData.class))).thenReturn(0);
 		when(this.reviewService.delete(anyInt())).thenReturn(false);
-		when(this.reviewService.getAll()).thenReturn(reviewList);
+		when(this.reviewService.getAll(null, null)).thenReturn(new Page<>(new ArrayList<>(reviewList), null));
 
 		this.reviewController.setAuthService(this.authService);
 		this.reviewController.setReviewService(this.reviewService);
+		this.reviewController.setQueryService(new QueryService(false, 1, 1, 1000));
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getResponse(DeferredResult<T> deferredResult) {
+
+		// The query service runs inline, so the result is already set.
+		return (T) deferredResult.getResult();
 
 	}
 
@@ -96,6 +112,12 @@ public class ReviewControllerTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetQueryService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testGetReviewNF() throws Exception {
 
@@ -125,7 +147,7 @@ public class ReviewControllerTest {
 	@Test
 	public void testFindReviewNF() throws Exception {
 
-		ResponseEntity<Review> result = this.reviewController.findReview("bad data");
+		ResponseEntity<Review> result = this.reviewController.findReview(new ReviewData());
 
 		assertEquals(404, result.getStatusCodeValue());
 
@@ -136,11 +158,13 @@ public class ReviewControllerTest {
 	@Test
 	public void testFindReviewS() throws Exception {
 
+		final ReviewData reviewData = new ReviewData();
+
 		final Review review = new Review(4);
 
-		when(this.reviewService.searchOne("good data")).thenReturn(review);
+		when(this.reviewService.searchOne(reviewData)).thenReturn(review);
 
-		ResponseEntity<Review> result = this.reviewController.findReview("good data");
+		ResponseEntity<Review> result = this.reviewController.findReview(reviewData);
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -151,7 +175,7 @@ public class ReviewControllerTest {
 	@Test
 	public void testPostReviewEx() throws Exception {
 
-		ResponseEntity<String> result = this.reviewController.postReview(1, "data", "exj");
+		ResponseEntity<String> result = this.reviewController.postReview(1, new ReviewData(), "exj");
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -162,7 +186,7 @@ public class ReviewControllerTest {
 	@Test
 	public void testPostReviewIn() throws Exception {
 
-		ResponseEntity<String> result = this.reviewController.postReview(1, "data", "ivj");
+		ResponseEntity<String> result = this.reviewController.postReview(1, new ReviewData(), "ivj");
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -173,7 +197,7 @@ public class ReviewControllerTest {
 	@Test
 	public void testPostReviewF() throws Exception {
 
-		ResponseEntity<String> result = this.reviewController.postReview(1, "data", "1j");
+		ResponseEntity<String> result = this.reviewController.postReview(1, new ReviewData(), "1j");
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -184,9 +208,11 @@ public class ReviewControllerTest {
 	@Test
 	public void testPostReviewS() throws Exception {
 
-		when(this.reviewService.post(1, 1, "good")).thenReturn(1);
+		final ReviewData reviewData = new ReviewData();
+
+		when(this.reviewService.post(1, 1, reviewData)).thenReturn(1);
 
-		ResponseEntity<String> result = this.reviewController.postReview(1, "good", "1j");
+		ResponseEntity<String> result = this.reviewController.postReview(1, reviewData, "1j");
 
 		assertEquals(201, result.getStatusCodeValue());
 
@@ -240,10 +266,58 @@ public class ReviewControllerTest {
 
 	}
 
+	@Test
+	public void testRebuildRatingsEx() throws Exception {
+
+		ResponseEntity<String> result = this.reviewController.rebuildRatings("exj");
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.AUTH_TOKEN_EXPIRED, result.getBody());
+
+	}
+
+	@Test
+	public void testRebuildRatingsUA() throws Exception {
+
+		ResponseEntity<String> result = this.reviewController.rebuildRatings("1j");
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.UNAUTHORIZED, result.getBody());
+
+	}
+
+	@Test
+	public void testRebuildRatingsF() throws Exception {
+
+		when(this.reviewService.rebuildRatings()).thenReturn(false);
+
+		ResponseEntity<String> result = this.reviewController.rebuildRatings("adj");
+
+		assertEquals(500, result.getStatusCodeValue());
+
+		assertEquals("unable to rebuild the rating statistics", result.getBody());
+
+	}
+
+	@Test
+	public void testRebuildRatingsS() throws Exception {
+
+		when(this.reviewService.rebuildRatings()).thenReturn(true);
+
+		ResponseEntity<String> result = this.reviewController.rebuildRatings("adj");
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("rating statistics have been successfully rebuilt", result.getBody());
+
+	}
+
 	@Test
 	public void testListAllReviewsEx() throws Exception {
 
-		ResponseEntity<List<Review>> result = this.reviewController.listAllReviews("exj");
+		ResponseEntity<List<Review>> result = getResponse(this.reviewController.listAllReviews("exj", null, null));
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -254,7 +328,7 @@ public class ReviewControllerTest {
 	@Test
 	public void testListAllReviewsUA() throws Exception {
 
-		ResponseEntity<List<Review>> result = this.reviewController.listAllReviews("1j");
+		ResponseEntity<List<Review>> result = getResponse(this.reviewController.listAllReviews("1j", null, null));
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -265,18 +339,47 @@ public class ReviewControllerTest {
 	@Test
 	public void testListAllReviewsS() throws Exception {
 
-		ResponseEntity<List<Review>> result = this.reviewController.listAllReviews("adj");
+		ResponseEntity<List<Review>> result = getResponse(this.reviewController.listAllReviews("adj", null, null));
 
 		assertEquals(200, result.getStatusCodeValue());
 
 		assertEquals(5, result.getBody().size());
 
+		assertNull(result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testListAllReviewsC() throws Exception {
+
+		when(this.reviewService.getAll("cur", 2))
+				.thenReturn(new Page<>(new ArrayList<>(reviewList.subList(0, 2)), "next"));
+
+		ResponseEntity<List<Review>> result = getResponse(this.reviewController.listAllReviews("adj", "cur", 2));
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals(2, result.getBody().size());
+
+		assertEquals("next", result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testListAllReviewsBC() throws Exception {
+
+		ResponseEntity<List<Review>> result = getResponse(this.reviewController.listAllReviews("adj", "bad", null));
+
+		assertEquals(400, result.getStatusCodeValue());
+
+		assertEquals(0, result.getBody().size());
+
 	}
 
 	@Test
 	public void testGetReviewsOfAlbumN() throws Exception {
 
-		ResponseEntity<List<Review>> result = this.reviewController.getReviewsOfAlbum(3);
+		ResponseEntity<List<Review>> result = getResponse(this.reviewController.getReviewsOfAlbum(3));
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -289,7 +392,7 @@ public class ReviewControllerTest {
 
 		when(this.reviewService.getByAlbum(3)).thenReturn(reviewList);
 
-		ResponseEntity<List<Review>> result = this.reviewController.getReviewsOfAlbum(3);
+		ResponseEntity<List<Review>> result = getResponse(this.reviewController.getReviewsOfAlbum(3));
 
 		assertEquals(200, result.getStatusCodeValue());
 
@@ -0,0 +1,227 @@
+package io.esoma.khr.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.ResponseEntity;
+
+import io.esoma.khr.model.Page;
+import io.esoma.khr.model.SearchHit;
+import io.esoma.khr.service.AuthService;
+import io.esoma.khr.service.SearchService;
+import io.esoma.khr.utility.PageUtility;
+
+@RunWith(MockitoJUnitRunner.StrictStubs.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SearchControllerTest {
+
+	private SearchController searchController;
+
+	@Mock
+	private AuthService authService;
+	@Mock
+	private SearchService searchService;
+
+	{
+		this.searchController = new SearchController();
+
+		// Initialize mock objects.
+		MockitoAnnotations.initMocks(SearchControllerTest.class);
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.searchController.setAuthService(this.authService);
+		this.searchController.setSearchService(this.searchService);
+
+	}
+
+	@Test
+	public void testSetAuthService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetSearchService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSearchEx() throws Exception {
+
+		final String expiredJws = "exj";
+
+		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
+
+		ResponseEntity<List<SearchHit>> response = this.searchController.search(expiredJws, "koala", null, null);
+
+		assertEquals(417, response.getStatusCodeValue());
+		assertTrue(response.getBody().isEmpty());
+
+	}
+
+	@Test
+	public void testSearchUa() throws Exception {
+
+		final String invalidJws = "inj";
+
+		when(this.authService.reauthenticate(invalidJws)).thenReturn(0);
+
+		ResponseEntity<List<SearchHit>> response = this.searchController.search(invalidJws, "koala", null, null);
+
+		assertEquals(401, response.getStatusCodeValue());
+
+		verify(this.searchService, never()).search(any(), any(), any(), anyBoolean());
+
+	}
+
+	@Test
+	public void testSearchBr() throws Exception {
+
+		final String validJws = "vaj";
+
+		when(this.authService.reauthenticate(validJws)).thenReturn(3);
+		when(this.searchService.search("koala", "bad", null, true)).thenReturn(null);
+
+		assertEquals(400, this.searchController.search(validJws, null, null, null).getStatusCodeValue());
+
+		assertEquals(400, this.searchController.search(validJws, "koala", "bad", null).getStatusCodeValue());
+
+	}
+
+	@Test
+	public void testSearchOk1() throws Exception {
+
+		final String validJws = "vaj";
+		final List<SearchHit> hitList = new ArrayList<SearchHit>();
+		hitList.add(new SearchHit(SearchHit.ALBUM, 1, "Koala Nights", "Eddy", null, 1));
+
+		when(this.authService.reauthenticate(validJws)).thenReturn(3);
+		when(this.searchService.search("koala", null, 1, true)).thenReturn(new Page<SearchHit>(hitList, "next"));
+
+		ResponseEntity<List<SearchHit>> response = this.searchController.search(validJws, "koala", null, 1);
+
+		assertEquals(200, response.getStatusCodeValue());
+		assertEquals(hitList, response.getBody());
+		assertEquals("next", response.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testSearchOk2() throws Exception {
+
+		final String validJws = "vaj";
+
+		// Users outside the premium list only search the basic collection.
+		when(this.authService.reauthenticate(validJws)).thenReturn(30);
+		when(this.searchService.search("koala", null, null, false))
+				.thenReturn(new Page<SearchHit>(new ArrayList<SearchHit>(), null));
+
+		ResponseEntity<List<SearchHit>> response = this.searchController.search(validJws, "koala", null, null);
+
+		assertEquals(200, response.getStatusCodeValue());
+		assertNull(response.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testSuggestEx() throws Exception {
+
+		final String expiredJws = "exj";
+
+		when(this.authService.reauthenticate(expiredJws)).thenReturn(-1);
+
+		ResponseEntity<List<String>> response = this.searchController.suggest(expiredJws, "ko", null);
+
+		assertEquals(417, response.getStatusCodeValue());
+		assertTrue(response.getBody().isEmpty());
+
+	}
+
+	@Test
+	public void testSuggestUa() throws Exception {
+
+		final String invalidJws = "inj";
+
+		when(this.authService.reauthenticate(invalidJws)).thenReturn(0);
+
+		assertEquals(401, this.searchController.suggest(invalidJws, "ko", null).getStatusCodeValue());
+
+		verify(this.searchService, never()).suggest(anyString(), any(), anyBoolean());
+
+	}
+
+	@Test
+	public void testSuggestBr() throws Exception {
+
+		final String validJws = "vaj";
+
+		when(this.authService.reauthenticate(validJws)).thenReturn(3);
+
+		assertEquals(400, this.searchController.suggest(validJws, null, null).getStatusCodeValue());
+
+	}
+
+	@Test
+	public void testSuggestOk1() throws Exception {
+
+		final String validJws = "vaj";
+
+		when(this.authService.reauthenticate(validJws)).thenReturn(3);
+		when(this.searchService.suggest("ko", 5, true)).thenReturn(Arrays.asList("Koala", "Koala Days"));
+
+		ResponseEntity<List<String>> response = this.searchController.suggest(validJws, "ko", 5);
+
+		assertEquals(200, response.getStatusCodeValue());
+		assertEquals(Arrays.asList("Koala", "Koala Days"), response.getBody());
+
+	}
+
+	@Test
+	public void testSuggestOk2() throws Exception {
+
+		final String validJws = "vaj";
+
+		// Users outside the premium list only get names from the basic collection.
+		when(this.authService.reauthenticate(validJws)).thenReturn(30);
+		when(this.searchService.suggest("ko", null, false)).thenReturn(new ArrayList<String>());
+
+		assertEquals(200, this.searchController.suggest(validJws, "ko", null).getStatusCodeValue());
+
+	}
+
+}
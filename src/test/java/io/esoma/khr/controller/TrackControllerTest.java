@@ -1,12 +1,22 @@
 package io.esoma.khr.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.AfterClass;
@@ -20,11 +30,18 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.mock.web.MockHttpServletResponse;
 
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.model.TrackData;
 import io.esoma.khr.service.AuthService;
 import io.esoma.khr.service.KoalibeeServiceTest;
+import io.esoma.khr.service.QueryService;
 import io.esoma.khr.service.TrackService;
+import io.esoma.khr.utility.DatabaseUtility;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -71,13 +88,22 @@ public class TrackControllerTest {
 		when(this.authService.reauthenticate("2j")).thenReturn(2);
 
 		when(this.trackService.getOne(anyInt(), anyInt())).thenReturn(null);
-		when(this.trackService.addOne(anyInt(), anyInt(), anyString())).thenReturn(0);
+		when(this.trackService.addOne(anyInt(), anyInt(), any(TrackData.class))).thenReturn(0);
 		when(this.trackService.delete(anyInt(), anyInt())).thenReturn(false);
-		when(this.trackService.getAll()).thenReturn(trackList);
+		when(this.trackService.getAll(null, null)).thenReturn(new Page<>(new ArrayList<>(trackList), null));
 		when(this.trackService.getFromAlbum(anyInt(), anyInt())).thenReturn(new ArrayList<Track>());
 
 		this.trackController.setAuthService(this.authService);
 		this.trackController.setTrackService(this.trackService);
+		this.trackController.setQueryService(new QueryService(false, 1, 1, 1000));
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getResponse(DeferredResult<T> deferredResult) {
+
+		// The query service runs inline, so the result is already set.
+		return (T) deferredResult.getResult();
 
 	}
 
@@ -93,6 +119,12 @@ public class TrackControllerTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetQueryService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testGetTrackEx() throws Exception {
 
@@ -139,10 +171,150 @@ public class TrackControllerTest {
 
 	}
 
+	@Test
+	public void testStreamTrackEx() throws Exception {
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, null, "exj", null, null, null, response);
+
+		assertEquals(417, response.getStatus());
+
+	}
+
+	@Test
+	public void testStreamTrackIn() throws Exception {
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, "ivj", null, null, null, null, response);
+
+		assertEquals(401, response.getStatus());
+
+	}
+
+	@Test
+	public void testStreamTrackN() throws Exception {
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, "1j", null, null, null, null, response);
+
+		assertEquals(404, response.getStatus());
+
+	}
+
+	@Test
+	public void testStreamTrackS() throws Exception {
+
+		Track details = new Track(1);
+		details.setAudioType("MP3");
+		details.setAudioSize(10);
+		when(this.trackService.getStreamable(1, 1)).thenReturn(details);
+		when(this.trackService.streamAudio(eq(1), eq(0L), eq(10L), any(OutputStream.class))).thenReturn(true);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, "1j", null, null, null, null, response);
+
+		assertEquals(200, response.getStatus());
+
+		assertEquals("audio/mp3", response.getContentType());
+
+		assertEquals(10, response.getContentLengthLong());
+
+		assertEquals("\"track-1-10\"", response.getHeader("ETag"));
+
+	}
+
+	@Test
+	public void testStreamTrackE() throws Exception {
+
+		Track details = new Track(1);
+		details.setAudioType("MP3");
+		details.setAudioSize(0);
+		when(this.trackService.getStreamable(1, 1)).thenReturn(details);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, "1j", null, null, null, null, response);
+
+		assertEquals(200, response.getStatus());
+
+		assertEquals(0, response.getContentLengthLong());
+
+		response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, "1j", null, "bytes=0-", null, null, response);
+
+		assertEquals(416, response.getStatus());
+
+		assertEquals("bytes */0", response.getHeader("Content-Range"));
+
+		// Empty audio is never read.
+		verify(this.trackService, never()).streamAudio(anyInt(), anyLong(), anyLong(), any(OutputStream.class));
+
+	}
+
+	@Test
+	public void testStreamTrackR() throws Exception {
+
+		Track details = new Track(1);
+		details.setAudioType("MP3");
+		details.setAudioSize(10);
+		when(this.trackService.getStreamable(1, 1)).thenReturn(details);
+		when(this.trackService.streamAudio(eq(1), eq(2L), eq(4L), any(OutputStream.class))).thenReturn(true);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, null, "1j", "bytes=2-5", null, null, response);
+
+		assertEquals(206, response.getStatus());
+
+		assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+
+		assertEquals(4, response.getContentLengthLong());
+
+	}
+
+	@Test
+	public void testStreamTrackNR() throws Exception {
+
+		Track details = new Track(1);
+		details.setAudioType("MP3");
+		details.setAudioSize(10);
+		when(this.trackService.getStreamable(1, 1)).thenReturn(details);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, "1j", null, "bytes=20-", null, null, response);
+
+		assertEquals(416, response.getStatus());
+
+		assertEquals("bytes */10", response.getHeader("Content-Range"));
+
+	}
+
+	@Test
+	public void testStreamTrackNM() throws Exception {
+
+		Track details = new Track(1);
+		details.setAudioType("MP3");
+		details.setAudioSize(10);
+		when(this.trackService.getStreamable(1, 1)).thenReturn(details);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.streamTrack(1, "1j", null, null, null, "\"track-1-10\"", response);
+
+		assertEquals(304, response.getStatus());
+
+	}
+
 	@Test
 	public void testAddTrackToAlbumEx() throws Exception {
 
-		ResponseEntity<String> result = this.trackController.addTrackToAlbum(1, "data", "exj");
+		ResponseEntity<String> result = this.trackController.addTrackToAlbum(1, new TrackData(), "exj");
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -153,7 +325,7 @@ public class TrackControllerTest {
 	@Test
 	public void testAddTrackToAlbumIn() throws Exception {
 
-		ResponseEntity<String> result = this.trackController.addTrackToAlbum(1, "data", "ivj");
+		ResponseEntity<String> result = this.trackController.addTrackToAlbum(1, new TrackData(), "ivj");
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -164,7 +336,7 @@ public class TrackControllerTest {
 	@Test
 	public void testAddTrackToAlbumF() throws Exception {
 
-		ResponseEntity<String> result = this.trackController.addTrackToAlbum(1, "data", "1j");
+		ResponseEntity<String> result = this.trackController.addTrackToAlbum(1, new TrackData(), "1j");
 
 		assertEquals(422, result.getStatusCodeValue());
 
@@ -175,9 +347,11 @@ public class TrackControllerTest {
 	@Test
 	public void testAddTrackToAlbumS() throws Exception {
 
-		when(this.trackService.addOne(1, 1, "good")).thenReturn(1);
+		final TrackData trackData = new TrackData();
+
+		when(this.trackService.addOne(1, 1, trackData)).thenReturn(1);
 
-		ResponseEntity<String> result = this.trackController.addTrackToAlbum(1, "good", "1j");
+		ResponseEntity<String> result = this.trackController.addTrackToAlbum(1, trackData, "1j");
 
 		assertEquals(201, result.getStatusCodeValue());
 
@@ -185,6 +359,141 @@ public class TrackControllerTest {
 
 	}
 
+	@Test
+	public void testAddTracksToAlbumEx() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.addTracksToAlbum(1, Arrays.asList(new TrackData()), "exj");
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.AUTH_TOKEN_EXPIRED, result.getBody());
+
+	}
+
+	@Test
+	public void testAddTracksToAlbumIn() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.addTracksToAlbum(1, Arrays.asList(new TrackData()), "ivj");
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.UNAUTHORIZED, result.getBody());
+
+	}
+
+	@Test
+	public void testAddTracksToAlbumF() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.addTracksToAlbum(1, Arrays.asList(new TrackData()), "1j");
+
+		assertEquals(422, result.getStatusCodeValue());
+
+		assertEquals("unable to add the tracks", result.getBody());
+
+	}
+
+	@Test
+	public void testAddTracksToAlbumS() throws Exception {
+
+		final List<TrackData> tracksData = Arrays.asList(new TrackData());
+
+		when(this.trackService.addMany(1, 1, tracksData)).thenReturn(3);
+
+		ResponseEntity<String> result = this.trackController.addTracksToAlbum(1, tracksData, "1j");
+
+		assertEquals(201, result.getStatusCodeValue());
+
+		assertEquals("3 new tracks have been successfully added", result.getBody());
+
+	}
+
+	@Test
+	public void testUploadTrackAudioEx() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.uploadTrackAudio(3, "audio/ogg", 3L,
+				new ByteArrayInputStream("ogg".getBytes()), "exj");
+
+		assertEquals(417, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.AUTH_TOKEN_EXPIRED, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadTrackAudioIn() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.uploadTrackAudio(3, "audio/ogg", 3L,
+				new ByteArrayInputStream("ogg".getBytes()), "ivj");
+
+		assertEquals(401, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.UNAUTHORIZED, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadTrackAudioLR() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.uploadTrackAudio(3, "audio/ogg", null,
+				new ByteArrayInputStream("ogg".getBytes()), "2j");
+
+		assertEquals(411, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.LENGTH_REQUIRED, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadTrackAudioTL() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.uploadTrackAudio(3, "audio/ogg",
+				DatabaseUtility.getMaxUploadSize() + 1, new ByteArrayInputStream("ogg".getBytes()), "2j");
+
+		assertEquals(413, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.PAYLOAD_TOO_LARGE, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadTrackAudioUM() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.uploadTrackAudio(3, "image/png", 3L,
+				new ByteArrayInputStream("ogg".getBytes()), "2j");
+
+		assertEquals(415, result.getStatusCodeValue());
+
+		assertEquals(ExceptionController.UNSUPPORTED_MEDIA_TYPE, result.getBody());
+
+	}
+
+	@Test
+	public void testUploadTrackAudioF() throws Exception {
+
+		ResponseEntity<String> result = this.trackController.uploadTrackAudio(3, "audio/ogg", 3L,
+				new ByteArrayInputStream("ogg".getBytes()), "1j");
+
+		assertEquals(422, result.getStatusCodeValue());
+
+		assertEquals("unable to upload the audio", result.getBody());
+
+	}
+
+	@Test
+	public void testUploadTrackAudioS() throws Exception {
+
+		final InputStream audio = new ByteArrayInputStream("ogg".getBytes());
+
+		when(this.trackService.uploadAudio(2, 3, "OGG", audio, 3)).thenReturn(true);
+
+		ResponseEntity<String> result = this.trackController.uploadTrackAudio(3, "audio/ogg", 3L, audio, "2j");
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals("audio has been successfully uploaded", result.getBody());
+
+	}
+
 	@Test
 	public void testDeleteTrackFromAlbumEx() throws Exception {
 
@@ -234,7 +543,7 @@ public class TrackControllerTest {
 	@Test
 	public void testListAllTracksUA() throws Exception {
 
-		ResponseEntity<List<Track>> result = this.trackController.listAllTracks("bad");
+		ResponseEntity<List<Track>> result = getResponse(this.trackController.listAllTracks("bad", null, null));
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -245,18 +554,86 @@ public class TrackControllerTest {
 	@Test
 	public void testListAllTracksS() throws Exception {
 
-		ResponseEntity<List<Track>> result = this.trackController.listAllTracks("adj");
+		ResponseEntity<List<Track>> result = getResponse(this.trackController.listAllTracks("adj", null, null));
 
 		assertEquals(200, result.getStatusCodeValue());
 
 		assertEquals(3, result.getBody().size());
 
+		assertNull(result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testListAllTracksC() throws Exception {
+
+		when(this.trackService.getAll("cur", 1))
+				.thenReturn(new Page<>(new ArrayList<>(trackList.subList(0, 1)), "next"));
+
+		ResponseEntity<List<Track>> result = getResponse(this.trackController.listAllTracks("adj", "cur", 1));
+
+		assertEquals(200, result.getStatusCodeValue());
+
+		assertEquals(1, result.getBody().size());
+
+		assertEquals("next", result.getHeaders().getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+	@Test
+	public void testListAllTracksBC() throws Exception {
+
+		ResponseEntity<List<Track>> result = getResponse(this.trackController.listAllTracks("adj", "bad", null));
+
+		assertEquals(400, result.getStatusCodeValue());
+
+		assertEquals(0, result.getBody().size());
+
+	}
+
+	@Test
+	public void testExportTracksUA() throws Exception {
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.exportTracks("1j", response);
+
+		assertEquals(401, response.getStatus());
+
+	}
+
+	@Test
+	public void testExportTracksS() throws Exception {
+
+		when(this.trackService.writeAll(any(OutputStream.class))).thenReturn(true);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.exportTracks("adj", response);
+
+		assertEquals(200, response.getStatus());
+
+		assertEquals("application/json", response.getContentType());
+
+	}
+
+	@Test
+	public void testExportTracksF() throws Exception {
+
+		when(this.trackService.writeAll(any(OutputStream.class))).thenReturn(false);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		this.trackController.exportTracks("adj", response);
+
+		assertEquals(500, response.getStatus());
+
 	}
 
 	@Test
 	public void testGetTracksFromAlbumEx() throws Exception {
 
-		ResponseEntity<List<Track>> result = this.trackController.getTracksFromAlbum(1, "exj");
+		ResponseEntity<List<Track>> result = getResponse(this.trackController.getTracksFromAlbum(1, "exj"));
 
 		assertEquals(417, result.getStatusCodeValue());
 
@@ -267,7 +644,7 @@ public class TrackControllerTest {
 	@Test
 	public void testGetTracksFromAlbumIn() throws Exception {
 
-		ResponseEntity<List<Track>> result = this.trackController.getTracksFromAlbum(1, "ivj");
+		ResponseEntity<List<Track>> result = getResponse(this.trackController.getTracksFromAlbum(1, "ivj"));
 
 		assertEquals(401, result.getStatusCodeValue());
 
@@ -278,7 +655,7 @@ public class TrackControllerTest {
 	@Test
 	public void testGetTracksFromAlbumNF() throws Exception {
 
-		ResponseEntity<List<Track>> result = this.trackController.getTracksFromAlbum(1, "2j");
+		ResponseEntity<List<Track>> result = getResponse(this.trackController.getTracksFromAlbum(1, "2j"));
 
 		assertEquals(204, result.getStatusCodeValue());
 
@@ -291,7 +668,7 @@ public class TrackControllerTest {
 
 		when(this.trackService.getFromAlbum(2, 7)).thenReturn(trackList);
 
-		ResponseEntity<List<Track>> result = this.trackController.getTracksFromAlbum(7, "2j");
+		ResponseEntity<List<Track>> result = getResponse(this.trackController.getTracksFromAlbum(7, "2j"));
 
 		assertEquals(200, result.getStatusCodeValue());
 
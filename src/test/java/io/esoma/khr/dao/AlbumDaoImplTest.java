@@ -1,17 +1,28 @@
 package io.esoma.khr.dao;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +35,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import io.esoma.khr.model.Album;
 import io.esoma.khr.model.Genre;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.storage.MediaStore;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = "file:src/main/webapp/WEB-INF/spring-context.xml")
@@ -36,6 +48,9 @@ public class AlbumDaoImplTest {
 	private SessionFactory sessionFactory;
 	private AlbumDao albumDao;
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Autowired
 	@Qualifier(value = "h2DBSessionFactory")
 	public void setSessionFactory(SessionFactory sessionFactory) {
@@ -121,7 +136,68 @@ public class AlbumDaoImplTest {
 
 		assertEquals("Fortissimo", album.getAlbumName());
 
-		assertEquals("data:image/png;base64,SmF2YSwgQVNQLk5FVCwgQysrLCBGb3J0cmFuIGV0Yw==", album.getArtworkDataUrl());
+		assertEquals("/album/artwork/5", album.getArtworkUrl());
+
+		assertNull(album.getArtworkDataUrl());
+
+	}
+
+	@Test
+	public void testGetAlbumByIdR() throws Exception {
+
+		Album album = this.albumDao.getAlbumById(1);
+
+		assertEquals(2, album.getRatingCount());
+
+		assertEquals(19, album.getRatingSum());
+
+		assertArrayEquals(new int[] { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1 }, album.getRatingHistogram());
+
+		album = this.albumDao.getAlbumById(3);
+
+		assertEquals(0, album.getRatingCount());
+
+		assertArrayEquals(new int[10], album.getRatingHistogram());
+
+	}
+
+	@Test
+	public void testGetAlbumArtwork1() throws Exception {
+
+		Album album = this.albumDao.getAlbumArtwork(5);
+
+		assertNotNull(album);
+
+		assertEquals("Java, ASP.NET, C++, Fortran etc", new String(album.getArtwork()));
+
+		assertEquals("PNG", album.getArtworkType());
+
+	}
+
+	@Test
+	public void testGetAlbumArtworkU() throws Exception {
+
+		assertNull(this.albumDao.getAlbumArtwork(1));
+
+		assertNull(this.albumDao.getAlbumArtwork(3));
+
+	}
+
+	@Test
+	public void testGetAlbumArtworkN() throws Exception {
+
+		assertNull(this.albumDao.getAlbumArtwork(777));
+
+	}
+
+	@Test
+	public void testGetAlbumArtworkVersion() throws Exception {
+
+		assertEquals("A5", this.albumDao.getAlbumArtworkVersion(5));
+
+		assertNull(this.albumDao.getAlbumArtworkVersion(1));
+
+		assertNull(this.albumDao.getAlbumArtworkVersion(777));
 
 	}
 
@@ -199,6 +275,60 @@ public class AlbumDaoImplTest {
 
 	}
 
+	@Test
+	public void testUpdateAlbumArtwork1() throws Exception {
+
+		final byte[] artwork = "uploaded art".getBytes();
+
+		assertTrue(this.albumDao.updateAlbumArtwork(3, "GIF", new ByteArrayInputStream(artwork), artwork.length));
+
+		assertEquals("GIF", this.albumDao.getAlbumById(3).getArtworkType());
+
+		try (Session session = this.sessionFactory.openSession()) {
+			assertArrayEquals(artwork, session.get(Album.class, 3).getArtwork());
+		}
+
+	}
+
+	@Test
+	public void testUpdateAlbumArtwork2() throws Exception {
+
+		// Published albums cannot be changed.
+		assertFalse(this.albumDao.updateAlbumArtwork(5, "GIF", new ByteArrayInputStream(new byte[3]), 3));
+
+		assertEquals("PNG", this.albumDao.getAlbumById(5).getArtworkType());
+
+		assertFalse(this.albumDao.updateAlbumArtwork(777, "GIF", new ByteArrayInputStream(new byte[3]), 3));
+
+	}
+
+	@Test
+	public void testUpdateAlbumArtwork3() throws Exception {
+
+		final AlbumDaoImpl albumDaoImpl = (AlbumDaoImpl) this.albumDao;
+		final byte[] artwork = "stored art".getBytes();
+
+		// Uploads go to the media store once it is enabled.
+		albumDaoImpl.setMediaStore(new MediaStore(this.folder.getRoot().getPath()));
+		try {
+			assertTrue(this.albumDao.updateAlbumArtwork(3, "GIF", new ByteArrayInputStream(artwork), artwork.length));
+
+			Album album = this.albumDao.getAlbumById(3);
+
+			assertNotNull(album.getArtworkHash());
+
+			assertEquals("data:image/gif;base64,c3RvcmVkIGFydA==", album.getArtworkDataUrl());
+		} finally {
+			albumDaoImpl.setMediaStore(new MediaStore(""));
+		}
+
+		// An upload to the database clears the hash.
+		assertTrue(this.albumDao.updateAlbumArtwork(3, "GIF", new ByteArrayInputStream(artwork), artwork.length));
+
+		assertNull(this.albumDao.getAlbumById(3).getArtworkHash());
+
+	}
+
 	@Test
 	public void testUpdateAlbumV() throws Exception {
 
@@ -231,7 +361,7 @@ public class AlbumDaoImplTest {
 
 		assertEquals("T", this.albumDao.getAlbumById(2).getIsPublished());
 
-		assertEquals("data:image/jpg;base64,bXkgY29vbCBhcnQ=", this.albumDao.getAlbumById(2).getArtworkDataUrl());
+		assertEquals("/album/artwork/2", this.albumDao.getAlbumById(2).getArtworkUrl());
 
 	}
 
@@ -247,7 +377,7 @@ public class AlbumDaoImplTest {
 
 		assertEquals("T", this.albumDao.getAlbumById(1).getIsPublished());
 
-		assertEquals("data:image/png;base64,Q3JhenkgUGlhbmlzdA==", this.albumDao.getAlbumById(1).getArtworkDataUrl());
+		assertEquals("/album/artwork/1", this.albumDao.getAlbumById(1).getArtworkUrl());
 
 		assertEquals(373, this.albumDao.getAlbumById(1).getEtaPrice());
 
@@ -288,6 +418,105 @@ public class AlbumDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetAlbumPage() throws Exception {
+
+		List<Album> albumList = new ArrayList<>();
+
+		// Walk through all pages.
+		List<Album> page = this.albumDao.getAlbumPage(null, 0, 2);
+		while (!page.isEmpty()) {
+			assertTrue(page.size() <= 2);
+			for (Album a : page) {
+				assertNull(a.getArtwork());
+				assertNotNull(a.getGenre());
+			}
+			albumList.addAll(page);
+			Album last = page.get(page.size() - 1);
+			page = this.albumDao.getAlbumPage(last.getAlbumName(), last.getAlbumId(), 2);
+		}
+
+		assertEquals(this.albumDao.getAllAlbums().size(), albumList.size());
+
+		for (int i = 1; i < albumList.size(); i++) {
+			assertTrue(albumList.get(i - 1).getAlbumName().compareTo(albumList.get(i).getAlbumName()) <= 0);
+		}
+
+	}
+
+	@Test
+	public void testGetAlbumPageR() throws Exception {
+
+		List<Album> albumList = this.albumDao.getAlbumPage(null, 0, 200);
+
+		Album album = albumList.get(albumList.indexOf(new Album(5)));
+
+		assertEquals(2, album.getRatingCount());
+
+		assertEquals(14, album.getRatingSum());
+
+		assertNull(album.getRatingHistogram());
+
+		assertEquals(0, albumList.get(albumList.indexOf(new Album(3))).getRatingCount());
+
+	}
+
+	@Test
+	public void testStreamAlbums() throws Exception {
+
+		final List<Album> albumList = new ArrayList<>();
+
+		final int count = this.albumDao.streamAlbums(a -> {
+			assertNull(a.getArtwork());
+			albumList.add(a);
+		});
+
+		assertEquals(albumList.size(), count);
+
+		// Same albums in the same order as the pages.
+		assertEquals(this.albumDao.getAlbumPage(null, 0, 200), albumList);
+
+	}
+
+	@Test
+	public void testGetAlbumsByIds() throws Exception {
+
+		List<Album> albumList = this.albumDao.getAlbumsByIds(Arrays.asList(5, 1, 999));
+
+		assertEquals(2, albumList.size());
+
+		assertEquals(new Album(1), albumList.get(0));
+
+		assertEquals(new Koalibee(3), albumList.get(0).getKoalibee());
+
+		assertNull(albumList.get(0).getArtworkUrl());
+
+		assertEquals("/album/artwork/5", albumList.get(1).getArtworkUrl());
+
+		assertNull(albumList.get(1).getArtwork());
+
+		assertTrue(this.albumDao.getAlbumsByIds(new ArrayList<Integer>()).isEmpty());
+
+	}
+
+	@Test
+	public void testGetAlbumsByIdsU() throws Exception {
+
+		final byte[] artwork = "demo art".getBytes();
+
+		assertTrue(this.albumDao.updateAlbumArtwork(6, "BMP", new ByteArrayInputStream(artwork), artwork.length));
+
+		List<Album> albumList = this.albumDao.getAlbumsByIds(Arrays.asList(6));
+
+		// Unpublished albums embed their artwork instead.
+		assertNull(albumList.get(0).getArtworkUrl());
+
+		assertEquals("data:image/bmp;base64,ZGVtbyBhcnQ=", albumList.get(0).getArtworkDataUrl());
+
+		assertNull(albumList.get(0).getArtworkType());
+
+	}
+
 	@Test
 	public void testGetUnpublishedAlbumsByKoalibee() throws Exception {
 
@@ -306,6 +535,15 @@ public class AlbumDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetPublishedAlbumIdsByKoalibee() throws Exception {
+
+		assertEquals(Arrays.asList(5), this.albumDao.getPublishedAlbumIdsByKoalibee(3));
+
+		assertTrue(this.albumDao.getPublishedAlbumIdsByKoalibee(1).isEmpty());
+
+	}
+
 	@Test
 	public void testGetAllPublishedAlbums() throws Exception {
 
@@ -317,4 +555,44 @@ public class AlbumDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetPublishedAlbumPage() throws Exception {
+
+		List<Album> albumList = new ArrayList<>();
+
+		// Walk through all pages.
+		List<Album> page = this.albumDao.getPublishedAlbumPage(null, 0, 1);
+		while (!page.isEmpty()) {
+			assertEquals(1, page.size());
+			assertEquals("T", page.get(0).getIsPublished());
+			assertNull(page.get(0).getArtwork());
+			albumList.addAll(page);
+			page = this.albumDao.getPublishedAlbumPage(page.get(0).getAlbumName(), page.get(0).getAlbumId(), 1);
+		}
+
+		assertEquals(this.albumDao.getAllPublishedAlbums(), albumList);
+
+	}
+
+	@Test
+	public void testGetPurchaseCounts() throws Exception {
+
+		assertTrue(this.albumDao.getPurchaseCounts().isEmpty());
+
+		// Purchases are recorded by the koalibee DAO, so they are inserted directly.
+		final String sql = "INSERT INTO KOALIBEE_ALBUM (KOALIBEE_ID, ALBUM_ID) VALUES (:koalibeeId, :albumId)";
+		try (Session session = this.sessionFactory.openSession()) {
+			Transaction tx = session.beginTransaction();
+			session.createNativeQuery(sql).setParameter("koalibeeId", 1).setParameter("albumId", 5).executeUpdate();
+			session.createNativeQuery(sql).setParameter("koalibeeId", 2).setParameter("albumId", 5).executeUpdate();
+			tx.commit();
+		}
+
+		final Map<Integer, Integer> countMap = this.albumDao.getPurchaseCounts();
+
+		assertEquals(1, countMap.size());
+		assertEquals(Integer.valueOf(2), countMap.get(5));
+
+	}
+
 }
@@ -7,14 +7,18 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.util.List;
 
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,8 +28,10 @@ import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.jdbc.SqlConfig;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import io.esoma.khr.index.OwnershipIndex;
 import io.esoma.khr.model.Credentials;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.storage.MediaStore;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = "file:src/main/webapp/WEB-INF/spring-context.xml")
@@ -38,6 +44,9 @@ public class KoalibeeDaoImplTest {
 	private SessionFactory sessionFactory;
 	private KoalibeeDao koalibeeDao;
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Autowired
 	@Qualifier(value = "h2DBSessionFactory")
 	public void setSessionFactory(SessionFactory sessionFactory) {
@@ -50,6 +59,15 @@ public class KoalibeeDaoImplTest {
 		this.koalibeeDao = koalibeeDao;
 	}
 
+	// Sums the pending ETA ledger entries of a koalibee.
+	private long getPendingDelta(int koalibeeId) {
+		try (Session session = this.sessionFactory.openSession()) {
+			return session.createQuery("SELECT COALESCE(SUM(e.delta), 0) FROM EtaEntry AS e "
+					+ "WHERE e.koalibeeId = :koalibeeId AND e.isApplied = 'F'", Long.class)
+					.setParameter("koalibeeId", koalibeeId).getSingleResult();
+		}
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 		// No content yet.
@@ -66,6 +84,7 @@ public class KoalibeeDaoImplTest {
 		// Will only run once.
 		if (!isSet) {
 			((KoalibeeDaoImpl) this.koalibeeDao).setSessionFactory(this.sessionFactory);
+			((KoalibeeDaoImpl) this.koalibeeDao).setOwnershipIndex(new OwnershipIndex());
 			isSet = true;
 		}
 	}
@@ -189,6 +208,39 @@ public class KoalibeeDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetKoalibeeAvatar1() throws Exception {
+
+		Koalibee koalibee = this.koalibeeDao.getKoalibeeAvatar(2);
+
+		assertNotNull(koalibee);
+
+		assertEquals("randombytes", new String(koalibee.getAvatar()));
+
+		assertEquals("JPG", koalibee.getAvatarType());
+
+	}
+
+	@Test
+	public void testGetKoalibeeAvatarN() throws Exception {
+
+		assertNull(this.koalibeeDao.getKoalibeeAvatar(1));
+
+		assertNull(this.koalibeeDao.getKoalibeeAvatar(777));
+
+	}
+
+	@Test
+	public void testGetKoalibeeAvatarVersion() throws Exception {
+
+		assertEquals("K2v0", this.koalibeeDao.getKoalibeeAvatarVersion(2));
+
+		assertNull(this.koalibeeDao.getKoalibeeAvatarVersion(1));
+
+		assertNull(this.koalibeeDao.getKoalibeeAvatarVersion(777));
+
+	}
+
 	@Test
 	public void testAddKoalibee() throws Exception {
 
@@ -243,6 +295,57 @@ public class KoalibeeDaoImplTest {
 
 	}
 
+	@Test
+	public void testUpdateKoalibeeAvatar() throws Exception {
+
+		final byte[] avatar = "uploaded face".getBytes();
+
+		assertTrue(this.koalibeeDao.updateKoalibeeAvatar(1, "PNG", new ByteArrayInputStream(avatar), avatar.length));
+
+		Koalibee koalibee = this.koalibeeDao.getKoalibeeAvatar(1);
+
+		assertEquals("uploaded face", new String(koalibee.getAvatar()));
+
+		assertEquals("PNG", koalibee.getAvatarType());
+
+		// Every upload gets a new version.
+		assertEquals("K1v1", this.koalibeeDao.getKoalibeeAvatarVersion(1));
+
+		assertFalse(this.koalibeeDao.updateKoalibeeAvatar(777, "PNG", new ByteArrayInputStream(avatar), avatar.length));
+
+	}
+
+	@Test
+	public void testUpdateKoalibeeAvatarS() throws Exception {
+
+		final KoalibeeDaoImpl koalibeeDaoImpl = (KoalibeeDaoImpl) this.koalibeeDao;
+		final byte[] avatar = "stored face".getBytes();
+
+		// Uploads go to the media store once it is enabled.
+		koalibeeDaoImpl.setMediaStore(new MediaStore(this.folder.getRoot().getPath()));
+		try {
+			assertTrue(
+					this.koalibeeDao.updateKoalibeeAvatar(1, "GIF", new ByteArrayInputStream(avatar), avatar.length));
+
+			Koalibee koalibee = this.koalibeeDao.getKoalibeeAvatar(1);
+
+			assertNotNull(koalibee.getAvatarHash());
+
+			assertEquals("stored face", new String(koalibee.getAvatar()));
+
+			assertEquals("data:image/gif;base64,c3RvcmVkIGZhY2U=",
+					this.koalibeeDao.getKoalibeeById(1).getAvatarDataUrl());
+		} finally {
+			koalibeeDaoImpl.setMediaStore(new MediaStore(""));
+		}
+
+		// An upload to the database clears the hash.
+		assertTrue(this.koalibeeDao.updateKoalibeeAvatar(1, "PNG", new ByteArrayInputStream(avatar), avatar.length));
+
+		assertNull(this.koalibeeDao.getKoalibeeAvatar(1).getAvatarHash());
+
+	}
+
 	@Test
 	public void testUpdateKoalibeeR() throws Exception {
 
@@ -289,14 +392,20 @@ public class KoalibeeDaoImplTest {
 	}
 
 	@Test
-	public void testUpdateEtaBalance() throws Exception {
+	public void testUpgradePasswordHash() throws Exception {
+
+		final String oldHash = "26BEF48AD5C232CE7E50A3106461188617AC7AB514479F26AD20F00FD99CAD81";
+		final String newHash = "PBKDF2$1000$7701A28512CAACB153F58FA9916452CBA5E71F8849B2B101E1DF2EF79CACFECB";
+
+		assertFalse(this.koalibeeDao.upgradePasswordHash(3, "stale hash", "abcd1234abcd1234", newHash));
+
+		assertTrue(this.koalibeeDao.upgradePasswordHash(3, oldHash, "abcd1234abcd1234", newHash));
 
-		final Koalibee koalibee = new Koalibee(3);
-		koalibee.setEtaBalance(90);
+		assertEquals(newHash, this.koalibeeDao.getKoalibeeById(3).getCredentials().getPasswordHash());
 
-		assertTrue(this.koalibeeDao.updateEtaBalance(koalibee));
+		assertEquals("abcd1234abcd1234", this.koalibeeDao.getKoalibeeById(3).getCredentials().getPasswordSalt());
 
-		assertEquals(90, this.koalibeeDao.getKoalibeeById(3).getEtaBalance());
+		assertFalse(this.koalibeeDao.upgradePasswordHash(3, oldHash, "abcd1234abcd1234", newHash));
 
 	}
 
@@ -316,9 +425,40 @@ public class KoalibeeDaoImplTest {
 
 		assertTrue(this.koalibeeDao.purchaseAlbum(2, 2));
 
-		assertTrue(this.koalibeeDao.purchaseAlbum(2, 4));
+		// Neither koalibee can afford the album.
+		assertFalse(this.koalibeeDao.purchaseAlbum(2, 4));
 
-		assertTrue(this.koalibeeDao.purchaseAlbum(1, 5));
+		assertFalse(this.koalibeeDao.purchaseAlbum(1, 5));
+
+		assertFalse(this.koalibeeDao.ownsAlbum(1, 5));
+
+	}
+
+	@Test
+	public void testPurchaseAlbum3() throws Exception {
+
+		assertTrue(this.koalibeeDao.purchaseAlbum(3, 4));
+
+		assertEquals(0, this.koalibeeDao.getKoalibeeById(3).getEtaBalance());
+
+		// The publisher is paid through a pending ledger entry.
+		assertEquals(0, this.koalibeeDao.getKoalibeeById(1).getEtaBalance());
+
+		assertEquals(50L, this.getPendingDelta(1));
+
+		assertTrue(this.koalibeeDao.ownsAlbum(3, 4));
+
+	}
+
+	@Test
+	public void testPurchaseAlbumD() throws Exception {
+
+		// The album is already owned, so the balances stay the same.
+		assertFalse(this.koalibeeDao.purchaseAlbum(3, 4));
+
+		assertEquals(0, this.koalibeeDao.getKoalibeeById(3).getEtaBalance());
+
+		assertEquals(50L, this.getPendingDelta(1));
 
 	}
 
@@ -344,6 +484,15 @@ public class KoalibeeDaoImplTest {
 
 	}
 
+	@Test
+	public void testIsEmailRegistered() throws Exception {
+
+		assertTrue(this.koalibeeDao.isEmailRegistered("esoma.aws@jenkins.com"));
+
+		assertFalse(this.koalibeeDao.isEmailRegistered("not.there@koalibee.com"));
+
+	}
+
 	@Test
 	public void testGetAllKoalibees() throws Exception {
 
@@ -357,6 +506,29 @@ public class KoalibeeDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetKoalibeePage() throws Exception {
+
+		List<Koalibee> koalibeeList = this.koalibeeDao.getKoalibeePage(0, 2);
+
+		assertEquals(2, koalibeeList.size());
+
+		assertEquals(new Koalibee(1), koalibeeList.get(0));
+
+		assertEquals(new Koalibee(2), koalibeeList.get(1));
+
+		assertNotNull(koalibeeList.get(0).getEmail());
+
+		assertNull(koalibeeList.get(0).getAvatar());
+
+		assertNull(koalibeeList.get(0).getCredentials());
+
+		koalibeeList = this.koalibeeDao.getKoalibeePage(2, 2);
+
+		assertEquals(new Koalibee(3), koalibeeList.get(0));
+
+	}
+
 	@Test
 	public void testGetAllPurchasedAlbumsByKoalibeeId() throws Exception {
 
@@ -375,4 +547,19 @@ public class KoalibeeDaoImplTest {
 
 	}
 
+	@Test
+	public void testOwnsAlbum() throws Exception {
+
+		assertTrue(this.koalibeeDao.ownsAlbum(3, 2));
+
+		assertFalse(this.koalibeeDao.ownsAlbum(3, 5));
+
+		assertTrue(this.koalibeeDao.purchaseAlbum(3, 5));
+
+		assertTrue(this.koalibeeDao.ownsAlbum(3, 5));
+
+		assertFalse(this.koalibeeDao.ownsAlbum(2, 5));
+
+	}
+
 }
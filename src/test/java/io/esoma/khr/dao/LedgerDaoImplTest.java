@@ -0,0 +1,205 @@
+package io.esoma.khr.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import io.esoma.khr.model.EtaEntry;
+import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.utility.DatabaseUtility;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = "file:src/main/webapp/WEB-INF/spring-context.xml")
+// Run tests in a fixed order to make sure the SQL script is executed before tests.
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LedgerDaoImplTest {
+
+	private static LedgerDaoImpl ledgerDao;
+
+	private SessionFactory sessionFactory;
+
+	@Autowired
+	@Qualifier(value = "h2DBSessionFactory")
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	// Reads the stored balance of a koalibee.
+	private int getEtaBalance(int koalibeeId) {
+		try (Session session = this.sessionFactory.openSession()) {
+			return session.get(Koalibee.class, koalibeeId).getEtaBalance();
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	// Use a separate H2 instance, so the scheduled applier of the ledger service
+	// does not apply entries while the tests are running.
+	@Before
+	public void setUp() throws Exception {
+		// Will only run once.
+		if (ledgerDao == null) {
+			ledgerDao = new LedgerDaoImpl();
+			ledgerDao.setSessionFactory(this.sessionFactory);
+		}
+	}
+
+	// Run Test SQL script.
+	@Test
+	@Sql(scripts = "/kh-h2.sql", config = @SqlConfig(transactionManager = "h2DBHibernateTransactionManager"))
+	public void executeSql() {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testGetSessionFactory() throws Exception {
+
+		assertNotNull(ledgerDao.getSessionFactory());
+
+	}
+
+	@Test
+	public void testAddEntry() throws Exception {
+
+		assertTrue(ledgerDao.addEntry(new EtaEntry(1, 20, EtaEntry.MOMENT_REWARD)) > 0);
+
+		// The balance is not touched until the entry is applied.
+		assertEquals(0, this.getEtaBalance(1));
+
+		assertEquals(Collections.singletonMap(1, 20), ledgerDao.getPendingDeltas(Arrays.asList(1, 2)));
+
+	}
+
+	@Test
+	public void testApplyPending1() throws Exception {
+
+		assertEquals(1, ledgerDao.applyPending(500));
+
+		assertEquals(20, this.getEtaBalance(1));
+
+		assertTrue(ledgerDao.getPendingDeltas(Arrays.asList(1)).isEmpty());
+
+	}
+
+	@Test
+	public void testApplyPending2() throws Exception {
+
+		ledgerDao.addEntry(new EtaEntry(2, 10, EtaEntry.REVIEW_REWARD));
+		ledgerDao.addEntry(new EtaEntry(2, 30, EtaEntry.REVIEW_REWARD));
+		ledgerDao.addEntry(new EtaEntry(3, 5, EtaEntry.SALE));
+
+		// The oldest entries are applied first.
+		assertEquals(2, ledgerDao.applyPending(2));
+
+		assertEquals(40, this.getEtaBalance(2));
+
+		assertEquals(Collections.singletonMap(3, 5), ledgerDao.getPendingDeltas(Arrays.asList(2, 3)));
+
+		assertEquals(1, ledgerDao.applyPending(2));
+
+		assertEquals(55, this.getEtaBalance(3));
+
+	}
+
+	@Test
+	public void testApplyPending3() throws Exception {
+
+		assertEquals(0, ledgerDao.applyPending(500));
+
+	}
+
+	@Test
+	public void testApplyPending4() throws Exception {
+
+		final boolean cached = DatabaseUtility.isSecondLevelCacheEnabled();
+
+		assertEquals(55, this.getEtaBalance(3));
+		assertEquals(20, this.getEtaBalance(1));
+
+		ledgerDao.addEntry(new EtaEntry(1, 10, EtaEntry.MOMENT_REWARD));
+		assertEquals(1, ledgerDao.applyPending(500));
+
+		// Only the koalibees of the batch are evicted.
+		assertEquals(cached, this.sessionFactory.getCache().containsEntity(Koalibee.class, 3));
+		assertFalse(this.sessionFactory.getCache().containsEntity(Koalibee.class, 1));
+		assertEquals(30, this.getEtaBalance(1));
+
+		assertTrue(ledgerDao.chargeBalance(1, 30, EtaEntry.PROMOTION_FEE));
+
+		assertEquals(cached, this.sessionFactory.getCache().containsEntity(Koalibee.class, 3));
+		assertFalse(this.sessionFactory.getCache().containsEntity(Koalibee.class, 1));
+		assertEquals(0, this.getEtaBalance(1));
+
+	}
+
+	@Test
+	public void testChargeBalance1() throws Exception {
+
+		assertTrue(ledgerDao.chargeBalance(3, 55, EtaEntry.PROMOTION_FEE));
+
+		assertEquals(0, this.getEtaBalance(3));
+
+		assertFalse(ledgerDao.chargeBalance(3, 1, EtaEntry.PROMOTION_FEE));
+
+		assertEquals(0, this.getEtaBalance(3));
+
+	}
+
+	@Test
+	public void testChargeBalance2() throws Exception {
+
+		ledgerDao.addEntry(new EtaEntry(2, 20, EtaEntry.MOMENT_REWARD));
+
+		// Pending rewards count towards the balance.
+		assertTrue(ledgerDao.chargeBalance(2, 60, EtaEntry.PROMOTION_FEE));
+
+		assertEquals(-20, this.getEtaBalance(2));
+
+		assertEquals(1, ledgerDao.applyPending(500));
+
+		assertEquals(0, this.getEtaBalance(2));
+
+		assertFalse(ledgerDao.chargeBalance(2, 1, EtaEntry.PROMOTION_FEE));
+
+	}
+
+	@Test
+	public void testGetPendingDeltas() throws Exception {
+
+		assertTrue(ledgerDao.getPendingDeltas(Arrays.asList(99)).isEmpty());
+
+		assertTrue(ledgerDao.getPendingDeltas(new ArrayList<>()).isEmpty());
+
+	}
+
+}
@@ -0,0 +1,168 @@
+package io.esoma.khr.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.storage.MediaStore;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = "file:src/main/webapp/WEB-INF/spring-context.xml")
+// Run tests in a fixed order to make sure the SQL script is executed before tests.
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MediaDaoImplTest {
+
+	private static Path directory;
+	private static MediaStore mediaStore;
+	private static MediaDaoImpl mediaDao;
+
+	private SessionFactory sessionFactory;
+
+	@Autowired
+	@Qualifier(value = "h2DBSessionFactory")
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	// Counts the rows that still keep media in a BLOB column.
+	private long countBlobs() {
+		try (Session session = this.sessionFactory.openSession()) {
+			return session.createQuery("SELECT COUNT(*) FROM Track AS t WHERE t.audio IS NOT NULL", Long.class)
+					.getSingleResult()
+					+ session.createQuery("SELECT COUNT(*) FROM Album AS a WHERE a.artwork IS NOT NULL", Long.class)
+							.getSingleResult()
+					+ session.createQuery("SELECT COUNT(*) FROM Koalibee AS k WHERE k.avatar IS NOT NULL", Long.class)
+							.getSingleResult();
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+
+		directory = Files.createTempDirectory("khr-media");
+		mediaStore = new MediaStore(directory.toString());
+
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+
+	}
+
+	// Use a separate instance with a store of its own, so the other DAO beans keep
+	// reading media from the database.
+	@Before
+	public void setUp() throws Exception {
+		// Will only run once.
+		if (mediaDao == null) {
+			mediaDao = new MediaDaoImpl();
+			mediaDao.setSessionFactory(this.sessionFactory);
+			mediaDao.setMediaStore(mediaStore);
+		}
+	}
+
+	// Run Test SQL script.
+	@Test
+	@Sql(scripts = "/kh-h2.sql", config = @SqlConfig(transactionManager = "h2DBHibernateTransactionManager"))
+	public void executeSql() {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testGetSessionFactory() throws Exception {
+
+		assertNotNull(mediaDao.getSessionFactory());
+
+	}
+
+	@Test
+	public void testMigrateMedia1() throws Exception {
+
+		assertEquals(3, this.countBlobs());
+
+		// Each table gives up to one row to a batch of one.
+		assertEquals(3, mediaDao.migrateMedia(1));
+
+		assertEquals(0, this.countBlobs());
+
+	}
+
+	@Test
+	public void testMigrateMedia2() throws Exception {
+
+		// Nothing is left to move.
+		assertEquals(0, mediaDao.migrateMedia(20));
+
+	}
+
+	@Test
+	public void testMigrateMedia3() throws Exception {
+
+		try (Session session = this.sessionFactory.openSession()) {
+			final Koalibee koalibee = session.get(Koalibee.class, 2);
+
+			// The content is moved as is, and only its hash is left in the row.
+			assertNull(koalibee.getAvatar());
+
+			assertEquals("JPG", koalibee.getAvatarType());
+
+			assertArrayEquals("randombytes".getBytes(), mediaStore.read(koalibee.getAvatarHash()));
+		}
+
+	}
+
+	@Test
+	public void testMigrateMedia4() throws Exception {
+
+		try (Session session = this.sessionFactory.openSession()) {
+			session.beginTransaction();
+			session.createNativeQuery("UPDATE KOALIBEE SET AVATAR = X'0102', AVATAR_TYPE = 'PNG' "
+					+ "WHERE KOALIBEE_ID IN (1, 3)").executeUpdate();
+			session.getTransaction().commit();
+		}
+
+		// The limit holds even if more rows are waiting, and the lowest IDs go first.
+		assertEquals(1, mediaDao.migrateMedia(1));
+
+		try (Session session = this.sessionFactory.openSession()) {
+			assertNotNull(session.get(Koalibee.class, 1).getAvatarHash());
+
+			assertNull(session.get(Koalibee.class, 3).getAvatarHash());
+		}
+
+		assertEquals(1, mediaDao.migrateMedia(1));
+
+		assertEquals(0, this.countBlobs());
+
+	}
+
+}
@@ -0,0 +1,93 @@
+package io.esoma.khr.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import io.esoma.khr.utility.DatabaseUtility;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = "file:src/main/webapp/WEB-INF/spring-context.xml")
+public class MetricsDaoImplTest {
+
+	private static boolean isSet;
+
+	private SessionFactory sessionFactory;
+	private MetricsDao metricsDao;
+
+	@Autowired
+	@Qualifier(value = "h2DBSessionFactory")
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	@Autowired
+	@Qualifier(value = "metricsDaoImplBasic")
+	public void setMetricsDao(MetricsDao metricsDao) {
+		this.metricsDao = metricsDao;
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	// Set to Use H2 database session factory.
+	@Before
+	public void setUp() throws Exception {
+		// Will only run once.
+		if (!isSet) {
+			((MetricsDaoImpl) this.metricsDao).setSessionFactory(this.sessionFactory);
+			isSet = true;
+		}
+	}
+
+	@Test
+	public void testGetCacheStatistics() throws Exception {
+
+		Map<String, Map<String, Long>> cacheStatistics = this.metricsDao.getCacheStatistics();
+
+		assertNotNull(cacheStatistics);
+
+		if (DatabaseUtility.isSecondLevelCacheEnabled()) {
+			assertTrue(cacheStatistics.containsKey("h2.khr.album"));
+
+			assertEquals(4, cacheStatistics.get("h2.khr.album").size());
+		} else {
+			assertTrue(cacheStatistics.isEmpty());
+		}
+
+	}
+
+	@Test
+	public void testGetPoolStatistics() throws Exception {
+
+		Map<String, Long> poolStatistics = this.metricsDao.getPoolStatistics();
+
+		assertEquals(11, poolStatistics.size());
+
+		assertTrue(poolStatistics.get("maxTotal") > 0);
+
+		assertEquals(0L, poolStatistics.get("active").longValue());
+
+	}
+
+}
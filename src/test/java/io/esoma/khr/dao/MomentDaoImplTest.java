@@ -7,6 +7,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.hibernate.SessionFactory;
@@ -219,6 +220,31 @@ public class MomentDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetMomentPage() throws Exception {
+
+		List<Moment> momentList = new ArrayList<>();
+
+		// Walk through all pages.
+		List<Moment> page = this.momentDao.getMomentPage(null, 0, 2);
+		while (!page.isEmpty()) {
+			assertTrue(page.size() <= 2);
+			assertNotNull(page.get(0).getKoalibeeName());
+			momentList.addAll(page);
+			Moment last = page.get(page.size() - 1);
+			page = this.momentDao.getMomentPage(last.getPostDate(), last.getMomentId(), 2);
+		}
+
+		assertEquals(this.momentDao.getAllMoments().size(), momentList.size());
+
+		assertEquals(new Moment(4), momentList.get(0));
+
+		for (int i = 1; i < momentList.size(); i++) {
+			assertFalse(momentList.get(i - 1).getPostDate().isBefore(momentList.get(i).getPostDate()));
+		}
+
+	}
+
 	@Test
 	public void testGetAllMomentsByDateN() throws Exception {
 
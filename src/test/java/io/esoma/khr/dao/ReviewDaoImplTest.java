@@ -7,9 +7,12 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -25,6 +28,7 @@ import org.springframework.test.context.jdbc.SqlConfig;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumRating;
 import io.esoma.khr.model.Koalibee;
 import io.esoma.khr.model.Review;
 
@@ -51,6 +55,13 @@ public class ReviewDaoImplTest {
 		this.reviewDao = reviewDao;
 	}
 
+	// Reads the stored rating statistics of an album.
+	private AlbumRating getAlbumRating(int albumId) {
+		try (Session session = this.sessionFactory.openSession()) {
+			return session.get(AlbumRating.class, albumId);
+		}
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 		// No content yet.
@@ -207,6 +218,72 @@ public class ReviewDaoImplTest {
 
 	}
 
+	@Test
+	public void testAddReviewF() throws Exception {
+
+		// Drop the statistics of the album to take the path of a first review.
+		try (Session session = this.sessionFactory.openSession()) {
+			Transaction tx = session.beginTransaction();
+			session.createQuery("DELETE FROM AlbumRating WHERE albumId = 6").executeUpdate();
+			tx.commit();
+		}
+
+		assertNull(this.getAlbumRating(6));
+
+		final Review review = new Review();
+		review.setRating(3);
+		review.setReviewComment("first one here");
+		review.setAlbum(new Album(6));
+		review.setKoalibee(new Koalibee(3));
+
+		assertNotEquals(0, this.reviewDao.addReview(review));
+
+		AlbumRating rating = this.getAlbumRating(6);
+
+		assertEquals(1, rating.getRatingCount());
+
+		assertEquals(3, rating.getRatingSum());
+
+		assertEquals(1, rating.getRating3());
+
+	}
+
+	@Test
+	public void testAddReviewN() throws Exception {
+
+		final Review review = new Review();
+		review.setRating(11);
+		review.setReviewComment("off the scale");
+		review.setAlbum(new Album(5));
+		review.setKoalibee(new Koalibee(1));
+
+		assertEquals(0, this.reviewDao.addReview(review));
+
+		assertNull(this.reviewDao.getReviewByAlbumAndKoalibee(5, 1));
+
+		assertEquals(2, this.getAlbumRating(5).getRatingCount());
+
+	}
+
+	@Test
+	public void testAddReviewR() throws Exception {
+
+		AlbumRating rating = this.getAlbumRating(4);
+
+		assertEquals(3, rating.getRatingCount());
+
+		assertEquals(18, rating.getRatingSum());
+
+		assertEquals(2, rating.getRating5());
+
+		assertEquals(1, rating.getRating8());
+
+		assertEquals(3, this.getAlbumRating(2).getRatingCount());
+
+		assertEquals(1, this.getAlbumRating(2).getRating9());
+
+	}
+
 	@Test
 	public void testDeleteReview() throws Exception {
 
@@ -218,6 +295,26 @@ public class ReviewDaoImplTest {
 
 	}
 
+	@Test
+	public void testDeleteReviewN() throws Exception {
+
+		assertFalse(this.reviewDao.deleteReview(777));
+
+	}
+
+	@Test
+	public void testDeleteReviewR() throws Exception {
+
+		AlbumRating rating = this.getAlbumRating(2);
+
+		assertEquals(2, rating.getRatingCount());
+
+		assertEquals(14, rating.getRatingSum());
+
+		assertEquals(0, rating.getRating9());
+
+	}
+
 	@Test
 	public void testGetAllReviews() throws Exception {
 
@@ -235,6 +332,28 @@ public class ReviewDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetReviewPage() throws Exception {
+
+		List<Review> reviewList = new ArrayList<>();
+
+		// Walk through all pages.
+		List<Review> page = this.reviewDao.getReviewPage(0, 3);
+		while (!page.isEmpty()) {
+			assertTrue(page.size() <= 3);
+			assertNotNull(page.get(0).getAlbumName());
+			reviewList.addAll(page);
+			page = this.reviewDao.getReviewPage(page.get(page.size() - 1).getReviewId(), 3);
+		}
+
+		assertEquals(this.reviewDao.getAllReviews().size(), reviewList.size());
+
+		for (int i = 1; i < reviewList.size(); i++) {
+			assertTrue(reviewList.get(i - 1).getReviewId() < reviewList.get(i).getReviewId());
+		}
+
+	}
+
 	@Test
 	public void testGetAllReviewsByAlbum() throws Exception {
 
@@ -281,4 +400,63 @@ public class ReviewDaoImplTest {
 
 	}
 
+	@Test
+	public void testRebuildRatings() throws Exception {
+
+		assertTrue(this.reviewDao.rebuildRatings());
+
+		AlbumRating rating = this.getAlbumRating(6);
+
+		assertEquals(3, rating.getRatingCount());
+
+		assertEquals(11, rating.getRatingSum());
+
+		assertEquals(1, rating.getRating1());
+
+		assertEquals(1, rating.getRating3());
+
+		assertEquals(1, rating.getRating7());
+
+		assertEquals(18, this.getAlbumRating(4).getRatingSum());
+
+		assertEquals(14, this.getAlbumRating(2).getRatingSum());
+
+		assertNull(this.getAlbumRating(3));
+
+	}
+
+	@Test
+	public void testRebuildRatingsO() throws Exception {
+
+		// Reviews stored before ratings were checked may be out of range.
+		try (Session session = this.sessionFactory.openSession()) {
+			Transaction tx = session.beginTransaction();
+			session.createNativeQuery("INSERT INTO REVIEW (REVIEW_ID, RATING, REVIEW_COMMENT, ALBUM_ID, KOALIBEE_ID) "
+					+ "VALUES (NEXTVAL('SEQ_REVIEW_ID'), 12, 'off the old scale', 5, 1)").executeUpdate();
+			tx.commit();
+		}
+
+		assertTrue(this.reviewDao.rebuildRatings());
+
+		AlbumRating rating = this.getAlbumRating(5);
+
+		assertEquals(3, rating.getRatingCount());
+
+		assertEquals(26, rating.getRatingSum());
+
+		// Deleting it takes it out of the count and the sum only.
+		assertTrue(this.reviewDao.deleteReview(this.reviewDao.getReviewByAlbumAndKoalibee(5, 1).getReviewId()));
+
+		rating = this.getAlbumRating(5);
+
+		assertEquals(2, rating.getRatingCount());
+
+		assertEquals(14, rating.getRatingSum());
+
+		assertEquals(1, rating.getRating6());
+
+		assertEquals(1, rating.getRating8());
+
+	}
+
 }
@@ -0,0 +1,136 @@
+package io.esoma.khr.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.hibernate.SessionFactory;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import io.esoma.khr.model.Thumbnail;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = "file:src/main/webapp/WEB-INF/spring-context.xml")
+// Run tests in a fixed order to make sure the SQL script is executed before tests.
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ThumbnailDaoImplTest {
+
+	private static ThumbnailDaoImpl thumbnailDao;
+
+	private SessionFactory sessionFactory;
+
+	@Autowired
+	@Qualifier(value = "h2DBSessionFactory")
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		// Will only run once.
+		if (thumbnailDao == null) {
+			thumbnailDao = new ThumbnailDaoImpl();
+			thumbnailDao.setSessionFactory(this.sessionFactory);
+		}
+	}
+
+	// Run Test SQL script.
+	@Test
+	@Sql(scripts = "/kh-h2.sql", config = @SqlConfig(transactionManager = "h2DBHibernateTransactionManager"))
+	public void executeSql() {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testGetSessionFactory() throws Exception {
+
+		assertNotNull(thumbnailDao.getSessionFactory());
+
+	}
+
+	@Test
+	public void testReplaceArtworkThumbnails1() throws Exception {
+
+		assertTrue(thumbnailDao.replaceArtworkThumbnails(1, Arrays.asList(new Thumbnail(64, "s".getBytes(), "JPEG"),
+				new Thumbnail(160, "m".getBytes(), "JPEG"))));
+
+		final Thumbnail thumbnail = thumbnailDao.getArtworkThumbnail(1, 160);
+
+		assertEquals("m", new String(thumbnail.getImage()));
+
+		assertEquals("JPEG", thumbnail.getImageType());
+
+		assertNull(thumbnailDao.getArtworkThumbnail(1, 320));
+
+	}
+
+	@Test
+	public void testReplaceArtworkThumbnails2() throws Exception {
+
+		assertTrue(thumbnailDao.replaceArtworkThumbnails(1, Arrays.asList(new Thumbnail(64, "n".getBytes(), "PNG"))));
+
+		// The old thumbnails are gone.
+		assertEquals("n", new String(thumbnailDao.getArtworkThumbnail(1, 64).getImage()));
+
+		assertNull(thumbnailDao.getArtworkThumbnail(1, 160));
+
+	}
+
+	@Test
+	public void testReplaceAvatarThumbnails1() throws Exception {
+
+		assertTrue(thumbnailDao.replaceAvatarThumbnails(1, Arrays.asList(new Thumbnail(64, "a".getBytes(), "PNG"))));
+
+		assertEquals("a", new String(thumbnailDao.getAvatarThumbnail(1, 64).getImage()));
+
+		// The artwork of the album with the same ID is kept apart.
+		assertEquals("n", new String(thumbnailDao.getArtworkThumbnail(1, 64).getImage()));
+
+	}
+
+	@Test
+	public void testReplaceAvatarThumbnails2() throws Exception {
+
+		assertTrue(thumbnailDao.replaceAvatarThumbnails(1, new ArrayList<>()));
+
+		assertNull(thumbnailDao.getAvatarThumbnail(1, 64));
+
+		assertNotNull(thumbnailDao.getArtworkThumbnail(1, 64));
+
+	}
+
+	@Test
+	public void testGetAvatarThumbnail() throws Exception {
+
+		assertNull(thumbnailDao.getAvatarThumbnail(99, 64));
+
+	}
+
+}
@@ -7,6 +7,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.hibernate.SessionFactory;
@@ -14,7 +17,9 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +31,8 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import io.esoma.khr.model.Album;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.storage.MediaStore;
+import io.esoma.khr.utility.DataUtility;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = "file:src/main/webapp/WEB-INF/spring-context.xml")
@@ -38,6 +45,9 @@ public class TrackDaoImplTest {
 	private SessionFactory sessionFactory;
 	private TrackDao trackDao;
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Autowired
 	@Qualifier(value = "h2DBSessionFactory")
 	public void setSessionFactory(SessionFactory sessionFactory) {
@@ -142,6 +152,73 @@ public class TrackDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetTrackAudioDetails1() throws Exception {
+
+		Track track = this.trackDao.getTrackAudioDetails(10);
+
+		assertNotNull(track);
+
+		assertEquals(31, track.getAudioSize());
+
+		assertEquals("MP3", track.getAudioType());
+
+		assertEquals(5, track.getAlbum().getAlbumId());
+
+		assertEquals("T", track.getAlbum().getIsPublished());
+
+	}
+
+	@Test
+	public void testGetTrackAudioDetailsN() throws Exception {
+
+		assertNull(this.trackDao.getTrackAudioDetails(1));
+
+		assertNull(this.trackDao.getTrackAudioDetails(25));
+
+	}
+
+	@Test
+	public void testWriteTrackAudio1() throws Exception {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(31, this.trackDao.writeTrackAudio(10, 0, 31, out));
+
+		assertEquals("point 20 in hex, 32 in decimal.", out.toString());
+
+	}
+
+	@Test
+	public void testWriteTrackAudio2() throws Exception {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(2, this.trackDao.writeTrackAudio(10, 6, 2, out));
+
+		assertEquals("20", out.toString());
+
+	}
+
+	@Test
+	public void testWriteTrackAudio3() throws Exception {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		// The range is cut at the end of the audio.
+		assertEquals(2, this.trackDao.writeTrackAudio(10, 29, 10, out));
+
+		assertEquals("l.", out.toString());
+
+	}
+
+	@Test
+	public void testWriteTrackAudioN() throws Exception {
+
+		assertEquals(-1, this.trackDao.writeTrackAudio(1, 0, 10, new ByteArrayOutputStream()));
+
+	}
+
 	@Test
 	public void testAddTrack1() throws Exception {
 
@@ -189,6 +266,58 @@ public class TrackDaoImplTest {
 
 	}
 
+	@Test
+	public void testAddTracks1() throws Exception {
+
+		final Album album = new Album(4);
+
+		final List<Track> trackList = new ArrayList<>();
+		for (String name : new String[] { "Bebe", "Bubu" }) {
+			Track track = new Track();
+			track.setTrackName(name);
+			track.setComposer("West");
+			track.setTrackLength(100);
+			track.setAudio("Some tunes".getBytes());
+			track.setAudioType("MP3");
+			track.setIsDemo("F");
+			track.setAlbum(album);
+			trackList.add(track);
+		}
+
+		List<Integer> idList = this.trackDao.addTracks(trackList);
+
+		assertEquals(2, idList.size());
+
+		assertEquals("Bebe", this.trackDao.getTrackById(idList.get(0)).getTrackName());
+
+		assertEquals("Bubu", this.trackDao.getTrackById(idList.get(1)).getTrackName());
+
+		assertEquals(3, this.trackDao.getAllTracksByAlbum(4).size());
+
+	}
+
+	@Test
+	public void testAddTracks2() throws Exception {
+
+		final List<Track> trackList = new ArrayList<>();
+		for (int albumId : new int[] { 2, 999 }) {
+			Track track = new Track();
+			track.setTrackName("Orphan");
+			track.setComposer("Nobody");
+			track.setTrackLength(100);
+			track.setAudio("Lost tunes".getBytes());
+			track.setAudioType("OGG");
+			track.setIsDemo("F");
+			track.setAlbum(new Album(albumId));
+			trackList.add(track);
+		}
+
+		assertTrue(this.trackDao.addTracks(trackList).isEmpty());
+
+		assertEquals(2, this.trackDao.getAllTracksByAlbum(2).size());
+
+	}
+
 	@Test
 	public void testDeleteTrack() throws Exception {
 
@@ -215,6 +344,49 @@ public class TrackDaoImplTest {
 
 	}
 
+	@Test
+	public void testGetTrackPage() throws Exception {
+
+		List<Track> trackList = new ArrayList<>();
+
+		// Walk through all pages.
+		List<Track> page = this.trackDao.getTrackPage(null, 0, 5);
+		while (!page.isEmpty()) {
+			assertTrue(page.size() <= 5);
+			for (Track t : page) {
+				assertNull(t.getAudio());
+				assertNull(t.getAlbum());
+			}
+			trackList.addAll(page);
+			Track last = page.get(page.size() - 1);
+			page = this.trackDao.getTrackPage(last.getTrackName(), last.getTrackId(), 5);
+		}
+
+		assertEquals(this.trackDao.getAllTracks().size(), trackList.size());
+
+		for (int i = 1; i < trackList.size(); i++) {
+			assertTrue(trackList.get(i - 1).getTrackName().compareTo(trackList.get(i).getTrackName()) <= 0);
+		}
+
+	}
+
+	@Test
+	public void testStreamTracks() throws Exception {
+
+		final List<Track> trackList = new ArrayList<>();
+
+		final int count = this.trackDao.streamTracks(t -> {
+			assertNull(t.getAudio());
+			trackList.add(t);
+		});
+
+		assertEquals(trackList.size(), count);
+
+		// Same tracks in the same order as the pages.
+		assertEquals(this.trackDao.getTrackPage(null, 0, 200), trackList);
+
+	}
+
 	@Test
 	public void testGetAllTracksByAlbum1() throws Exception {
 
@@ -237,4 +409,75 @@ public class TrackDaoImplTest {
 
 	}
 
+	@Test
+	public void testUpdateTrackAudio1() throws Exception {
+
+		final byte[] audio = "uploaded mazeppa".getBytes();
+
+		assertTrue(this.trackDao.updateTrackAudio(1, "WAV", new ByteArrayInputStream(audio), audio.length));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(audio.length, this.trackDao.writeTrackAudio(1, 0, audio.length, out));
+
+		assertEquals("uploaded mazeppa", out.toString());
+
+		assertEquals("WAV", this.trackDao.getTrackById(1).getAudioType());
+
+	}
+
+	@Test
+	public void testUpdateTrackAudio2() throws Exception {
+
+		// A truncated upload leaves the track unchanged.
+		assertFalse(this.trackDao.updateTrackAudio(2, "WAV",
+				DataUtility.limitUpload(new ByteArrayInputStream("short".getBytes()), 10), 10));
+
+		assertEquals("MP3", this.trackDao.getTrackById(2).getAudioType());
+
+	}
+
+	@Test
+	public void testUpdateTrackAudio3() throws Exception {
+
+		final TrackDaoImpl trackDaoImpl = (TrackDaoImpl) this.trackDao;
+		final byte[] audio = "stored mazeppa".getBytes();
+
+		// Uploads go to the media store once it is enabled.
+		trackDaoImpl.setMediaStore(new MediaStore(this.folder.getRoot().getPath()));
+		try {
+			assertTrue(this.trackDao.updateTrackAudio(1, "OGG", new ByteArrayInputStream(audio), audio.length));
+
+			Track track = this.trackDao.getTrackAudioDetails(1);
+
+			assertNotNull(track.getAudioHash());
+
+			assertEquals(audio.length, track.getAudioSize());
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+			assertEquals(6, this.trackDao.writeTrackAudio(1, 7, 6, out));
+
+			assertEquals("mazepp", out.toString());
+		} finally {
+			trackDaoImpl.setMediaStore(new MediaStore(""));
+		}
+
+		// An upload to the database clears the hash.
+		assertTrue(this.trackDao.updateTrackAudio(1, "OGG", new ByteArrayInputStream(audio), audio.length));
+
+		assertNull(this.trackDao.getTrackAudioDetails(1).getAudioHash());
+
+	}
+
+	@Test
+	public void testUpdateTrackAudioU() throws Exception {
+
+		// Tracks of published albums cannot be changed.
+		assertFalse(this.trackDao.updateTrackAudio(9, "WAV", new ByteArrayInputStream(new byte[3]), 3));
+
+		assertFalse(this.trackDao.updateTrackAudio(777, "WAV", new ByteArrayInputStream(new byte[3]), 3));
+
+	}
+
 }
@@ -0,0 +1,184 @@
+package io.esoma.khr.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Genre;
+import io.esoma.khr.model.SearchHit;
+import io.esoma.khr.model.Track;
+
+public class CatalogIndexTest {
+
+	private CatalogIndex catalogIndex;
+
+	// Creates an album of the given genre.
+	private static Album album(int albumId, String albumName, String artist, String genreName) {
+		final Album album = new Album(albumId);
+		album.setAlbumName(albumName);
+		album.setArtist(artist);
+		album.setGenre(new Genre(1, genreName));
+		return album;
+	}
+
+	// Creates a track of the given album.
+	private static Track track(int trackId, String trackName, String composer, Album album) {
+		final Track track = new Track(trackId, trackName, composer, 180, "F");
+		track.setAlbum(album);
+		return track;
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		final Album album1 = album(1, "Blue Moon", "Koala Band", "Jazz");
+		final Album album2 = album(2, "Moonlight", "Eddy", "Rock");
+
+		this.catalogIndex = new CatalogIndex();
+		this.catalogIndex.load(Arrays.asList(album1, album2),
+				Arrays.asList(track(1, "Blue Skies", "Koala", album1), track(2, "Moon River", "Eddy", album2),
+						track(3, "Lost Song", "Nobody", new Album(9))));
+
+	}
+
+	@Test
+	public void testNormalize() throws Exception {
+
+		assertEquals("blue moon la la", CatalogIndex.normalize("  Blue--MOON  la La "));
+
+		assertEquals("", CatalogIndex.normalize(null));
+
+		assertEquals("", CatalogIndex.normalize(" !? "));
+
+	}
+
+	@Test
+	public void testTokenize() throws Exception {
+
+		assertEquals(Arrays.asList("cafe", "creme", "42"),
+				Arrays.asList(CatalogIndex.tokenize("Caf\u00e9--CR\u00c8ME 42 cafe\u0301").toArray()));
+
+		assertTrue(CatalogIndex.tokenize(null).isEmpty());
+
+		assertTrue(CatalogIndex.tokenize(" !? ").isEmpty());
+
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+
+		// Tracks of albums that are not loaded are left out.
+		assertEquals(4, this.catalogIndex.size());
+
+		assertTrue(this.catalogIndex.search("lost").isEmpty());
+
+	}
+
+	@Test
+	public void testSearch1() throws Exception {
+
+		final List<SearchHit> hitList = this.catalogIndex.search("MOON");
+
+		// Ties list albums before tracks.
+		assertEquals(2, hitList.size());
+		assertEquals(SearchHit.ALBUM, hitList.get(0).getType());
+		assertEquals(1, hitList.get(0).getId());
+		assertEquals(CatalogIndex.NAME_WEIGHT, hitList.get(0).getScore());
+		assertEquals(CatalogIndex.NAME_WEIGHT, hitList.get(1).getScore());
+		assertEquals(SearchHit.TRACK, hitList.get(1).getType());
+		assertEquals(2, hitList.get(1).getId());
+		assertEquals(2, hitList.get(1).getAlbumId());
+		assertEquals("Rock", hitList.get(1).getGenreName());
+
+	}
+
+	@Test
+	public void testSearch2() throws Exception {
+
+		final List<SearchHit> hitList = this.catalogIndex.search("koala blue");
+
+		// Every term must match, and the weights of all terms are added up.
+		assertEquals(2, hitList.size());
+		assertEquals(CatalogIndex.NAME_WEIGHT + CatalogIndex.ARTIST_WEIGHT, hitList.get(0).getScore());
+		assertEquals(SearchHit.ALBUM, hitList.get(0).getType());
+		assertEquals(SearchHit.TRACK, hitList.get(1).getType());
+
+		assertTrue(this.catalogIndex.search("koala rock").isEmpty());
+
+	}
+
+	@Test
+	public void testSearch3() throws Exception {
+
+		assertEquals(1, this.catalogIndex.search("jazz").size());
+
+		assertTrue(this.catalogIndex.search("").isEmpty());
+
+		assertTrue(this.catalogIndex.search(null).isEmpty());
+
+	}
+
+	@Test
+	public void testAddAlbum() throws Exception {
+
+		final Album album = album(2, "Sunrise", "Eddy", "Rock");
+
+		this.catalogIndex.addAlbum(album, Arrays.asList(track(4, "Morning", "Eddy", album)));
+
+		// The previous entry of the album and its tracks are replaced.
+		assertTrue(this.catalogIndex.search("moonlight").isEmpty());
+		assertTrue(this.catalogIndex.search("river").isEmpty());
+		assertEquals(2, this.catalogIndex.search("sunrise").get(0).getId());
+		assertEquals(4, this.catalogIndex.search("morning").get(0).getId());
+		assertEquals(4, this.catalogIndex.size());
+
+	}
+
+	@Test
+	public void testRemoveAlbum() throws Exception {
+
+		this.catalogIndex.removeAlbum(1);
+
+		assertTrue(this.catalogIndex.search("blue").isEmpty());
+		assertEquals(2, this.catalogIndex.size());
+
+		// Unknown albums are ignored.
+		this.catalogIndex.removeAlbum(99);
+
+		assertEquals(2, this.catalogIndex.size());
+
+	}
+
+	@Test
+	public void testRemoveTrack() throws Exception {
+
+		this.catalogIndex.removeTrack(2);
+
+		assertEquals(1, this.catalogIndex.search("moon").size());
+		assertEquals(3, this.catalogIndex.size());
+
+		this.catalogIndex.removeAlbum(2);
+
+		assertEquals(2, this.catalogIndex.size());
+
+	}
+
+}
@@ -0,0 +1,105 @@
+package io.esoma.khr.index;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class EmailFilterTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Test
+	public void testMightContainNotReady() throws Exception {
+
+		final EmailFilter emailFilter = new EmailFilter();
+
+		assertFalse(emailFilter.isReady());
+
+		assertTrue(emailFilter.mightContain("anything@koalibee.com"));
+
+	}
+
+	@Test
+	public void testRebuild() throws Exception {
+
+		final EmailFilter emailFilter = new EmailFilter();
+		emailFilter.rebuild(Arrays.asList("good.user@koalibee.com", "my.music@koalibee.com"));
+
+		assertTrue(emailFilter.isReady());
+
+		assertTrue(emailFilter.mightContain("good.user@koalibee.com"));
+
+		assertTrue(emailFilter.mightContain("my.music@koalibee.com"));
+
+		assertFalse(emailFilter.mightContain("new.user@koalibee.com"));
+
+	}
+
+	@Test
+	public void testRebuildEmpty() throws Exception {
+
+		final EmailFilter emailFilter = new EmailFilter();
+		emailFilter.rebuild(new ArrayList<String>());
+
+		assertFalse(emailFilter.isReady());
+
+		assertTrue(emailFilter.mightContain("new.user@koalibee.com"));
+
+	}
+
+	@Test
+	public void testPut() throws Exception {
+
+		final EmailFilter emailFilter = new EmailFilter();
+		emailFilter.rebuild(Arrays.asList("good.user@koalibee.com"));
+
+		assertFalse(emailFilter.mightContain("new.user@koalibee.com"));
+
+		emailFilter.put("new.user@koalibee.com");
+
+		assertTrue(emailFilter.mightContain("new.user@koalibee.com"));
+
+	}
+
+	@Test
+	public void testFalsePositiveRate() throws Exception {
+
+		final List<String> emails = new ArrayList<>();
+		for (int i = 0; i < 10000; ++i) {
+			emails.add("user" + i + "@koalibee.com");
+		}
+
+		final EmailFilter emailFilter = new EmailFilter();
+		emailFilter.rebuild(emails);
+
+		for (String email : emails) {
+			assertTrue(emailFilter.mightContain(email));
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; ++i) {
+			if (emailFilter.mightContain("other" + i + "@koalibee.com")) {
+				++falsePositives;
+			}
+		}
+
+		assertTrue(falsePositives < 200);
+
+	}
+
+}
@@ -0,0 +1,135 @@
+package io.esoma.khr.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OwnershipIndexTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Test
+	public void testOwnsNotLoaded() throws Exception {
+
+		final OwnershipIndex ownershipIndex = new OwnershipIndex();
+
+		assertNull(ownershipIndex.owns(1, 1));
+
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+
+		final OwnershipIndex ownershipIndex = new OwnershipIndex();
+		ownershipIndex.load(1, Arrays.asList(70, 2, 5), ownershipIndex.getStamp(1));
+
+		assertTrue(ownershipIndex.owns(1, 5));
+
+		assertTrue(ownershipIndex.owns(1, 70));
+
+		assertFalse(ownershipIndex.owns(1, 3));
+
+		assertFalse(ownershipIndex.owns(1, 1000));
+
+		assertNull(ownershipIndex.owns(2, 5));
+
+	}
+
+	@Test
+	public void testLoadStale() throws Exception {
+
+		final OwnershipIndex ownershipIndex = new OwnershipIndex();
+		final long stamp = ownershipIndex.getStamp(1);
+
+		ownershipIndex.addPurchase(1, 9);
+		ownershipIndex.load(1, Arrays.asList(2), stamp);
+
+		assertNull(ownershipIndex.owns(1, 9));
+
+	}
+
+	@Test
+	public void testLoadOther() throws Exception {
+
+		final OwnershipIndex ownershipIndex = new OwnershipIndex();
+		final long stamp = ownershipIndex.getStamp(1);
+
+		// Purchases of other koalibees do not discard the load.
+		ownershipIndex.addPurchase(2, 9);
+		ownershipIndex.load(1, Arrays.asList(2), stamp);
+
+		assertTrue(ownershipIndex.owns(1, 2));
+
+	}
+
+	@Test
+	public void testAddPurchase() throws Exception {
+
+		final OwnershipIndex ownershipIndex = new OwnershipIndex();
+		ownershipIndex.load(1, Arrays.asList(2), ownershipIndex.getStamp(1));
+		ownershipIndex.addPurchase(1, 4);
+		ownershipIndex.addPurchase(1, 1);
+		ownershipIndex.addPurchase(1, 4);
+		ownershipIndex.addPurchase(3, 4);
+
+		assertTrue(ownershipIndex.owns(1, 4));
+
+		assertTrue(ownershipIndex.owns(1, 1));
+
+		assertTrue(ownershipIndex.owns(1, 2));
+
+		assertFalse(ownershipIndex.owns(1, 3));
+
+		assertNull(ownershipIndex.owns(3, 4));
+
+	}
+
+	@Test
+	public void testEvict() throws Exception {
+
+		final OwnershipIndex ownershipIndex = new OwnershipIndex();
+		ownershipIndex.load(1, Arrays.asList(2), ownershipIndex.getStamp(1));
+		ownershipIndex.load(2, Arrays.asList(2), ownershipIndex.getStamp(2));
+		ownershipIndex.evict(1);
+
+		assertNull(ownershipIndex.owns(1, 2));
+
+		assertEquals(1, ownershipIndex.size());
+
+		ownershipIndex.clear();
+
+		assertEquals(0, ownershipIndex.size());
+
+	}
+
+	@Test
+	public void testCapacity() throws Exception {
+
+		final OwnershipIndex ownershipIndex = new OwnershipIndex(2);
+		ownershipIndex.load(1, Arrays.asList(1), ownershipIndex.getStamp(1));
+		ownershipIndex.load(2, Arrays.asList(2), ownershipIndex.getStamp(2));
+		ownershipIndex.load(3, Arrays.asList(3), ownershipIndex.getStamp(3));
+
+		assertEquals(2, ownershipIndex.size());
+
+		// The koalibee just loaded is never the one dropped.
+		assertTrue(ownershipIndex.owns(3, 3));
+
+	}
+
+}
@@ -0,0 +1,190 @@
+package io.esoma.khr.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.esoma.khr.model.Moment;
+
+public class RecentMomentsTest {
+
+	private static final LocalDate DAY1 = LocalDate.parse("2019-03-01");
+	private static final LocalDate DAY2 = LocalDate.parse("2019-03-02");
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Test
+	public void testGetPageNotLoaded() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments();
+
+		assertNull(recentMoments.getPage(null, 0, 10));
+
+		assertEquals(0, recentMoments.size());
+
+	}
+
+	@Test
+	public void testGetPage() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments(4);
+		recentMoments.load(Arrays.asList(new Moment(9, DAY2), new Moment(7, DAY2), new Moment(8, DAY1)),
+				recentMoments.getStamp());
+
+		assertEquals(Arrays.asList(new Moment(9), new Moment(7)), recentMoments.getPage(null, 0, 2));
+
+		assertEquals(Arrays.asList(new Moment(8)), recentMoments.getPage(DAY2, 7, 2));
+
+		// A cursor between two buffered moments.
+		assertEquals(Arrays.asList(new Moment(7), new Moment(8)), recentMoments.getPage(DAY2, 8, 5));
+
+		assertTrue(recentMoments.getPage(DAY1, 8, 2).isEmpty());
+
+	}
+
+	@Test
+	public void testGetPagePastEnd() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments(2);
+		recentMoments.load(Arrays.asList(new Moment(9, DAY2), new Moment(8, DAY1)), recentMoments.getStamp());
+
+		assertEquals(2, recentMoments.getPage(null, 0, 2).size());
+
+		// Older moments may only be in the database.
+		assertNull(recentMoments.getPage(DAY2, 9, 2));
+
+	}
+
+	@Test
+	public void testLoadStale() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments();
+		final long stamp = recentMoments.getStamp();
+
+		recentMoments.remove(5);
+		recentMoments.load(Arrays.asList(new Moment(5, DAY1)), stamp);
+
+		assertNull(recentMoments.getPage(null, 0, 10));
+
+	}
+
+	@Test
+	public void testAdd() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments(3);
+		recentMoments.load(Arrays.asList(new Moment(7, DAY2), new Moment(8, DAY1)), recentMoments.getStamp());
+		recentMoments.add(new Moment(12, DAY2));
+		recentMoments.add(new Moment(12, DAY2));
+
+		assertEquals(Arrays.asList(new Moment(12), new Moment(7), new Moment(8)), recentMoments.getPage(null, 0, 3));
+
+		// The oldest moment is pushed out, so the end is no longer known.
+		recentMoments.add(new Moment(13, DAY2));
+
+		assertEquals(Arrays.asList(new Moment(13), new Moment(12), new Moment(7)),
+				recentMoments.getPage(null, 0, 3));
+
+		assertNull(recentMoments.getPage(DAY2, 7, 1));
+
+		// Moments older than a full buffer are left out.
+		recentMoments.add(new Moment(2, DAY1));
+
+		assertEquals(3, recentMoments.size());
+
+		assertEquals(new Moment(7), recentMoments.getPage(DAY2, 12, 1).get(0));
+
+	}
+
+	@Test
+	public void testAddNotLoaded() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments();
+		final long stamp = recentMoments.getStamp();
+
+		recentMoments.add(new Moment(1, DAY1));
+
+		assertNull(recentMoments.getPage(null, 0, 10));
+
+		recentMoments.load(new ArrayList<Moment>(), stamp);
+
+		assertNull(recentMoments.getPage(null, 0, 10));
+
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments();
+		recentMoments.load(Arrays.asList(new Moment(7, DAY2), new Moment(8, DAY1)), recentMoments.getStamp());
+		recentMoments.remove(7);
+		recentMoments.remove(99);
+
+		assertEquals(Arrays.asList(new Moment(8)), recentMoments.getPage(null, 0, 10));
+
+	}
+
+	@Test
+	public void testClear() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments();
+		recentMoments.load(Arrays.asList(new Moment(7, DAY2)), recentMoments.getStamp());
+		recentMoments.clear();
+
+		assertNull(recentMoments.getPage(null, 0, 10));
+
+		assertEquals(0, recentMoments.size());
+
+	}
+
+	@Test
+	public void testAddConcurrent() throws Exception {
+
+		final RecentMoments recentMoments = new RecentMoments();
+		recentMoments.load(new ArrayList<Moment>(), recentMoments.getStamp());
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t;
+			futures.add(executor.submit(() -> {
+				for (int i = 1; i <= 100; i++) {
+					recentMoments.add(new Moment(i * 4 - offset, DAY1));
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		List<Moment> momentList = recentMoments.getPage(null, 0, 1000);
+
+		assertEquals(400, momentList.size());
+
+		for (int i = 0; i < momentList.size(); i++) {
+			assertEquals(400 - i, momentList.get(i).getMomentId());
+		}
+
+	}
+
+}
@@ -0,0 +1,174 @@
+package io.esoma.khr.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Track;
+
+public class SuggestIndexTest {
+
+	private SuggestIndex suggestIndex;
+
+	// Creates an album without a genre.
+	private static Album album(int albumId, String albumName, String artist) {
+		final Album album = new Album(albumId);
+		album.setAlbumName(albumName);
+		album.setArtist(artist);
+		return album;
+	}
+
+	// Creates a track of the given album.
+	private static Track track(int trackId, String composer, Album album) {
+		final Track track = new Track(trackId, "Track " + trackId, composer, 180, "F");
+		track.setAlbum(album);
+		return track;
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		final Album album1 = album(1, "Blue Moon", "Koala Band");
+		final Album album2 = album(2, "Moonlight", "Eddy");
+		final Album album3 = album(3, "Koalas", "Eddy");
+
+		final Map<Integer, Integer> purchaseCounts = new HashMap<>();
+		purchaseCounts.put(2, 5);
+		purchaseCounts.put(3, 1);
+
+		this.suggestIndex = new SuggestIndex();
+		this.suggestIndex.load(Arrays.asList(album1, album2, album3), Arrays.asList(track(1, "Mozart", album1),
+				track(2, "Eddy", album2), track(3, "Nobody", new Album(9))), purchaseCounts);
+
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+
+		// Names are counted once, and tracks of albums that are not loaded are left
+		// out.
+		assertEquals(6, this.suggestIndex.size());
+
+		assertTrue(this.suggestIndex.suggest("nob", 10, null).isEmpty());
+
+	}
+
+	@Test
+	public void testSuggest1() throws Exception {
+
+		// Any word of a name can be completed. Ties are listed in alphabetical order.
+		assertEquals(Arrays.asList("Moonlight", "Blue Moon", "Mozart"), this.suggestIndex.suggest("MO", 10, null));
+
+		assertEquals(Arrays.asList("Moonlight"), this.suggestIndex.suggest("mo", 1, null));
+
+		assertEquals(Arrays.asList("Blue Moon"), this.suggestIndex.suggest("blue  m", 10, null));
+
+	}
+
+	@Test
+	public void testSuggest2() throws Exception {
+
+		// Only the allowed albums are searched and counted.
+		assertEquals(Arrays.asList("Blue Moon", "Mozart"), this.suggestIndex.suggest("mo", 10, Arrays.asList(1)));
+
+		assertEquals(Arrays.asList("Eddy"), this.suggestIndex.suggest("ed", 10, Arrays.asList(3)));
+
+	}
+
+	@Test
+	public void testSuggest3() throws Exception {
+
+		assertTrue(this.suggestIndex.suggest("", 10, null).isEmpty());
+
+		assertTrue(this.suggestIndex.suggest(null, 10, null).isEmpty());
+
+		assertTrue(this.suggestIndex.suggest("mo", 0, null).isEmpty());
+
+		assertTrue(this.suggestIndex.suggest("zebra", 10, null).isEmpty());
+
+	}
+
+	@Test
+	public void testAddPurchase() throws Exception {
+
+		for (int i = 0; i < 6; i++) {
+			this.suggestIndex.addPurchase(1);
+		}
+
+		assertEquals(Arrays.asList("Blue Moon", "Mozart", "Moonlight"), this.suggestIndex.suggest("mo", 10, null));
+
+		assertEquals(Arrays.asList("Koala Band", "Koalas"), this.suggestIndex.suggest("koala", 10, null));
+
+	}
+
+	@Test
+	public void testAddAlbum() throws Exception {
+
+		final Album album = album(3, "Sunrise", "Nanjo");
+
+		this.suggestIndex.addAlbum(album, Arrays.asList(track(4, "Liszt", album)));
+
+		// The previous names of the album are replaced.
+		assertEquals(Arrays.asList("Koala Band"), this.suggestIndex.suggest("koala", 10, null));
+		assertEquals(Arrays.asList("Liszt"), this.suggestIndex.suggest("l", 10, null));
+		assertEquals(Arrays.asList("Eddy"), this.suggestIndex.suggest("eddy", 10, null));
+		assertEquals(8, this.suggestIndex.size());
+
+	}
+
+	@Test
+	public void testRemoveAlbum() throws Exception {
+
+		this.suggestIndex.removeAlbum(2);
+
+		// Names shared with another album are kept.
+		assertEquals(Arrays.asList("Blue Moon", "Mozart"), this.suggestIndex.suggest("mo", 10, null));
+		assertEquals(Arrays.asList("Eddy"), this.suggestIndex.suggest("ed", 10, null));
+		assertEquals(5, this.suggestIndex.size());
+
+		// Unknown albums are ignored.
+		this.suggestIndex.removeAlbum(99);
+
+		assertEquals(5, this.suggestIndex.size());
+
+		// The purchases of the album are forgotten as well.
+		this.suggestIndex.addAlbum(album(2, "Moonlight", "Eddy"), Arrays.asList());
+
+		assertEquals(Arrays.asList("Blue Moon", "Moonlight", "Mozart"), this.suggestIndex.suggest("mo", 10, null));
+
+	}
+
+	@Test
+	public void testRemoveTrack() throws Exception {
+
+		this.suggestIndex.removeTrack(1);
+
+		assertTrue(this.suggestIndex.suggest("moz", 10, null).isEmpty());
+		assertEquals(5, this.suggestIndex.size());
+
+		this.suggestIndex.removeTrack(3);
+
+		assertEquals(5, this.suggestIndex.size());
+
+	}
+
+}
@@ -2,15 +2,34 @@ package io.esoma.khr.service;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -22,19 +41,32 @@ import org.junit.runners.MethodSorters;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.esoma.khr.dao.AlbumDao;
 import io.esoma.khr.dao.KoalibeeDao;
 import io.esoma.khr.dao.TrackDao;
+import io.esoma.khr.index.CatalogIndex;
+import io.esoma.khr.index.SuggestIndex;
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumData;
+import io.esoma.khr.model.CachedPage;
+import io.esoma.khr.model.EtaEntry;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Review;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.storage.MediaStore;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class AlbumServiceTest {
 
+	private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
 	private static List<Track> trackList;
 	private static List<Album> unpublishedList;
 	private static List<Album> fancyList;
@@ -48,6 +80,16 @@ public class AlbumServiceTest {
 	private KoalibeeDao koalibeeDao;
 	@Mock
 	private TrackDao trackDao;
+	@Mock
+	private LedgerService ledgerService;
+	@Mock
+	private ThumbnailService thumbnailService;
+	@Mock
+	private CatalogIndex catalogIndex;
+	@Mock
+	private SuggestIndex suggestIndex;
+	@Mock
+	private MediaStore mediaStore;
 
 	{
 		this.albumService = new AlbumService();
@@ -56,6 +98,11 @@ public class AlbumServiceTest {
 		MockitoAnnotations.initMocks(KoalibeeServiceTest.class);
 	}
 
+	// Binds a request body the way the JSON message converter does.
+	private static <T> T bind(String source, Class<T> type) throws Exception {
+		return OBJECT_MAPPER.readValue(source, type);
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 
@@ -106,6 +153,9 @@ public class AlbumServiceTest {
 		fancyList.get(2).setArtwork("2".getBytes());
 		fancyList.get(2).setArtworkType("BMP");
 		fancyList.get(2).setArtworkDataUrl("UUU");
+		unpublishedList.get(2).setArtworkType(null);
+		trackList.get(0).setAudioType("OGG");
+		trackList.get(1).setAudioType("MP3");
 
 		when(this.albumDao.getAlbumById(anyInt())).thenReturn(null);
 		when(this.albumDao.getAlbumById(2)).thenReturn(unpublishedList.get(0));
@@ -128,6 +178,11 @@ public class AlbumServiceTest {
 		this.albumService.setAlbumDao(this.albumDao);
 		this.albumService.setKoalibeeDao(this.koalibeeDao);
 		this.albumService.setTrackDao(this.trackDao);
+		this.albumService.setLedgerService(this.ledgerService);
+		this.albumService.setThumbnailService(this.thumbnailService);
+		this.albumService.setCatalogIndex(this.catalogIndex);
+		this.albumService.setSuggestIndex(this.suggestIndex);
+		this.albumService.setMediaStore(this.mediaStore);
 
 	}
 
@@ -162,6 +217,12 @@ public class AlbumServiceTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetLedgerService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testGetOne1() throws Exception {
 
@@ -206,11 +267,43 @@ public class AlbumServiceTest {
 	}
 
 	@Test
-	public void testCreateBadJSON() throws Exception {
+	public void testGetArtwork() throws Exception {
+
+		final Album album = new Album(5);
+		album.setArtwork("art".getBytes());
+		album.setArtworkType("PNG");
+
+		when(this.albumDao.getAlbumArtwork(5)).thenReturn(album);
+		this.albumService.setAlbumDao(albumDao);
+
+		assertEquals("art", new String(this.albumService.getArtwork(5).getArtwork()));
+
+	}
+
+	@Test
+	public void testGetArtworkN() throws Exception {
+
+		when(this.albumDao.getAlbumArtwork(1)).thenReturn(null);
+		this.albumService.setAlbumDao(albumDao);
+
+		assertNull(this.albumService.getArtwork(1));
+
+	}
+
+	@Test
+	public void testGetArtworkVersion() throws Exception {
+
+		when(this.albumDao.getAlbumArtworkVersion(5)).thenReturn("A5");
+		this.albumService.setAlbumDao(albumDao);
+
+		assertEquals("A5", this.albumService.getArtworkVersion(5));
+
+	}
 
-		final String source = "bad JSON";
+	@Test
+	public void testCreateBadJSON() throws Exception {
 
-		assertEquals(0, this.albumService.create(1, source));
+		assertEquals(0, this.albumService.create(1, null));
 
 	}
 
@@ -222,7 +315,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"albumName\":\"sample\",\"artist\":\"unana\",\"genreId\":1}";
 
-		assertEquals(0, this.albumService.create(0, source));
+		assertEquals(0, this.albumService.create(0, bind(source, AlbumData.class)));
 
 	}
 
@@ -231,7 +324,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"artist\":\"unana\",\"genreId\":1}";
 
-		assertEquals(0, this.albumService.create(1, source));
+		assertEquals(0, this.albumService.create(1, bind(source, AlbumData.class)));
 
 	}
 
@@ -240,7 +333,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"albumName\":\"sample\",\"genreId\":1}";
 
-		assertEquals(0, this.albumService.create(1, source));
+		assertEquals(0, this.albumService.create(1, bind(source, AlbumData.class)));
 
 	}
 
@@ -249,7 +342,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"albumName\":\"sample\",\"artist\":\"unana\"}";
 
-		assertEquals(0, this.albumService.create(1, source));
+		assertEquals(0, this.albumService.create(1, bind(source, AlbumData.class)));
 
 	}
 
@@ -263,16 +356,14 @@ public class AlbumServiceTest {
 
 		final String source = "{\"albumName\":\"sample\",\"artist\":\"unana\",\"genreId\":1}";
 
-		assertEquals(1, this.albumService.create(1, source));
+		assertEquals(1, this.albumService.create(1, bind(source, AlbumData.class)));
 
 	}
 
 	@Test
 	public void testUpdateBadJSON() throws Exception {
 
-		final String source = "bad json";
-
-		assertFalse(this.albumService.update(1, 1, source));
+		assertFalse(this.albumService.update(1, 1, null));
 
 	}
 
@@ -281,7 +372,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"albumName\":\"sample\",\"artist\":\"unana\",\"genreId\":1}";
 
-		assertFalse(this.albumService.update(1, 1, source));
+		assertFalse(this.albumService.update(1, 1, bind(source, AlbumData.class)));
 
 	}
 
@@ -290,7 +381,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"genreId\":2}";
 
-		assertTrue(this.albumService.update(1, 2, source));
+		assertTrue(this.albumService.update(1, 2, bind(source, AlbumData.class)));
 
 	}
 
@@ -299,7 +390,32 @@ public class AlbumServiceTest {
 
 		final String source = "{\"albumName\":\"big bang\",\"artist\":\"nancy\",\"genreId\":4}";
 
-		assertTrue(this.albumService.update(2, 6, source));
+		assertTrue(this.albumService.update(2, 6, bind(source, AlbumData.class)));
+
+	}
+
+	@Test
+	public void testUploadArtworkS() throws Exception {
+
+		final byte[] png = new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+		when(this.albumDao.updateAlbumArtwork(eq(6), eq("PNG"), any(InputStream.class), eq(8L))).thenReturn(true);
+
+		assertTrue(this.albumService.uploadArtwork(3, 6, "PNG", new ByteArrayInputStream(png), 8));
+
+	}
+
+	@Test
+	public void testUploadArtworkNO() throws Exception {
+
+		assertFalse(this.albumService.uploadArtwork(3, 5, "PNG", new ByteArrayInputStream("png".getBytes()), 3));
+
+	}
+
+	@Test
+	public void testUploadArtworkE() throws Exception {
+
+		assertFalse(this.albumService.uploadArtwork(3, 6, "PNG", new ByteArrayInputStream(new byte[0]), 0));
 
 	}
 
@@ -308,6 +424,10 @@ public class AlbumServiceTest {
 
 		assertTrue(this.albumService.delete(-777, 70));
 
+		verify(this.catalogIndex).removeAlbum(70);
+
+		verify(this.suggestIndex).removeAlbum(70);
+
 	}
 
 	@Test
@@ -327,9 +447,7 @@ public class AlbumServiceTest {
 	@Test
 	public void testPublishBadJSON() throws Exception {
 
-		final String source = "bad JSON";
-
-		assertFalse(this.albumService.publish(1, 2, source));
+		assertFalse(this.albumService.publish(1, 2, null));
 
 	}
 
@@ -338,7 +456,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"etaPrice\":400,\"artworkDataUrl\":\"data:image/png;base64,3EssR9oP=\"}";
 
-		assertFalse(this.albumService.publish(0, 0, source));
+		assertFalse(this.albumService.publish(0, 0, bind(source, AlbumData.class)));
 
 	}
 
@@ -347,7 +465,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"etaPrice\":400,\"artworkDataUrl\":\"data:image/png;base64,3EssR9oP=\"}";
 
-		assertFalse(this.albumService.publish(1, 6, source));
+		assertFalse(this.albumService.publish(1, 6, bind(source, AlbumData.class)));
 
 	}
 
@@ -356,7 +474,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"etaPrice\":400,\"artworkDataUrl\":\"data:image/png;base64,3EssR9oP=\"}";
 
-		assertFalse(this.albumService.publish(2, 4, source));
+		assertFalse(this.albumService.publish(2, 4, bind(source, AlbumData.class)));
 
 	}
 
@@ -367,7 +485,7 @@ public class AlbumServiceTest {
 
 		final String source = "{\"etaPrice\":400,\"artworkDataUrl\":\"data:image/png;base64,3EssR9oP=\"}";
 
-		assertFalse(this.albumService.publish(1, 2, source));
+		assertFalse(this.albumService.publish(1, 2, bind(source, AlbumData.class)));
 
 		unpublishedList.get(0).setIsPublished("T");
 
@@ -376,9 +494,9 @@ public class AlbumServiceTest {
 	@Test
 	public void testPublishBadETA() throws Exception {
 
-		final String source = "{\"etaPrice\":\"ff\",\"artworkDataUrl\":\"data:image/png;base64,3EssR9oP=\"}";
+		final String source = "{\"artworkDataUrl\":\"data:image/png;base64,3EssR9oP=\"}";
 
-		assertFalse(this.albumService.publish(3, 6, source));
+		assertFalse(this.albumService.publish(3, 6, bind(source, AlbumData.class)));
 
 	}
 
@@ -387,7 +505,41 @@ public class AlbumServiceTest {
 
 		final String source = "{\"etaPrice\":400,\"artworkDataUrl\":\"dse64,3EssR9oP=\"}";
 
-		assertFalse(this.albumService.publish(3, 6, source));
+		assertFalse(this.albumService.publish(3, 6, bind(source, AlbumData.class)));
+
+	}
+
+	@Test
+	public void testPublishNA() throws Exception {
+
+		trackList.get(1).setAudioType(null);
+
+		final String source = "{\"etaPrice\":200,\"artworkDataUrl\":\"data:image/png;base64,dzM0MzIx\"}";
+
+		assertFalse(this.albumService.publish(3, 6, bind(source, AlbumData.class)));
+
+	}
+
+	@Test
+	public void testPublishNW() throws Exception {
+
+		final String source = "{\"etaPrice\":200}";
+
+		assertFalse(this.albumService.publish(3, 6, bind(source, AlbumData.class)));
+
+	}
+
+	@Test
+	public void testPublishUA() throws Exception {
+
+		// The artwork has been uploaded already.
+		unpublishedList.get(2).setArtworkType("GIF");
+
+		final String source = "{\"etaPrice\":200}";
+
+		assertTrue(this.albumService.publish(3, 6, bind(source, AlbumData.class)));
+
+		verify(this.albumDao).publishAlbum(argThat(a -> a.getArtwork() == null && "GIF".equals(a.getArtworkType())));
 
 	}
 
@@ -396,7 +548,15 @@ public class AlbumServiceTest {
 
 		final String source = "{\"etaPrice\":200,\"artworkDataUrl\":\"data:image/png;base64,dzM0MzIx\"}";
 
-		assertTrue(this.albumService.publish(3, 6, source));
+		assertTrue(this.albumService.publish(3, 6, bind(source, AlbumData.class)));
+
+		verify(this.ledgerService).reward(3, 40, EtaEntry.PUBLISH_REWARD);
+
+		verify(this.thumbnailService).refreshArtwork(6);
+
+		verify(this.catalogIndex).addAlbum(isA(Album.class), eq(trackList));
+
+		verify(this.suggestIndex).addAlbum(isA(Album.class), eq(trackList));
 
 	}
 
@@ -433,28 +593,103 @@ public class AlbumServiceTest {
 
 		assertFalse(this.albumService.promote(2, 4));
 
+		verify(this.albumDao, never()).promoteAlbum(4);
+
+	}
+
+	@Test
+	public void testPromoteR() throws Exception {
+
+		when(this.ledgerService.charge(2, 100, EtaEntry.PROMOTION_FEE)).thenReturn(true);
+		when(this.albumDao.promoteAlbum(4)).thenReturn(false);
+
+		assertFalse(this.albumService.promote(2, 4));
+
+		// The fee is given back when the promotion fails.
+		verify(this.ledgerService).reward(2, 100, EtaEntry.REFUND);
+
 	}
 
 	@Test
 	public void testPromoteS() throws Exception {
 
-		koalibeeList.get(1).setEtaBalance(3000);
+		when(this.ledgerService.charge(2, 100, EtaEntry.PROMOTION_FEE)).thenReturn(true);
 
 		assertTrue(this.albumService.promote(2, 4));
 
-		koalibeeList.get(1).setEtaBalance(0);
+		verify(this.ledgerService, never()).reward(anyInt(), anyInt(), anyString());
 
 	}
 
 	@Test
 	public void testGetAll() throws Exception {
 
-		when(this.albumDao.getAllAlbums()).thenReturn(fancyList);
+		when(this.albumDao.getAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1)).thenReturn(fancyList);
+		this.albumService.setAlbumDao(albumDao);
+
+		Page<Album> page = this.albumService.getAll(null, null);
+
+		assertEquals(3, page.getItems().size());
+
+		assertNull(page.getItems().get(1).getArtworkType());
+
+		assertNull(page.getItems().get(2).getArtworkType());
+
+		assertNull(page.getNextCursor());
+
+	}
+
+	@Test
+	public void testWriteAll() throws Exception {
+
+		fancyList.get(0).setArtworkType("PNG");
+		when(this.albumDao.streamAlbums(any())).thenAnswer(invocation -> {
+			Consumer<Album> action = invocation.getArgument(0);
+			fancyList.forEach(action);
+			return fancyList.size();
+		});
+		this.albumService.setAlbumDao(albumDao);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertTrue(this.albumService.writeAll(out));
+
+		assertEquals(3, new ObjectMapper().readTree(out.toByteArray()).size());
+
+		assertEquals(5, new ObjectMapper().readTree(out.toByteArray()).get(2).get("albumId").asInt());
+
+		assertNull(fancyList.get(0).getArtworkType());
+
+	}
+
+	@Test
+	public void testWriteAllF() throws Exception {
+
+		when(this.albumDao.streamAlbums(any())).thenReturn(-1);
+		this.albumService.setAlbumDao(albumDao);
+
+		assertFalse(this.albumService.writeAll(new ByteArrayOutputStream()));
+
+	}
+
+	@Test
+	public void testGetAllC() throws Exception {
+
+		when(this.albumDao.getAlbumPage("Feux", 4, 3)).thenReturn(new ArrayList<>(fancyList));
 		this.albumService.setAlbumDao(albumDao);
 
-		assertNull(this.albumService.getAll().get(0).getArtwork());
+		Page<Album> page = this.albumService.getAll(PageUtility.encodeCursor("Feux", 4), 2);
+
+		assertEquals(2, page.getItems().size());
+
+		assertEquals(PageUtility.encodeCursor(fancyList.get(1).getAlbumName(), 3), page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetAllBC() throws Exception {
 
-		assertNull(this.albumService.getAll().get(2).getArtworkDataUrl());
+		assertNull(this.albumService.getAll("bad cursor", null));
 
 	}
 
@@ -473,10 +708,235 @@ public class AlbumServiceTest {
 	@Test
 	public void testGetPublished() throws Exception {
 
-		when(this.albumDao.getAllPublishedAlbums()).thenReturn(fancyList);
+		when(this.albumDao.getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1)).thenReturn(fancyList);
+		this.albumService.setAlbumDao(albumDao);
+
+		Page<Album> page = this.albumService.getPublished(null, null);
+
+		assertNotNull(page.getItems().get(2).getArtworkDataUrl());
+
+		assertNull(page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetPublishedC() throws Exception {
+
+		when(this.albumDao.getPublishedAlbumPage("Feux", 4, 2)).thenReturn(new ArrayList<>(fancyList));
+		this.albumService.setAlbumDao(albumDao);
+
+		Page<Album> page = this.albumService.getPublished(PageUtility.encodeCursor("Feux", 4), 1);
+
+		assertEquals(1, page.getItems().size());
+
+		assertEquals(PageUtility.encodeCursor(fancyList.get(0).getAlbumName(), 1), page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetPublishedBC() throws Exception {
+
+		assertNull(this.albumService.getPublished(PageUtility.encodeCursor("Feux", "x"), null));
+
+	}
+
+	@Test
+	public void testGetPublishedJson() throws Exception {
+
+		when(this.albumDao.getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1))
+				.thenAnswer(i -> new ArrayList<>(fancyList));
+		this.albumService.setAlbumDao(albumDao);
+
+		CachedPage page = this.albumService.getPublishedJson(null, null, true);
+
+		assertEquals(3, new ObjectMapper().readTree(page.getBody()).size());
+
+		assertNotNull(page.getETag());
+
+		assertNull(page.getNextCursor());
+
+		// The second call is served from the cache.
+		assertSame(page, this.albumService.getPublishedJson(null, null, true));
+
+		verify(this.albumDao, times(1)).getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1);
+
+	}
+
+	@Test
+	public void testGetPublishedJsonB() throws Exception {
+
+		when(this.albumDao.getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1))
+				.thenAnswer(i -> new ArrayList<>(fancyList));
+		this.albumService.setAlbumDao(albumDao);
+
+		CachedPage page = this.albumService.getPublishedJson(null, null, false);
+
+		// Album 3 is not in the basic collection.
+		assertEquals(2, new ObjectMapper().readTree(page.getBody()).size());
+
+		assertNotEquals(page.getETag(), this.albumService.getPublishedJson(null, null, true).getETag());
+
+	}
+
+	@Test
+	public void testGetPublishedJsonV() throws Exception {
+
+		when(this.albumDao.getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1))
+				.thenAnswer(i -> new ArrayList<>(fancyList));
+		this.albumService.setAlbumDao(albumDao);
+
+		final long version = this.albumService.getCatalogVersion();
+
+		CachedPage page = this.albumService.getPublishedJson(null, null, true);
+
+		assertTrue(this.albumService.delete(-777, 70));
+
+		assertNotEquals(version, this.albumService.getCatalogVersion());
+
+		// The page is rebuilt, but its content and entity tag are unchanged.
+		CachedPage newPage = this.albumService.getPublishedJson(null, null, true);
+
+		assertNotSame(page, newPage);
+
+		assertEquals(page.getETag(), newPage.getETag());
+
+		verify(this.albumDao, times(2)).getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1);
+
+	}
+
+	@Test
+	public void testGetPublishedJsonBC() throws Exception {
+
+		assertNull(this.albumService.getPublishedJson(PageUtility.encodeCursor("Feux", "x"), null, true));
+
+	}
+
+	@Test
+	public void testGetPublishedJsonE() throws Exception {
+
+		when(this.albumDao.getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1))
+				.thenReturn(new ArrayList<>());
+		this.albumService.setAlbumDao(albumDao);
+
+		assertEquals("[]", new String(this.albumService.getPublishedJson(null, null, true).getBody()));
+
+		// Empty pages are not kept.
+		this.albumService.getPublishedJson(null, null, true);
+
+		verify(this.albumDao, times(2)).getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1);
+
+	}
+
+	@Test
+	public void testGetPublishedJsonConcurrent() throws Exception {
+
+		when(this.albumDao.getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1)).thenAnswer(i -> {
+			Thread.sleep(200);
+			return new ArrayList<>(fancyList);
+		});
+		this.albumService.setAlbumDao(albumDao);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final List<Future<CachedPage>> futures = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			futures.add(executor.submit(() -> this.albumService.getPublishedJson(null, null, true)));
+		}
+
+		for (Future<CachedPage> future : futures) {
+			assertSame(futures.get(0).get(), future.get());
+		}
+
+		executor.shutdown();
+
+		// Concurrent misses are collapsed into one build.
+		verify(this.albumDao, times(1)).getPublishedAlbumPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1);
+
+	}
+
+	@Test
+	public void testGetDemos() throws Exception {
+
+		when(this.albumDao.getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION))).thenReturn(fancyList);
+		this.albumService.setAlbumDao(albumDao);
+
+		List<Album> albumList = this.albumService.getDemos();
+
+		assertEquals(fancyList, albumList);
+
+		// The second call is served from the snapshot.
+		assertSame(albumList, this.albumService.getDemos());
+
+		verify(this.albumDao, times(1)).getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION));
+
+	}
+
+	@Test
+	public void testGetDemosChanged() throws Exception {
+
+		when(this.albumDao.getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION))).thenReturn(fancyList);
+		this.albumService.setAlbumDao(albumDao);
+
+		this.albumService.getDemos();
+
+		// Album 2 is a demo album.
+		assertTrue(this.albumService.update(1, 2, bind("{\"genreId\":2}", AlbumData.class)));
+
+		this.albumService.getDemos();
+
+		verify(this.albumDao, times(2)).getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION));
+
+	}
+
+	@Test
+	public void testGetDemosCatalogChange() throws Exception {
+
+		when(this.albumDao.getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION))).thenReturn(fancyList);
+		this.albumService.setAlbumDao(albumDao);
+
+		final long version = this.albumService.getCatalogVersion();
+
+		this.albumService.getDemos();
+
+		this.albumService.recordCatalogChange();
+
+		assertNotEquals(version, this.albumService.getCatalogVersion());
+
+		this.albumService.getDemos();
+
+		verify(this.albumDao, times(2)).getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION));
+
+	}
+
+	@Test
+	public void testGetDemosEmpty() throws Exception {
+
+		when(this.albumDao.getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION))).thenReturn(new ArrayList<>());
 		this.albumService.setAlbumDao(albumDao);
 
-		assertNotNull(this.albumService.getPublished().get(2).getArtworkDataUrl());
+		assertTrue(this.albumService.getDemos().isEmpty());
+
+		assertTrue(this.albumService.getDemos().isEmpty());
+
+		verify(this.albumDao, times(2)).getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION));
+
+	}
+
+	@Test
+	public void testGetDemosStale() throws Exception {
+
+		final AlbumService staleAlbumService = new AlbumService(0);
+
+		when(this.albumDao.getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION))).thenReturn(fancyList);
+		staleAlbumService.setAlbumDao(albumDao);
+
+		List<Album> albumList = staleAlbumService.getDemos();
+
+		// The stale snapshot is still served while it is reloaded.
+		assertSame(albumList, staleAlbumService.getDemos());
+
+		verify(this.albumDao, timeout(5000).times(2)).getAlbumsByIds(Arrays.asList(Album.DEMO_COLLECTION));
+
+		staleAlbumService.destroy();
 
 	}
 
@@ -2,6 +2,7 @@ package io.esoma.khr.service;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -12,6 +13,8 @@ import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
+import io.esoma.khr.utility.SecurityUtility;
+
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class AuthServiceTest {
 
@@ -21,6 +24,7 @@ public class AuthServiceTest {
 
 	{
 		this.authService = new AuthService();
+		this.authService.setHashingService(new HashingService(1000, 1, 4));
 	}
 
 	@BeforeClass
@@ -156,6 +160,27 @@ public class AuthServiceTest {
 
 	}
 
+	@Test
+	public void testReauthenticateCachedF() throws Exception {
+
+		for (int i = 1; i <= AuthService.MAX_VERIFIED_TOKENS; i++) {
+			assertEquals(i, this.authService.reauthenticate(this.authService.issueToken(i, "k" + i + "@koalibee.com")));
+		}
+
+		assertEquals(AuthService.MAX_VERIFIED_TOKENS, this.authService.getVerifiedTokenCount());
+
+		// A full cache of live tokens still makes room for a new one.
+		final int koalibeeId = AuthService.MAX_VERIFIED_TOKENS + 1;
+		String jws = this.authService.issueToken(koalibeeId, "new@koalibee.com");
+
+		assertEquals(koalibeeId, this.authService.reauthenticate(jws));
+
+		assertTrue(this.authService.hasVerifiedToken(jws));
+
+		assertEquals(AuthService.MAX_VERIFIED_TOKENS, this.authService.getVerifiedTokenCount());
+
+	}
+
 	@Test
 	public void testReauthenticateExpA() throws Exception {
 
@@ -171,4 +196,87 @@ public class AuthServiceTest {
 
 	}
 
+	@Test
+	public void testReauthenticateCachedK() throws Exception {
+
+		final Map<String, String> authData = new HashMap<>();
+		authData.put("koalibeeId", "5");
+		authData.put("email", "my.email@koalibee.com");
+		authData.put("password", "rxh");
+		authData.put("passwordSalt", "1234");
+		authData.put("passwordHash", "110066E9AF477CDD58A678E33CD4BD19FAAF3AF90A691D3AD981791CBAEE85CB");
+
+		String jws = this.authService.authenticate(authData);
+
+		assertEquals(5, this.authService.reauthenticate(jws));
+
+		assertEquals(1, this.authService.getVerifiedTokenCount());
+
+		assertEquals(5, this.authService.reauthenticate(jws));
+
+		assertEquals(1, this.authService.getVerifiedTokenCount());
+
+		this.authService.resetKey();
+
+		assertEquals(0, this.authService.getVerifiedTokenCount());
+
+		assertEquals(0, this.authService.reauthenticate(jws));
+
+	}
+
+	@Test
+	public void testReauthenticateNull() throws Exception {
+
+		assertEquals(0, this.authService.reauthenticate(null));
+
+		assertEquals(0, this.authService.getVerifiedTokenCount());
+
+	}
+
+	@Test
+	public void testAuthenticateIteratedK() throws Exception {
+
+		final Map<String, String> authData = new HashMap<>();
+		authData.put("koalibeeId", "6");
+		authData.put("email", "my.email@koalibee.com");
+		authData.put("password", "rxh");
+		authData.put("passwordSalt", "abcdefgh12345678");
+		authData.put("passwordHash", SecurityUtility.getPBKDF2Digest("rxh", "abcdefgh12345678", 1000));
+
+		assertEquals(6, this.authService.reauthenticate(this.authService.authenticate(authData)));
+
+		authData.put("password", "rxx");
+
+		assertEquals(AuthService.INVALID_KOALIBEE_CREDENTIALS, this.authService.authenticate(authData));
+
+	}
+
+	@Test
+	public void testAuthenticateBusy() throws Exception {
+
+		final HashingService busyHashingService = new HashingService(5000000, 1, 1);
+		busyHashingService.hashAsync("long", "task");
+		busyHashingService.hashAsync("long", "task");
+		this.authService.setHashingService(busyHashingService);
+
+		final Map<String, String> authData = new HashMap<>();
+		authData.put("koalibeeId", "4");
+		authData.put("email", "my.email@koalibee.com");
+		authData.put("password", "rxh");
+		authData.put("passwordSalt", "1234");
+		authData.put("passwordHash", "110066E9AF477CDD58A678E33CD4BD19FAAF3AF90A691D3AD981791CBAEE85CB");
+
+		assertEquals(AuthService.SERVER_BUSY, this.authService.authenticate(authData));
+
+		busyHashingService.destroy();
+
+	}
+
+	@Test
+	public void testIssueToken() throws Exception {
+
+		assertEquals(8, this.authService.reauthenticate(this.authService.issueToken(8, "new@koalibee.com")));
+
+	}
+
 }
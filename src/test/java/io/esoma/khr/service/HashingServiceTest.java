@@ -0,0 +1,127 @@
+package io.esoma.khr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import io.esoma.khr.utility.SecurityUtility;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class HashingServiceTest {
+
+	private HashingService hashingService;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.hashingService = new HashingService(1000, 1, 1);
+
+	}
+
+	@After
+	public void tearDown() throws Exception {
+
+		this.hashingService.destroy();
+
+	}
+
+	@Test
+	public void testHash() throws Exception {
+
+		assertEquals(SecurityUtility.getPBKDF2Digest("super secret", "abcd1234abcd1234", 1000),
+				this.hashingService.hash("super secret", "abcd1234abcd1234"));
+
+	}
+
+	@Test
+	public void testHashAsync() throws Exception {
+
+		assertEquals(SecurityUtility.getPBKDF2Digest("super secret", "abcd1234abcd1234", 1000),
+				this.hashingService.hashAsync("super secret", "abcd1234abcd1234").get());
+
+	}
+
+	@Test
+	public void testVerify() throws Exception {
+
+		final String hash = this.hashingService.hash("super secret", "abcd1234abcd1234");
+
+		assertTrue(this.hashingService.verify("super secret", "abcd1234abcd1234", hash));
+
+		assertFalse(this.hashingService.verify("SUPER secret", "abcd1234abcd1234", hash));
+
+		assertTrue(this.hashingService.verify("super secret", "1234",
+				"85A229B2DF222B37718CA2C8D0971C6641B87878261BA6684C94BC6CC772F466"));
+
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testVerifyBusy() throws Exception {
+
+		final HashingService busyHashingService = new HashingService(5000000, 1, 1);
+
+		try {
+			// One task occupies the thread and the other fills the queue.
+			busyHashingService.hashAsync("long", "task");
+			busyHashingService.hashAsync("long", "task");
+			busyHashingService.verify("super secret", "1234",
+					"85A229B2DF222B37718CA2C8D0971C6641B87878261BA6684C94BC6CC772F466");
+		} finally {
+			assertEquals(1L, busyHashingService.getStatistics().get("rejectedCount").longValue());
+			busyHashingService.destroy();
+		}
+
+	}
+
+	@Test
+	public void testNeedsUpgrade() throws Exception {
+
+		assertTrue(this.hashingService.needsUpgrade("85A229B2DF222B37718CA2C8D0971C6641B87878261BA6684C94BC6CC772F466"));
+
+		assertTrue(this.hashingService.needsUpgrade("PBKDF2$500$7701A285"));
+
+		assertFalse(this.hashingService.needsUpgrade("PBKDF2$1000$7701A285"));
+
+		assertFalse(this.hashingService.needsUpgrade("PBKDF2$2000$7701A285"));
+
+	}
+
+	@Test
+	public void testGetStatistics() throws Exception {
+
+		this.hashingService.hash("super secret", "abcd1234abcd1234");
+		this.hashingService.hash("super secret", "abcd1234abcd1234");
+
+		final Map<String, Long> statistics = this.hashingService.getStatistics();
+
+		assertEquals(1000L, statistics.get("iterations").longValue());
+		assertEquals(1L, statistics.get("poolSize").longValue());
+		assertEquals(1L, statistics.get("queueCapacity").longValue());
+		assertEquals(2L, statistics.get("completedCount").longValue());
+		assertEquals(2L, statistics.get("lastMinuteCount").longValue());
+		assertEquals(0L, statistics.get("rejectedCount").longValue());
+
+	}
+
+}
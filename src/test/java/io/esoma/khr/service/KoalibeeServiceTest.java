@@ -5,12 +5,24 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.AfterClass;
@@ -23,25 +35,43 @@ import org.junit.runners.MethodSorters;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.esoma.khr.dao.AlbumDao;
 import io.esoma.khr.dao.KoalibeeDao;
+import io.esoma.khr.index.CatalogIndex;
+import io.esoma.khr.index.EmailFilter;
+import io.esoma.khr.index.RecentMoments;
+import io.esoma.khr.index.SuggestIndex;
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.AlbumData;
 import io.esoma.khr.model.Credentials;
 import io.esoma.khr.model.Genre;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.KoalibeeData;
+import io.esoma.khr.model.Moment;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Review;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.storage.MediaStore;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class KoalibeeServiceTest {
 
+	private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
 	private static List<String> emailList;
 	private static List<Album> albumList;
 
 	private KoalibeeService koalibeeService;
+	private RecentMoments recentMoments;
 
+	@Mock
+	private AlbumService albumService;
 	@Mock
 	private AuthService authService;
 
@@ -49,6 +79,16 @@ public class KoalibeeServiceTest {
 	private KoalibeeDao koalibeeDao;
 	@Mock
 	private AlbumDao albumDao;
+	@Mock
+	private LedgerService ledgerService;
+	@Mock
+	private ThumbnailService thumbnailService;
+	@Mock
+	private CatalogIndex catalogIndex;
+	@Mock
+	private SuggestIndex suggestIndex;
+	@Mock
+	private MediaStore mediaStore;
 
 	{
 		this.koalibeeService = new KoalibeeService();
@@ -57,6 +97,11 @@ public class KoalibeeServiceTest {
 		MockitoAnnotations.initMocks(KoalibeeServiceTest.class);
 	}
 
+	// Binds a request body the way the JSON message converter does.
+	private static <T> T bind(String source, Class<T> type) throws Exception {
+		return OBJECT_MAPPER.readValue(source, type);
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 
@@ -92,18 +137,32 @@ public class KoalibeeServiceTest {
 	@Before
 	public void setUp() throws Exception {
 
-		when(this.koalibeeDao.getAllEmails()).thenReturn(emailList);
+		when(this.koalibeeDao.isEmailRegistered(anyString()))
+				.thenAnswer(invocation -> emailList.contains(invocation.getArgument(0)));
 		when(this.koalibeeDao.getAllPurchasedAlbumsByKoalibeeId(anyInt())).thenReturn(albumList);
+		when(this.koalibeeDao.ownsAlbum(anyInt(), anyInt()))
+				.thenAnswer(invocation -> albumList.contains(new Album(invocation.getArgument(1))));
 		when(this.koalibeeDao.addKoalibee(isA(Koalibee.class))).thenReturn(1);
 		when(this.authService.authenticate(anyMap())).thenReturn("valid jws");
 		when(this.koalibeeDao.updateKoalibee(isA(Koalibee.class))).thenReturn(true);
 		when(this.koalibeeDao.updateCredentials(isA(Koalibee.class))).thenReturn(true);
-		when(this.koalibeeDao.updateEtaBalance(isA(Koalibee.class))).thenReturn(true);
 		when(this.koalibeeDao.purchaseAlbum(anyInt(), anyInt())).thenReturn(true);
 
+		this.koalibeeService.setAlbumService(this.albumService);
 		this.koalibeeService.setAuthService(this.authService);
 		this.koalibeeService.setKoalibeeDao(this.koalibeeDao);
 		this.koalibeeService.setAlbumDao(this.albumDao);
+		this.koalibeeService.setHashingService(new HashingService(1000, 1, 4));
+		this.koalibeeService.setLedgerService(this.ledgerService);
+		this.koalibeeService.setThumbnailService(this.thumbnailService);
+		this.koalibeeService.setEmailFilter(new EmailFilter());
+
+		this.recentMoments = new RecentMoments();
+		this.recentMoments.load(Arrays.asList(new Moment(1, LocalDate.now())), this.recentMoments.getStamp());
+		this.koalibeeService.setRecentMoments(this.recentMoments);
+		this.koalibeeService.setCatalogIndex(this.catalogIndex);
+		this.koalibeeService.setSuggestIndex(this.suggestIndex);
+		this.koalibeeService.setMediaStore(this.mediaStore);
 
 	}
 
@@ -132,6 +191,64 @@ public class KoalibeeServiceTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetEmailFilter() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testAfterPropertiesSet() throws Exception {
+
+		final EmailFilter emailFilter = new EmailFilter();
+		this.koalibeeService.setEmailFilter(emailFilter);
+
+		when(this.koalibeeDao.getAllEmails()).thenReturn(emailList);
+
+		this.koalibeeService.afterPropertiesSet();
+
+		assertTrue(emailFilter.isReady());
+
+		assertTrue(emailFilter.mightContain("lol@koalibee.com"));
+
+	}
+
+	@Test
+	public void testIsEmailTaken1() throws Exception {
+
+		assertTrue(this.koalibeeService.isEmailTaken("lol@koalibee.com"));
+
+		assertFalse(this.koalibeeService.isEmailTaken("fresh@koalibee.com"));
+
+	}
+
+	@Test
+	public void testIsEmailTakenF() throws Exception {
+
+		final EmailFilter emailFilter = new EmailFilter();
+		emailFilter.rebuild(emailList);
+		this.koalibeeService.setEmailFilter(emailFilter);
+
+		assertFalse(this.koalibeeService.isEmailTaken("fresh@koalibee.com"));
+
+		verify(this.koalibeeDao, never()).isEmailRegistered("fresh@koalibee.com");
+
+		assertTrue(this.koalibeeService.isEmailTaken("other.dup@k.com"));
+
+	}
+
+	@Test
+	public void testSetHashingService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetLedgerService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testSetAuthService() throws Exception {
 		// Intentionally left blank.
@@ -141,7 +258,7 @@ public class KoalibeeServiceTest {
 	@Test
 	public void testRegisterBadJSON() throws Exception {
 
-		assertEquals(KoalibeeService.BAD_REQUEST, this.koalibeeService.register("bad JSON string"));
+		assertEquals(KoalibeeService.BAD_REQUEST, this.koalibeeService.register(null));
 
 	}
 
@@ -150,7 +267,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"firstName\":\"\"}";
 
-		assertEquals(KoalibeeService.BAD_FIRST_NAME, this.koalibeeService.register(source));
+		assertEquals(KoalibeeService.BAD_FIRST_NAME, this.koalibeeService.register(bind(source, KoalibeeData.class)));
 
 	}
 
@@ -159,7 +276,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"firstName\":\"eddy\"}";
 
-		assertEquals(KoalibeeService.BAD_LAST_NAME, this.koalibeeService.register(source));
+		assertEquals(KoalibeeService.BAD_LAST_NAME, this.koalibeeService.register(bind(source, KoalibeeData.class)));
 
 	}
 
@@ -168,7 +285,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"firstName\":\"eddy\",\"lastName\":\"soma\",\"email\":\"s.com\"}";
 
-		assertEquals(KoalibeeService.BAD_EMAIL, this.koalibeeService.register(source));
+		assertEquals(KoalibeeService.BAD_EMAIL, this.koalibeeService.register(bind(source, KoalibeeData.class)));
 
 	}
 
@@ -177,7 +294,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"firstName\":\"eddy\",\"lastName\":\"soma\",\"email\":\"other.dup@k.com\",\"password\":\"nnsss123n\"}";
 
-		assertEquals(KoalibeeService.DUPLICATE_EMAIL, this.koalibeeService.register(source));
+		assertEquals(KoalibeeService.DUPLICATE_EMAIL, this.koalibeeService.register(bind(source, KoalibeeData.class)));
 
 	}
 
@@ -186,7 +303,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"firstName\":\"eddy\",\"lastName\":\"soma\",\"email\":\"anothers@k.com\",\"password\":\"nnn\"}";
 
-		assertEquals(KoalibeeService.BAD_PS, this.koalibeeService.register(source));
+		assertEquals(KoalibeeService.BAD_PS, this.koalibeeService.register(bind(source, KoalibeeData.class)));
 
 	}
 
@@ -195,16 +312,16 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"firstName\":\"eddy\",\"lastName\":\"soma\",\"email\":\"valid@koality.com\",\"password\":\"strongpassword123\"}";
 
-		assertEquals("valid jws", this.koalibeeService.register(source));
+		when(this.authService.issueToken(1, "valid@koality.com")).thenReturn("valid jws");
+
+		assertEquals("valid jws", this.koalibeeService.register(bind(source, KoalibeeData.class)));
 
 	}
 
 	@Test
 	public void testLoginBadJSON() throws Exception {
 
-		final String source = "invalid stuff";
-
-		assertEquals(KoalibeeService.BAD_REQUEST, this.koalibeeService.login(source));
+		assertEquals(KoalibeeService.BAD_REQUEST, this.koalibeeService.login(null));
 
 	}
 
@@ -213,7 +330,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"em?ail\":\"john.doe@example.com\",\"password\":\"jdoe123456\"}";
 
-		assertEquals(KoalibeeService.BAD_EMAIL, this.koalibeeService.login(source));
+		assertEquals(KoalibeeService.BAD_EMAIL, this.koalibeeService.login(bind(source, KoalibeeData.class)));
 
 	}
 
@@ -222,7 +339,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"email\":\"john.doe@example.com\"}";
 
-		assertEquals(KoalibeeService.BAD_PS, this.koalibeeService.login(source));
+		assertEquals(KoalibeeService.BAD_PS, this.koalibeeService.login(bind(source, KoalibeeData.class)));
 
 	}
 
@@ -236,7 +353,7 @@ public class KoalibeeServiceTest {
 		when(this.koalibeeDao.getKoalibeeByEmail(nonExistEmail)).thenReturn(null);
 		this.koalibeeService.setKoalibeeDao(koalibeeDao);
 
-		assertEquals(KoalibeeService.NULL_EMAIL, this.koalibeeService.login(source));
+		assertEquals(KoalibeeService.NULL_EMAIL, this.koalibeeService.login(bind(source, KoalibeeData.class)));
 
 	}
 
@@ -257,7 +374,49 @@ public class KoalibeeServiceTest {
 		when(this.koalibeeDao.getKoalibeeByEmail(goodEmail)).thenReturn(koalibee);
 		this.koalibeeService.setKoalibeeDao(koalibeeDao);
 
-		assertEquals("valid jws", this.koalibeeService.login(source));
+		assertEquals("valid jws", this.koalibeeService.login(bind(source, KoalibeeData.class)));
+
+	}
+
+	@Test
+	public void testLoginU() throws Exception {
+
+		final Credentials credentials = new Credentials();
+		credentials.setPasswordSalt("yy12");
+		credentials.setPasswordHash("old hash");
+
+		final Koalibee koalibee = new Koalibee(8);
+		koalibee.setCredentials(credentials);
+
+		final String source = "{\"email\":\"old.email@k.com\",\"password\":\"jdoe123456\"}";
+
+		when(this.koalibeeDao.getKoalibeeByEmail("old.email@k.com")).thenReturn(koalibee);
+
+		assertEquals("valid jws", this.koalibeeService.login(bind(source, KoalibeeData.class)));
+
+		verify(this.koalibeeDao, timeout(5000)).upgradePasswordHash(eq(8), eq("old hash"), anyString(),
+				anyString());
+
+	}
+
+	@Test
+	public void testLoginNU() throws Exception {
+
+		final Credentials credentials = new Credentials();
+		credentials.setPasswordSalt("abcd1234abcd1234");
+		credentials.setPasswordHash(
+				"PBKDF2$1000$7701A28512CAACB153F58FA9916452CBA5E71F8849B2B101E1DF2EF79CACFECB");
+
+		final Koalibee koalibee = new Koalibee(9);
+		koalibee.setCredentials(credentials);
+
+		final String source = "{\"email\":\"new.email@k.com\",\"password\":\"super secret\"}";
+
+		when(this.koalibeeDao.getKoalibeeByEmail("new.email@k.com")).thenReturn(koalibee);
+
+		assertEquals("valid jws", this.koalibeeService.login(bind(source, KoalibeeData.class)));
+
+		verify(this.koalibeeDao, never()).upgradePasswordHash(anyInt(), anyString(), anyString(), anyString());
 
 	}
 
@@ -298,11 +457,57 @@ public class KoalibeeServiceTest {
 	}
 
 	@Test
-	public void testUpdateInformationN() throws Exception {
+	public void testGetOneP() throws Exception {
 
-		final String source = "invalid stuff";
+		final Koalibee koalibee = new Koalibee(1);
+		koalibee.setEtaBalance(70);
 
-		assertFalse(this.koalibeeService.updateInformation(1, source));
+		when(this.koalibeeDao.getKoalibeeById(1)).thenReturn(koalibee);
+		when(this.ledgerService.getPending(Collections.singletonList(1))).thenReturn(Collections.singletonMap(1, 30));
+
+		// Rewards not yet applied are part of the balance.
+		assertEquals(100, this.koalibeeService.getOne(1).getEtaBalance());
+
+	}
+
+	@Test
+	public void testGetAvatar() throws Exception {
+
+		final Koalibee koalibee = new Koalibee(2);
+		koalibee.setAvatar("ava".getBytes());
+		koalibee.setAvatarType("JPG");
+
+		when(this.koalibeeDao.getKoalibeeAvatar(2)).thenReturn(koalibee);
+		this.koalibeeService.setKoalibeeDao(koalibeeDao);
+
+		assertEquals("JPG", this.koalibeeService.getAvatar(2).getAvatarType());
+
+	}
+
+	@Test
+	public void testGetAvatarN() throws Exception {
+
+		when(this.koalibeeDao.getKoalibeeAvatar(1)).thenReturn(null);
+		this.koalibeeService.setKoalibeeDao(koalibeeDao);
+
+		assertNull(this.koalibeeService.getAvatar(1));
+
+	}
+
+	@Test
+	public void testGetAvatarVersion() throws Exception {
+
+		when(this.koalibeeDao.getKoalibeeAvatarVersion(2)).thenReturn("K2v1");
+		this.koalibeeService.setKoalibeeDao(koalibeeDao);
+
+		assertEquals("K2v1", this.koalibeeService.getAvatarVersion(2));
+
+	}
+
+	@Test
+	public void testUpdateInformationN() throws Exception {
+
+		assertFalse(this.koalibeeService.updateInformation(1, null));
 
 	}
 
@@ -311,7 +516,13 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"firstName\":\"\",\"avatarDataUrl\":\"data:??\",\"email\":\"good.email@k.com\",\"password\":\"jdoe123456\"}";
 
-		assertTrue(this.koalibeeService.updateInformation(1, source));
+		assertTrue(this.koalibeeService.updateInformation(1, bind(source, KoalibeeData.class)));
+
+		assertEquals(1, this.recentMoments.size());
+
+		verify(this.thumbnailService, never()).refreshAvatar(anyInt());
+
+		verify(this.albumService, never()).recordCatalogChange();
 
 	}
 
@@ -320,16 +531,67 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"firstName\":\"leo\",\"lastName\":\"Hero\",\"avatarDataUrl\":\"data:image/png;base64,8sh237shryyWW=\"}";
 
-		assertTrue(this.koalibeeService.updateInformation(1, source));
+		assertTrue(this.koalibeeService.updateInformation(1, bind(source, KoalibeeData.class)));
+
+		assertEquals(0, this.recentMoments.size());
+
+		verify(this.thumbnailService).refreshAvatar(1);
+
+		// Album pages show the new name.
+		verify(this.albumService).recordCatalogChange();
 
 	}
 
 	@Test
-	public void testUpdateCredentialsBadJSON() throws Exception {
+	public void testUploadAvatarS() throws Exception {
+
+		final byte[] png = new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+		when(this.koalibeeDao.updateKoalibeeAvatar(eq(1), eq("PNG"), any(InputStream.class), eq(8L))).thenReturn(true);
+
+		assertTrue(this.koalibeeService.uploadAvatar(1, "PNG", new ByteArrayInputStream(png), 8));
+
+		verify(this.thumbnailService).refreshAvatar(1);
+
+	}
+
+	@Test
+	public void testUploadAvatarM() throws Exception {
+
+		final byte[] png = new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+		// The media store makes its own copy, so the body is streamed to it.
+		when(this.mediaStore.isEnabled()).thenReturn(true);
+		when(this.koalibeeDao.updateKoalibeeAvatar(eq(1), eq("PNG"), any(InputStream.class), eq(8L))).thenReturn(true);
+
+		assertTrue(this.koalibeeService.uploadAvatar(1, "PNG", new ByteArrayInputStream(png), 8));
+
+		verify(this.thumbnailService).refreshAvatar(1);
+
+	}
+
+	@Test
+	public void testUploadAvatarT() throws Exception {
 
-		final String source = "invalid thing";
+		// A file of another type is never stored.
+		assertFalse(this.koalibeeService.uploadAvatar(1, "PNG", new ByteArrayInputStream("GIF89a".getBytes()), 6));
 
-		assertFalse(this.koalibeeService.updateCredentials(1, source));
+		verify(this.koalibeeDao, never()).updateKoalibeeAvatar(anyInt(), anyString(), any(InputStream.class),
+				anyLong());
+
+	}
+
+	@Test
+	public void testUploadAvatarE() throws Exception {
+
+		assertFalse(this.koalibeeService.uploadAvatar(1, "PNG", new ByteArrayInputStream(new byte[0]), 0));
+
+	}
+
+	@Test
+	public void testUpdateCredentialsBadJSON() throws Exception {
+
+		assertFalse(this.koalibeeService.updateCredentials(1, null));
 
 	}
 
@@ -338,7 +600,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"email\":\"lol@koalibee.com\",\"password\":\"123456\"}";
 
-		assertFalse(this.koalibeeService.updateCredentials(1, source));
+		assertFalse(this.koalibeeService.updateCredentials(1, bind(source, KoalibeeData.class)));
 
 	}
 
@@ -347,7 +609,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"password\":\"123456\"}";
 
-		assertTrue(this.koalibeeService.updateCredentials(1, source));
+		assertTrue(this.koalibeeService.updateCredentials(1, bind(source, KoalibeeData.class)));
 
 	}
 
@@ -356,16 +618,14 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"email\":\"valid@koalibee.com\",\"password\":\"123456\"}";
 
-		assertTrue(this.koalibeeService.updateCredentials(1, source));
+		assertTrue(this.koalibeeService.updateCredentials(1, bind(source, KoalibeeData.class)));
 
 	}
 
 	@Test
 	public void testPurchaseAlbumBadJSON() throws Exception {
 
-		final String source = "invalid JSON";
-
-		assertFalse(this.koalibeeService.purchaseAlbum(1, source));
+		assertFalse(this.koalibeeService.purchaseAlbum(1, null));
 
 	}
 
@@ -374,7 +634,7 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"password\":\"123456\"}";
 
-		assertFalse(this.koalibeeService.purchaseAlbum(1, source));
+		assertFalse(this.koalibeeService.purchaseAlbum(1, bind(source, AlbumData.class)));
 
 	}
 
@@ -383,103 +643,153 @@ public class KoalibeeServiceTest {
 
 		final String source = "{\"albumId\":\"4\"}";
 
-		assertFalse(this.koalibeeService.purchaseAlbum(1, source));
+		assertFalse(this.koalibeeService.purchaseAlbum(1, bind(source, AlbumData.class)));
 
 	}
 
 	@Test
 	public void testPurchaseAlbumI() throws Exception {
 
-		final Album album = new Album(3);
-		album.setEtaPrice(50);
-		album.setKoalibee(new Koalibee(2));
-
-		final Koalibee koalibee = new Koalibee(1);
-		koalibee.setEtaBalance(30);
-
-		when(this.albumDao.getAlbumById(3)).thenReturn(album);
-		when(this.koalibeeDao.getKoalibeeById(1)).thenReturn(koalibee);
-		this.koalibeeService.setAlbumDao(albumDao);
-		this.koalibeeService.setKoalibeeDao(koalibeeDao);
+		// The DAO turns the purchase down when the balance is too low.
+		when(this.koalibeeDao.purchaseAlbum(1, 3)).thenReturn(false);
 
 		final String source = "{\"albumId\":\"3\"}";
 
-		assertFalse(this.koalibeeService.purchaseAlbum(1, source));
+		assertFalse(this.koalibeeService.purchaseAlbum(1, bind(source, AlbumData.class)));
+
+		verify(this.suggestIndex, never()).addPurchase(anyInt());
 
 	}
 
 	@Test
 	public void testPurchaseAlbumSO() throws Exception {
 
-		final Album album = new Album(6);
-		album.setEtaPrice(500);
-		album.setKoalibee(new Koalibee(1));
-
-		final Koalibee koalibee = new Koalibee(1);
-		koalibee.setEtaBalance(300);
+		final String source = "{\"albumId\":\"6\"}";
 
-		when(this.albumDao.getAlbumById(6)).thenReturn(album);
-		when(this.koalibeeDao.getKoalibeeById(1)).thenReturn(koalibee);
-		this.koalibeeService.setAlbumDao(albumDao);
-		this.koalibeeService.setKoalibeeDao(koalibeeDao);
+		assertTrue(this.koalibeeService.purchaseAlbum(1, bind(source, AlbumData.class)));
 
-		final String source = "{\"albumId\":\"6\"}";
+		verify(this.koalibeeDao).purchaseAlbum(1, 6);
 
-		assertTrue(this.koalibeeService.purchaseAlbum(1, source));
+		verify(this.suggestIndex).addPurchase(6);
 
 	}
 
 	@Test
 	public void testPurchaseAlbumS() throws Exception {
 
-		final Koalibee koalibee = new Koalibee(7);
-		koalibee.setEtaBalance(400);
-
-		final Album album = new Album(8);
-		album.setEtaPrice(150);
-		album.setKoalibee(new Koalibee(2));
-
-		when(this.albumDao.getAlbumById(8)).thenReturn(album);
-		when(this.koalibeeDao.getKoalibeeById(7)).thenReturn(koalibee);
-		this.koalibeeService.setAlbumDao(albumDao);
-		this.koalibeeService.setKoalibeeDao(koalibeeDao);
-
 		final String source = "{\"albumId\":\"8\"}";
 
-		assertTrue(this.koalibeeService.purchaseAlbum(7, source));
+		assertTrue(this.koalibeeService.purchaseAlbum(7, bind(source, AlbumData.class)));
+
+		verify(this.koalibeeDao).purchaseAlbum(7, 8);
 
 	}
 
 	@Test
 	public void testDelete() throws Exception {
 
+		when(this.albumDao.getPublishedAlbumIdsByKoalibee(4)).thenReturn(Arrays.asList(7, 9));
 		when(this.koalibeeDao.deleteKoalibee(anyInt())).thenReturn(true);
 		this.koalibeeService.setKoalibeeDao(koalibeeDao);
 
 		assertTrue(this.koalibeeService.delete(4));
 
+		assertEquals(0, this.recentMoments.size());
+
+		// The published albums went with the koalibee.
+		verify(this.catalogIndex).removeAlbum(7);
+
+		verify(this.catalogIndex).removeAlbum(9);
+
+		verify(this.suggestIndex).removeAlbum(7);
+
+		verify(this.suggestIndex).removeAlbum(9);
+
+		verify(this.albumService).recordCatalogChange();
+
+	}
+
+	@Test
+	public void testDeleteF() throws Exception {
+
+		when(this.koalibeeDao.deleteKoalibee(anyInt())).thenReturn(false);
+
+		assertFalse(this.koalibeeService.delete(4));
+
+		assertEquals(1, this.recentMoments.size());
+
+		verify(this.catalogIndex, never()).removeAlbum(anyInt());
+
+		verify(this.suggestIndex, never()).removeAlbum(anyInt());
+
+		verify(this.albumService, never()).recordCatalogChange();
+
 	}
 
 	public void testGetAll() throws Exception {
 
-		final Koalibee koalibee = new Koalibee(12);
-		koalibee.setAvatar("avatar".getBytes());
-		koalibee.setAlbumList(new ArrayList<Album>());
-		koalibee.setAvatarDataUrl("some url");
+		final Koalibee koalibee = new Koalibee(12, "Tina", "Mara", "tina@koalibee.com", 100);
 
 		final List<Koalibee> koalibeeList = new ArrayList<>();
 		koalibeeList.add(koalibee);
 
-		when(this.koalibeeDao.getAllKoalibees()).thenReturn(koalibeeList);
+		when(this.koalibeeDao.getKoalibeePage(0, PageUtility.DEFAULT_PAGE_SIZE + 1)).thenReturn(koalibeeList);
+		this.koalibeeService.setKoalibeeDao(koalibeeDao);
+
+		Page<Koalibee> page = this.koalibeeService.getAll(null, null);
+
+		assertEquals(1, page.getItems().size());
+
+		assertEquals("tina@koalibee.com", page.getItems().get(0).getEmail());
+
+		assertNull(page.getItems().get(0).getAvatar());
+
+		assertNull(page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetAllC() throws Exception {
+
+		final List<Koalibee> koalibeeList = new ArrayList<>();
+		koalibeeList.add(new Koalibee(13));
+		koalibeeList.add(new Koalibee(14));
+
+		when(this.koalibeeDao.getKoalibeePage(12, 2)).thenReturn(koalibeeList);
+		this.koalibeeService.setKoalibeeDao(koalibeeDao);
+
+		Page<Koalibee> page = this.koalibeeService.getAll(PageUtility.encodeCursor(12), 1);
+
+		assertEquals(1, page.getItems().size());
+
+		assertEquals(PageUtility.encodeCursor(13), page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetAllP() throws Exception {
+
+		final List<Koalibee> koalibeeList = new ArrayList<>();
+		koalibeeList.add(new Koalibee(12, "Tina", "Mara", "tina@koalibee.com", 100));
+		koalibeeList.add(new Koalibee(13, "Anne", "Lowe", "anne@koalibee.com", 40));
+
+		when(this.koalibeeDao.getKoalibeePage(0, PageUtility.DEFAULT_PAGE_SIZE + 1)).thenReturn(koalibeeList);
+		when(this.ledgerService.getPending(Arrays.asList(12, 13))).thenReturn(Collections.singletonMap(12, 25));
 		this.koalibeeService.setKoalibeeDao(koalibeeDao);
 
-		assertEquals(1, this.koalibeeService.getAll().size());
+		Page<Koalibee> page = this.koalibeeService.getAll(null, null);
+
+		// The list shows the same balances as a single koalibee.
+		assertEquals(125, page.getItems().get(0).getEtaBalance());
 
-		assertNull(this.koalibeeService.getAll().get(0).getAvatar());
+		assertEquals(40, page.getItems().get(1).getEtaBalance());
 
-		assertNull(this.koalibeeService.getAll().get(0).getAlbumList());
+	}
+
+	@Test
+	public void testGetAllBC() throws Exception {
 
-		assertNull(this.koalibeeService.getAll().get(0).getAvatarDataUrl());
+		assertNull(this.koalibeeService.getAll(PageUtility.encodeCursor(-2), null));
 
 	}
 
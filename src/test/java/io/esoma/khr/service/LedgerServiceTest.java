@@ -0,0 +1,149 @@
+package io.esoma.khr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.esoma.khr.dao.LedgerDao;
+import io.esoma.khr.model.EtaEntry;
+
+@RunWith(MockitoJUnitRunner.StrictStubs.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LedgerServiceTest {
+
+	private LedgerService ledgerService;
+
+	@Mock
+	private LedgerDao ledgerDao;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.ledgerService = new LedgerService(0, 2);
+		this.ledgerService.setLedgerDao(this.ledgerDao);
+
+	}
+
+	@Test
+	public void testSetLedgerDao() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testReward() throws Exception {
+
+		when(this.ledgerDao.addEntry(argThat(e -> e.getKoalibeeId() == 3 && e.getDelta() == 20))).thenReturn(5);
+
+		assertTrue(this.ledgerService.reward(3, 20, EtaEntry.MOMENT_REWARD));
+
+	}
+
+	@Test
+	public void testRewardF() throws Exception {
+
+		when(this.ledgerDao.addEntry(isA(EtaEntry.class))).thenReturn(0);
+
+		assertFalse(this.ledgerService.reward(3, 20, EtaEntry.MOMENT_REWARD));
+
+	}
+
+	@Test
+	public void testCharge() throws Exception {
+
+		when(this.ledgerDao.chargeBalance(3, 100, EtaEntry.PROMOTION_FEE)).thenReturn(true);
+
+		assertTrue(this.ledgerService.charge(3, 100, EtaEntry.PROMOTION_FEE));
+
+	}
+
+	@Test
+	public void testGetPending() throws Exception {
+
+		when(this.ledgerDao.getPendingDeltas(Arrays.asList(3, 4))).thenReturn(Collections.singletonMap(3, 60));
+
+		assertEquals(Collections.singletonMap(3, 60), this.ledgerService.getPending(Arrays.asList(3, 4)));
+
+	}
+
+	@Test
+	public void testApplyPending() throws Exception {
+
+		// Full batches are followed by another one until the ledger runs dry.
+		when(this.ledgerDao.applyPending(2)).thenReturn(2, 2, 1);
+
+		assertEquals(5, this.ledgerService.applyPending());
+
+		verify(this.ledgerDao, times(3)).applyPending(2);
+
+	}
+
+	@Test
+	public void testApplyPendingF() throws Exception {
+
+		when(this.ledgerDao.applyPending(2)).thenReturn(2, -1);
+
+		assertEquals(2, this.ledgerService.applyPending());
+
+	}
+
+	@Test
+	public void testAfterPropertiesSet() throws Exception {
+
+		final LedgerService scheduledLedgerService = new LedgerService(10, 2);
+		scheduledLedgerService.setLedgerDao(this.ledgerDao);
+
+		when(this.ledgerDao.applyPending(anyInt())).thenReturn(0);
+
+		scheduledLedgerService.afterPropertiesSet();
+
+		// The applier runs in the background.
+		verify(this.ledgerDao, timeout(1000).atLeast(2)).applyPending(2);
+
+		scheduledLedgerService.destroy();
+
+	}
+
+	@Test
+	public void testDestroy() throws Exception {
+
+		when(this.ledgerDao.applyPending(2)).thenReturn(1);
+
+		this.ledgerService.destroy();
+
+		// Entries still pending are applied at shutdown.
+		verify(this.ledgerDao).applyPending(2);
+
+	}
+
+}
@@ -0,0 +1,112 @@
+package io.esoma.khr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.esoma.khr.dao.MediaDao;
+import io.esoma.khr.storage.MediaStore;
+
+@RunWith(MockitoJUnitRunner.StrictStubs.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MediaServiceTest {
+
+	private MediaService mediaService;
+
+	@Mock
+	private MediaDao mediaDao;
+
+	@Mock
+	private MediaStore mediaStore;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.mediaService = new MediaService(5);
+		this.mediaService.setMediaDao(this.mediaDao);
+		this.mediaService.setMediaStore(this.mediaStore);
+
+	}
+
+	@Test
+	public void testSetMediaDao() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testMigrate() throws Exception {
+
+		// Batches are run until one moves nothing.
+		when(this.mediaDao.migrateMedia(5)).thenReturn(5, 3, 0);
+
+		assertEquals(8, this.mediaService.migrate());
+
+		verify(this.mediaDao, times(3)).migrateMedia(5);
+
+	}
+
+	@Test
+	public void testMigrateF() throws Exception {
+
+		when(this.mediaDao.migrateMedia(5)).thenReturn(5, -1);
+
+		assertEquals(5, this.mediaService.migrate());
+
+	}
+
+	@Test
+	public void testAfterPropertiesSet1() throws Exception {
+
+		when(this.mediaStore.isEnabled()).thenReturn(true);
+		when(this.mediaDao.migrateMedia(5)).thenReturn(0);
+
+		this.mediaService.afterPropertiesSet();
+
+		// The migration runs in the background.
+		verify(this.mediaDao, timeout(1000)).migrateMedia(5);
+
+		this.mediaService.destroy();
+
+	}
+
+	@Test
+	public void testAfterPropertiesSet2() throws Exception {
+
+		when(this.mediaStore.isEnabled()).thenReturn(false);
+
+		this.mediaService.afterPropertiesSet();
+
+		this.mediaService.destroy();
+
+		// Nothing is moved while media is kept in the database.
+		verify(this.mediaDao, never()).migrateMedia(anyInt());
+
+	}
+
+}
@@ -0,0 +1,135 @@
+package io.esoma.khr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.esoma.khr.dao.MetricsDao;
+
+@RunWith(MockitoJUnitRunner.StrictStubs.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MetricsServiceTest {
+
+	private MetricsService metricsService;
+
+	@Mock
+	private MetricsDao metricsDao;
+
+	{
+		this.metricsService = new MetricsService();
+
+		// Initialize mock objects.
+		MockitoAnnotations.initMocks(MetricsServiceTest.class);
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.metricsService.setMetricsDao(this.metricsDao);
+		this.metricsService.setHashingService(new HashingService(1000, 1, 4));
+		this.metricsService.setQueryService(new QueryService(true, 2, 8, 5000));
+
+	}
+
+	@Test
+	public void testSetMetricsDao() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetHashingService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetQueryService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testGetCacheStatistics() throws Exception {
+
+		final Map<String, Long> counters = new HashMap<>();
+		counters.put("hitCount", 7L);
+		counters.put("missCount", 2L);
+		final Map<String, Map<String, Long>> cacheStatistics = new HashMap<>();
+		cacheStatistics.put("oracle.khr.album", counters);
+
+		when(this.metricsDao.getCacheStatistics()).thenReturn(cacheStatistics);
+
+		assertEquals(7L, this.metricsService.getCacheStatistics().get("oracle.khr.album").get("hitCount").longValue());
+
+	}
+
+	@Test
+	public void testGetCacheStatisticsE() throws Exception {
+
+		when(this.metricsDao.getCacheStatistics()).thenReturn(new HashMap<>());
+
+		assertTrue(this.metricsService.getCacheStatistics().isEmpty());
+
+	}
+
+	@Test
+	public void testGetHashingStatistics() throws Exception {
+
+		final Map<String, Long> hashingStatistics = this.metricsService.getHashingStatistics();
+
+		assertEquals(1000L, hashingStatistics.get("iterations").longValue());
+		assertEquals(0L, hashingStatistics.get("queueDepth").longValue());
+		assertEquals(4L, hashingStatistics.get("queueCapacity").longValue());
+
+	}
+
+	@Test
+	public void testGetPoolStatistics() throws Exception {
+
+		final Map<String, Long> poolStatistics = new HashMap<>();
+		poolStatistics.put("waiters", 2L);
+
+		when(this.metricsDao.getPoolStatistics()).thenReturn(poolStatistics);
+
+		assertEquals(2L, this.metricsService.getPoolStatistics().get("waiters").longValue());
+
+	}
+
+	@Test
+	public void testGetQueryStatistics() throws Exception {
+
+		final Map<String, Long> queryStatistics = this.metricsService.getQueryStatistics();
+
+		assertEquals(1L, queryStatistics.get("asynchronous").longValue());
+		assertEquals(2L, queryStatistics.get("poolSize").longValue());
+		assertEquals(8L, queryStatistics.get("queueCapacity").longValue());
+		assertEquals(5000L, queryStatistics.get("timeoutMillis").longValue());
+
+	}
+
+}
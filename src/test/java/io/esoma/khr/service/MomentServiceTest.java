@@ -8,10 +8,13 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.AfterClass;
@@ -24,25 +27,38 @@ import org.junit.runners.MethodSorters;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.esoma.khr.dao.KoalibeeDao;
 import io.esoma.khr.dao.MomentDao;
+import io.esoma.khr.index.RecentMoments;
+import io.esoma.khr.model.EtaEntry;
 import io.esoma.khr.model.Koalibee;
 import io.esoma.khr.model.Moment;
+import io.esoma.khr.model.MomentData;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class MomentServiceTest {
 
+	private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
 	private static Koalibee koalibee;
 	private static List<Moment> momentList;
 
 	private MomentService momentService;
+	private RecentMoments recentMoments;
 
 	@Mock
 	private KoalibeeDao koalibeeDao;
 	@Mock
 	private MomentDao momentDao;
+	@Mock
+	private LedgerService ledgerService;
 
 	{
 		this.momentService = new MomentService();
@@ -51,6 +67,11 @@ public class MomentServiceTest {
 		MockitoAnnotations.initMocks(KoalibeeServiceTest.class);
 	}
 
+	// Binds a request body the way the JSON message converter does.
+	private static <T> T bind(String source, Class<T> type) throws Exception {
+		return OBJECT_MAPPER.readValue(source, type);
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 
@@ -86,13 +107,19 @@ public class MomentServiceTest {
 
 		when(this.koalibeeDao.getKoalibeeById(anyInt())).thenReturn(null);
 		when(this.koalibeeDao.getKoalibeeById(7)).thenReturn(koalibee);
-		when(this.momentDao.getAllMoments()).thenReturn(momentList);
+		when(this.momentDao.getMomentPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1)).thenReturn(momentList);
+		when(this.momentDao.getMomentPage(null, 0, 3)).thenReturn(new ArrayList<Moment>());
 		when(this.momentDao.getAllMomentsByDate(LocalDate.parse("2015-09-17"))).thenReturn(new ArrayList<Moment>());
 		when(this.momentDao.getAllMomentsByDate(LocalDate.parse("2018-11-09"))).thenReturn(momentList);
 
 		this.momentService.setKoalibeeDao(this.koalibeeDao);
 		this.momentService.setMomentDao(this.momentDao);
 
+		this.recentMoments = new RecentMoments(3);
+		this.momentService.setRecentMoments(this.recentMoments);
+
+		this.momentService.setLedgerService(this.ledgerService);
+
 	}
 
 	@Test
@@ -118,6 +145,18 @@ public class MomentServiceTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetRecentMoments() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetLedgerService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testGetOneN() throws Exception {
 
@@ -153,9 +192,7 @@ public class MomentServiceTest {
 	@Test
 	public void testSearchOneBadJSON() throws Exception {
 
-		final String source = "invalid json";
-
-		assertNull(this.momentService.searchOne(source));
+		assertNull(this.momentService.searchOne(null));
 
 	}
 
@@ -164,7 +201,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"koali\":6,\"postDate\":\"2015-03-05T21:22:59\"}";
 
-		assertNull(this.momentService.searchOne(source));
+		assertNull(this.momentService.searchOne(bind(source, MomentData.class)));
 
 	}
 
@@ -173,7 +210,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"koalibeeId\":6,\"post\":\"2015-03-05\"}";
 
-		assertNull(this.momentService.searchOne(source));
+		assertNull(this.momentService.searchOne(bind(source, MomentData.class)));
 
 	}
 
@@ -182,7 +219,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"koalibeeId\":6,\"postDate\":\"feb201503\"}";
 
-		assertNull(this.momentService.searchOne(source));
+		assertNull(this.momentService.searchOne(bind(source, MomentData.class)));
 
 	}
 
@@ -194,7 +231,7 @@ public class MomentServiceTest {
 		when(this.momentDao.getMomentByKoalibeeAndDate(1, LocalDate.parse("2017-07-07"))).thenReturn(null);
 		this.momentService.setMomentDao(momentDao);
 
-		assertNull(this.momentService.searchOne(source));
+		assertNull(this.momentService.searchOne(bind(source, MomentData.class)));
 
 	}
 
@@ -211,7 +248,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"koalibeeId\":6,\"postDate\":\"2016-12-31\"}";
 
-		Moment persistMoment = this.momentService.searchOne(source);
+		Moment persistMoment = this.momentService.searchOne(bind(source, MomentData.class));
 
 		assertNotNull(persistMoment);
 
@@ -226,9 +263,7 @@ public class MomentServiceTest {
 	@Test
 	public void testPostOneBadJSON() throws Exception {
 
-		final String source = "bad JSON";
-
-		assertEquals(0, this.momentService.postOne(1, source));
+		assertEquals(0, this.momentService.postOne(1, null));
 
 	}
 
@@ -237,7 +272,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"koalibeeId\":2,\"postDate\":\"2016-12-31\"}";
 
-		assertEquals(0, this.momentService.postOne(2, source));
+		assertEquals(0, this.momentService.postOne(2, bind(source, MomentData.class)));
 
 	}
 
@@ -246,7 +281,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"koalibeeId\":7,\"Comment\":\"haha\"}";
 
-		assertEquals(0, this.momentService.postOne(7, source));
+		assertEquals(0, this.momentService.postOne(7, bind(source, MomentData.class)));
 
 	}
 
@@ -258,7 +293,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"koalibeeId\":7,\"postComment\":\"haha\"}";
 
-		assertEquals(0, this.momentService.postOne(7, source));
+		assertEquals(0, this.momentService.postOne(7, bind(source, MomentData.class)));
 
 	}
 
@@ -270,7 +305,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"koalibeeId\":7,\"postComment\":\"other comments\"}";
 
-		assertEquals(0, this.momentService.postOne(7, source));
+		assertEquals(0, this.momentService.postOne(7, bind(source, MomentData.class)));
 
 	}
 
@@ -282,27 +317,100 @@ public class MomentServiceTest {
 
 		final String source = "{\"postComment\":\"good message\"}";
 
-		assertEquals(77, this.momentService.postOne(7, source));
+		assertEquals(77, this.momentService.postOne(7, bind(source, MomentData.class)));
+
+		verify(this.ledgerService).reward(7, 20, EtaEntry.MOMENT_REWARD);
 
 	}
 
 	@Test
-	public void testGetAll() throws Exception {
+	public void testPostOneR() throws Exception {
+
+		when(this.momentDao.addMoment(isA(Moment.class))).thenReturn(77);
+
+		this.recentMoments.load(Arrays.asList(new Moment(40, LocalDate.parse("2018-11-09"))),
+				this.recentMoments.getStamp());
 
-		List<Moment> momentList = this.momentService.getAll();
+		assertEquals(77, this.momentService.postOne(7, bind("{\"postComment\":\"good message\"}", MomentData.class)));
 
-		assertFalse(momentList.isEmpty());
+		List<Moment> momentList = this.recentMoments.getPage(null, 0, 3);
+
+		assertEquals(2, momentList.size());
+
+		assertEquals(77, momentList.get(0).getMomentId());
+
+		assertEquals("good message", momentList.get(0).getPostComment());
 
 		assertNull(momentList.get(0).getKoalibee());
 
 	}
 
 	@Test
-	public void testGetByDateBD() throws Exception {
+	public void testGetAll() throws Exception {
+
+		Page<Moment> page = this.momentService.getAll(null, null);
+
+		assertFalse(page.getItems().isEmpty());
+
+		assertNull(page.getItems().get(0).getKoalibee());
+
+		assertNull(page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetAllC() throws Exception {
 
-		final String source = "bad things";
+		final List<Moment> momentList = new ArrayList<>();
+		momentList.add(new Moment(5, LocalDate.parse("2018-11-09")));
+		momentList.add(new Moment(4, LocalDate.parse("2018-11-08")));
+		momentList.add(new Moment(3, LocalDate.parse("2018-11-08")));
 
-		assertTrue(this.momentService.getByDate(source).isEmpty());
+		when(this.momentDao.getMomentPage(LocalDate.parse("2018-11-10"), 6, 3)).thenReturn(momentList);
+
+		Page<Moment> page = this.momentService.getAll(PageUtility.encodeCursor("2018-11-10", 6), 2);
+
+		assertEquals(2, page.getItems().size());
+
+		assertEquals(PageUtility.encodeCursor("2018-11-08", 4), page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetAllR() throws Exception {
+
+		final List<Moment> momentList = new ArrayList<>();
+		momentList.add(new Moment(5, LocalDate.parse("2018-11-09")));
+		momentList.add(new Moment(4, LocalDate.parse("2018-11-08")));
+
+		when(this.momentDao.getMomentPage(null, 0, 3)).thenReturn(momentList);
+
+		Page<Moment> page = this.momentService.getAll(null, 1);
+
+		assertEquals(new Moment(5), page.getItems().get(0));
+
+		page = this.momentService.getAll(page.getNextCursor(), 1);
+
+		assertEquals(new Moment(4), page.getItems().get(0));
+
+		assertNull(page.getNextCursor());
+
+		// Both pages are cut from the buffer loaded by the first one.
+		verify(this.momentDao, times(1)).getMomentPage(null, 0, 3);
+
+	}
+
+	@Test
+	public void testGetAllBC() throws Exception {
+
+		assertNull(this.momentService.getAll(PageUtility.encodeCursor("yesterday", 6), null));
+
+	}
+
+	@Test
+	public void testGetByDateBD() throws Exception {
+
+		assertTrue(this.momentService.getByDate(null).isEmpty());
 
 	}
 
@@ -311,9 +419,9 @@ public class MomentServiceTest {
 
 		final String source = "{\"postDate\":\"2015-09-17\"}";
 
-		assertNotNull(this.momentService.getByDate(source));
+		assertNotNull(this.momentService.getByDate(bind(source, MomentData.class)));
 
-		assertTrue(this.momentService.getByDate(source).isEmpty());
+		assertTrue(this.momentService.getByDate(bind(source, MomentData.class)).isEmpty());
 
 	}
 
@@ -322,7 +430,7 @@ public class MomentServiceTest {
 
 		final String source = "{\"postDate\":\"2018-11-09\"}";
 
-		List<Moment> momentList = this.momentService.getByDate(source);
+		List<Moment> momentList = this.momentService.getByDate(bind(source, MomentData.class));
 
 		assertEquals(3, momentList.size());
 
@@ -342,4 +450,21 @@ public class MomentServiceTest {
 
 	}
 
+	@Test
+	public void testDeleteR() throws Exception {
+
+		when(this.momentDao.deleteMoment(anyInt())).thenReturn(true);
+
+		this.recentMoments.load(
+				Arrays.asList(new Moment(5, LocalDate.parse("2018-11-09")), new Moment(2, LocalDate.parse("2018-11-08"))),
+				this.recentMoments.getStamp());
+
+		assertTrue(this.momentService.delete(2));
+
+		assertEquals(1, this.recentMoments.size());
+
+		assertEquals(new Moment(5), this.recentMoments.getPage(null, 0, 3).get(0));
+
+	}
+
 }
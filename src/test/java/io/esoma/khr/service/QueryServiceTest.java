@@ -0,0 +1,175 @@
+package io.esoma.khr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class QueryServiceTest {
+
+	private QueryService queryService;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.queryService = new QueryService(true, 1, 1, 5000);
+
+	}
+
+	@After
+	public void tearDown() throws Exception {
+
+		this.queryService.destroy();
+
+	}
+
+	private static Object await(DeferredResult<?> result) throws Exception {
+
+		final CompletableFuture<Object> done = new CompletableFuture<>();
+		result.setResultHandler(done::complete);
+
+		return done.get(5, TimeUnit.SECONDS);
+
+	}
+
+	@Test
+	public void testSubmit() throws Exception {
+
+		final DeferredResult<ResponseEntity<String>> result = this.queryService
+				.submit(() -> ResponseEntity.ok(Thread.currentThread().getName()));
+
+		final ResponseEntity<?> response = (ResponseEntity<?>) await(result);
+
+		assertEquals(200, response.getStatusCodeValue());
+
+		assertEquals("khr-query-1", response.getBody());
+
+	}
+
+	@Test
+	public void testSubmitInline() throws Exception {
+
+		final QueryService inlineQueryService = new QueryService(false, 1, 1, 5000);
+
+		final DeferredResult<ResponseEntity<String>> result = inlineQueryService
+				.submit(() -> ResponseEntity.ok(Thread.currentThread().getName()));
+
+		assertTrue(result.hasResult());
+
+		assertEquals(Thread.currentThread().getName(), ((ResponseEntity<?>) result.getResult()).getBody());
+
+		inlineQueryService.destroy();
+
+	}
+
+	@Test
+	public void testSubmitError() throws Exception {
+
+		final IllegalStateException error = new IllegalStateException("query failed");
+
+		final DeferredResult<ResponseEntity<String>> result = this.queryService.submit(() -> {
+			throw error;
+		});
+
+		assertSame(error, await(result));
+
+		assertEquals(1L, this.queryService.getStatistics().get("failedCount").longValue());
+
+	}
+
+	@Test
+	public void testSubmitBusy() throws Exception {
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		try {
+			// One task occupies the thread and the other fills the queue.
+			this.queryService.submit(() -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return ResponseEntity.ok("slow");
+			});
+			started.await(5, TimeUnit.SECONDS);
+			this.queryService.submit(() -> ResponseEntity.ok("queued"));
+
+			final DeferredResult<ResponseEntity<String>> result = this.queryService
+					.submit(() -> ResponseEntity.ok("rejected"));
+
+			assertTrue(result.hasResult());
+
+			final ResponseEntity<?> response = (ResponseEntity<?>) result.getResult();
+
+			assertEquals(503, response.getStatusCodeValue());
+
+			assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+			assertEquals(1L, this.queryService.getStatistics().get("rejectedCount").longValue());
+		} finally {
+			release.countDown();
+		}
+
+	}
+
+	@Test
+	public void testComplete() throws Exception {
+
+		final DeferredResult<ResponseEntity<String>> result = this.queryService
+				.complete(ResponseEntity.status(401).body("denied"));
+
+		// The response is set without taking a worker thread.
+		assertTrue(result.hasResult());
+
+		assertEquals(401, ((ResponseEntity<?>) result.getResult()).getStatusCodeValue());
+
+		assertEquals(0L, this.queryService.getStatistics().get("completedCount").longValue());
+
+	}
+
+	@Test
+	public void testGetStatistics() throws Exception {
+
+		await(this.queryService.submit(() -> ResponseEntity.ok("done")));
+
+		final Map<String, Long> statistics = this.queryService.getStatistics();
+
+		assertEquals(1L, statistics.get("asynchronous").longValue());
+		assertEquals(1L, statistics.get("poolSize").longValue());
+		assertEquals(1L, statistics.get("queueCapacity").longValue());
+		assertEquals(5000L, statistics.get("timeoutMillis").longValue());
+		assertEquals(1L, statistics.get("completedCount").longValue());
+		assertEquals(0L, statistics.get("rejectedCount").longValue());
+
+	}
+
+}
@@ -1,11 +1,15 @@
 package io.esoma.khr.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -21,17 +25,26 @@ import org.junit.runners.MethodSorters;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.esoma.khr.dao.KoalibeeDao;
 import io.esoma.khr.dao.ReviewDao;
 import io.esoma.khr.model.Album;
+import io.esoma.khr.model.EtaEntry;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Review;
+import io.esoma.khr.model.ReviewData;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class ReviewServiceTest {
 
+	private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
 	private static List<Review> reviewList;
 	private static List<Album> albumList;
 	private static List<Koalibee> koalibeeList;
@@ -42,6 +55,10 @@ public class ReviewServiceTest {
 	private KoalibeeDao koalibeeDao;
 	@Mock
 	private ReviewDao reviewDao;
+	@Mock
+	private AlbumService albumService;
+	@Mock
+	private LedgerService ledgerService;
 
 	{
 		reviewService = new ReviewService();
@@ -50,6 +67,11 @@ public class ReviewServiceTest {
 		MockitoAnnotations.initMocks(KoalibeeServiceTest.class);
 	}
 
+	// Binds a request body the way the JSON message converter does.
+	private static <T> T bind(String source, Class<T> type) throws Exception {
+		return OBJECT_MAPPER.readValue(source, type);
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 
@@ -90,19 +112,19 @@ public class ReviewServiceTest {
 		reviewList.get(2).setKoalibeeName("a koalibee");
 
 		when(this.reviewDao.getReviewById(anyInt())).thenReturn(null);
-		when(this.koalibeeDao.getKoalibeeById(anyInt())).thenReturn(null);
 		when(this.reviewDao.getReviewByAlbumAndKoalibee(anyInt(), anyInt())).thenReturn(null);
-		when(this.koalibeeDao.getAllPurchasedAlbumsByKoalibeeId(1)).thenReturn(albumList);
+		when(this.koalibeeDao.ownsAlbum(eq(1), anyInt()))
+				.thenAnswer(invocation -> albumList.contains(new Album(invocation.getArgument(1))));
 
 		when(this.reviewDao.getReviewById(1)).thenReturn(reviewList.get(0));
-		when(this.koalibeeDao.getKoalibeeById(1)).thenReturn(koalibeeList.get(0));
 
-		when(this.koalibeeDao.updateEtaBalance(isA(Koalibee.class))).thenReturn(true);
 		when(this.reviewDao.addReview(isA(Review.class))).thenReturn(4);
 		when(this.reviewDao.deleteReview(anyInt())).thenReturn(true);
 
 		this.reviewService.setKoalibeeDao(this.koalibeeDao);
 		this.reviewService.setReviewDao(this.reviewDao);
+		this.reviewService.setAlbumService(this.albumService);
+		this.reviewService.setLedgerService(this.ledgerService);
 
 	}
 
@@ -129,6 +151,18 @@ public class ReviewServiceTest {
 		assertTrue(true);
 	}
 
+	@Test
+	public void testSetAlbumService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetLedgerService() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
 	@Test
 	public void testGetOneN() throws Exception {
 
@@ -156,9 +190,7 @@ public class ReviewServiceTest {
 	@Test
 	public void testSearchOneBadJSON() throws Exception {
 
-		final String source = "bad JSON string";
-
-		assertNull(this.reviewService.searchOne(source));
+		assertNull(this.reviewService.searchOne(null));
 
 	}
 
@@ -167,7 +199,7 @@ public class ReviewServiceTest {
 
 		final String source = "{\"koalibeeId\":1}";
 
-		assertNull(this.reviewService.searchOne(source));
+		assertNull(this.reviewService.searchOne(bind(source, ReviewData.class)));
 
 	}
 
@@ -176,7 +208,7 @@ public class ReviewServiceTest {
 
 		final String source = "{\"albumId\":1}";
 
-		assertNull(this.reviewService.searchOne(source));
+		assertNull(this.reviewService.searchOne(bind(source, ReviewData.class)));
 
 	}
 
@@ -185,7 +217,7 @@ public class ReviewServiceTest {
 
 		final String source = "{\"albumId\":1,\"koalibeeId\":1}";
 
-		assertNull(this.reviewService.searchOne(source));
+		assertNull(this.reviewService.searchOne(bind(source, ReviewData.class)));
 
 	}
 
@@ -197,7 +229,7 @@ public class ReviewServiceTest {
 
 		final String source = "{\"albumId\":1,\"koalibeeId\":1}";
 
-		Review review = this.reviewService.searchOne(source);
+		Review review = this.reviewService.searchOne(bind(source, ReviewData.class));
 
 		assertNotNull(review);
 
@@ -210,9 +242,7 @@ public class ReviewServiceTest {
 	@Test
 	public void testPostBadJSON() throws Exception {
 
-		final String source = "bad bad bad";
-
-		assertEquals(0, this.reviewService.post(1, 1, source));
+		assertEquals(0, this.reviewService.post(1, 1, null));
 
 	}
 
@@ -224,28 +254,26 @@ public class ReviewServiceTest {
 
 		final String source = "{\"rating\":8,\"reviewComment\":\"this is a comment\"}";
 
-		assertEquals(0, this.reviewService.post(1, 1, source));
+		assertEquals(0, this.reviewService.post(1, 1, bind(source, ReviewData.class)));
 
 	}
 
 	@Test
 	public void testPostNO() throws Exception {
 
-		when(this.koalibeeDao.getAllPurchasedAlbumsByKoalibeeId(2)).thenReturn(new ArrayList<Album>());
+		when(this.koalibeeDao.ownsAlbum(2, 1)).thenReturn(false);
 		this.reviewService.setKoalibeeDao(koalibeeDao);
 
 		final String source = "{\"rating\":8,\"reviewComment\":\"this is a comment\"}";
 
-		assertEquals(0, this.reviewService.post(2, 1, source));
+		assertEquals(0, this.reviewService.post(2, 1, bind(source, ReviewData.class)));
 
 	}
 
 	@Test
 	public void testPostBadR() throws Exception {
 
-		final String source = "{{\"ratasaing\":8,\"reviewComment\":\"this is a comment\"}";
-
-		assertEquals(0, this.reviewService.post(1, 2, source));
+		assertEquals(0, this.reviewService.post(1, 2, null));
 
 	}
 
@@ -254,7 +282,20 @@ public class ReviewServiceTest {
 
 		final String source = "{\"rating\":8,\"Comment\":\"this is a comment\"}";
 
-		assertEquals(0, this.reviewService.post(1, 2, source));
+		assertEquals(0, this.reviewService.post(1, 2, bind(source, ReviewData.class)));
+
+	}
+
+	@Test
+	public void testPostOR() throws Exception {
+
+		assertEquals(0, this.reviewService.post(1, 2,
+				bind("{\"rating\":0,\"reviewComment\":\"this is a comment\"}", ReviewData.class)));
+
+		assertEquals(0, this.reviewService.post(1, 2,
+				bind("{\"rating\":11,\"reviewComment\":\"this is a comment\"}", ReviewData.class)));
+
+		verify(this.reviewDao, never()).addReview(isA(Review.class));
 
 	}
 
@@ -263,7 +304,11 @@ public class ReviewServiceTest {
 
 		final String source = "{\"rating\":8,\"reviewComment\":\"this is a comment\"}";
 
-		assertEquals(4, this.reviewService.post(1, 2, source));
+		assertEquals(4, this.reviewService.post(1, 2, bind(source, ReviewData.class)));
+
+		verify(this.albumService).recordRating();
+
+		verify(this.ledgerService).reward(1, 10, EtaEntry.REVIEW_REWARD);
 
 	}
 
@@ -272,21 +317,79 @@ public class ReviewServiceTest {
 
 		assertTrue(this.reviewService.delete(3));
 
+		verify(this.albumService).recordRating();
+
+	}
+
+	@Test
+	public void testDeleteF() throws Exception {
+
+		when(this.reviewDao.deleteReview(5)).thenReturn(false);
+
+		assertFalse(this.reviewService.delete(5));
+
+		verify(this.albumService, never()).recordRating();
+
+	}
+
+	@Test
+	public void testRebuildRatings() throws Exception {
+
+		when(this.reviewDao.rebuildRatings()).thenReturn(true);
+
+		assertTrue(this.reviewService.rebuildRatings());
+
+		verify(this.albumService).recordRating();
+
+	}
+
+	@Test
+	public void testRebuildRatingsF() throws Exception {
+
+		when(this.reviewDao.rebuildRatings()).thenReturn(false);
+
+		assertFalse(this.reviewService.rebuildRatings());
+
+		verify(this.albumService, never()).recordRating();
+
 	}
 
 	@Test
 	public void testGetAll() throws Exception {
 
-		when(this.reviewDao.getAllReviews()).thenReturn(reviewList);
+		when(this.reviewDao.getReviewPage(0, PageUtility.DEFAULT_PAGE_SIZE + 1)).thenReturn(reviewList);
 		this.reviewService.setReviewDao(reviewDao);
 
-		List<Review> reviewList = this.reviewService.getAll();
+		Page<Review> page = this.reviewService.getAll(null, null);
 
-		assertEquals(3, reviewList.size());
+		assertEquals(3, page.getItems().size());
+
+		assertNotNull(page.getItems().get(0).getAlbumName());
+
+		assertNull(page.getItems().get(0).getKoalibee());
+
+		assertNull(page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetAllC() throws Exception {
 
-		assertNotNull(reviewList.get(0).getAlbumName());
+		when(this.reviewDao.getReviewPage(7, 3)).thenReturn(new ArrayList<>(reviewList));
+		this.reviewService.setReviewDao(reviewDao);
+
+		Page<Review> page = this.reviewService.getAll(PageUtility.encodeCursor(7), 2);
+
+		assertEquals(2, page.getItems().size());
+
+		assertEquals(PageUtility.encodeCursor(2), page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetAllBC() throws Exception {
 
-		assertNull(reviewList.get(0).getKoalibee());
+		assertNull(this.reviewService.getAll(PageUtility.encodeCursor("Wow", 7), null));
 
 	}
 
@@ -0,0 +1,206 @@
+package io.esoma.khr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.esoma.khr.dao.AlbumDao;
+import io.esoma.khr.dao.TrackDao;
+import io.esoma.khr.index.CatalogIndex;
+import io.esoma.khr.index.SuggestIndex;
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Page;
+import io.esoma.khr.model.SearchHit;
+import io.esoma.khr.model.Track;
+import io.esoma.khr.utility.PageUtility;
+
+@RunWith(MockitoJUnitRunner.StrictStubs.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SearchServiceTest {
+
+	private SearchService searchService;
+
+	private static List<Album> albumList;
+	private static List<Track> trackList;
+	private static Map<Integer, Integer> purchaseCounts;
+
+	@Mock
+	private AlbumDao albumDao;
+	@Mock
+	private TrackDao trackDao;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+
+		// Album 1 is in the basic collection, and album 3 is not.
+		albumList = new ArrayList<Album>();
+		albumList.add(new Album(1));
+		albumList.add(new Album(3));
+		albumList.get(0).setAlbumName("Koala Nights");
+		albumList.get(1).setAlbumName("Koala Days");
+
+		trackList = new ArrayList<Track>();
+		trackList.add(new Track(1, "Koala Song", "Eddy", 180, "F"));
+		trackList.add(new Track(2, "Tree Song", "Koala", 200, "F"));
+		trackList.get(0).setAlbum(albumList.get(0));
+		trackList.get(1).setAlbum(albumList.get(1));
+
+		purchaseCounts = new HashMap<Integer, Integer>();
+		purchaseCounts.put(3, 2);
+
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		when(this.albumDao.getAllPublishedAlbums()).thenReturn(albumList);
+		when(this.trackDao.getAllTracks()).thenReturn(trackList);
+		when(this.albumDao.getPurchaseCounts()).thenReturn(purchaseCounts);
+
+		this.searchService = new SearchService();
+		this.searchService.setAlbumDao(this.albumDao);
+		this.searchService.setTrackDao(this.trackDao);
+		this.searchService.setCatalogIndex(new CatalogIndex());
+		this.searchService.setSuggestIndex(new SuggestIndex());
+		this.searchService.afterPropertiesSet();
+
+	}
+
+	@Test
+	public void testSetAlbumDao() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetTrackDao() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetCatalogIndex() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSetSuggestIndex() throws Exception {
+		// Intentionally left blank.
+		assertTrue(true);
+	}
+
+	@Test
+	public void testSearch1() throws Exception {
+
+		final Page<SearchHit> page = this.searchService.search("koala", null, null, true);
+
+		assertNotNull(page);
+		assertEquals(4, page.getItems().size());
+		assertNull(page.getNextCursor());
+
+	}
+
+	@Test
+	public void testSearch2() throws Exception {
+
+		final Page<SearchHit> page1 = this.searchService.search("koala", null, 3, true);
+
+		assertEquals(3, page1.getItems().size());
+		assertEquals(SearchHit.ALBUM, page1.getItems().get(0).getType());
+		assertEquals(1, page1.getItems().get(0).getId());
+		assertNotNull(page1.getNextCursor());
+
+		final Page<SearchHit> page2 = this.searchService.search("koala", page1.getNextCursor(), 3, true);
+
+		// The last result is a track matched by its composer.
+		assertEquals(1, page2.getItems().size());
+		assertEquals(SearchHit.TRACK, page2.getItems().get(0).getType());
+		assertEquals(2, page2.getItems().get(0).getId());
+		assertNull(page2.getNextCursor());
+
+	}
+
+	@Test
+	public void testSearchNP() throws Exception {
+
+		final Page<SearchHit> page = this.searchService.search("koala", null, null, false);
+
+		// Album 3 and its track are not in the basic collection.
+		assertEquals(2, page.getItems().size());
+		assertTrue(page.getItems().stream().allMatch(h -> h.getAlbumId() == 1));
+
+	}
+
+	@Test
+	public void testSearchNM() throws Exception {
+
+		assertTrue(this.searchService.search("panda", null, null, true).getItems().isEmpty());
+
+	}
+
+	@Test
+	public void testSearchIC() throws Exception {
+
+		assertNull(this.searchService.search("koala", "invalid", null, true));
+
+		assertNull(this.searchService.search("koala", PageUtility.encodeCursor(4, "GENRE", 1), null, true));
+
+		assertNull(this.searchService.search("koala", PageUtility.encodeCursor("x", SearchHit.ALBUM, 1), null, true));
+
+	}
+
+	@Test
+	public void testSuggest1() throws Exception {
+
+		// The names of the most purchased album come first, in alphabetical order.
+		assertEquals(Arrays.asList("Koala", "Koala Days", "Koala Nights"),
+				this.searchService.suggest("ko", null, true));
+
+		assertEquals(Arrays.asList("Koala"), this.searchService.suggest("KO", 1, true));
+
+	}
+
+	@Test
+	public void testSuggest2() throws Exception {
+
+		// Album 3 is not in the basic collection.
+		assertEquals(Arrays.asList("Koala Nights"), this.searchService.suggest("koala", 0, false));
+
+		assertEquals(Arrays.asList("Eddy"), this.searchService.suggest("e", null, false));
+
+	}
+
+	@Test
+	public void testSuggestNM() throws Exception {
+
+		assertTrue(this.searchService.suggest("panda", null, true).isEmpty());
+
+		assertTrue(this.searchService.suggest(" ", null, true).isEmpty());
+
+	}
+
+}
@@ -0,0 +1,243 @@
+package io.esoma.khr.service;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.esoma.khr.dao.AlbumDao;
+import io.esoma.khr.dao.KoalibeeDao;
+import io.esoma.khr.dao.ThumbnailDao;
+import io.esoma.khr.model.Album;
+import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Thumbnail;
+import io.esoma.khr.utility.ImageUtility;
+
+@RunWith(MockitoJUnitRunner.StrictStubs.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ThumbnailServiceTest {
+
+	private static byte[] image;
+
+	private ThumbnailService thumbnailService;
+
+	@Mock
+	private AlbumDao albumDao;
+	@Mock
+	private KoalibeeDao koalibeeDao;
+	@Mock
+	private ThumbnailDao thumbnailDao;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB), "png", out);
+		image = out.toByteArray();
+
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Before
+	public void setUp() throws Exception {
+
+		this.thumbnailService = new ThumbnailService();
+		this.thumbnailService.setAlbumDao(this.albumDao);
+		this.thumbnailService.setKoalibeeDao(this.koalibeeDao);
+		this.thumbnailService.setThumbnailDao(this.thumbnailDao);
+
+	}
+
+	@After
+	public void tearDown() throws Exception {
+
+		this.thumbnailService.destroy();
+
+	}
+
+	@Test
+	public void testRefreshArtwork() throws Exception {
+
+		final Album album = new Album(5);
+		album.setArtwork(image);
+
+		when(this.albumDao.getAlbumArtwork(5)).thenReturn(album);
+
+		this.thumbnailService.refreshArtwork(5);
+
+		// The thumbnails are made in the background.
+		verify(this.thumbnailDao, timeout(5000))
+				.replaceArtworkThumbnails(eq(5), argThat(l -> l.size() == ImageUtility.THUMBNAIL_SIZES.length));
+
+	}
+
+	@Test
+	public void testRefreshAvatar() throws Exception {
+
+		final Koalibee koalibee = new Koalibee(2);
+		koalibee.setAvatar(image);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		when(this.koalibeeDao.getKoalibeeAvatar(2)).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return koalibee;
+		});
+
+		this.thumbnailService.refreshAvatar(2);
+
+		// The old thumbnails are neither dropped on the request thread nor served.
+		verify(this.thumbnailDao, never()).replaceAvatarThumbnails(anyInt(), anyList());
+
+		assertNull(this.thumbnailService.getAvatar(2, 64));
+
+		verify(this.thumbnailDao, never()).getAvatarThumbnail(anyInt(), anyInt());
+
+		release.countDown();
+
+		verify(this.thumbnailDao, timeout(5000).atLeastOnce())
+				.replaceAvatarThumbnails(eq(2), argThat(l -> l.size() == ImageUtility.THUMBNAIL_SIZES.length));
+
+	}
+
+	@Test
+	public void testRefreshAvatarF() throws Exception {
+
+		final Koalibee koalibee = new Koalibee(2);
+		koalibee.setAvatar("not an image".getBytes());
+
+		when(this.koalibeeDao.getKoalibeeAvatar(2)).thenReturn(koalibee);
+		when(this.thumbnailDao.getAvatarThumbnail(2, 64)).thenReturn(null);
+
+		this.thumbnailService.refreshAvatar(2);
+
+		// The thumbnails of the old avatar are dropped even if the new one fails.
+		verify(this.thumbnailDao, timeout(5000)).replaceAvatarThumbnails(eq(2), argThat(l -> l.isEmpty()));
+
+		verify(this.koalibeeDao, after(200).times(1)).getKoalibeeAvatar(2);
+
+		assertNull(this.thumbnailService.getAvatar(2, 64));
+
+		verify(this.koalibeeDao, after(200).times(1)).getKoalibeeAvatar(2);
+
+	}
+
+	@Test
+	public void testGetArtworkL() throws Exception {
+
+		assertNull(this.thumbnailService.getArtwork(5, 1000));
+
+		verify(this.thumbnailDao, never()).getArtworkThumbnail(anyInt(), anyInt());
+
+	}
+
+	@Test
+	public void testGetArtworkS() throws Exception {
+
+		final Thumbnail thumbnail = new Thumbnail(160, "thumb".getBytes(), "JPEG");
+
+		when(this.thumbnailDao.getArtworkThumbnail(5, 160)).thenReturn(thumbnail);
+
+		assertSame(thumbnail, this.thumbnailService.getArtwork(5, 100));
+
+		verify(this.albumDao, never()).getAlbumArtwork(anyInt());
+
+	}
+
+	@Test
+	public void testGetArtworkM() throws Exception {
+
+		final Album album = new Album(5);
+		album.setArtwork(image);
+
+		when(this.thumbnailDao.getArtworkThumbnail(5, 64)).thenReturn(null);
+		when(this.albumDao.getAlbumArtwork(5)).thenReturn(album);
+
+		assertNull(this.thumbnailService.getArtwork(5, 64));
+
+		// A miss makes the thumbnails of an existing artwork.
+		verify(this.thumbnailDao, timeout(5000)).replaceArtworkThumbnails(eq(5), anyList());
+
+	}
+
+	@Test
+	public void testGetArtworkF() throws Exception {
+
+		final Album album = new Album(5);
+		album.setArtwork("not an image".getBytes());
+
+		when(this.thumbnailDao.getArtworkThumbnail(5, 64)).thenReturn(null);
+		when(this.albumDao.getAlbumArtwork(5)).thenReturn(album);
+
+		assertNull(this.thumbnailService.getArtwork(5, 64));
+
+		// Let the job finish before asking again.
+		verify(this.albumDao, after(500).times(1)).getAlbumArtwork(5);
+
+		assertNull(this.thumbnailService.getArtwork(5, 64));
+
+		// An artwork that cannot be decoded is not read again.
+		verify(this.albumDao, after(200).times(1)).getAlbumArtwork(5);
+
+		verify(this.thumbnailDao, never()).replaceArtworkThumbnails(anyInt(), anyList());
+
+	}
+
+	@Test
+	public void testGetAvatarM() throws Exception {
+
+		when(this.thumbnailDao.getAvatarThumbnail(2, 320)).thenReturn(null);
+		when(this.koalibeeDao.getKoalibeeAvatar(2)).thenReturn(null);
+
+		assertNull(this.thumbnailService.getAvatar(2, 200));
+
+		verify(this.koalibeeDao, after(500).times(1)).getKoalibeeAvatar(2);
+
+		assertNull(this.thumbnailService.getAvatar(2, 200));
+
+		// A koalibee without an avatar is not read again until it gets one.
+		verify(this.koalibeeDao, after(200).times(1)).getKoalibeeAvatar(2);
+
+	}
+
+	@Test
+	public void testDestroy() throws Exception {
+
+		this.thumbnailService.destroy();
+
+		// Jobs after shutdown are dropped.
+		this.thumbnailService.refreshArtwork(5);
+
+		verify(this.albumDao, after(200).never()).getAlbumArtwork(anyInt());
+
+	}
+
+}
@@ -5,12 +5,21 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -22,18 +31,30 @@ import org.junit.runners.MethodSorters;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.esoma.khr.dao.AlbumDao;
 import io.esoma.khr.dao.KoalibeeDao;
 import io.esoma.khr.dao.TrackDao;
+import io.esoma.khr.index.CatalogIndex;
+import io.esoma.khr.index.SuggestIndex;
 import io.esoma.khr.model.Album;
 import io.esoma.khr.model.Koalibee;
+import io.esoma.khr.model.Page;
 import io.esoma.khr.model.Track;
+import io.esoma.khr.model.TrackData;
+import io.esoma.khr.storage.MediaStore;
+import io.esoma.khr.utility.PageUtility;
 
 @RunWith(MockitoJUnitRunner.StrictStubs.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class TrackServiceTest {
 
+	private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
 	private static List<Album> albumList;
 	private static List<Track> trackList;
 	private static List<Koalibee> koalibeeList;
@@ -46,6 +67,12 @@ public class TrackServiceTest {
 	private KoalibeeDao koalibeeDao;
 	@Mock
 	private AlbumDao albumdao;
+	@Mock
+	private CatalogIndex catalogIndex;
+	@Mock
+	private SuggestIndex suggestIndex;
+	@Mock
+	private MediaStore mediaStore;
 
 	{
 		this.trackService = new TrackService();
@@ -54,6 +81,17 @@ public class TrackServiceTest {
 		MockitoAnnotations.initMocks(KoalibeeServiceTest.class);
 	}
 
+	// Binds a request body the way the JSON message converter does.
+	private static <T> T bind(String source, Class<T> type) throws Exception {
+		return OBJECT_MAPPER.readValue(source, type);
+	}
+
+	// Binds a request body holding an array of tracks.
+	private static List<TrackData> bindAll(String source) throws Exception {
+		return OBJECT_MAPPER.readValue(source, new TypeReference<List<TrackData>>() {
+		});
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 
@@ -101,8 +139,9 @@ public class TrackServiceTest {
 
 		when(this.albumdao.getAlbumById(anyInt())).thenReturn(null);
 		when(this.trackDao.getTrackById(anyInt())).thenReturn(null);
-		when(this.koalibeeDao.getAllPurchasedAlbumsByKoalibeeId(anyInt())).thenReturn(new ArrayList<Album>());
-		when(this.koalibeeDao.getAllPurchasedAlbumsByKoalibeeId(1)).thenReturn(albumList);
+		when(this.koalibeeDao.ownsAlbum(anyInt(), anyInt())).thenReturn(false);
+		when(this.koalibeeDao.ownsAlbum(eq(1), anyInt()))
+				.thenAnswer(invocation -> albumList.contains(new Album(invocation.getArgument(1))));
 		when(this.albumdao.getAlbumById(1)).thenReturn(albumList.get(0));
 		when(this.albumdao.getAlbumById(2)).thenReturn(albumList.get(1));
 		when(this.albumdao.getAlbumById(7)).thenReturn(albumList.get(1));
@@ -112,13 +151,16 @@ public class TrackServiceTest {
 
 		when(this.trackDao.addTrack(isA(Track.class))).thenReturn(4);
 		when(this.trackDao.deleteTrack(anyInt())).thenReturn(true);
-		when(this.trackDao.getAllTracks()).thenReturn(trackList);
+		when(this.trackDao.getTrackPage(null, 0, PageUtility.DEFAULT_PAGE_SIZE + 1)).thenReturn(trackList);
 		when(this.trackDao.getAllTracksByAlbum(anyInt())).thenReturn(new ArrayList<Track>());
 		when(this.trackDao.getAllTracksByAlbum(7)).thenReturn(trackList);
 
 		this.trackService.setAlbumDao(this.albumdao);
 		this.trackService.setKoalibeeDao(this.koalibeeDao);
 		this.trackService.setTrackDao(this.trackDao);
+		this.trackService.setCatalogIndex(this.catalogIndex);
+		this.trackService.setSuggestIndex(this.suggestIndex);
+		this.trackService.setMediaStore(this.mediaStore);
 
 	}
 
@@ -195,11 +237,87 @@ public class TrackServiceTest {
 	}
 
 	@Test
-	public void testAddOneBadJSON() throws Exception {
+	public void testGetStreamableN() throws Exception {
+
+		assertNull(this.trackService.getStreamable(1, 25));
+
+	}
+
+	@Test
+	public void testGetStreamableNP() throws Exception {
+
+		Track details = new Track(3);
+		details.setIsDemo("F");
+		details.setAlbum(albumList.get(1));
+		when(this.trackDao.getTrackAudioDetails(3)).thenReturn(details);
+
+		assertNull(this.trackService.getStreamable(1, 3));
+
+	}
+
+	@Test
+	public void testGetStreamableT() throws Exception {
+
+		Track details = new Track(1);
+		details.setIsDemo("T");
+		details.setAlbum(albumList.get(0));
+		when(this.trackDao.getTrackAudioDetails(1)).thenReturn(details);
+
+		assertNotNull(this.trackService.getStreamable(2, 1));
+
+	}
+
+	@Test
+	public void testGetStreamableNO() throws Exception {
+
+		Track details = new Track(2);
+		details.setIsDemo("F");
+		details.setAlbum(albumList.get(0));
+		when(this.trackDao.getTrackAudioDetails(2)).thenReturn(details);
+
+		assertNull(this.trackService.getStreamable(2, 2));
+
+	}
+
+	@Test
+	public void testGetStreamableS() throws Exception {
+
+		Track details = new Track(2);
+		details.setIsDemo("F");
+		details.setAudioSize(1024);
+		details.setAlbum(albumList.get(0));
+		when(this.trackDao.getTrackAudioDetails(2)).thenReturn(details);
+
+		Track track = this.trackService.getStreamable(1, 2);
+
+		assertNotNull(track);
+
+		assertEquals(1024, track.getAudioSize());
+
+	}
+
+	@Test
+	public void testStreamAudioS() throws Exception {
 
-		final String source = "bad json";
+		when(this.trackDao.writeTrackAudio(eq(2), eq(0L), eq(10L), any(OutputStream.class))).thenReturn(10L);
 
-		assertEquals(0, this.trackService.addOne(1, 1, source));
+		assertTrue(this.trackService.streamAudio(2, 0, 10, new ByteArrayOutputStream()));
+
+	}
+
+	@Test
+	public void testStreamAudioF() throws Exception {
+
+		when(this.trackDao.writeTrackAudio(eq(2), eq(0L), eq(10L), any(OutputStream.class))).thenReturn(-1L);
+
+		assertFalse(this.trackService.streamAudio(2, 0, 10, new ByteArrayOutputStream()));
+
+	}
+
+	@Test
+	public void testAddOneBadJSON() throws Exception {
+
+		assertEquals(0, this.trackService.addOne(1, 1, null));
 
 	}
 
@@ -208,7 +326,7 @@ public class TrackServiceTest {
 
 		final String source = "{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,Uhe7eU=\",\"isDemo\":\"F\"}";
 
-		assertEquals(0, this.trackService.addOne(1, 1, source));
+		assertEquals(0, this.trackService.addOne(1, 1, bind(source, TrackData.class)));
 
 	}
 
@@ -217,7 +335,7 @@ public class TrackServiceTest {
 
 		final String source = "{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,Uhe7eU=\",\"isDemo\":\"F\"}";
 
-		assertEquals(0, this.trackService.addOne(1, 3, source));
+		assertEquals(0, this.trackService.addOne(1, 3, bind(source, TrackData.class)));
 
 	}
 
@@ -226,7 +344,7 @@ public class TrackServiceTest {
 
 		final String source = "{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}";
 
-		assertEquals(0, this.trackService.addOne(1, 2, source));
+		assertEquals(0, this.trackService.addOne(1, 2, bind(source, TrackData.class)));
 
 	}
 
@@ -235,7 +353,7 @@ public class TrackServiceTest {
 
 		final String source = "{\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}";
 
-		assertEquals(0, this.trackService.addOne(2, 2, source));
+		assertEquals(0, this.trackService.addOne(2, 2, bind(source, TrackData.class)));
 
 	}
 
@@ -244,7 +362,7 @@ public class TrackServiceTest {
 
 		final String source = "{\"trackName\":\"my track\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}";
 
-		assertEquals(0, this.trackService.addOne(2, 2, source));
+		assertEquals(0, this.trackService.addOne(2, 2, bind(source, TrackData.class)));
 
 	}
 
@@ -253,16 +371,26 @@ public class TrackServiceTest {
 
 		final String source = "{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}";
 
-		assertEquals(0, this.trackService.addOne(2, 2, source));
+		assertEquals(0, this.trackService.addOne(2, 2, bind(source, TrackData.class)));
 
 	}
 
 	@Test
 	public void testAddOneBadA() throws Exception {
 
+		final String source = "{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,not*base64\",\"isDemo\":\"F\"}";
+
+		assertEquals(0, this.trackService.addOne(2, 2, bind(source, TrackData.class)));
+
+	}
+
+	@Test
+	public void testAddOneNA() throws Exception {
+
+		// The audio can be uploaded later.
 		final String source = "{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"isDemo\":\"F\"}";
 
-		assertEquals(0, this.trackService.addOne(2, 2, source));
+		assertEquals(4, this.trackService.addOne(2, 2, bind(source, TrackData.class)));
 
 	}
 
@@ -271,7 +399,7 @@ public class TrackServiceTest {
 
 		final String source = "{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\"}";
 
-		assertEquals(0, this.trackService.addOne(2, 2, source));
+		assertEquals(0, this.trackService.addOne(2, 2, bind(source, TrackData.class)));
 
 	}
 
@@ -280,7 +408,124 @@ public class TrackServiceTest {
 
 		final String source = "{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}";
 
-		assertEquals(4, this.trackService.addOne(2, 2, source));
+		assertEquals(4, this.trackService.addOne(2, 2, bind(source, TrackData.class)));
+
+	}
+
+	@Test
+	public void testUploadAudioS() throws Exception {
+
+		when(this.trackDao.updateTrackAudio(eq(3), eq("OGG"), any(InputStream.class), eq(4L))).thenReturn(true);
+
+		assertTrue(this.trackService.uploadAudio(2, 3, "OGG", new ByteArrayInputStream("OggS".getBytes()), 4));
+
+	}
+
+	@Test
+	public void testUploadAudioNO() throws Exception {
+
+		assertFalse(this.trackService.uploadAudio(1, 3, "OGG", new ByteArrayInputStream("ogg".getBytes()), 3));
+
+	}
+
+	@Test
+	public void testUploadAudioP() throws Exception {
+
+		assertFalse(this.trackService.uploadAudio(1, 1, "OGG", new ByteArrayInputStream("ogg".getBytes()), 3));
+
+	}
+
+	@Test
+	public void testUploadAudioN() throws Exception {
+
+		assertFalse(this.trackService.uploadAudio(2, 9, "OGG", new ByteArrayInputStream("ogg".getBytes()), 3));
+
+	}
+
+	@Test
+	public void testUploadAudioE() throws Exception {
+
+		assertFalse(this.trackService.uploadAudio(2, 3, "OGG", new ByteArrayInputStream(new byte[0]), 0));
+
+	}
+
+	@Test
+	public void testAddManyBadJSON() throws Exception {
+
+		assertEquals(0, this.trackService.addMany(2, 2, null));
+
+	}
+
+	@Test
+	public void testAddManyE() throws Exception {
+
+		final String source = "[]";
+
+		assertEquals(0, this.trackService.addMany(2, 2, bindAll(source)));
+
+	}
+
+	@Test
+	public void testAddManyTM() throws Exception {
+
+		StringBuilder source = new StringBuilder("[");
+		for (int i = 0; i <= TrackService.MAX_BULK_TRACKS; i++) {
+			source.append(i == 0 ? "" : ",").append("{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}");
+		}
+		source.append("]");
+
+		assertEquals(0, this.trackService.addMany(2, 2, bindAll(source.toString())));
+
+	}
+
+	@Test
+	public void testAddManyAP() throws Exception {
+
+		final String source = "[{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}]";
+
+		assertEquals(0, this.trackService.addMany(1, 1, bindAll(source)));
+
+	}
+
+	@Test
+	public void testAddManyNO() throws Exception {
+
+		final String source = "[{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}]";
+
+		assertEquals(0, this.trackService.addMany(1, 2, bindAll(source)));
+
+	}
+
+	@Test
+	public void testAddManyBadT() throws Exception {
+
+		final String source = "[{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"},{\"trackName\":\"my track\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}]";
+
+		assertEquals(0, this.trackService.addMany(2, 2, bindAll(source)));
+
+	}
+
+	@Test
+	public void testAddManyBadE() throws Exception {
+
+		final String source = "[{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"},null]";
+
+		assertEquals(0, this.trackService.addMany(2, 2, bindAll(source)));
+
+	}
+
+	@Test
+	public void testAddManyS() throws Exception {
+
+		final String source = "[{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"},{\"trackName\":\"my track\",\"composer\":\"Beethoven\",\"trackLength\":120,\"audioDataUrl\":\"data:audio/ogg;base64,c2FmMTIzdXNodTgzdGFjaw==\",\"isDemo\":\"F\"}]";
+
+		List<Integer> idList = new ArrayList<>();
+		idList.add(5);
+		idList.add(6);
+
+		when(this.trackDao.addTracks(anyList())).thenReturn(idList);
+
+		assertEquals(2, this.trackService.addMany(2, 2, bindAll(source)));
 
 	}
 
@@ -289,6 +534,10 @@ public class TrackServiceTest {
 
 		assertTrue(this.trackService.delete(-777, 23));
 
+		verify(this.catalogIndex).removeTrack(23);
+
+		verify(this.suggestIndex).removeTrack(23);
+
 	}
 
 	@Test
@@ -322,13 +571,61 @@ public class TrackServiceTest {
 	@Test
 	public void testGetAll() throws Exception {
 
-		List<Track> trackList = this.trackService.getAll();
+		Page<Track> page = this.trackService.getAll(null, null);
+
+		assertEquals(3, page.getItems().size());
+
+		assertEquals(trackList, page.getItems());
+
+		assertNull(page.getNextCursor());
+
+	}
+
+	@Test
+	public void testWriteAll() throws Exception {
+
+		when(this.trackDao.streamTracks(any())).thenAnswer(invocation -> {
+			Consumer<Track> action = invocation.getArgument(0);
+			trackList.forEach(action);
+			return trackList.size();
+		});
 
-		assertEquals(3, trackList.size());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
 
-		assertNull(trackList.get(0).getAudio());
+		assertTrue(this.trackService.writeAll(out));
+
+		assertEquals(3, new ObjectMapper().readTree(out.toByteArray()).size());
+
+		assertEquals(2, new ObjectMapper().readTree(out.toByteArray()).get(1).get("trackId").asInt());
+
+	}
+
+	@Test
+	public void testWriteAllF() throws Exception {
+
+		when(this.trackDao.streamTracks(any())).thenReturn(-1);
+
+		assertFalse(this.trackService.writeAll(new ByteArrayOutputStream()));
+
+	}
+
+	@Test
+	public void testGetAllC() throws Exception {
+
+		when(this.trackDao.getTrackPage("Mazeppa", 1, 3)).thenReturn(new ArrayList<>(trackList));
+
+		Page<Track> page = this.trackService.getAll(PageUtility.encodeCursor("Mazeppa", 1), 2);
+
+		assertEquals(2, page.getItems().size());
+
+		assertEquals(PageUtility.encodeCursor(trackList.get(1).getTrackName(), 2), page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetAllBC() throws Exception {
 
-		assertNull(trackList.get(1).getAudioDataUrl());
+		assertNull(this.trackService.getAll(PageUtility.encodeCursor("Mazeppa"), null));
 
 	}
 
@@ -0,0 +1,159 @@
+package io.esoma.khr.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MediaStoreTest {
+
+	// The SHA-256 hash of "hello".
+	private static final String HELLO_HASH = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+	private static Path directory;
+	private static MediaStore mediaStore;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+
+		directory = Files.createTempDirectory("khr-media");
+		mediaStore = new MediaStore(directory.toString());
+
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+
+	}
+
+	@Test
+	public void testIsEnabled() throws Exception {
+
+		assertTrue(mediaStore.isEnabled());
+
+		assertFalse(new MediaStore("").isEnabled());
+
+		assertFalse(new MediaStore(null).isEnabled());
+
+	}
+
+	@Test
+	public void testPut1() throws Exception {
+
+		assertEquals(HELLO_HASH, mediaStore.put("hello".getBytes(StandardCharsets.UTF_8)));
+
+		assertTrue(Files.exists(directory.resolve("2c").resolve(HELLO_HASH)));
+
+	}
+
+	@Test
+	public void testPut2() throws Exception {
+
+		final byte[] data = "same content".getBytes(StandardCharsets.UTF_8);
+
+		// Identical content is stored once under the same name.
+		final String hash = mediaStore.put(new ByteArrayInputStream(data), data.length);
+
+		assertEquals(hash, mediaStore.put(data));
+
+		try (Stream<Path> paths = Files.list(directory.resolve(hash.substring(0, 2)))) {
+			assertEquals(1, paths.filter(p -> p.getFileName().toString().equals(hash)).count());
+		}
+
+		// No temporary file is left behind.
+		try (Stream<Path> paths = Files.list(directory)) {
+			assertEquals(0, paths.filter(p -> p.getFileName().toString().endsWith(".tmp")).count());
+		}
+
+	}
+
+	@Test(expected = EOFException.class)
+	public void testPut3() throws Exception {
+
+		// The stream holds fewer bytes than declared.
+		mediaStore.put(new ByteArrayInputStream("short".getBytes(StandardCharsets.UTF_8)), 10);
+
+	}
+
+	@Test
+	public void testSize() throws Exception {
+
+		final String hash = mediaStore.put("twelve bytes".getBytes(StandardCharsets.UTF_8));
+
+		assertEquals(12, mediaStore.size(hash));
+
+	}
+
+	@Test
+	public void testRead() throws Exception {
+
+		final byte[] data = "image data".getBytes(StandardCharsets.UTF_8);
+
+		assertArrayEquals(data, mediaStore.read(mediaStore.put(data)));
+
+	}
+
+	@Test
+	public void testTransfer1() throws Exception {
+
+		final String hash = mediaStore.put("0123456789".getBytes(StandardCharsets.UTF_8));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(4, mediaStore.transfer(hash, 3, 4, out));
+
+		assertEquals("3456", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+	}
+
+	@Test
+	public void testTransfer2() throws Exception {
+
+		final String hash = mediaStore.put("0123456789".getBytes(StandardCharsets.UTF_8));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		// The range is cut at the end of the file.
+		assertEquals(2, mediaStore.transfer(hash, 8, 100, out));
+
+		assertEquals("89", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGetPath1() throws Exception {
+
+		mediaStore.getPath("../../etc/passwd");
+
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGetPath2() throws Exception {
+
+		mediaStore.getPath(HELLO_HASH.toUpperCase());
+
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testGetPath3() throws Exception {
+
+		new MediaStore("").getPath(HELLO_HASH);
+
+	}
+
+}
@@ -1,14 +1,26 @@
 package io.esoma.khr.utility;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.esoma.khr.model.Album;
+
 public class DataUtilityTest {
 
 	@BeforeClass
@@ -102,4 +114,287 @@ public class DataUtilityTest {
 
 	}
 
+	@Test
+	public void testDecodeDataUrlToBytes4() throws Exception {
+
+		assertNull(DataUtility.decodeDataUrlToBytes("data:image/png;base64,not*base64"));
+
+	}
+
+	@Test
+	public void testGetDataUrlType1() throws Exception {
+
+		assertEquals("PNG", DataUtility.getDataUrlType("data:image/png;base64,8sh237shryyWW="));
+
+		assertEquals("OGG", DataUtility.getDataUrlType("data:audio/ogg;base64,"));
+
+	}
+
+	@Test
+	public void testGetDataUrlTypeP() throws Exception {
+
+		assertEquals("PNG", DataUtility.getDataUrlType("data:image/png;charset=utf-8;base64,8sh237shryyWW="));
+
+		assertEquals("JPEG", DataUtility.getDataUrlType("data:image/jpeg;name=a/b.jpg;base64,3EssR9oP="));
+
+		assertNull(DataUtility.getDataUrlType("data:image/png;charset=utf-8,3EssR9oP="));
+
+	}
+
+	@Test
+	public void testGetDataUrlType2() throws Exception {
+
+		assertNull(DataUtility.getDataUrlType(null));
+
+		assertNull(DataUtility.getDataUrlType("data:??"));
+
+		assertNull(DataUtility.getDataUrlType("dse64,3EssR9oP="));
+
+		assertNull(DataUtility.getDataUrlType("data:image/;base64,3EssR9oP="));
+
+		assertNull(DataUtility.getDataUrlType("data:image/png,3EssR9oP="));
+
+		assertNull(DataUtility.getDataUrlType("data:image/png,3EssR9oP;base64,="));
+
+	}
+
+	@Test
+	public void testGetUploadType1() throws Exception {
+
+		assertEquals("OGG", DataUtility.getUploadType("audio/ogg", "audio"));
+
+		assertEquals("PNG", DataUtility.getUploadType("Image/PNG; charset=binary", "image"));
+
+	}
+
+	@Test
+	public void testGetUploadType2() throws Exception {
+
+		assertNull(DataUtility.getUploadType(null, "audio"));
+
+		assertNull(DataUtility.getUploadType("image/png", "audio"));
+
+		assertNull(DataUtility.getUploadType("audio/", "audio"));
+
+		assertNull(DataUtility.getUploadType("audio/x-wav", "audio"));
+
+		assertNull(DataUtility.getUploadType("image/svg+xml", "image"));
+
+	}
+
+	@Test
+	public void testLimitUpload1() throws Exception {
+
+		final InputStream in = DataUtility.limitUpload(new ByteArrayInputStream("abcdef".getBytes()), 4);
+		final byte[] buffer = new byte[8];
+
+		// Bytes beyond the declared length are not read.
+		assertEquals('a', in.read());
+		assertEquals(3, in.read(buffer, 0, buffer.length));
+		assertEquals("bcd", new String(buffer, 0, 3, StandardCharsets.UTF_8));
+		assertEquals(-1, in.read());
+		assertEquals(-1, in.read(buffer, 0, buffer.length));
+
+	}
+
+	@Test(expected = EOFException.class)
+	public void testLimitUpload2() throws Exception {
+
+		final InputStream in = DataUtility.limitUpload(new ByteArrayInputStream("ab".getBytes()), 4);
+		final byte[] buffer = new byte[8];
+
+		assertEquals(2, in.read(buffer, 0, buffer.length));
+
+		// The body ended before its declared length.
+		in.read(buffer, 0, buffer.length);
+
+	}
+
+	@Test
+	public void testIsContentOfType1() throws Exception {
+
+		final byte[] png = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13 };
+
+		assertTrue(DataUtility.isContentOfType(png, "PNG"));
+
+		assertTrue(DataUtility.isContentOfType(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF }, "JPG"));
+
+		assertTrue(DataUtility.isContentOfType("RIFF\0\0\0\0WAVEfmt ".getBytes(StandardCharsets.ISO_8859_1), "WAV"));
+
+		assertTrue(DataUtility.isContentOfType("ID3\4\0".getBytes(StandardCharsets.ISO_8859_1), "MPEG"));
+
+	}
+
+	@Test
+	public void testIsContentOfType2() throws Exception {
+
+		assertFalse(DataUtility.isContentOfType("GIF89a".getBytes(), "PNG"));
+
+		assertFalse(DataUtility.isContentOfType("RIFF\0\0\0\0WAVEfmt ".getBytes(StandardCharsets.ISO_8859_1), "WEBP"));
+
+		assertFalse(DataUtility.isContentOfType("OggS".getBytes(), "SVG"));
+
+		assertFalse(DataUtility.isContentOfType(new byte[] { 'B' }, "BMP"));
+
+	}
+
+	@Test
+	public void testStoreUpload1() throws Exception {
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertTrue(DataUtility.storeUpload(new ByteArrayInputStream("OggS data and more".getBytes()), 9, "OGG", true,
+				in -> {
+					try {
+						final byte[] buffer = new byte[4];
+						for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+							out.write(buffer, 0, n);
+						}
+						return true;
+					} catch (IOException e) {
+						return false;
+					}
+				}));
+
+		// Only the declared length reaches the store.
+		assertEquals("OggS data", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+	}
+
+	@Test
+	public void testStoreUpload2() throws Exception {
+
+		final ByteArrayInputStream spooled = new ByteArrayInputStream("OggS data and more".getBytes());
+		final ByteArrayInputStream streamed = new ByteArrayInputStream("OggS data and more".getBytes());
+
+		// A spooled body has arrived in full before the store runs.
+		assertTrue(DataUtility.storeUpload(spooled, 18, "OGG", true, in -> spooled.available() == 0));
+
+		// A streamed body is read by the store itself, past the checked header.
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(DataUtility.storeUpload(streamed, 18, "OGG", false, in -> {
+			if (streamed.available() == 0) {
+				return false;
+			}
+			try {
+				final byte[] buffer = new byte[4];
+				for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+					out.write(buffer, 0, n);
+				}
+				return true;
+			} catch (IOException e) {
+				return false;
+			}
+		}));
+
+		assertEquals("OggS data and more", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+	}
+
+	@Test
+	public void testStoreUpload3() throws Exception {
+
+		// Neither a file of another type nor a truncated one reaches the store.
+		assertFalse(
+				DataUtility.storeUpload(new ByteArrayInputStream("GIF89a".getBytes()), 6, "PNG", true, in -> true));
+
+		assertFalse(
+				DataUtility.storeUpload(new ByteArrayInputStream("GIF89a".getBytes()), 6, "PNG", false, in -> true));
+
+		assertFalse(DataUtility.storeUpload(new ByteArrayInputStream("OggS".getBytes()), 40, "OGG", true, in -> true));
+
+	}
+
+	@Test
+	public void testGetEntityTag1() throws Exception {
+
+		assertEquals("\"5d41402abc4b2a76b9719d911017c592\"", DataUtility.getEntityTag("hello".getBytes()));
+
+	}
+
+	@Test
+	public void testGetEntityTag2() throws Exception {
+
+		assertEquals("\"K1v2\"", DataUtility.getEntityTag("K1v2", 0));
+
+		assertEquals("\"K1v2-64\"", DataUtility.getEntityTag("K1v2", 64));
+
+	}
+
+	@Test
+	public void testMatchesEntityTag1() throws Exception {
+
+		final String eTag = "\"abc\"";
+
+		assertTrue(DataUtility.matchesEntityTag("\"abc\"", eTag));
+
+		assertTrue(DataUtility.matchesEntityTag("\"xyz\", W/\"abc\"", eTag));
+
+		assertTrue(DataUtility.matchesEntityTag("*", eTag));
+
+	}
+
+	@Test
+	public void testMatchesEntityTag2() throws Exception {
+
+		final String eTag = "\"abc\"";
+
+		assertFalse(DataUtility.matchesEntityTag(null, eTag));
+
+		assertFalse(DataUtility.matchesEntityTag("\"xyz\"", eTag));
+
+		assertFalse(DataUtility.matchesEntityTag("abc", eTag));
+
+	}
+
+	@Test
+	public void testGetArtworkUrl() throws Exception {
+
+		final Album album = new Album(5);
+		album.setArtworkType("PNG");
+		album.setIsPublished("T");
+
+		assertEquals("/album/artwork/5", DataUtility.getArtworkUrl(album));
+
+		album.setIsPublished("F");
+
+		assertNull(DataUtility.getArtworkUrl(album));
+
+		album.setIsPublished("T");
+		album.setArtworkType(null);
+
+		assertNull(DataUtility.getArtworkUrl(album));
+
+	}
+
+	@Test
+	public void testWriteJsonArray1() throws Exception {
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertTrue(DataUtility.writeJsonArray(out, new ObjectMapper(), action -> {
+			action.accept("a");
+			action.accept(2);
+			return 2;
+		}));
+
+		assertEquals("[\"a\",2]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+	}
+
+	@Test
+	public void testWriteJsonArray2() throws Exception {
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertFalse(DataUtility.writeJsonArray(out, new ObjectMapper(), action -> {
+			action.accept("a");
+			return -1;
+		}));
+
+		// A failed list is not closed.
+		assertEquals("[\"a\"", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+	}
+
 }
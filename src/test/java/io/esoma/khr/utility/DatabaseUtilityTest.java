@@ -1,12 +1,15 @@
 package io.esoma.khr.utility;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.sql.DriverManager;
+import java.util.Properties;
 
+import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -141,4 +144,280 @@ public class DatabaseUtilityTest {
 
 	}
 
+	@Test
+	public void testGetVariable() {
+
+		System.setProperty("KHR_TEST_VARIABLE", " on ");
+
+		assertEquals("on", DatabaseUtility.getVariable("KHR_TEST_VARIABLE", "off"));
+
+		System.clearProperty("KHR_TEST_VARIABLE");
+
+		assertEquals("off", DatabaseUtility.getVariable("KHR_TEST_VARIABLE", "off"));
+
+	}
+
+	@Test
+	public void testGetSecondLevelCacheProperties() {
+
+		final String previous = System.getProperty("KHR_L2_CACHE");
+
+		try {
+			System.setProperty("KHR_L2_CACHE", "false");
+
+			assertEquals("false",
+					DatabaseUtility.getSecondLevelCacheProperties("h2").getProperty("hibernate.cache.use_second_level_cache"));
+
+			System.setProperty("KHR_L2_CACHE", "true");
+
+			Properties cacheProperties = DatabaseUtility.getSecondLevelCacheProperties("h2");
+
+			assertEquals("true", cacheProperties.getProperty("hibernate.cache.use_second_level_cache"));
+
+			assertEquals("h2", cacheProperties.getProperty("hibernate.cache.region_prefix"));
+
+			assertEquals("classpath:kh-ehcache.xml", cacheProperties.getProperty("hibernate.javax.cache.uri"));
+
+			assertEquals("true", cacheProperties.getProperty("hibernate.generate_statistics"));
+		} finally {
+			if (previous == null) {
+				System.clearProperty("KHR_L2_CACHE");
+			} else {
+				System.setProperty("KHR_L2_CACHE", previous);
+			}
+		}
+
+	}
+
+	@Test
+	public void testGetIntVariable() {
+
+		try {
+			System.setProperty("KHR_TEST_VARIABLE", " 12 ");
+
+			assertEquals(12, DatabaseUtility.getIntVariable("KHR_TEST_VARIABLE", 3));
+
+			System.setProperty("KHR_TEST_VARIABLE", "twelve");
+
+			assertEquals(3, DatabaseUtility.getIntVariable("KHR_TEST_VARIABLE", 3));
+		} finally {
+			System.clearProperty("KHR_TEST_VARIABLE");
+		}
+
+	}
+
+	@Test
+	public void testIsShowSqlEnabled() {
+
+		try {
+			System.setProperty("KHR_SHOW_SQL", "true");
+
+			assertTrue(DatabaseUtility.isShowSqlEnabled());
+
+			System.setProperty("KHR_SHOW_SQL", "no");
+
+			assertFalse(DatabaseUtility.isShowSqlEnabled());
+		} finally {
+			System.clearProperty("KHR_SHOW_SQL");
+		}
+
+	}
+
+	@Test
+	public void testGetJdbcBatchSize() {
+
+		try {
+			assertEquals(20, DatabaseUtility.getJdbcBatchSize());
+
+			System.setProperty("KHR_JDBC_BATCH_SIZE", "50");
+
+			assertEquals(50, DatabaseUtility.getJdbcBatchSize());
+
+			System.setProperty("KHR_JDBC_BATCH_SIZE", "-3");
+
+			assertEquals(1, DatabaseUtility.getJdbcBatchSize());
+		} finally {
+			System.clearProperty("KHR_JDBC_BATCH_SIZE");
+		}
+
+	}
+
+	@Test
+	public void testGetJdbcBatchProperties() {
+
+		Properties batchProperties = DatabaseUtility.getJdbcBatchProperties();
+
+		assertEquals("20", batchProperties.getProperty("hibernate.jdbc.batch_size"));
+		assertEquals("true", batchProperties.getProperty("hibernate.order_inserts"));
+		assertEquals("true", batchProperties.getProperty("hibernate.order_updates"));
+
+	}
+
+	@Test
+	public void testConfigureConnectionPool() throws Exception {
+
+		try (BasicDataSource dataSource = new BasicDataSource()) {
+			DatabaseUtility.configureConnectionPool(dataSource, "KHR_TEST");
+
+			assertEquals(20, dataSource.getMaxTotal());
+			assertEquals(10, dataSource.getMaxIdle());
+			assertEquals(2, dataSource.getMinIdle());
+			assertEquals(5000, dataSource.getMaxWaitMillis());
+			assertTrue(dataSource.isPoolPreparedStatements());
+			assertEquals(50, dataSource.getMaxOpenPreparedStatements());
+			assertTrue(dataSource.getTestOnBorrow());
+		}
+
+	}
+
+	@Test
+	public void testConfigureConnectionPoolV() throws Exception {
+
+		try (BasicDataSource dataSource = new BasicDataSource()) {
+			System.setProperty("KHR_TEST_POOL_MAX_TOTAL", "4");
+			System.setProperty("KHR_TEST_POOL_MAX_IDLE", "8");
+			System.setProperty("KHR_TEST_POOL_MIN_IDLE", "6");
+			System.setProperty("KHR_TEST_POOL_STATEMENTS", "0");
+			System.setProperty("KHR_TEST_POOL_VALIDATE", "false");
+
+			DatabaseUtility.configureConnectionPool(dataSource, "KHR_TEST");
+
+			assertEquals(4, dataSource.getMaxTotal());
+			assertEquals(4, dataSource.getMaxIdle());
+			assertEquals(4, dataSource.getMinIdle());
+			assertFalse(dataSource.isPoolPreparedStatements());
+			assertFalse(dataSource.getTestOnBorrow());
+			assertFalse(dataSource.getTestWhileIdle());
+		} finally {
+			System.clearProperty("KHR_TEST_POOL_MAX_TOTAL");
+			System.clearProperty("KHR_TEST_POOL_MAX_IDLE");
+			System.clearProperty("KHR_TEST_POOL_MIN_IDLE");
+			System.clearProperty("KHR_TEST_POOL_STATEMENTS");
+			System.clearProperty("KHR_TEST_POOL_VALIDATE");
+		}
+
+	}
+
+	@Test
+	public void testIsAsyncQueryEnabled() {
+
+		try {
+			assertTrue(DatabaseUtility.isAsyncQueryEnabled());
+
+			System.setProperty("KHR_ASYNC_QUERIES", "false");
+
+			assertFalse(DatabaseUtility.isAsyncQueryEnabled());
+		} finally {
+			System.clearProperty("KHR_ASYNC_QUERIES");
+		}
+
+	}
+
+	@Test
+	public void testGetQuerySettings() {
+
+		try {
+			assertEquals(20, DatabaseUtility.getQueryThreads());
+			assertEquals(100, DatabaseUtility.getQueryQueueCapacity());
+			assertEquals(10000, DatabaseUtility.getQueryTimeout());
+
+			System.setProperty("KHR_POOL_MAX_TOTAL", "8");
+
+			assertEquals(8, DatabaseUtility.getQueryThreads());
+
+			System.setProperty("KHR_QUERY_THREADS", "4");
+			System.setProperty("KHR_QUERY_QUEUE", "0");
+			System.setProperty("KHR_QUERY_TIMEOUT", "2500");
+
+			assertEquals(4, DatabaseUtility.getQueryThreads());
+			assertEquals(1, DatabaseUtility.getQueryQueueCapacity());
+			assertEquals(2500, DatabaseUtility.getQueryTimeout());
+		} finally {
+			System.clearProperty("KHR_POOL_MAX_TOTAL");
+			System.clearProperty("KHR_QUERY_THREADS");
+			System.clearProperty("KHR_QUERY_QUEUE");
+			System.clearProperty("KHR_QUERY_TIMEOUT");
+		}
+
+	}
+
+	@Test
+	public void testGetLedgerSettings() {
+
+		try {
+			assertEquals(2000, DatabaseUtility.getLedgerInterval());
+			assertEquals(500, DatabaseUtility.getLedgerBatchSize());
+
+			System.setProperty("KHR_LEDGER_INTERVAL", "-1");
+			System.setProperty("KHR_LEDGER_BATCH", "5000");
+
+			assertEquals(0, DatabaseUtility.getLedgerInterval());
+			assertEquals(1000, DatabaseUtility.getLedgerBatchSize());
+		} finally {
+			System.clearProperty("KHR_LEDGER_INTERVAL");
+			System.clearProperty("KHR_LEDGER_BATCH");
+		}
+
+	}
+
+	@Test
+	public void testGetStreamFetchSize() {
+
+		try {
+			assertEquals(100, DatabaseUtility.getStreamFetchSize());
+
+			System.setProperty("KHR_STREAM_FETCH_SIZE", "0");
+
+			assertEquals(1, DatabaseUtility.getStreamFetchSize());
+		} finally {
+			System.clearProperty("KHR_STREAM_FETCH_SIZE");
+		}
+
+	}
+
+	@Test
+	public void testGetMaxUploadSize() {
+
+		try {
+			assertEquals(20 * 1024 * 1024, DatabaseUtility.getMaxUploadSize());
+
+			System.setProperty("KHR_MAX_UPLOAD_SIZE", "-5");
+
+			assertEquals(1, DatabaseUtility.getMaxUploadSize());
+		} finally {
+			System.clearProperty("KHR_MAX_UPLOAD_SIZE");
+		}
+
+	}
+
+	@Test
+	public void testGetMediaDirectory() {
+
+		try {
+			assertEquals("", DatabaseUtility.getMediaDirectory());
+
+			System.setProperty("KHR_MEDIA_DIR", "/var/lib/khr/media");
+
+			assertEquals("/var/lib/khr/media", DatabaseUtility.getMediaDirectory());
+		} finally {
+			System.clearProperty("KHR_MEDIA_DIR");
+		}
+
+	}
+
+	@Test
+	public void testGetMediaBatchSize() {
+
+		try {
+			assertEquals(20, DatabaseUtility.getMediaBatchSize());
+
+			System.setProperty("KHR_MEDIA_BATCH", "0");
+
+			assertEquals(1, DatabaseUtility.getMediaBatchSize());
+		} finally {
+			System.clearProperty("KHR_MEDIA_BATCH");
+		}
+
+	}
+
 }
@@ -0,0 +1,103 @@
+package io.esoma.khr.utility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.esoma.khr.model.Thumbnail;
+
+public class ImageUtilityTest {
+
+	// Encodes a blank image of the given dimensions.
+	private static byte[] createImage(int width, int height, int type, String format) throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(width, height, type), format, out);
+		return out.toByteArray();
+	}
+
+	// Decodes a thumbnail to read its dimensions.
+	private static BufferedImage readImage(Thumbnail thumbnail) throws Exception {
+		return ImageIO.read(new ByteArrayInputStream(thumbnail.getImage()));
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Test
+	public void testGetThumbnailSize() throws Exception {
+
+		assertEquals(64, ImageUtility.getThumbnailSize(1));
+
+		assertEquals(64, ImageUtility.getThumbnailSize(64));
+
+		assertEquals(160, ImageUtility.getThumbnailSize(65));
+
+		assertEquals(320, ImageUtility.getThumbnailSize(320));
+
+		assertEquals(0, ImageUtility.getThumbnailSize(321));
+
+	}
+
+	@Test
+	public void testCreateThumbnails1() throws Exception {
+
+		final List<Thumbnail> thumbnailList = ImageUtility
+				.createThumbnails(createImage(1000, 500, BufferedImage.TYPE_INT_RGB, "png"));
+
+		assertEquals(ImageUtility.THUMBNAIL_SIZES.length, thumbnailList.size());
+
+		// Every thumbnail fits its size and keeps the aspect ratio.
+		for (int i = 0; i < thumbnailList.size(); i++) {
+			final Thumbnail thumbnail = thumbnailList.get(i);
+			final BufferedImage image = readImage(thumbnail);
+			assertEquals(ImageUtility.THUMBNAIL_SIZES[i], thumbnail.getImageSize());
+			assertEquals("JPEG", thumbnail.getImageType());
+			assertEquals(ImageUtility.THUMBNAIL_SIZES[i], image.getWidth());
+			assertEquals(ImageUtility.THUMBNAIL_SIZES[i] / 2, image.getHeight());
+		}
+
+	}
+
+	@Test
+	public void testCreateThumbnails2() throws Exception {
+
+		final List<Thumbnail> thumbnailList = ImageUtility
+				.createThumbnails(createImage(100, 200, BufferedImage.TYPE_INT_ARGB, "png"));
+
+		assertEquals(ImageUtility.THUMBNAIL_SIZES.length, thumbnailList.size());
+
+		// Transparency is kept, and a small image is never enlarged.
+		assertEquals("PNG", thumbnailList.get(0).getImageType());
+		assertTrue(readImage(thumbnailList.get(0)).getColorModel().hasAlpha());
+		assertEquals(64, readImage(thumbnailList.get(0)).getHeight());
+		assertEquals(200, readImage(thumbnailList.get(2)).getHeight());
+
+	}
+
+	@Test
+	public void testCreateThumbnails3() throws Exception {
+
+		assertTrue(ImageUtility.createThumbnails("not an image".getBytes()).isEmpty());
+
+		assertTrue(ImageUtility.createThumbnails(new byte[0]).isEmpty());
+
+	}
+
+}
@@ -0,0 +1,121 @@
+package io.esoma.khr.utility;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+import io.esoma.khr.model.Page;
+
+public class PageUtilityTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// No content yet.
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// No content yet.
+	}
+
+	@Test
+	public void testGetPageSize() throws Exception {
+
+		assertEquals(PageUtility.DEFAULT_PAGE_SIZE, PageUtility.getPageSize(null));
+
+		assertEquals(7, PageUtility.getPageSize(7));
+
+		assertEquals(1, PageUtility.getPageSize(-3));
+
+		assertEquals(PageUtility.MAX_PAGE_SIZE, PageUtility.getPageSize(100000));
+
+	}
+
+	@Test
+	public void testEncodeCursor() throws Exception {
+
+		final String cursor = PageUtility.encodeCursor("Etudes Liszt", 1);
+
+		assertEquals("RXR1ZGVzIExpc3p0CjE", cursor);
+
+		assertArrayEquals(new String[] { "Etudes Liszt", "1" }, PageUtility.decodeCursor(cursor, 2));
+
+	}
+
+	@Test
+	public void testDecodeCursorS() throws Exception {
+
+		final String cursor = PageUtility.encodeCursor("Two\nLines", 12);
+
+		assertArrayEquals(new String[] { "Two\nLines", "12" }, PageUtility.decodeCursor(cursor, 2));
+
+		assertArrayEquals(new String[] { "5" }, PageUtility.decodeCursor(PageUtility.encodeCursor(5), 1));
+
+	}
+
+	@Test
+	public void testDecodeCursorF() throws Exception {
+
+		assertNull(PageUtility.decodeCursor("not base64!", 2));
+
+		assertNull(PageUtility.decodeCursor(PageUtility.encodeCursor(5), 2));
+
+		assertNull(PageUtility.decodeCursor(PageUtility.encodeCursor("Hehe", "four"), 2));
+
+		assertNull(PageUtility.decodeCursor(PageUtility.encodeCursor(-4), 1));
+
+	}
+
+	@Test
+	public void testToPageN() throws Exception {
+
+		final List<Integer> items = new ArrayList<>(Arrays.asList(1, 2, 3));
+
+		Page<Integer> page = PageUtility.toPage(items, 3, i -> "c" + i);
+
+		assertEquals(3, page.getItems().size());
+
+		assertNull(page.getNextCursor());
+
+	}
+
+	@Test
+	public void testToPageS() throws Exception {
+
+		final List<Integer> items = new ArrayList<>(Arrays.asList(1, 2, 3));
+
+		Page<Integer> page = PageUtility.toPage(items, 2, i -> "c" + i);
+
+		assertEquals(Arrays.asList(1, 2), page.getItems());
+
+		assertEquals("c2", page.getNextCursor());
+
+	}
+
+	@Test
+	public void testGetPageHeaders() throws Exception {
+
+		HttpHeaders headers = PageUtility.getPageHeaders(new Page<>(new ArrayList<Integer>(), null));
+
+		assertFalse(headers.containsKey(PageUtility.NEXT_CURSOR));
+
+		headers = PageUtility.getPageHeaders(new Page<>(new ArrayList<Integer>(), "next"));
+
+		assertTrue(headers.containsKey(PageUtility.NEXT_CURSOR));
+
+		assertEquals("next", headers.getFirst(PageUtility.NEXT_CURSOR));
+
+	}
+
+}
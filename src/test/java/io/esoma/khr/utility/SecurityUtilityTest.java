@@ -111,6 +111,74 @@ public class SecurityUtilityTest {
 
 	}
 
+	@Test
+	public void testGetPasswordSaltStrong() throws Exception {
+
+		assertEquals(16, SecurityUtility.getPasswordSaltStrong().length());
+
+	}
+
+	@Test
+	public void testGetPBKDF2Digest() throws Exception {
+
+		assertEquals("PBKDF2$1000$7701A28512CAACB153F58FA9916452CBA5E71F8849B2B101E1DF2EF79CACFECB",
+				SecurityUtility.getPBKDF2Digest("super secret", "abcd1234abcd1234", 1000));
+
+	}
+
+	@Test
+	public void testGetHashIterations() throws Exception {
+
+		assertEquals(1000, SecurityUtility.getHashIterations("PBKDF2$1000$7701A285"));
+
+		assertEquals(0, SecurityUtility.getHashIterations("85A229B2DF222B37718CA2C8D0971C66"));
+
+		assertEquals(0, SecurityUtility.getHashIterations("PBKDF2$many$7701A285"));
+
+		assertEquals(0, SecurityUtility.getHashIterations(null));
+
+	}
+
+	@Test
+	public void testIsValidPasswordY3() throws Exception {
+
+		assertTrue(SecurityUtility.isValidPassword("super secret", "abcd1234abcd1234",
+				"PBKDF2$1000$7701A28512CAACB153F58FA9916452CBA5E71F8849B2B101E1DF2EF79CACFECB"));
+
+	}
+
+	@Test
+	public void testIsValidPasswordN3() throws Exception {
+
+		assertFalse(SecurityUtility.isValidPassword("SUPER secret", "abcd1234abcd1234",
+				"PBKDF2$1000$7701A28512CAACB153F58FA9916452CBA5E71F8849B2B101E1DF2EF79CACFECB"));
+
+		assertFalse(SecurityUtility.isValidPassword("super secret", "abcd1234abcd1234",
+				"PBKDF2$0$7701A28512CAACB153F58FA9916452CBA5E71F8849B2B101E1DF2EF79CACFECB"));
+
+	}
+
+	@Test
+	public void testGetConfiguredHashing() throws Exception {
+
+		assertEquals(100000, SecurityUtility.getConfiguredHashIterations());
+
+		assertTrue(SecurityUtility.getConfiguredHashThreads() >= 1);
+
+		assertEquals(64, SecurityUtility.getConfiguredHashQueueCapacity());
+
+		System.setProperty("KHR_HASH_ITERATIONS", "10");
+		System.setProperty("KHR_HASH_QUEUE", "none");
+
+		assertEquals(1000, SecurityUtility.getConfiguredHashIterations());
+
+		assertEquals(64, SecurityUtility.getConfiguredHashQueueCapacity());
+
+		System.clearProperty("KHR_HASH_ITERATIONS");
+		System.clearProperty("KHR_HASH_QUEUE");
+
+	}
+
 	@Test
 	public void testIsValidPasswordY2() throws Exception {
 
@@ -266,4 +334,13 @@ public class SecurityUtilityTest {
 
 	}
 
+	@Test
+	public void testGetJwsExpiration() throws Exception {
+
+		final LocalDateTime timeCreated = LocalDateTime.of(2019, 5, 1, 10, 0);
+
+		assertEquals(LocalDateTime.of(2019, 5, 1, 10, 30), SecurityUtility.getJwsExpiration(timeCreated));
+
+	}
+
 }
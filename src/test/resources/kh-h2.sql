@@ -1,5 +1,8 @@
 -- ==================== DELETE ALL RECORDS ====================
+DELETE FROM THUMBNAIL;
+DELETE FROM ETA_LEDGER;
 DELETE FROM KOALIBEE_ALBUM;
+DELETE FROM ALBUM_RATING;
 DELETE FROM REVIEW;
 DELETE FROM MOMENT;
 DELETE FROM TRACK;
@@ -157,4 +160,29 @@ VALUES (NEXTVAL('SEQ_REVIEW_ID'), 6, 'Never want to listen to this ever', 5, 3);
 INSERT INTO REVIEW (REVIEW_ID, RATING, REVIEW_COMMENT, ALBUM_ID, KOALIBEE_ID)
 VALUES (NEXTVAL('SEQ_REVIEW_ID'), 8, 'give my eta back.', 4, 1);
 
+-- ==================== TEST INSERT ALBUM_RATING ====================
+INSERT INTO ALBUM_RATING (ALBUM_ID, RATING_COUNT, RATING_SUM, RATING_1, RATING_2, RATING_3, RATING_4, RATING_5, RATING_6, RATING_7, RATING_8, RATING_9, RATING_10)
+SELECT ALBUM_ID, COUNT(*), SUM(RATING),
+SUM(CASE WHEN RATING = 1 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 2 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 3 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 4 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 5 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 6 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 7 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 8 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 9 THEN 1 ELSE 0 END),
+SUM(CASE WHEN RATING = 10 THEN 1 ELSE 0 END)
+FROM REVIEW GROUP BY ALBUM_ID;
+
+-- ==================== POOLED SEQUENCES ====================
+-- Continue after the test data in blocks of 20, matching allocationSize.
+ALTER SEQUENCE SEQ_GENRE_ID RESTART WITH 28 INCREMENT BY 20;
+ALTER SEQUENCE SEQ_KOALIBEE_ID RESTART WITH 23 INCREMENT BY 20;
+ALTER SEQUENCE SEQ_CREDENTIALS_ID RESTART WITH 23 INCREMENT BY 20;
+ALTER SEQUENCE SEQ_MOMENT_ID RESTART WITH 25 INCREMENT BY 20;
+ALTER SEQUENCE SEQ_ALBUM_ID RESTART WITH 26 INCREMENT BY 20;
+ALTER SEQUENCE SEQ_TRACK_ID RESTART WITH 32 INCREMENT BY 20;
+ALTER SEQUENCE SEQ_REVIEW_ID RESTART WITH 30 INCREMENT BY 20;
+
 COMMIT;